@@ -46,6 +46,6 @@ public class PrimaryDataSource {
     @Primary
     public DataSource komp2DataSource() {
 
-        return SqlUtils.getConfiguredDatasource(komp2Url, komp2Username, komp2Password);
+        return SqlUtils.getConfiguredDatasource(SqlUtils.withRewriteBatchedStatements(komp2Url), komp2Username, komp2Password);
     }
 }
\ No newline at end of file
@@ -8,10 +8,16 @@ import org.slf4j.LoggerFactory;
 
 import javax.inject.Named;
 import javax.sql.DataSource;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
@@ -27,23 +33,146 @@ import java.util.*;
  *
  * Manually instantiate this class as required.
  *
+ * The weights are held in columns of primitives sorted by specimen id then date of experiment, rather than as a map of
+ * boxed {@link BodyWeight} lists, so a lookup is a binary search and the whole map costs about 26 bytes per weight.
+ * The columns can be saved to a snapshot file with {@link #save(File)} and memory-mapped back with
+ * {@link #open(File)} in seconds. A snapshot records the number of observations and the highest observation id in the
+ * database it was built from, and {@link #openOrCreate(DataSource, File)} rebuilds it when they no longer match.
+ *
  * NOTE: Do not make this a spring component because it will slow everything that component-scans it.
  */
 public class WeightMap {
 
-    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private static final Logger logger = LoggerFactory.getLogger(WeightMap.class);
 
     private static final String ipgttWeightParameter = "IMPC_IPG_001_001";
 
-    private Map<Long, List<BodyWeight>> weightMap      = new HashMap<>();
-    private Map<Long, BodyWeight>       ipgttWeightMap = new HashMap<>();
-    private DataSource                  komp2DataSource;
+    // Weights further than 4 days from the experiment are not returned (Heuristic from Natasha Karp @ WTSI)
+    // 4 days = 345,600,000 ms
+    private static final long   MAX_WEIGHT_DISTANCE_IN_MS = 345600000L;
+    private static final long   NO_DATE                   = Long.MIN_VALUE;
+    private static final ZoneId UTC                       = ZoneId.of("UTC");
+
+    private static final int SNAPSHOT_MAGIC   = 0x57544d50;                 // "WTMP"
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final int SNAPSHOT_HEADER_SIZE = 32;
+
+    private Columns       weights;
+    private Columns       ipgttWeights;
+    private DataSource    komp2DataSource;
+    private SourceVersion sourceVersion = SourceVersion.UNKNOWN;
 
     public WeightMap(@Named("komp2DataSource") DataSource komp2DataSource) throws SQLException {
         this.komp2DataSource = komp2DataSource;
         initialize();
     }
 
+    WeightMap(Columns weights, Columns ipgttWeights) {
+        this.weights = weights;
+        this.ipgttWeights = ipgttWeights;
+    }
+
+    /**
+     * Memory-map a snapshot previously written by {@link #save(File)}. The returned map cannot be re-initialized
+     * as it has no data source.
+     *
+     * @param snapshot the snapshot file
+     * @return the weight map backed by the snapshot
+     * @throws IOException if the file cannot be read or is not a weight map snapshot
+     */
+    public static WeightMap open(File snapshot) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(snapshot.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Weight map snapshot " + snapshot.getAbsolutePath() + " is too large to map");
+            }
+
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            checkHeader(snapshot, buffer.getInt(), buffer.getInt());
+            long          created       = buffer.getLong();
+            SourceVersion sourceVersion = new SourceVersion(buffer.getLong(), buffer.getLong());
+
+            WeightMap weightMap = new WeightMap(Columns.read(buffer), Columns.read(buffer));
+            weightMap.sourceVersion = sourceVersion;
+            logger.info("Opened weight map snapshot {} created {} from {} with {} specimens",
+                        snapshot.getAbsolutePath(), Instant.ofEpochMilli(created), sourceVersion, weightMap.size());
+
+            return weightMap;
+
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Weight map snapshot " + snapshot.getAbsolutePath() + " is truncated or corrupt", e);
+        }
+    }
+
+    /**
+     * Open the snapshot if it exists and was built from the current data; otherwise build the map from the database
+     * and write the snapshot for next time. The data is current if the number of observations and the highest
+     * observation id are the same as when the snapshot was built.
+     *
+     * @param komp2DataSource the database to load from if there is no current snapshot
+     * @param snapshot        the snapshot file
+     * @return the weight map
+     */
+    public static WeightMap openOrCreate(DataSource komp2DataSource, File snapshot) throws SQLException, IOException {
+
+        if (snapshot.exists()) {
+            SourceVersion current = SourceVersion.of(komp2DataSource);
+            SourceVersion snapshotVersion;
+            try {
+                snapshotVersion = readSourceVersion(snapshot);
+            } catch (IOException e) {
+                logger.warn("Unable to read weight map snapshot {}. Rebuilding it. Reason: {}", snapshot.getAbsolutePath(), e.getLocalizedMessage());
+                snapshotVersion = SourceVersion.UNKNOWN;
+            }
+
+            if (snapshotVersion.equals(current)) {
+                return open(snapshot);
+            }
+            logger.info("Weight map snapshot {} was built from {} but the database has {}. Rebuilding it.",
+                        snapshot.getAbsolutePath(), snapshotVersion, current);
+        }
+
+        WeightMap weightMap = new WeightMap(komp2DataSource);
+        weightMap.save(snapshot);
+
+        return weightMap;
+    }
+
+    /**
+     * Write the map to {@code snapshot}. The file is written under a temporary name and then renamed, so a reader
+     * never sees a partial snapshot.
+     *
+     * @param snapshot the snapshot file
+     * @throws IOException if the file cannot be written
+     */
+    public void save(File snapshot) throws IOException {
+
+        File temp = new File(snapshot.getAbsolutePath() + ".tmp");
+        try (SnapshotOutputStream out = new SnapshotOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(System.currentTimeMillis());
+            out.writeLong(sourceVersion.observationCount);
+            out.writeLong(sourceVersion.maxObservationId);
+            weights.write(out);
+            ipgttWeights.write(out);
+        }
+
+        if (temp.length() > Integer.MAX_VALUE) {
+            temp.delete();
+            throw new IOException("Weight map is too large to snapshot");
+        }
+
+        if (snapshot.exists() && ! snapshot.delete()) {
+            throw new IOException("Unable to replace weight map snapshot " + snapshot.getAbsolutePath());
+        }
+        if ( ! temp.renameTo(snapshot)) {
+            throw new IOException("Unable to rename " + temp.getAbsolutePath() + " to " + snapshot.getAbsolutePath());
+        }
+
+        logger.info("Wrote weight map snapshot {} ({} bytes)", snapshot.getAbsolutePath(), snapshot.length());
+    }
+
     public static boolean isWeightParameter(String stableId) {
         return Constants.weightParameters.contains(stableId) || isIpgttWeightParameter(stableId);
     }
@@ -53,25 +182,41 @@ public class WeightMap {
     }
 
     public void initialize() throws SQLException {
+        // Read before the weights, so that observations loaded meanwhile make the snapshot stale rather than missing.
+        sourceVersion = SourceVersion.of(komp2DataSource);
+
         logger.debug("  populating weight map");
         populateWeightMap();
-        logger.debug("  map size: " + weightMap.size());
+        logger.debug("  map size: " + weights.specimenCount());
 
         logger.debug("  populating ipgt map");
         populateIpgttWeightMap();
-        logger.debug("  map size: " + ipgttWeightMap.size());
+        logger.debug("  map size: " + ipgttWeights.specimenCount());
     }
 
+    /**
+     * NOTE: This builds a {@link BodyWeight} for every weight in the map. Prefer {@link #get(Long)} and
+     * {@link #getNearestWeight(Long, String, ZonedDateTime)}.
+     *
+     * @return map of specimen ID => List of all weights ordered by date ASC
+     */
     public Map<Long, List<BodyWeight>> get() {
-        return Collections.unmodifiableMap(weightMap);
+        Map<Long, List<BodyWeight>> map = new HashMap<>();
+        for (int specimen = 0; specimen < weights.specimenCount(); specimen++) {
+            map.put(weights.specimenIds.get(specimen), getWeights(specimen));
+        }
+
+        return Collections.unmodifiableMap(map);
     }
 
     public List<BodyWeight> get(Long specimenId) {
-        return weightMap.get(specimenId);
+        int specimen = (specimenId == null ? -1 : weights.indexOf(specimenId));
+
+        return (specimen < 0 ? null : getWeights(specimen));
     }
 
     public Integer size() {
-        return weightMap.size();
+        return weights.specimenCount();
     }
 
 
@@ -90,6 +235,8 @@ public class WeightMap {
      *  3) The IMPC bodyweight procedure IMPC_BWT
      *  4) The weight with the largest value (favoring future weights over past weights)
      *
+     * Weights are sorted by date, so the nearest weights are found by binary search and only the weights equidistant
+     * from the date of experiment are compared.
      *
      * @param specimenID       the specimen
      * @param stableId         the stable ID of the parameter with which to associate the weight
@@ -98,65 +245,74 @@ public class WeightMap {
      */
     public BodyWeight getNearestWeight(Long specimenID, String stableId, ZonedDateTime dateOfExperiment) {
 
-        BodyWeight nearest = null;
         String procedureGroup = null;
 
         if (stableId!= null) {
             procedureGroup = stableId.substring(0, stableId.indexOf("_", 1));
         }
 
-        if (dateOfExperiment != null && weightMap.containsKey(specimenID)) {
+        int specimen = (specimenID == null ? -1 : weights.indexOf(specimenID));
+        if (dateOfExperiment == null || specimen < 0) {
+            return null;
+        }
 
-            for (BodyWeight candidate : weightMap.get(specimenID)) {
+        // Weights without a date sort first; skip them.
+        int from = weights.lowerBound(weights.start(specimen), weights.end(specimen), NO_DATE + 1);
+        int to   = weights.end(specimen);
+        if (from == to) {
+            return null;
+        }
 
-                if (nearest == null) {
-                    nearest = candidate;
-                    continue;
-                }
+        final long experimentMs = dateOfExperiment.toInstant().toEpochMilli();
+        final int  insertionPoint = weights.lowerBound(from, to, experimentMs);
 
-                final long candidateDiff = Math.abs(dateOfExperiment.toInstant().toEpochMilli() - candidate.date.toInstant().toEpochMilli());
-                final long nearestDiff = Math.abs(dateOfExperiment.toInstant().toEpochMilli() - nearest.date.toInstant().toEpochMilli());
+        long distance = Long.MAX_VALUE;
+        if (insertionPoint > from) {
+            distance = experimentMs - weights.dates.get(insertionPoint - 1);
+        }
+        if (insertionPoint < to) {
+            distance = Math.min(distance, weights.dates.get(insertionPoint) - experimentMs);
+        }
+
+        // Do not return weight that is > 4 days away from the experiment
+        // since the weight of the specimen become less and less relevant
+        if (distance > MAX_WEIGHT_DISTANCE_IN_MS) {
+            return null;
+        }
+
+        // Every weight in [first, last) is exactly 'distance' away from the date of experiment.
+        int first   = weights.lowerBound(from, to, experimentMs - distance);
+        int last    = weights.lowerBound(from, to, experimentMs + distance + 1);
+        int nearest = first;
 
-                // If the date of the candidate weight is closer in time to the date of experiment, use that
-                if (candidateDiff < nearestDiff) {
+        for (int candidate = first + 1; candidate < last; candidate++) {
+
+            // This is now a selection based on rules
+            //   1) Prefer weight measurements from the same procedure
+            //   2) Second preference are data from the IMPC_BWT procedure
+            //   3) Third preference is the larger weight value (selective pressure towards weight dates in the future)
+
+            // NOTE: If there are multiple weight measurements from the same procedure that are equidistant
+            // the largest value will be preferred
+
+            String candidateStableId = weights.getParameterStableId(candidate);
+            float  candidateWeight   = weights.weights.get(candidate);
+            float  nearestWeight     = weights.weights.get(nearest);
+
+            if (procedureGroup!= null && candidateStableId.contains(procedureGroup)) {
+                if (candidateWeight > nearestWeight) {
                     nearest = candidate;
                 }
-                // If the weights are the same distance away in time to the date of experiment...
-                else if (candidateDiff == nearestDiff){
-
-                    // This is now a selection based on rules
-                    //   1) Prefer weight measurements from the same procedure
-                    //   2) Second preference are data from the IMPC_BWT procedure
-                    //   3) Third preference is the larger weight value (selective pressure towards weight dates in the future)
-
-                    // NOTE: If there are multiple weight measurements from the same procedure that are equidistant
-                    // the largest value will be preferred
-
-                    if (procedureGroup!= null && candidate.getParameterStableId().contains(procedureGroup)) {
-                        if (candidate.getWeight() > nearest.getWeight()) {
-                            nearest = candidate;
-                        }
-                    } else if (candidate.getParameterStableId().contains("_BWT")) {
-                        if (candidate.getWeight() > nearest.getWeight()) {
-                            nearest = candidate;
-                        }
-                    } else if (candidate.getWeight() > nearest.getWeight()) {
-                        nearest = candidate;
-                    }
-
+            } else if (candidateStableId.contains("_BWT")) {
+                if (candidateWeight > nearestWeight) {
+                    nearest = candidate;
                 }
+            } else if (candidateWeight > nearestWeight) {
+                nearest = candidate;
             }
         }
 
-        // Do not return weight that is > 4 days away from the experiment
-        // since the weight of the specimen become less and less relevant
-        // (Heuristic from Natasha Karp @ WTSI)
-        // 4 days = 345,600,000 ms
-        if (nearest != null &&
-                Math.abs(dateOfExperiment.toInstant().toEpochMilli() - nearest.date.toInstant().toEpochMilli()) > 3.456E8) {
-            nearest = null;
-        }
-        return nearest;
+        return newBodyWeight(weights, nearest);
     }
 
 
@@ -168,23 +324,20 @@ public class WeightMap {
      */
     public BodyWeight getNearestIpgttWeight(Long specimenID) {
 
-        BodyWeight nearest = null;
+        int specimen = (specimenID == null ? -1 : ipgttWeights.indexOf(specimenID));
 
-        if (ipgttWeightMap.containsKey(specimenID)) {
-            nearest = ipgttWeightMap.get(specimenID);
-        }
-
-        return nearest;
+        // The last weight loaded for the specimen wins.
+        return (specimen < 0 ? null : newBodyWeight(ipgttWeights, ipgttWeights.end(specimen) - 1));
     }
 
     /**
-     * Return map of specimen ID => List of all weights ordered by date ASC
+     * Load specimen ID => all weights ordered by date ASC
      *
      * @throws SQLException When a database error occurs
      */
     private void populateWeightMap() throws SQLException {
 
-        int count = 0;
+        ColumnsBuilder builder = new ColumnsBuilder();
 
         String query = "SELECT o.biological_sample_id, data_point AS weight, parameter_stable_id,  date_of_experiment, DATEDIFF(date_of_experiment, ls.date_of_birth) as days_old, e.organisation_id "
                 + "FROM observation o " + "  INNER JOIN unidimensional_observation uo ON uo.id = o.id  "
@@ -198,43 +351,24 @@ public class WeightMap {
             logger.info("populating weight map. This takes upwards of 8 minutes.");
             ResultSet resultSet = statement.executeQuery();
             while (resultSet.next()) {
-
-                BodyWeight b = new BodyWeight();
-                try {
-                    b.date = ZonedDateTime.parse(resultSet.getString("date_of_experiment"),
-                            DateTimeFormatter.ofPattern(Constants.DATETIME_FORMAT_OPTIONAL_MILLISECONDS).withZone(ZoneId.of("UTC")));
-                } catch (NullPointerException e) {
-                    e.printStackTrace();
-                    b.date = null;
-                    logger.debug("  No date of experiment set for sample id {} parameter {}",
-                                 resultSet.getString("biological_sample_id"), resultSet.getString("parameter_stable_id"));
-                }
-
-                b.weight = resultSet.getFloat("weight");
-                b.parameterStableId = resultSet.getString("parameter_stable_id");
-                b.daysOld = resultSet.getInt("days_old");
-
-                final Long specimenId = resultSet.getLong("biological_sample_id");
-
-                if ( ! weightMap.containsKey(specimenId)) {
-                    weightMap.put(specimenId, new ArrayList<>());
-                }
-
-                weightMap.get(specimenId).add(b);
-                count += 1;
+                addWeight(builder, resultSet);
             }
         }
 
-        logger.info(" Added {} specimen weight data map entries", count, weightMap.size());
+        weights = builder.build(true);
+
+        logger.info(" Added {} specimen weight data map entries for {} specimens", weights.weightCount(), weights.specimenCount());
     }
 
     /**
-     * Return map of specimen ID => weight for
+     * Load specimen ID => weight for the IPGTT weight parameter
      *
      * @throws SQLException When a database error occurrs
      */
     private void populateIpgttWeightMap() throws SQLException {
 
+        ColumnsBuilder builder = new ColumnsBuilder();
+
         String query = "SELECT o.biological_sample_id, data_point AS weight, parameter_stable_id, date_of_experiment, DATEDIFF(date_of_experiment, ls.date_of_birth) AS days_old "
                 + "FROM observation o "
                 + "  INNER JOIN unidimensional_observation uo ON uo.id = o.id "
@@ -246,27 +380,401 @@ public class WeightMap {
         try (Connection connection = komp2DataSource.getConnection(); PreparedStatement statement = connection.prepareStatement(query)) {
             ResultSet resultSet = statement.executeQuery();
             while (resultSet.next()) {
+                addWeight(builder, resultSet);
+            }
+        }
+
+        // Keep the load order within each specimen so the last weight loaded wins, as it always has.
+        ipgttWeights = builder.build(false);
+    }
+
+    private void addWeight(ColumnsBuilder builder, ResultSet resultSet) throws SQLException {
+
+        ZonedDateTime date;
+        try {
+            date = ZonedDateTime.parse(resultSet.getString("date_of_experiment"),
+                    DateTimeFormatter.ofPattern(Constants.DATETIME_FORMAT_OPTIONAL_MILLISECONDS).withZone(UTC));
+        } catch (NullPointerException e) {
+            date = null;
+            logger.debug("  No date of experiment set for sample id {} parameter {}",
+                         resultSet.getString("biological_sample_id"), resultSet.getString("parameter_stable_id"));
+        }
+
+        builder.add(resultSet.getLong("biological_sample_id"),
+                    date,
+                    resultSet.getFloat("weight"),
+                    resultSet.getString("parameter_stable_id"),
+                    resultSet.getInt("days_old"));
+    }
+
+    private List<BodyWeight> getWeights(int specimen) {
+        List<BodyWeight> list = new ArrayList<>();
+        for (int i = weights.start(specimen); i < weights.end(specimen); i++) {
+            list.add(newBodyWeight(weights, i));
+        }
+
+        return list;
+    }
+
+    private BodyWeight newBodyWeight(Columns columns, int index) {
+        long date = columns.dates.get(index);
+
+        BodyWeight b = new BodyWeight();
+        b.parameterStableId = columns.getParameterStableId(index);
+        b.date = (date == NO_DATE ? null : ZonedDateTime.ofInstant(Instant.ofEpochMilli(date), UTC));
+        b.weight = columns.weights.get(index);
+        b.daysOld = columns.daysOld.get(index);
+
+        return b;
+    }
+
+
+    /**
+     * Weights as parallel columns, sorted by specimen id. The weights of the specimen at index {@code s} of
+     * {@code specimenIds} are the rows {@code offsets[s]} (inclusive) to {@code offsets[s + 1]} (exclusive) of the
+     * other columns. Dates are epoch milliseconds; parameter stable ids are indexes into {@code parameters}.
+     *
+     * The columns are either wrapped arrays or views of a memory-mapped snapshot. Only absolute gets are used, so an
+     * instance may be shared by any number of reader threads.
+     */
+    static class Columns {
+        final String[]    parameters;
+        final LongBuffer  specimenIds;
+        final IntBuffer   offsets;
+        final LongBuffer  dates;
+        final FloatBuffer weights;
+        final IntBuffer   daysOld;
+        final ShortBuffer parameterIndexes;
+
+        Columns(String[] parameters, LongBuffer specimenIds, IntBuffer offsets, LongBuffer dates, FloatBuffer weights, IntBuffer daysOld, ShortBuffer parameterIndexes) {
+            this.parameters = parameters;
+            this.specimenIds = specimenIds;
+            this.offsets = offsets;
+            this.dates = dates;
+            this.weights = weights;
+            this.daysOld = daysOld;
+            this.parameterIndexes = parameterIndexes;
+        }
+
+        int specimenCount() {
+            return specimenIds.limit();
+        }
+
+        int weightCount() {
+            return dates.limit();
+        }
+
+        int start(int specimen) {
+            return offsets.get(specimen);
+        }
+
+        int end(int specimen) {
+            return offsets.get(specimen + 1);
+        }
+
+        String getParameterStableId(int index) {
+            return parameters[parameterIndexes.get(index)];
+        }
+
+        /**
+         * @return the index of {@code specimenId} in {@code specimenIds}, or -1 if it is not there
+         */
+        int indexOf(long specimenId) {
+            int low  = 0;
+            int high = specimenCount() - 1;
+            while (low <= high) {
+                int  mid   = (low + high) >>> 1;
+                long value = specimenIds.get(mid);
+                if (value < specimenId) {
+                    low = mid + 1;
+                } else if (value > specimenId) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
 
-                BodyWeight b = new BodyWeight();
-                try {
-                    b.date = ZonedDateTime.parse(resultSet.getString("date_of_experiment"),
-                            DateTimeFormatter.ofPattern(Constants.DATETIME_FORMAT_OPTIONAL_MILLISECONDS).withZone(ZoneId.of("UTC")));
-                } catch (NullPointerException e) {
-                    e.printStackTrace();
-                    b.date = null;
-                    logger.debug("  No date of experiment set for sample id {} parameter {}",
-                            resultSet.getString("biological_sample_id"), resultSet.getString("parameter_stable_id"));
+            return -1;
+        }
 
+        /**
+         * @return the first index in [from, to) whose date is not before {@code date}, or {@code to} if there is none
+         */
+        int lowerBound(int from, int to, long date) {
+            int low  = from;
+            int high = to;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (dates.get(mid) < date) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
                 }
-                b.weight = resultSet.getFloat("weight");
-                b.parameterStableId = resultSet.getString("parameter_stable_id");
-                b.daysOld = resultSet.getInt("days_old");
+            }
+
+            return low;
+        }
+
+        // Snapshot layout: the parameter table, the two counts, then each column, padded so the long columns are 8-byte aligned.
+        void write(SnapshotOutputStream out) throws IOException {
+            out.writeInt(parameters.length);
+            for (String parameter : parameters) {
+                byte[] bytes = parameter.getBytes(StandardCharsets.UTF_8);
+                out.writeShort(bytes.length);
+                out.write(bytes);
+            }
+            out.writeInt(specimenCount());
+            out.writeInt(weightCount());
+            out.pad();
 
-                final Long specimenId = resultSet.getLong("biological_sample_id");
-                ipgttWeightMap.put(specimenId, b);
+            for (int i = 0; i < specimenCount(); i++) {
+                out.writeLong(specimenIds.get(i));
             }
+            for (int i = 0; i < weightCount(); i++) {
+                out.writeLong(dates.get(i));
+            }
+            for (int i = 0; i <= specimenCount(); i++) {
+                out.writeInt(offsets.get(i));
+            }
+            for (int i = 0; i < weightCount(); i++) {
+                out.writeFloat(weights.get(i));
+            }
+            for (int i = 0; i < weightCount(); i++) {
+                out.writeInt(daysOld.get(i));
+            }
+            for (int i = 0; i < weightCount(); i++) {
+                out.writeShort(parameterIndexes.get(i));
+            }
+            out.pad();
         }
 
+        static Columns read(ByteBuffer buffer) {
+            String[] parameters = new String[buffer.getInt()];
+            for (int i = 0; i < parameters.length; i++) {
+                byte[] bytes = new byte[buffer.getShort() & 0xffff];
+                buffer.get(bytes);
+                parameters[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            int specimenCount = buffer.getInt();
+            int weightCount   = buffer.getInt();
+            align(buffer);
+
+            LongBuffer  specimenIds      = slice(buffer, specimenCount * 8).asLongBuffer();
+            LongBuffer  dates            = slice(buffer, weightCount * 8).asLongBuffer();
+            IntBuffer   offsets          = slice(buffer, (specimenCount + 1) * 4).asIntBuffer();
+            FloatBuffer weights          = slice(buffer, weightCount * 4).asFloatBuffer();
+            IntBuffer   daysOld          = slice(buffer, weightCount * 4).asIntBuffer();
+            ShortBuffer parameterIndexes = slice(buffer, weightCount * 2).asShortBuffer();
+            align(buffer);
+
+            return new Columns(parameters, specimenIds, offsets, dates, weights, daysOld, parameterIndexes);
+        }
+
+        private static ByteBuffer slice(ByteBuffer buffer, int length) {
+            ByteBuffer slice = buffer.slice();
+            slice.limit(length);
+            buffer.position(buffer.position() + length);
+
+            return slice;
+        }
+
+        private static void align(ByteBuffer buffer) {
+            buffer.position((buffer.position() + 7) & ~7);
+        }
+    }
+
+
+    /**
+     * Accumulates weights in load order and builds {@link Columns} from them.
+     */
+    static class ColumnsBuilder {
+        private final Map<String, Short> parameterIndexMap = new HashMap<>();
+        private final List<String>       parameters        = new ArrayList<>();
+
+        private long[]  specimenIds      = new long[1024];
+        private long[]  dates            = new long[1024];
+        private float[] weights          = new float[1024];
+        private int[]   daysOld          = new int[1024];
+        private short[] parameterIndexes = new short[1024];
+        private int     count            = 0;
+
+        void add(long specimenId, ZonedDateTime date, float weight, String parameterStableId, int daysOld) {
+            if (count == dates.length) {
+                int length = count * 2;
+                this.specimenIds = Arrays.copyOf(this.specimenIds, length);
+                this.dates = Arrays.copyOf(this.dates, length);
+                this.weights = Arrays.copyOf(this.weights, length);
+                this.daysOld = Arrays.copyOf(this.daysOld, length);
+                this.parameterIndexes = Arrays.copyOf(this.parameterIndexes, length);
+            }
+
+            Short parameterIndex = parameterIndexMap.get(parameterStableId);
+            if (parameterIndex == null) {
+                if (parameters.size() > Short.MAX_VALUE) {
+                    throw new IllegalStateException("More than " + Short.MAX_VALUE + " distinct weight parameters");
+                }
+                parameterIndex = (short) parameters.size();
+                parameterIndexMap.put(parameterStableId, parameterIndex);
+                parameters.add(parameterStableId);
+            }
+
+            this.specimenIds[count] = specimenId;
+            this.dates[count] = (date == null ? NO_DATE : date.toInstant().toEpochMilli());
+            this.weights[count] = weight;
+            this.daysOld[count] = daysOld;
+            this.parameterIndexes[count] = parameterIndex;
+            count++;
+        }
+
+        /**
+         * @param sortByDate if true, sort each specimen's weights by date (weights without a date first); otherwise
+         *                   keep them in load order
+         */
+        Columns build(boolean sortByDate) {
+
+            int[] order = sortedOrder(sortByDate);
+
+            long[]  sortedDates            = new long[count];
+            float[] sortedWeights          = new float[count];
+            int[]   sortedDaysOld          = new int[count];
+            short[] sortedParameterIndexes = new short[count];
+            long[]  uniqueSpecimenIds      = new long[count];
+            int[]   offsets                = new int[count + 1];
+            int     specimenCount          = 0;
+
+            for (int i = 0; i < count; i++) {
+                int row = order[i];
+                if ((specimenCount == 0) || (uniqueSpecimenIds[specimenCount - 1] != specimenIds[row])) {
+                    uniqueSpecimenIds[specimenCount] = specimenIds[row];
+                    offsets[specimenCount] = i;
+                    specimenCount++;
+                }
+                sortedDates[i] = dates[row];
+                sortedWeights[i] = weights[row];
+                sortedDaysOld[i] = daysOld[row];
+                sortedParameterIndexes[i] = parameterIndexes[row];
+            }
+            offsets[specimenCount] = count;
+
+            return new Columns(parameters.toArray(new String[0]),
+                               LongBuffer.wrap(Arrays.copyOf(uniqueSpecimenIds, specimenCount)),
+                               IntBuffer.wrap(Arrays.copyOf(offsets, specimenCount + 1)),
+                               LongBuffer.wrap(sortedDates),
+                               FloatBuffer.wrap(sortedWeights),
+                               IntBuffer.wrap(sortedDaysOld),
+                               ShortBuffer.wrap(sortedParameterIndexes));
+        }
+
+        // The weight query already returns rows in order, so only sort (stably) when it is needed.
+        private int[] sortedOrder(boolean sortByDate) {
+            Comparator<Integer> comparator = Comparator.comparingLong(row -> specimenIds[row]);
+            if (sortByDate) {
+                comparator = comparator.thenComparingLong(row -> dates[row]);
+            }
+
+            boolean sorted = true;
+            for (int i = 1; (i < count) && sorted; i++) {
+                sorted = comparator.compare(i - 1, i) <= 0;
+            }
+
+            Integer[] rows = new Integer[count];
+            for (int i = 0; i < count; i++) {
+                rows[i] = i;
+            }
+            if ( ! sorted) {
+                Arrays.sort(rows, comparator);
+            }
+
+            int[] order = new int[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = rows[i];
+            }
+
+            return order;
+        }
+    }
+
+
+    // Rejects a file that is not a snapshot of the current format.
+    private static void checkHeader(File snapshot, int magic, int version) throws IOException {
+        if ((magic != SNAPSHOT_MAGIC) || (version != SNAPSHOT_VERSION)) {
+            throw new IOException(snapshot.getAbsolutePath() + " is not a version " + SNAPSHOT_VERSION + " weight map snapshot");
+        }
+    }
+
+    // Reads only the snapshot header, so a stale snapshot is never mapped.
+    private static SourceVersion readSourceVersion(File snapshot) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshot), SNAPSHOT_HEADER_SIZE))) {
+            checkHeader(snapshot, in.readInt(), in.readInt());
+            in.readLong();
+
+            return new SourceVersion(in.readLong(), in.readLong());
+
+        } catch (EOFException e) {
+            throw new IOException("Weight map snapshot " + snapshot.getAbsolutePath() + " is truncated", e);
+        }
+    }
+
+    /**
+     * The number of observations and the highest observation id in the database the weights were loaded from. Loading
+     * new data changes at least one of them.
+     */
+    static class SourceVersion {
+        static final SourceVersion UNKNOWN = new SourceVersion(-1L, -1L);
+
+        final long observationCount;
+        final long maxObservationId;
+
+        SourceVersion(long observationCount, long maxObservationId) {
+            this.observationCount = observationCount;
+            this.maxObservationId = maxObservationId;
+        }
+
+        static SourceVersion of(DataSource komp2DataSource) throws SQLException {
+            try (Connection connection = komp2DataSource.getConnection();
+                 PreparedStatement statement = connection.prepareStatement("SELECT COUNT(*), MAX(id) FROM observation")) {
+                ResultSet resultSet = statement.executeQuery();
+                resultSet.next();
+
+                return new SourceVersion(resultSet.getLong(1), resultSet.getLong(2));
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            SourceVersion that = (SourceVersion) o;
+            return observationCount == that.observationCount &&
+                    maxObservationId == that.maxObservationId;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(observationCount, maxObservationId);
+        }
+
+        @Override
+        public String toString() {
+            return observationCount + " observations with maximum id " + maxObservationId;
+        }
+    }
+
+    /**
+     * A DataOutputStream that can pad to an 8-byte boundary. Snapshots are limited to 2GB, so {@link #size()} does
+     * not saturate.
+     */
+    private static class SnapshotOutputStream extends DataOutputStream {
+
+        SnapshotOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        void pad() throws IOException {
+            while ((size() % 8) != 0) {
+                write(0);
+            }
+        }
     }
 
     /**
@@ -64,6 +64,20 @@ public abstract class LightweightResult {
         }
     }
 
+    /**
+     * @return the SQL inserting this result, or null if it has no statistical result
+     */
+    public String getInsertStatement() {
+        return (statisticalResult != null ? statisticalResult.getInsertStatement() : null);
+    }
+
+    /**
+     * Set the parameters of {@code statement}, prepared from {@link #getInsertStatement()}, to insert this result
+     */
+    public void setSaveResultParameters(PreparedStatement statement) throws SQLException {
+        statisticalResult.setSaveResultParameters(statement, this);
+    }
+
     public String getAdditionalInformation() {
         return additionalInformation;
     }
@@ -0,0 +1,168 @@
+package org.mousephenotype.cda.db.statistics;
+
+import org.apache.commons.collections4.map.MultiKeyMap;
+import org.mousephenotype.cda.db.pojo.Datasource;
+import org.mousephenotype.cda.db.pojo.OntologyTerm;
+import org.mousephenotype.cda.db.pojo.PhenotypeAnnotationType;
+import org.mousephenotype.cda.db.repositories.OntologyTermRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * The MP terms IMPReSS associates to every annotated parameter, keyed by parameter stable id and then by
+ * (annotation type / direction, category, sex), as {@link MpTermService#getAnnotationTypeMap} builds them one
+ * parameter at a time. Categories are "" for parameters without options; sexes are "" for annotations that are not
+ * sex specific.
+ *
+ * The table is loaded with two queries and is not modified afterwards, so lookups need no locking and it can be
+ * shared by any number of threads. The maps returned are the table's own and must not be modified.
+ */
+public class MpTermDecisionTable {
+    private static final Logger logger = LoggerFactory.getLogger(MpTermDecisionTable.class);
+
+    private static final MultiKeyMap NO_ANNOTATIONS = new MultiKeyMap();
+
+    private final Map<String, MultiKeyMap> annotationsByParameter;
+    private final Set<String>              sexSpecificParameters;
+
+    private MpTermDecisionTable(Map<String, MultiKeyMap> annotationsByParameter, Set<String> sexSpecificParameters) {
+        this.annotationsByParameter = Collections.unmodifiableMap(annotationsByParameter);
+        this.sexSpecificParameters = Collections.unmodifiableSet(sexSpecificParameters);
+    }
+
+
+    /**
+     * @return the (annotation type, category, sex) to MP term map for the parameter; empty if it has no annotations
+     */
+    public MultiKeyMap getAnnotations(String parameterStableId) {
+        MultiKeyMap annotations = annotationsByParameter.get(parameterStableId);
+
+        return (annotations == null ? NO_ANNOTATIONS : annotations);
+    }
+
+    public OntologyTerm getTerm(String parameterStableId, PhenotypeAnnotationType type, String category, String sex) {
+        return (OntologyTerm) getAnnotations(parameterStableId).get(type, category, sex);
+    }
+
+    /**
+     * @return the stable ids of the parameters with at least one sex specific annotation
+     */
+    public Set<String> getSexSpecificParameters() {
+        return sexSpecificParameters;
+    }
+
+    public int size() {
+        return annotationsByParameter.size();
+    }
+
+
+    /**
+     * Loads the annotations of all parameters.
+     *
+     * An annotation without an option maps (type, "", sex) to its term. When the parameter also has annotations
+     * with options of the same type, their terms are mapped the same way, as the per-parameter query does. An
+     * annotation with an option maps every category of the parameter having an annotation of that type to the
+     * category's term, for the annotation's sex.
+     */
+    public static MpTermDecisionTable load(Connection connection, OntologyTermRepository ontologyTermRepository) throws SQLException {
+
+        Map<String, OntologyTerm>                     terms                     = new HashMap<>();
+        Map<String, Map<String, List<AnnotationRow>>> rowsByParameterType       = new HashMap<>();
+        Map<String, Map<String, String>>              categoriesByParameterType = new HashMap<>();
+        Set<String>                                   sexSpecificParameters     = new HashSet<>();
+
+        String query = "SELECT p.stable_id, o.event_type, o.option_id, o.sex, o.ontology_acc " +
+            "FROM phenotype_parameter p " +
+            "INNER JOIN phenotype_parameter_lnk_ontology_annotation l ON l.parameter_id = p.id " +
+            "INNER JOIN phenotype_parameter_ontology_annotation o ON l.annotation_id = o.id " +
+            "ORDER BY p.stable_id, o.id";
+
+        try (PreparedStatement statement = connection.prepareStatement(query)) {
+            ResultSet resultSet = statement.executeQuery();
+            while (resultSet.next()) {
+                String stableId = resultSet.getString("stable_id");
+                String sex      = resultSet.getString("sex");
+                if (sex == null) { sex = ""; }
+                if ( ! sex.isEmpty()) {
+                    sexSpecificParameters.add(stableId);
+                }
+
+                rowsByParameterType
+                    .computeIfAbsent(stableId, k -> new HashMap<>())
+                    .computeIfAbsent(resultSet.getString("event_type"), k -> new ArrayList<>())
+                    .add(new AnnotationRow(resultSet.getObject("option_id") != null, sex, resultSet.getString("ontology_acc")));
+            }
+        }
+
+        query = "SELECT p.stable_id, oa.event_type, ppo.name, oa.ontology_acc "
+            + "FROM phenotype_parameter_ontology_annotation oa "
+            + "INNER JOIN phenotype_parameter_lnk_option lo ON lo.option_id=oa.option_id "
+            + "INNER JOIN phenotype_parameter_option ppo ON ppo.id=lo.option_id "
+            + "INNER JOIN phenotype_parameter_lnk_ontology_annotation l ON l.annotation_id = oa.id "
+            + "INNER JOIN phenotype_parameter p ON l.parameter_id = p.id";
+
+        try (PreparedStatement statement = connection.prepareStatement(query)) {
+            ResultSet resultSet = statement.executeQuery();
+            while (resultSet.next()) {
+                categoriesByParameterType
+                    .computeIfAbsent(resultSet.getString("stable_id") + "\t" + resultSet.getString("event_type"), k -> new HashMap<>())
+                    .put(resultSet.getString("name"), resultSet.getString("ontology_acc"));
+            }
+        }
+
+        Map<String, MultiKeyMap> annotationsByParameter = new HashMap<>();
+        for (Map.Entry<String, Map<String, List<AnnotationRow>>> parameter : rowsByParameterType.entrySet()) {
+
+            MultiKeyMap annotations = new MultiKeyMap();
+            for (Map.Entry<String, List<AnnotationRow>> typeRows : parameter.getValue().entrySet()) {
+
+                PhenotypeAnnotationType type = PhenotypeAnnotationType.valueOf(typeRows.getKey());
+                List<AnnotationRow>     rows = typeRows.getValue();
+
+                // Parameters without options get stored with an empty string placeholder
+                if (rows.stream().anyMatch(row -> ! row.hasOption)) {
+                    for (AnnotationRow row : rows) {
+                        annotations.put(type, "", row.sex, getTerm(terms, ontologyTermRepository, row.ontologyAcc));
+                    }
+                }
+
+                Map<String, String> categories = categoriesByParameterType.getOrDefault(parameter.getKey() + "\t" + typeRows.getKey(), Collections.emptyMap());
+                for (AnnotationRow row : rows) {
+                    if (row.hasOption) {
+                        for (Map.Entry<String, String> category : categories.entrySet()) {
+                            annotations.put(type, category.getKey(), row.sex, getTerm(terms, ontologyTermRepository, category.getValue()));
+                        }
+                    }
+                }
+            }
+
+            annotationsByParameter.put(parameter.getKey(), annotations);
+        }
+
+        logger.info("Loaded MP term decision table for {} parameters ({} sex specific)", annotationsByParameter.size(), sexSpecificParameters.size());
+
+        return new MpTermDecisionTable(annotationsByParameter, sexSpecificParameters);
+    }
+
+    private static OntologyTerm getTerm(Map<String, OntologyTerm> terms, OntologyTermRepository ontologyTermRepository, String acc) {
+        return terms.computeIfAbsent(acc, k -> ontologyTermRepository.getByAccAndShortName(k, Datasource.MP));
+    }
+
+    private static class AnnotationRow {
+        final boolean hasOption;
+        final String  sex;
+        final String  ontologyAcc;
+
+        AnnotationRow(boolean hasOption, String sex, String ontologyAcc) {
+            this.hasOption = hasOption;
+            this.sex = sex;
+            this.ontologyAcc = ontologyAcc;
+        }
+    }
+}
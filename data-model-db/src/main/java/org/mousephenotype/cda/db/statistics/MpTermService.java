@@ -30,6 +30,9 @@ public class MpTermService {
 
 	private Set<String> sexSpecificParameters = null;
 
+	// Built once by initializeDecisionTable; when set, lookups are read from it and the database is not queried
+	private volatile MpTermDecisionTable decisionTable = null;
+
     // 0.05 threshold per West, Welch and Galecki (see PhenStat documentation)
     private static final float BASE_SIGNIFICANCE_THRESHOLD = 0.05f;
 
@@ -90,6 +93,11 @@ public class MpTermService {
      */
     public MultiKeyMap getAnnotationTypeMap(String parameterStableId, Connection connection, OntologyTermRepository ontologyTermRepository, ParameterRepository parameterRepository) throws SQLException {
 
+        MpTermDecisionTable table = decisionTable;
+        if (table != null) {
+            return table.getAnnotations(parameterStableId);
+        }
+
         if (parameterCache.containsKey(parameterStableId)) {
             return parameterCache.get(parameterStableId);
         }
@@ -158,16 +166,14 @@ public class MpTermService {
             return null;
         }
 
-	    if (sexSpecificParameters==null) {
-		    initializeSexSpecificMap(connection);
-	    }
+	    Set<String> sexSpecificParameters = getSexSpecificParameters(connection);
 
         MultiKeyMap annotations = getAnnotationTypeMap(parameterStableId, connection, ontologyTermRepository, parameterRepository);
 	    logger.debug("Annotation type map for {} is {}", parameterStableId, annotations);
 
 	    // Categorical result
         if (res.getCategoryA() != null) {
-	        return getCategoricalOntologyTerm(res, SIGNIFICANCE_THRESHOLD, annotations, sex);
+	        return getCategoricalOntologyTerm(res, SIGNIFICANCE_THRESHOLD, annotations, sex, sexSpecificParameters);
         }
 
 	    String sexString = "";
@@ -287,6 +293,41 @@ public class MpTermService {
         return ontologyTerm;
     }
 
+	/**
+	 * Loads the annotations of all parameters into an {@link MpTermDecisionTable}, once, so that later lookups are
+	 * read from it without querying the database or locking. Callers annotating many results (e.g. the annotation
+	 * generator) should call this before starting.
+	 */
+	public MpTermDecisionTable initializeDecisionTable(Connection connection) throws SQLException {
+
+		MpTermDecisionTable table = decisionTable;
+		if (table == null) {
+			synchronized (this) {
+				table = decisionTable;
+				if (table == null) {
+					table = MpTermDecisionTable.load(connection, ontologyTermRepository);
+					decisionTable = table;
+				}
+			}
+		}
+
+		return table;
+	}
+
+	private Set<String> getSexSpecificParameters(Connection connection) throws SQLException {
+
+		MpTermDecisionTable table = decisionTable;
+		if (table != null) {
+			return table.getSexSpecificParameters();
+		}
+
+		if (sexSpecificParameters == null) {
+			initializeSexSpecificMap(connection);
+		}
+
+		return sexSpecificParameters;
+	}
+
 	void initializeSexSpecificMap(Connection connection) throws SQLException {
 
 		// Don't re-initialize
@@ -310,7 +351,7 @@ public class MpTermService {
 		}
 
 	}
-    private OntologyTerm getCategoricalOntologyTerm(ResultDTO res, float SIGNIFICANCE_THRESHOLD, MultiKeyMap annotations, SexType sex) {
+    private OntologyTerm getCategoricalOntologyTerm(ResultDTO res, float SIGNIFICANCE_THRESHOLD, MultiKeyMap annotations, SexType sex, Set<String> sexSpecificParameters) {
 
         // Short circuit if the result object sex field is set and different from the request
         if (sex != null && sex != res.getSex()) {
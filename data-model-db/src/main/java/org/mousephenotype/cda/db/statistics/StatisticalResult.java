@@ -9,6 +9,20 @@ import java.sql.SQLException;
  */
 public interface StatisticalResult {
 
-	PreparedStatement getSaveResultStatement(Connection connection, LightweightResult result) throws SQLException;
+	/**
+	 * @return the SQL inserting this kind of result. The same for every result of a kind, so that statements prepared
+	 * from it can be reused and batched.
+	 */
+	String getInsertStatement();
+
+	void setSaveResultParameters(PreparedStatement statement, LightweightResult result) throws SQLException;
+
+	default PreparedStatement getSaveResultStatement(Connection connection, LightweightResult result) throws SQLException {
+
+		PreparedStatement s = connection.prepareStatement(getInsertStatement());
+		setSaveResultParameters(s, result);
+
+		return s;
+	}
 
 }
@@ -3,7 +3,6 @@ package org.mousephenotype.cda.db.statistics;
 import org.mousephenotype.cda.db.utilities.SqlUtils;
 
 import java.io.Serializable;
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 
@@ -22,16 +21,15 @@ public class StatisticalResultCategorical implements StatisticalResult, Serializ
 	private String classificationTag;
 
 	/**
-	 * Prepare the statement to insert this result into the database
+	 * Set the parameters of a statement prepared from the insert statement to insert this result into the database
 	 *
-	 * @param connection connection object to use to save the result
+	 * @param s statement prepared from {@link #getInsertStatement()}
 	 * @param generalResult the base result object to populate the common parameters
 	 * @throws SQLException
 	 */
-	public PreparedStatement getSaveResultStatement(Connection connection, LightweightResult generalResult) throws SQLException {
+	public void setSaveResultParameters(PreparedStatement s, LightweightResult generalResult) throws SQLException {
 
 		LightweightCategoricalResult result = (LightweightCategoricalResult) generalResult;
-		PreparedStatement s = connection.prepareStatement(insertStatement);
 
 		int i = 1;
 
@@ -75,8 +73,10 @@ public class StatisticalResultCategorical implements StatisticalResult, Serializ
 		SqlUtils.setSqlParameter(s, this.getFemaleEffectSize(), i++);
 		SqlUtils.setSqlParameter(s, this.getClassificationTag(), i++);
 		SqlUtils.setSqlParameter(s, result.getAdditionalInformation(), i++);
+	}
 
-		return s;
+	public String getInsertStatement() {
+		return insertStatement;
 	}
 
 	// Generated methods
@@ -3,7 +3,6 @@ package org.mousephenotype.cda.db.statistics;
 import org.mousephenotype.cda.db.utilities.SqlUtils;
 
 import java.io.Serializable;
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 
@@ -46,17 +45,16 @@ public class StatisticalResultMixedModel implements StatisticalResult, Serializa
 	private String classificationTag;
 
 	/**
-	 * Prepare the statement to insert this result into the database
+	 * Set the parameters of a statement prepared from the insert statement to insert this result into the database
 	 *
-	 * @param connection connection object to use to save the result
+	 * @param s statement prepared from {@link #getInsertStatement()}
 	 * @param generalResult the base result object to populate the common parameters
 	 * @throws SQLException
 	 */
-	public PreparedStatement getSaveResultStatement(Connection connection, LightweightResult generalResult) throws SQLException {
+	public void setSaveResultParameters(PreparedStatement s, LightweightResult generalResult) throws SQLException {
 
 		LightweightUnidimensionalResult result = (LightweightUnidimensionalResult) generalResult;
 
-		PreparedStatement s = connection.prepareStatement(insertStatement);
 		int i = 1;
 
 		SqlUtils.setSqlParameter(s, result.getControlId(), i++);
@@ -127,8 +125,6 @@ public class StatisticalResultMixedModel implements StatisticalResult, Serializa
 		SqlUtils.setSqlParameter(s, this.getClassificationTag(), i++);
 		SqlUtils.setSqlParameter(s, result.getAdditionalInformation(), i++);
 		SqlUtils.setSqlParameter(s, result.getRawOutput(), i++);
-
-		return s;
 	}
 
 	// Generated methods
@@ -6,7 +6,6 @@ import org.mousephenotype.cda.db.utilities.SqlUtils;
 import org.mousephenotype.cda.enumerations.SexType;
 
 import java.io.Serializable;
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 
@@ -52,17 +51,16 @@ public class StatisticalResultReferenceRangePlus implements StatisticalResult, S
 	private String classificationTag;
 
 	/**
-	 * Prepare the statement to insert this result into the database
+	 * Set the parameters of a statement prepared from the insert statement to insert this result into the database
 	 *
-	 * @param connection connection object to use to save the result
+	 * @param s statement prepared from {@link #getInsertStatement()}
 	 * @param generalResult the base result object to populate the common parameters
 	 * @throws SQLException
 	 */
-	public PreparedStatement getSaveResultStatement(Connection connection, LightweightResult generalResult) throws SQLException {
+	public void setSaveResultParameters(PreparedStatement s, LightweightResult generalResult) throws SQLException {
 
 		LightweightUnidimensionalResult result = (LightweightUnidimensionalResult) generalResult;
 
-		PreparedStatement s = connection.prepareStatement(insertStatement);
 		int i = 1;
 
 		SqlUtils.setSqlParameter(s, result.getControlId(), i++);
@@ -133,8 +131,10 @@ public class StatisticalResultReferenceRangePlus implements StatisticalResult, S
 		SqlUtils.setSqlParameter(s, this.getClassificationTag(), i++);
 		SqlUtils.setSqlParameter(s, result.getAdditionalInformation(), i++);
 		SqlUtils.setSqlParameter(s, result.getRawOutput(), i++);
+	}
 
-		return s;
+	public String getInsertStatement() {
+		return insertStatement;
 	}
 
 
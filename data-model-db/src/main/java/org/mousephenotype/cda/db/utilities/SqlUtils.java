@@ -407,6 +407,19 @@ public class SqlUtils {
         return newRow;
     }
 
+    /**
+     * @return {@code url} with {@code rewriteBatchedStatements=true} added if it is a MySQL url without it, so that MySQL
+     * receives batched inserts as multi-row INSERTs rather than one statement per row. Statements in such a batch report
+     * {@link Statement#SUCCESS_NO_INFO} rather than their update counts.
+     */
+    public static String withRewriteBatchedStatements(String url) {
+        if (( ! url.startsWith("jdbc:mysql:")) || url.contains("rewriteBatchedStatements")) {
+            return url;
+        }
+
+        return url + (url.contains("?") ? "&" : "?") + "rewriteBatchedStatements=true";
+    }
+
     /**
      * From https://github.com/brettwooldridge/HikariCP#configuration-knobs-baby
      * maxLifetime:
@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright 2015 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ *******************************************************************************/
+
+package org.mousephenotype.cda.db;
+
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.io.File;
+import java.sql.Timestamp;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+import static org.junit.Assert.*;
+
+public class WeightMapTest {
+
+    private static final ZonedDateTime DAY = ZonedDateTime.of(2009, 10, 16, 0, 0, 0, 0, ZoneId.of("UTC"));
+
+    // Weights are deliberately added out of order; the map sorts them by specimen and date.
+    private WeightMap buildWeightMap() {
+        WeightMap.ColumnsBuilder weights = new WeightMap.ColumnsBuilder();
+        weights.add(2L, DAY.plusDays(1), 21.0f, "IMPC_GRS_003_001", 70);
+        weights.add(2L, DAY.minusDays(1), 22.0f, "IMPC_BWT_001_001", 68);
+        weights.add(2L, DAY.plusDays(1), 20.5f, "IMPC_BWT_001_001", 70);
+        weights.add(1L, DAY.minusDays(10), 18.0f, "IMPC_BWT_001_001", 60);
+        weights.add(1L, null, 99.0f, "IMPC_BWT_001_001", 0);
+        weights.add(3L, DAY.minusDays(5), 30.0f, "IMPC_BWT_001_001", 80);
+
+        WeightMap.ColumnsBuilder ipgttWeights = new WeightMap.ColumnsBuilder();
+        ipgttWeights.add(2L, DAY, 25.0f, "IMPC_IPG_001_001", 69);
+        ipgttWeights.add(2L, DAY.minusDays(2), 24.0f, "IMPC_IPG_001_001", 67);
+
+        return new WeightMap(weights.build(true), ipgttWeights.build(false));
+    }
+
+    @Test
+    public void testGetNearestWeight() {
+        WeightMap weightMap = buildWeightMap();
+
+        assertEquals(3, weightMap.size().intValue());
+        assertEquals(3, weightMap.get(2L).size());
+        assertNull(weightMap.get(4L));
+
+        // The day before and the day after are equidistant, so the largest weight wins.
+        assertEquals(22.0f, weightMap.getNearestWeight(2L, DAY).getWeight(), 0.0f);
+
+        // A weight from the same procedure group is only preferred over a heavier one if it is heavier itself.
+        assertEquals(22.0f, weightMap.getNearestWeight(2L, "IMPC_GRS_001_001", DAY).getWeight(), 0.0f);
+
+        // Closest in time wins regardless of weight.
+        WeightMap.BodyWeight nearest = weightMap.getNearestWeight(2L, "IMPC_GRS_001_001", DAY.plusDays(2));
+        assertEquals(21.0f, nearest.getWeight(), 0.0f);
+        assertEquals("IMPC_GRS_003_001", nearest.getParameterStableId());
+        assertEquals(DAY.plusDays(1), nearest.getDate());
+        assertEquals(70, nearest.getDaysOld().intValue());
+
+        // Weights more than 4 days away, or without a date, are never returned.
+        assertNull(weightMap.getNearestWeight(1L, DAY));
+        assertNull(weightMap.getNearestWeight(3L, DAY));
+        assertEquals(30.0f, weightMap.getNearestWeight(3L, DAY.minusDays(1)).getWeight(), 0.0f);
+        assertNull(weightMap.getNearestWeight(4L, DAY));
+        assertNull(weightMap.getNearestWeight(2L, null));
+
+        // The last ipgtt weight loaded wins.
+        assertEquals(24.0f, weightMap.getNearestIpgttWeight(2L).getWeight(), 0.0f);
+        assertNull(weightMap.getNearestIpgttWeight(1L));
+    }
+
+    @Test
+    public void testSnapshotRoundTrip() throws Exception {
+        WeightMap weightMap = buildWeightMap();
+
+        File snapshot = File.createTempFile("WeightMapTest", ".snapshot");
+        snapshot.deleteOnExit();
+        weightMap.save(snapshot);
+
+        WeightMap mapped = WeightMap.open(snapshot);
+
+        assertEquals(weightMap.get(), mapped.get());
+        assertEquals(weightMap.getNearestWeight(2L, "IMPC_GRS_001_001", DAY), mapped.getNearestWeight(2L, "IMPC_GRS_001_001", DAY));
+        assertEquals(weightMap.getNearestIpgttWeight(2L), mapped.getNearestIpgttWeight(2L));
+        assertNull(mapped.get(1L).get(0).getDate());
+    }
+
+    // Adds a body weight observation of 'weight' grams for live sample 'specimenId' on DAY.
+    private void addWeight(JdbcTemplate jdbc, long id, long specimenId, float weight) {
+        jdbc.update("MERGE INTO live_sample (id, colony_id, developmental_stage_acc, developmental_stage_db_id, date_of_birth) VALUES (?, 'colony', 'EFO:0002948', 1, ?)",
+                    specimenId, Timestamp.from(DAY.minusDays(70).toInstant()));
+        jdbc.update("INSERT INTO experiment (id, db_id, date_of_experiment, organisation_id, pipeline_id, pipeline_stable_id, procedure_id, procedure_stable_id) VALUES (?, 1, ?, 1, 1, 'IMPC_001', 1, 'IMPC_BWT_001')",
+                    id, Timestamp.from(DAY.toInstant()));
+        jdbc.update("INSERT INTO observation (id, db_id, biological_sample_id, parameter_id, parameter_stable_id, population_id, observation_type) VALUES (?, 1, ?, 1, 'IMPC_BWT_001_001', 1, 'unidimensional')",
+                    id, specimenId);
+        jdbc.update("INSERT INTO unidimensional_observation (id, data_point) VALUES (?, ?)", id, weight);
+        jdbc.update("INSERT INTO experiment_observation (experiment_id, observation_id) VALUES (?, ?)", id, id);
+    }
+
+    @Test
+    public void testOpenOrCreateRebuildsStaleSnapshot() throws Exception {
+
+        EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .setName("WeightMapTest")
+                .ignoreFailedDrops(true)
+                .addScripts("sql/h2/schema.sql", "sql/h2/H2ReplaceDateDiff.sql")
+                .build();
+
+        try {
+            JdbcTemplate jdbc = new JdbcTemplate(database);
+            addWeight(jdbc, 1L, 100L, 20.0f);
+
+            File snapshot = File.createTempFile("WeightMapTest", ".snapshot");
+            snapshot.deleteOnExit();
+            snapshot.delete();
+
+            WeightMap weightMap = WeightMap.openOrCreate(database, snapshot);
+            assertEquals(1, weightMap.size().intValue());
+            assertTrue(snapshot.exists());
+
+            // The observations are unchanged, so the snapshot is reused even though a weight changed underneath it.
+            jdbc.update("UPDATE unidimensional_observation SET data_point = 21.0 WHERE id = 1");
+            weightMap = WeightMap.openOrCreate(database, snapshot);
+            assertEquals(20.0f, weightMap.getNearestWeight(100L, DAY).getWeight(), 0.0f);
+
+            // New observations make the snapshot stale, so it is rebuilt with the new and changed weights.
+            addWeight(jdbc, 2L, 200L, 30.0f);
+            weightMap = WeightMap.openOrCreate(database, snapshot);
+            assertEquals(2, weightMap.size().intValue());
+            assertEquals(21.0f, weightMap.getNearestWeight(100L, DAY).getWeight(), 0.0f);
+            assertEquals(30.0f, WeightMap.open(snapshot).getNearestWeight(200L, DAY).getWeight(), 0.0f);
+
+            // So does deleting observations.
+            jdbc.update("DELETE FROM observation WHERE id = 1");
+            weightMap = WeightMap.openOrCreate(database, snapshot);
+            assertEquals(1, weightMap.size().intValue());
+            assertNull(weightMap.get(100L));
+
+        } finally {
+            database.shutdown();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package org.mousephenotype.cda.db.utilities;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SqlUtilsTest {
+
+    @Test
+    public void testWithRewriteBatchedStatements() {
+
+        assertEquals("jdbc:mysql://localhost:3306/komp2?rewriteBatchedStatements=true",
+                     SqlUtils.withRewriteBatchedStatements("jdbc:mysql://localhost:3306/komp2"));
+        assertEquals("jdbc:mysql://localhost:3306/komp2?useSSL=false&rewriteBatchedStatements=true",
+                     SqlUtils.withRewriteBatchedStatements("jdbc:mysql://localhost:3306/komp2?useSSL=false"));
+        assertEquals("jdbc:mysql://localhost:3306/komp2?rewriteBatchedStatements=false",
+                     SqlUtils.withRewriteBatchedStatements("jdbc:mysql://localhost:3306/komp2?rewriteBatchedStatements=false"));
+        assertEquals("jdbc:h2:mem:komp2",
+                     SqlUtils.withRewriteBatchedStatements("jdbc:h2:mem:komp2"));
+    }
+}
@@ -0,0 +1,185 @@
+/*******************************************************************************
+ * Copyright 2015 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ *******************************************************************************/
+
+package org.mousephenotype.cda.solr;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.request.schema.SchemaRequest;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.CursorMarkParams;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads every document matching a query a page at a time using solr's cursorMark deep paging, rather than asking for
+ * {@code Integer.MAX_VALUE} rows and holding the whole result set (and solr's copy of it) in memory at once.
+ *
+ * The query is copied; the copy's rows are set to the page size and the core's unique key is appended to its sort
+ * order as the tie-breaker cursorMark requires. Any start offset is ignored. Documents are bound to {@code type} a
+ * page at a time; use {@link #documents(SolrClient, SolrQuery)} to read raw {@link SolrDocument}s.
+ *
+ * Nothing is read until the first document is asked for. solr and i/o errors raised while iterating are thrown as
+ * {@link UncheckedIOException}s.
+ *
+ * Usage:
+ *
+ *   for (GeneDTO gene : new SolrCursorReader<>(geneCore, query, GeneDTO.class)) { ... }
+ *   new SolrCursorReader<>(geneCore, query, GeneDTO.class).stream().map(...)
+ */
+public class SolrCursorReader<T> implements Iterable<T> {
+
+    public static final int DEFAULT_PAGE_SIZE = 1000;
+
+    private final SolrClient core;
+    private final SolrQuery  query;
+    private final Class<T>   type;
+    private       int        pageSize = DEFAULT_PAGE_SIZE;
+    private       String     uniqueKey;
+
+    public SolrCursorReader(SolrClient core, SolrQuery query, Class<T> type) {
+        this.core = core;
+        this.query = query;
+        this.type = type;
+    }
+
+    public static SolrCursorReader<SolrDocument> documents(SolrClient core, SolrQuery query) {
+        return new SolrCursorReader<>(core, query, SolrDocument.class);
+    }
+
+    /**
+     * @param pageSize the number of documents to fetch per request
+     */
+    public SolrCursorReader<T> pageSize(int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("pageSize must be at least 1 but was " + pageSize);
+        }
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    /**
+     * @param uniqueKey the core's unique key field. If not set, it is looked up from the core's schema.
+     */
+    public SolrCursorReader<T> uniqueKey(String uniqueKey) {
+        this.uniqueKey = uniqueKey;
+        return this;
+    }
+
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    @Override
+    public Spliterator<T> spliterator() {
+        return Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED | Spliterator.NONNULL);
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new CursorIterator();
+    }
+
+
+    private class CursorIterator implements Iterator<T> {
+
+        private SolrQuery   pageQuery;
+        private String      cursorMark = CursorMarkParams.CURSOR_MARK_START;
+        private boolean     done       = false;
+        private Iterator<T> page       = Collections.emptyIterator();
+
+        @Override
+        public boolean hasNext() {
+            while ( ! page.hasNext() && ! done) {
+                nextPage();
+            }
+
+            return page.hasNext();
+        }
+
+        @Override
+        public T next() {
+            if ( ! hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            return page.next();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void nextPage() {
+
+            try {
+                if (pageQuery == null) {
+                    pageQuery = buildPageQuery();
+                }
+
+                pageQuery.set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark);
+                QueryResponse response = core.query(pageQuery);
+
+                page = (type == SolrDocument.class
+                        ? (Iterator<T>) response.getResults().iterator()
+                        : core.getBinder().getBeans(type, response.getResults()).iterator());
+
+                String nextCursorMark = response.getNextCursorMark();
+                done = (nextCursorMark == null) || nextCursorMark.equals(cursorMark);
+                cursorMark = nextCursorMark;
+
+            } catch (SolrServerException e) {
+                throw new UncheckedIOException(new IOException("Unable to read page at cursorMark " + cursorMark, e));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private SolrQuery buildPageQuery() throws SolrServerException, IOException {
+
+        if (uniqueKey == null) {
+            uniqueKey = new SchemaRequest.UniqueKey().process(core).getUniqueKey();
+        }
+
+        SolrQuery pageQuery = query.getCopy();
+        pageQuery.remove(CommonParams.START);
+        pageQuery.setRows(pageSize);
+
+        // getCopy() copies the sort parameter but not the sort clauses, so addSort() on the copy would replace the
+        // caller's sort rather than add to it.
+        List<SolrQuery.SortClause> sorts = query.getSorts();
+        if ( ! sorts.isEmpty()) {
+            pageQuery.setSorts(new ArrayList<>(sorts));
+            if (sorts.stream().noneMatch(sort -> sort.getItem().equals(uniqueKey))) {
+                pageQuery.addSort(uniqueKey, SolrQuery.ORDER.asc);
+            }
+        } else {
+            String sort = query.get(CommonParams.SORT);
+            if ((sort == null) || sort.trim().isEmpty()) {
+                pageQuery.set(CommonParams.SORT, uniqueKey + " asc");
+            } else if (Arrays.stream(sort.split(",")).noneMatch(clause -> clause.trim().split("\\s+")[0].equals(uniqueKey))) {
+                pageQuery.set(CommonParams.SORT, sort + "," + uniqueKey + " asc");
+            }
+        }
+
+        return pageQuery;
+    }
+}
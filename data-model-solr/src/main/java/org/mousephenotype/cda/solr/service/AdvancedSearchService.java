@@ -1,6 +1,5 @@
 package org.mousephenotype.cda.solr.service;
 
-import org.apache.commons.collections4.CollectionUtils;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,6 +9,10 @@ import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.List;
 
+import static org.mousephenotype.cda.solr.service.PhenotypeCriteria.and;
+import static org.mousephenotype.cda.solr.service.PhenotypeCriteria.or;
+import static org.mousephenotype.cda.solr.service.PhenotypeCriteria.phenotype;
+
 public class AdvancedSearchService {
 
 	private final Logger logger = LoggerFactory.getLogger(this.getClass());
@@ -23,28 +26,24 @@ public class AdvancedSearchService {
 	
 	//get the number of genes associated with phenotypes - the same way as we do for the phenotypes pages?
 	 public List<String> getGenesForPhenotype(String phenotypeId) throws IOException, URISyntaxException, SolrServerException{
-		List<String> geneSymbols = genotypePhenotypeService.getGenesForMpId(phenotypeId);
-		return geneSymbols;
+		return getGenes(phenotype(phenotypeId));
 	 }
 	 
 	 public List<String> getGenesForPhenotypeAndPhenotype(String phenotypeId, String phenotypeId2) throws IOException, URISyntaxException, SolrServerException{
-		 List<String> geneSymbols = genotypePhenotypeService.getGenesForMpId(phenotypeId);
-		 logger.info("geneSymbols.size(): " + geneSymbols.size());
-		 List<String> geneSymbols2 = genotypePhenotypeService.getGenesForMpId(phenotypeId2);
-		 @SuppressWarnings("unchecked")
-		List<String> list = (List<String>) CollectionUtils.intersection(geneSymbols, geneSymbols2);
-		 logger.info("geneSymbols2.size(): " + geneSymbols2.size());
-		return list;
+		return getGenes(and(phenotype(phenotypeId), phenotype(phenotypeId2)));
 	 }
 	 
 	 public List<String> getGenesForPhenotypeORPhenotype(String phenotypeId, String phenotypeId2) throws IOException, URISyntaxException, SolrServerException{
-		 List<String> geneSymbols = genotypePhenotypeService.getGenesForMpId(phenotypeId);
-		 logger.info("geneSymbols.size(): " + geneSymbols.size());
-		 List<String> geneSymbols2 = genotypePhenotypeService.getGenesForMpId(phenotypeId2);
-		 logger.info("geneSymbols2.size(): " + geneSymbols2.size());
-		 @SuppressWarnings("unchecked")
-		List<String> list=(List<String>) CollectionUtils.union(geneSymbols, geneSymbols2);
-		 
-		return list;
+		return getGenes(or(phenotype(phenotypeId), phenotype(phenotypeId2)));
+	 }
+
+	/**
+	 * The genes meeting any combination of AND, OR and NOT of phenotypes, combined by solr in a single query rather
+	 * than by intersecting the genes of each phenotype here.
+	 */
+	 public List<String> getGenes(PhenotypeCriteria criteria) throws IOException, SolrServerException{
+		List<String> geneSymbols = genotypePhenotypeService.getGenesFor(criteria);
+		logger.info("{} genes for {}", geneSymbols.size(), criteria);
+		return geneSymbols;
 	 }
-}
\ No newline at end of file
+}
@@ -99,6 +99,11 @@ public class ExperimentService{
         List<ObservationDTO> observations = observationService.getExperimentObservationsBy(parameterStableId, pipelineStableId, geneAccession, zygosities, phenotypingCenter, strain, sex, metaDataGroup, alleleAccession);
         Map<String, ExperimentDTO> experimentsMap = new HashMap<>();
 
+        // The phenotyping center and zygosity whose statistical results each experiment gets. The results are
+        // fetched for all experiments at once, after the observations have been grouped.
+        Map<String, String>       resultCenters    = new HashMap<>();
+        Map<String, ZygosityType> resultZygosities = new HashMap<>();
+
         for (ObservationDTO observation : observations) {
 
             // collect all the strains, organisations, sexes, and zygosities
@@ -175,26 +180,23 @@ public class ExperimentService{
             }
 
 
-            experiment.getZygosities().add(ZygosityType.valueOf(observation.getZygosity()));
+            ZygosityType zygosity = ZygosityType.valueOf(observation.getZygosity());
+
+            experiment.getZygosities().add(zygosity);
             experiment.getSexes().add(SexType.valueOf(observation.getSex()));
 
             // includeResults variable skips the results when gathering
             // experiments for calculating the results (performance)
-            if (experiment.getResults() == null && experiment.getExperimentalBiologicalModelId() != null && includeResults) {
-
-                String phenCenter = observation.getPhenotypingCenter();
-                ObservationType statisticalType = experiment.getObservationType();
-                ZygosityType zygosity = ZygosityType.valueOf(observation.getZygosity());
-
-                List<? extends StatisticalResult> results = statisticalResultService.getStatisticalResult(alleleAccession, strain, phenCenter, pipelineStableId, parameterStableId, metaDataGroup, zygosity, sex, statisticalType);
-                experiment.setResults(results);
+            if ( ! resultZygosities.containsKey(experimentKey) && experiment.getExperimentalBiologicalModelId() != null && includeResults) {
+                resultCenters.put(experimentKey, observation.getPhenotypingCenter());
+                resultZygosities.put(experimentKey, zygosity);
             }
 
-            if (ZygosityType.valueOf(observation.getZygosity()).equals(ZygosityType.heterozygote)) {
+            if (zygosity == ZygosityType.heterozygote) {
                 experiment.getHeterozygoteMutants().add(observation);
-            } else if (ZygosityType.valueOf(observation.getZygosity()).equals(ZygosityType.homozygote)) {
+            } else if (zygosity == ZygosityType.homozygote) {
                 experiment.getHomozygoteMutants().add(observation);
-            } else if (ZygosityType.valueOf(observation.getZygosity()).equals(ZygosityType.hemizygote)) {
+            } else if (zygosity == ZygosityType.hemizygote) {
                 experiment.getHemizygoteMutants().add(observation);
             }
 
@@ -205,6 +207,8 @@ public class ExperimentService{
 
         }
 
+        setStatisticalResults(experimentsMap, resultCenters, resultZygosities, alleleAccession, strain, pipelineStableId, parameterStableId, metaDataGroup, sex);
+
         // Set to record the experiments that don't have control data
         Set<String> noControls = new HashSet<>();
 
@@ -416,6 +420,38 @@ public class ExperimentService{
         return new ArrayList<ExperimentDTO>(experimentsMap.values());
     }
 
+    /**
+     * Sets the statistical results of the experiments in {@code resultZygosities}, fetching them with one query per
+     * observation type instead of one per experiment. Each experiment gets the results for its entry in
+     * {@code resultCenters} and {@code resultZygosities}.
+     */
+    private void setStatisticalResults(Map<String, ExperimentDTO> experimentsMap, Map<String, String> resultCenters, Map<String, ZygosityType> resultZygosities,
+                                       String alleleAccession, String strain, String pipelineStableId, String parameterStableId, String metaDataGroup, SexType sex)
+            throws SolrServerException, IOException {
+
+        Map<ObservationType, List<String>> keysByType = new EnumMap<>(ObservationType.class);
+        for (String experimentKey : resultZygosities.keySet()) {
+            keysByType.computeIfAbsent(experimentsMap.get(experimentKey).getObservationType(), k -> new ArrayList<>()).add(experimentKey);
+        }
+
+        for (Map.Entry<ObservationType, List<String>> entry : keysByType.entrySet()) {
+
+            Set<String>       centers           = new HashSet<>();
+            Set<ZygosityType> zygositiesToFetch = EnumSet.noneOf(ZygosityType.class);
+            for (String experimentKey : entry.getValue()) {
+                centers.add(resultCenters.get(experimentKey));
+                zygositiesToFetch.add(resultZygosities.get(experimentKey));
+            }
+
+            Map<String, Map<ZygosityType, List<StatisticalResult>>> results =
+                    statisticalResultService.getStatisticalResults(alleleAccession, strain, centers, pipelineStableId, parameterStableId, metaDataGroup, zygositiesToFetch, sex, entry.getKey());
+
+            for (String experimentKey : entry.getValue()) {
+                experimentsMap.get(experimentKey).setResults(results.get(resultCenters.get(experimentKey)).get(resultZygosities.get(experimentKey)));
+            }
+        }
+    }
+
 
     
     /**
@@ -33,6 +33,7 @@ import org.mousephenotype.cda.db.repositories.GenesSecondaryProjectRepository;
 import org.mousephenotype.cda.enumerations.ObservationType;
 import org.mousephenotype.cda.enumerations.SexType;
 import org.mousephenotype.cda.enumerations.ZygosityType;
+import org.mousephenotype.cda.solr.SolrCursorReader;
 import org.mousephenotype.cda.solr.SolrUtils;
 import org.mousephenotype.cda.solr.generic.util.JSONRestUtil;
 import org.mousephenotype.cda.solr.generic.util.PhenotypeFacetResult;
@@ -49,21 +50,20 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.configurationprocessor.json.JSONArray;
 import org.springframework.boot.configurationprocessor.json.JSONException;
 import org.springframework.boot.configurationprocessor.json.JSONObject;
-import org.springframework.cache.annotation.Cacheable;
 
 import javax.inject.Inject;
 import javax.validation.constraints.NotNull;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
-import static java.util.Map.Entry.comparingByKey;
 
 public class GenotypePhenotypeService extends BasicService implements WebStatus {
 
@@ -74,6 +74,12 @@ public class GenotypePhenotypeService extends BasicService implements WebStatus
     protected SolrClient                      genotypePhenotypeCore;
     protected GenesSecondaryProjectRepository genesSecondaryProjectRepository;
 
+    private volatile PleiotropyIndex pleiotropyIndex;
+    private final    Object          pleiotropyIndexLock = new Object();
+
+    // The accession ids of the IDG genes, by IDG class ("" for all classes); cleared with the pleiotropy index
+    private final Map<String, Set<String>> idgGenesByClass = new ConcurrentHashMap<>();
+
 
     @Inject
     public GenotypePhenotypeService(
@@ -873,42 +879,38 @@ public class GenotypePhenotypeService extends BasicService implements WebStatus
      * @throws SolrServerException
      */
     public List<String> getGenesForMpId(String phenotype_id)
-    	    throws IOException, URISyntaxException, SolrServerException {
-    		List<String>results=new ArrayList<>();
-    	        String url = SolrUtils.getBaseURL(genotypePhenotypeCore) + "/select/?";
-    	        SolrQuery q = new SolrQuery();
-    	        
-    	        q.setQuery("*:*");
-    	        q.addFilterQuery("(" + GenotypePhenotypeDTO.MP_TERM_ID + ":\"" + phenotype_id + "\" OR " + GenotypePhenotypeDTO.TOP_LEVEL_MP_TERM_ID + ":\"" + phenotype_id + 
-    	        		"\" OR " + GenotypePhenotypeDTO.INTERMEDIATE_MP_TERM_ID + ":\"" + phenotype_id + "\")");
-    	        q.setRows(10000000);
-    	        q.setFacet(true);
-    	        q.setFacetMinCount(1);
-    	        q.setFacetLimit(-1);
-    	        //q.addFacetField(GenotypePhenotypeDTO.MARKER_ACCESSION_ID);
-    	        q.addFacetField(GenotypePhenotypeDTO.MARKER_SYMBOL);
-    	       // q.addFacetField(GenotypePhenotypeDTO.MP_TERM_NAME );
-    	        q.set("wt", "json");
-    	        q.setSort(GenotypePhenotypeDTO.P_VALUE, ORDER.asc);
-    	        q.setFields(GenotypePhenotypeDTO.MARKER_SYMBOL);
-//    	        q.setFields(GenotypePhenotypeDTO.MP_TERM_NAME, GenotypePhenotypeDTO.MP_TERM_ID, GenotypePhenotypeDTO.MPATH_TERM_NAME, GenotypePhenotypeDTO.MPATH_TERM_ID, GenotypePhenotypeDTO.EXTERNAL_ID,
-//    	        		GenotypePhenotypeDTO.TOP_LEVEL_MP_TERM_ID, GenotypePhenotypeDTO.TOP_LEVEL_MP_TERM_NAME, GenotypePhenotypeDTO.ALLELE_SYMBOL, 
-//    	        		GenotypePhenotypeDTO.PHENOTYPING_CENTER, GenotypePhenotypeDTO.ALLELE_ACCESSION_ID, GenotypePhenotypeDTO.MARKER_SYMBOL,
-//    	        		GenotypePhenotypeDTO.MARKER_ACCESSION_ID, GenotypePhenotypeDTO.PHENOTYPING_CENTER, GenotypePhenotypeDTO.ZYGOSITY, 
-//    	        		GenotypePhenotypeDTO.SEX, GenotypePhenotypeDTO.LIFE_STAGE_NAME, GenotypePhenotypeDTO.RESOURCE_NAME, GenotypePhenotypeDTO.PARAMETER_STABLE_ID, GenotypePhenotypeDTO.PARAMETER_NAME,
-//    	        		GenotypePhenotypeDTO.PIPELINE_STABLE_ID, GenotypePhenotypeDTO.PROJECT_NAME, GenotypePhenotypeDTO.PROJECT_EXTERNAL_ID,
-//    	        		GenotypePhenotypeDTO.P_VALUE, GenotypePhenotypeDTO.EFFECT_SIZE, GenotypePhenotypeDTO.PROCEDURE_STABLE_ID,
-//    	        		GenotypePhenotypeDTO.PROCEDURE_NAME, GenotypePhenotypeDTO.PIPELINE_NAME);
-    	       
-    	        
-    	        
-    	        QueryResponse response = genotypePhenotypeCore.query(q);
-    	        for( Count facet : response.getFacetField(GenotypePhenotypeDTO.MARKER_SYMBOL).getValues()){
-    	        	//System.out.println("facet="+facet.getName());
-    	        	results.add(facet.getName());
-    	        }
-    	        return results;
-    	    }
+            throws IOException, URISyntaxException, SolrServerException {
+        return getGenesFor(PhenotypeCriteria.phenotype(phenotype_id));
+    }
+
+    /**
+     * Get the symbols of the genes meeting the phenotype criteria. The criteria are evaluated by solr (see
+     * {@link PhenotypeCriteria#addFilterQueries(SolrQuery)}) and only the gene facet is returned, not the
+     * associations.
+     *
+     * @param criteria the phenotypes the genes must, or must not, have
+     * @return the gene symbols, the genes with the most associations first
+     */
+    public List<String> getGenesFor(PhenotypeCriteria criteria)
+            throws IOException, SolrServerException {
+
+        SolrQuery q = new SolrQuery()
+                .setQuery("*:*")
+                .setRows(0)
+                .setFacet(true)
+                .setFacetMinCount(1)
+                .setFacetLimit(-1)
+                .addFacetField(GenotypePhenotypeDTO.MARKER_SYMBOL);
+        criteria.addFilterQueries(q);
+
+        List<String> results = new ArrayList<>();
+        QueryResponse response = genotypePhenotypeCore.query(q);
+        for (Count facet : response.getFacetField(GenotypePhenotypeDTO.MARKER_SYMBOL).getValues()) {
+            results.add(facet.getName());
+        }
+
+        return results;
+    }
 
     public List<GenotypePhenotypeDTO> getGenotypePhenotypeFor(String markerAccession, String parameterStableId, String strainAccession, String alleleAccession, Set<ZygosityType> zygosity, String phenotypingCenter, Set<SexType> sex)
             throws SolrServerException, IOException {
@@ -1538,70 +1540,32 @@ public class GenotypePhenotypeService extends BasicService implements WebStatus
 
         try {
 
-            Set<GenotypePhenotypeDTO> pleiotropyGenes = getPleiotropyGenes(topLevelMpTerms, idg, idgClass);
-            Set<String> topLevelMpTermNames = pleiotropyGenes
-                    .stream()
-                    .map(GenotypePhenotypeDTO::getTopLevelMpTermName)
-                    .flatMap(Collection::stream)
-                    .collect(Collectors.toSet());
+            PleiotropyIndex index = getPleiotropyIndex();
+            BitSet          genes = getPleiotropyGenes(index, topLevelMpTerms, idg, idgClass);
 
-            Map<String, Set<String>> genesByTopLevelMp = new HashMap<>(); // <mp, [genes]>
-            Integer[][] matrix = new Integer[topLevelMpTermNames.size()][topLevelMpTermNames.size()];
-            // initialize labels -> needed to keep track of order for the matrix cells
-            List<String>  matrixLabels = new ArrayList<>(topLevelMpTermNames);
+            // labels -> needed to keep track of order for the matrix cells
+            List<Integer> matrixLabels = index.getTerms(genes).stream().boxed().collect(Collectors.toList());
+            Integer[][]   matrix       = new Integer[matrixLabels.size()][matrixLabels.size()];
 
-            // Fill matrix with 0s
+            // Count genes associated to each pair of top-level mps. Gene count not g-p doc count, nor allele.
+            // A gene with only one top level mp is counted as self, will display as arch to self
             for (int i = 0; i < matrixLabels.size(); i++) {
-                for (int j = 0; j< matrixLabels.size(); j++) {
-                    matrix[i][j] = 0;
+                for (int j = 0; j < matrixLabels.size(); j++) {
+                    matrix[i][j] = (i == j) ?
+                            index.countSingleTermGenes(genes, matrixLabels.get(i)) :
+                            index.countGenes(genes, matrixLabels.get(i), matrixLabels.get(j));
                 }
-                genesByTopLevelMp.put(matrixLabels.get(i), new HashSet<>());
             }
 
-            Map<String, Set<String>> facetPivotResults = new HashMap<>(); // <gene, <top_level_mps>>
-            for (GenotypePhenotypeDTO dto : pleiotropyGenes) {
-                facetPivotResults.putIfAbsent(dto.getMarkerAccessionId(), new HashSet<>());
-                facetPivotResults.get(dto.getMarkerAccessionId()).addAll(dto.getTopLevelMpTermName());
+            List<JSONObject> labelList = new ArrayList<>();
+            for (Integer term : matrixLabels) {
+                labelList.add(new JSONObject().put("name", index.getTermName(term)).put("geneCount", index.countGenes(genes, term)));
             }
 
-            // Count genes associated to each pair of top-level mps. Gene count not g-p doc count, nor allele.
-            for (String gene : facetPivotResults.keySet()) {
-                Set<String> mpTerms = facetPivotResults.get(gene);
-                for (int i = 0; i < matrixLabels.size(); i++){
-                    String mpI = matrixLabels.get(i);
-                    if (mpTerms.contains(mpI)) {
-                        Set<String> temp = genesByTopLevelMp.get(mpI);
-                        temp.add(gene);
-                        genesByTopLevelMp.put(mpI, temp);
-                        if (mpTerms.size() > 1) { // Other phenotypes too
-                            for (int j = 0; j < matrixLabels.size(); j++) {
-                                String mpJ = matrixLabels.get(j);
-                                if (mpTerms.contains(mpJ)) {
-                                    if (!mpI.equalsIgnoreCase(mpJ)) {
-                                        matrix[i][j]++;
-                                    }
-                                }
-                            }
-                        } else { // Only one top level mp for this gene; count as self, will display as arch to self
-                            matrix[i][i]++;
-                        }
-                    }
-                }
-            }
-
-            List<JSONObject> labelList = genesByTopLevelMp.entrySet().stream().map(entry -> {
-                try {
-                    return new JSONObject().put("name", entry.getKey()).put("geneCount", entry.getValue().size());
-                } catch (JSONException e) {
-                    e.printStackTrace();
-                }
-                return null;
-            }).collect(Collectors.toList());
-
             JSONObject result = new JSONObject();
             result.put("matrix", new org.springframework.boot.configurationprocessor.json.JSONArray(matrix));
             result.put("labels", labelList);
-            result.put("geneCount", facetPivotResults.keySet().size());
+            result.put("geneCount", genes.cardinality());
 
             return result;
 
@@ -1614,57 +1578,81 @@ public class GenotypePhenotypeService extends BasicService implements WebStatus
 
     public String getPleiotropyDownload(List<String> topLevelMpTerms, Boolean idg, String idgClass) throws IOException, SolrServerException {
 
-        Set<GenotypePhenotypeDTO> pleiotropyGenes = getPleiotropyGenes(topLevelMpTerms, idg, idgClass);
-        Map<PleiotropyExportRow, AtomicInteger> data = new HashMap<>();
+        PleiotropyIndex index = getPleiotropyIndex();
+        BitSet          genes = getPleiotropyGenes(index, topLevelMpTerms, idg, idgClass);
 
-        for (GenotypePhenotypeDTO dto : pleiotropyGenes) {
-            for (String term : dto.getTopLevelMpTermName()) {
-                PleiotropyExportRow newRow = new PleiotropyExportRow(dto.getMarkerAccessionId(), dto.getMarkerSymbol(), term);
-                data.putIfAbsent(newRow, new AtomicInteger(0));
-                data.get(newRow).incrementAndGet();
+        // One row per gene and top level mp, with the number of distinct associations between them
+        List<int[]> rows = new ArrayList<>();
+        for (int gene = genes.nextSetBit(0); gene >= 0; gene = genes.nextSetBit(gene + 1)) {
+            BitSet terms = index.getTerms(gene);
+            for (int term = terms.nextSetBit(0); term >= 0; term = terms.nextSetBit(term + 1)) {
+                rows.add(new int[] { gene, term });
             }
         }
 
-        // Return list of genes, unique entries only. The splitting is based on the order of pivot facets.
-        return data.entrySet().stream().sorted(comparingByKey()).map(x -> String.join(",", Arrays.asList(
-                x.getKey().accessionId,
-                x.getKey().symbol,
-                x.getKey().topLevelMp,
-                x.getValue().toString())))
+        return rows.stream()
+                .sorted(Comparator.comparing((int[] row) -> index.getSymbol(row[0]), Comparator.nullsFirst(Comparator.naturalOrder())))
+                .map(row -> String.join(",", Arrays.asList(
+                        index.getAccessionId(row[0]),
+                        index.getSymbol(row[0]),
+                        index.getTermName(row[1]),
+                        Integer.toString(index.getAssociationCount(row[0], row[1])))))
                 .collect(Collectors.joining("\n"));
     }
 
-    static class PleiotropyExportRow implements Comparable<PleiotropyExportRow> {
-        String accessionId;
-        String symbol;
-        String topLevelMp;
-
-        public PleiotropyExportRow(String accessionId, String symbol, String topLevelMp) {
-            this.accessionId = accessionId;
-            this.symbol = symbol;
-            this.topLevelMp = topLevelMp;
+    /**
+     * @return the index of the top level phenotypes of every gene, read from solr the first time it is asked for
+     */
+    public PleiotropyIndex getPleiotropyIndex() throws IOException, SolrServerException {
+
+        PleiotropyIndex index = pleiotropyIndex;
+        if (index == null) {
+            synchronized (pleiotropyIndexLock) {
+                index = pleiotropyIndex;
+                if (index == null) {
+                    index = refreshPleiotropyIndex();
+                }
+            }
         }
 
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            PleiotropyExportRow that = (PleiotropyExportRow) o;
-            return accessionId.equals(that.accessionId) &&
-                    symbol.equals(that.symbol) &&
-                    topLevelMp.equals(that.topLevelMp);
-        }
+        return index;
+    }
 
-        @Override
-        public int hashCode() {
-            return Objects.hash(accessionId, symbol, topLevelMp);
-        }
+    /**
+     * Reads the index of the top level phenotypes of every gene from solr again, e.g. after a data release. Requests
+     * keep using the previous index until the new one is ready.
+     *
+     * @return the new index
+     */
+    public PleiotropyIndex refreshPleiotropyIndex() throws IOException, SolrServerException {
 
+        long start = System.currentTimeMillis();
 
-        @Override
-        public int compareTo(PleiotropyExportRow o) {
-            return this.symbol.compareTo(o.symbol);
+        SolrQuery query = new SolrQuery()
+                .setQuery(GenotypePhenotypeDTO.MP_TERM_ID + ":*")
+                .setFields(GenotypePhenotypeDTO.ID,
+                        GenotypePhenotypeDTO.MARKER_ACCESSION_ID,
+                        GenotypePhenotypeDTO.MARKER_SYMBOL,
+                        GenotypePhenotypeDTO.TOP_LEVEL_MP_TERM_ID,
+                        GenotypePhenotypeDTO.TOP_LEVEL_MP_TERM_NAME);
+
+        PleiotropyIndex index;
+        synchronized (pleiotropyIndexLock) {
+            try {
+                index = PleiotropyIndex.build(new SolrCursorReader<>(genotypePhenotypeCore, query, GenotypePhenotypeDTO.class)
+                        .uniqueKey(GenotypePhenotypeDTO.ID)
+                        .pageSize(10000));
+
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            pleiotropyIndex = index;
+            idgGenesByClass.clear();
         }
+        logger.info("Built the pleiotropy index of {} genes and {} top level terms in {}ms", index.getGeneCount(), index.getTermCount(), System.currentTimeMillis() - start);
+
+        return index;
     }
 
     /**
@@ -1672,57 +1660,32 @@ public class GenotypePhenotypeService extends BasicService implements WebStatus
      * filter the list of genes that have the required phenotypes. We can't use the list of MP terms themselves
      * as it will filter out the other phenotype associations for the genes we're interested in.
      *
-     * @param topLevelMpTerms The list of terms to filter for, or null for all terms
+     * @param topLevelMpTerms The list of terms (names or ids) to filter for, or null for all terms
      * @param idg True indicating filter in IDG genes only
      * @param idgClass The class of IDG genes, e.g., Kinase, Ion channel, etc.
-     * @return Set of genotype to phenotype associations for genes that have all top level phenotypes
-     *         passed in topLevelMpTerms.
+     * @return the genes of {@code index} that have all top level phenotypes passed in topLevelMpTerms.
      */
-    @Cacheable("pleiotropy")
-    public Set<GenotypePhenotypeDTO> getPleiotropyGenes(List<String> topLevelMpTerms, Boolean idg, String idgClass) throws IOException, SolrServerException {
-
-        final List<String> fieldList = Arrays.asList(
-                GenotypePhenotypeDTO.MARKER_ACCESSION_ID,
-                GenotypePhenotypeDTO.MARKER_SYMBOL,
-                GenotypePhenotypeDTO.TOP_LEVEL_MP_TERM_NAME);
-
-        SolrQuery query = new SolrQuery()
-                .setQuery(GenotypePhenotypeDTO.MP_TERM_ID + ":*")
-                .setRows(Integer.MAX_VALUE)
-                .setFields(String.join(",", fieldList));
+    private BitSet getPleiotropyGenes(PleiotropyIndex index, List<String> topLevelMpTerms, Boolean idg, String idgClass) {
 
-        Set<GenotypePhenotypeDTO> genotypePhenotypeDTOS = new HashSet<>(
-                genotypePhenotypeCore
-                .query(query)
-                .getBeans(GenotypePhenotypeDTO.class));
+        Set<String> idgGeneIds = null;
 
         // Filter for IDG genes if idg is true
         if ( idg != null && idg ){
 
             // If the idgClass has not been set, get all genes for the idg project, else filter for the class specified
-            Set<GenesSecondaryProject> idgGenes =
-                    idgClass == null ?
-                            genesSecondaryProjectRepository.getAllBySecondaryProjectId("idg") :
-                            genesSecondaryProjectRepository.getAllBySecondaryProjectIdAndGroupLabel("idg", idgClass);
-            Set<String> idgGeneIds = idgGenes
-                    .stream()
-                    .map(GenesSecondaryProject::getMgiGeneAccessionId)
-                    .collect(Collectors.toSet());
-            genotypePhenotypeDTOS = genotypePhenotypeDTOS
-                    .stream()
-                    .filter(x -> idgGeneIds.contains(x.getMarkerAccessionId()))
-                    .collect(Collectors.toSet());
-        }
-
-        // Deal with top level MP terms if set
-        if (topLevelMpTerms != null) {
-            genotypePhenotypeDTOS = genotypePhenotypeDTOS
-                    .stream()
-                    .filter(gene -> gene.getTopLevelMpTermId().containsAll(topLevelMpTerms))
-                    .collect(Collectors.toSet());
-        }
-
-        return genotypePhenotypeDTOS;
+            idgGeneIds = idgGenesByClass.computeIfAbsent(idgClass == null ? "" : idgClass, key -> {
+                Set<GenesSecondaryProject> idgGenes =
+                        idgClass == null ?
+                                genesSecondaryProjectRepository.getAllBySecondaryProjectId("idg") :
+                                genesSecondaryProjectRepository.getAllBySecondaryProjectIdAndGroupLabel("idg", idgClass);
+                return idgGenes
+                        .stream()
+                        .map(GenesSecondaryProject::getMgiGeneAccessionId)
+                        .collect(Collectors.toSet());
+            });
+        }
+
+        return index.getGenes(topLevelMpTerms, idgGeneIds);
     }
 
 
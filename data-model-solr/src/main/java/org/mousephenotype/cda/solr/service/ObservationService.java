@@ -17,6 +17,7 @@
 package org.mousephenotype.cda.solr.service;
 
 import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.DateUtils;
@@ -36,6 +37,7 @@ import org.mousephenotype.cda.constants.Constants;
 import org.mousephenotype.cda.db.pojo.DiscreteTimePoint;
 import org.mousephenotype.cda.db.pojo.Parameter;
 import org.mousephenotype.cda.enumerations.*;
+import org.mousephenotype.cda.solr.SolrCursorReader;
 import org.mousephenotype.cda.solr.SolrUtils;
 import org.mousephenotype.cda.solr.generic.util.JSONRestUtil;
 import org.mousephenotype.cda.solr.service.dto.*;
@@ -1682,6 +1684,30 @@ public class ObservationService extends BasicService implements WebStatus {
     }
 
 
+    private static final String[] METABOLISM_REPORT_FIELDS = {
+            ObservationDTO.ALLELE_ACCESSION_ID,
+            ObservationDTO.ALLELE_SYMBOL,
+            ObservationDTO.BIOLOGICAL_SAMPLE_GROUP,
+            ObservationDTO.BIOLOGICAL_SAMPLE_ID,
+            ObservationDTO.COLONY_ID,
+            ObservationDTO.DATA_POINT,
+            ObservationDTO.DATE_OF_EXPERIMENT,
+            ObservationDTO.DISCRETE_POINT,
+            ObservationDTO.EXTERNAL_SAMPLE_ID,
+            ObservationDTO.GENE_ACCESSION_ID,
+            ObservationDTO.GENE_SYMBOL,
+            ObservationDTO.METADATA,
+            ObservationDTO.METADATA_GROUP,
+            ObservationDTO.OBSERVATION_TYPE,
+            ObservationDTO.PARAMETER_STABLE_ID,
+            ObservationDTO.PHENOTYPING_CENTER,
+            ObservationDTO.PROCEDURE_STABLE_ID,
+            ObservationDTO.SEX,
+            ObservationDTO.TIME_POINT,
+            ObservationDTO.WEIGHT,
+            ObservationDTO.ZYGOSITY
+    };
+
     /**
      * Returns a collection of biological sample ids for all mice matching the PROCEDURE_STABLE_ID.
      *
@@ -1719,28 +1745,7 @@ public class ObservationService extends BasicService implements WebStatus {
     public List<ObservationDTO> getMetabolismReportBiologicalSampleId(String procedureStableId, Integer biologicalSampleId) throws SolrServerException, IOException  {
         SolrQuery query = new SolrQuery();
 
-        query.setFields(
-                ObservationDTO.ALLELE_ACCESSION_ID,
-                ObservationDTO.ALLELE_SYMBOL,
-                ObservationDTO.BIOLOGICAL_SAMPLE_GROUP,
-                ObservationDTO.BIOLOGICAL_SAMPLE_ID,
-                ObservationDTO.COLONY_ID,
-                ObservationDTO.DATA_POINT,
-                ObservationDTO.DATE_OF_EXPERIMENT,
-                ObservationDTO.DISCRETE_POINT,
-                ObservationDTO.EXTERNAL_SAMPLE_ID,
-                ObservationDTO.GENE_ACCESSION_ID,
-                ObservationDTO.GENE_SYMBOL,
-                ObservationDTO.METADATA,
-                ObservationDTO.METADATA_GROUP,
-                ObservationDTO.OBSERVATION_TYPE,
-                ObservationDTO.PARAMETER_STABLE_ID,
-                ObservationDTO.PHENOTYPING_CENTER,
-                ObservationDTO.PROCEDURE_STABLE_ID,
-                ObservationDTO.SEX,
-                ObservationDTO.TIME_POINT,
-                ObservationDTO.WEIGHT,
-                ObservationDTO.ZYGOSITY);
+        query.setFields(METABOLISM_REPORT_FIELDS);
         query.setRows(5000);
         query.setSort(ObservationDTO.ID, SolrQuery.ORDER.asc);
         query.setFilterQueries(ObservationDTO.PROCEDURE_STABLE_ID + ":" + procedureStableId);
@@ -1750,6 +1755,62 @@ public class ObservationService extends BasicService implements WebStatus {
     }
 
 
+    /**
+     * Returns the observations for the specified procedures, one specimen at a time. This is the bulk equivalent of
+     * calling {@link #getMetabolismReportBiologicalSampleId(String, Integer)} for every id returned by
+     * {@link #getMetabolismReportBiologicalSampleIds(String)}: the observations are read with a single cursor query
+     * sorted by biological sample id, and each specimen's observations are handed out as soon as they have all been
+     * read, so only one page and one specimen are held in memory at a time.
+     *
+     * Nothing is read until the first specimen is asked for. solr errors raised while iterating are thrown as
+     * {@link java.io.UncheckedIOException}s.
+     *
+     * @param procedureStableIds the procedure stable ids (e.g. "IMPC_CBC_*", "IMPC_INS_*")
+     *
+     * @return the observations of each specimen with data for any of the procedures, ordered by biological sample id.
+     * Each specimen's observations are in the same order as {@link #getMetabolismReportBiologicalSampleId} returns them.
+     */
+    public Iterable<List<ObservationDTO>> getMetabolismReportObservationsBySpecimen(String... procedureStableIds) {
+        SolrQuery query = new SolrQuery();
+
+        query.setFields(METABOLISM_REPORT_FIELDS);
+        query.setQuery("*:*");
+        query.setFilterQueries(ObservationDTO.PROCEDURE_STABLE_ID + ":(" + StringUtils.join(procedureStableIds, " OR ") + ")");
+        query.setSort(ObservationDTO.BIOLOGICAL_SAMPLE_ID, SolrQuery.ORDER.asc);
+
+        logger.info(SolrUtils.getBaseURL(experimentCore) + "/select?" + query);
+
+        SolrCursorReader<ObservationDTO> reader = new SolrCursorReader<>(experimentCore, query, ObservationDTO.class)
+                .uniqueKey(ObservationDTO.ID)
+                .pageSize(5000);
+
+        return () -> new Iterator<List<ObservationDTO>>() {
+
+            private final PeekingIterator<ObservationDTO> observations = Iterators.peekingIterator(reader.iterator());
+
+            @Override
+            public boolean hasNext() {
+                return observations.hasNext();
+            }
+
+            @Override
+            public List<ObservationDTO> next() {
+                if ( ! hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                List<ObservationDTO> specimen           = new ArrayList<>();
+                Long                 biologicalSampleId = observations.peek().getBiologicalSampleId();
+                while (observations.hasNext() && Objects.equals(biologicalSampleId, observations.peek().getBiologicalSampleId())) {
+                    specimen.add(observations.next());
+                }
+
+                return specimen;
+            }
+        };
+    }
+
+
     public Set<String> getAllGeneIdsByResource(List<String> resources, boolean experimentalOnly) throws IOException, SolrServerException {
 
         Set<String> geneAccessionIds = new HashSet<>();
@@ -0,0 +1,188 @@
+/*******************************************************************************
+ * Copyright © 2019 EMBL - European Bioinformatics Institute
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ ******************************************************************************/
+
+package org.mousephenotype.cda.solr.service;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.mousephenotype.cda.solr.service.dto.GenotypePhenotypeDTO;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A boolean combination of phenotypes that genes must have, e.g. {@code and(phenotype("MP:0002078"),
+ * not(phenotype("MP:0003956")))} for the genes with abnormal glucose homeostasis but not abnormal body size. A gene has
+ * a phenotype if one of its genotype-phenotype associations is to the MP term, or to a term below it.
+ *
+ * {@link #addFilterQueries} compiles the criteria into filter queries on the genotype-phenotype core, so that the
+ * genes are found by faceting one query rather than by combining the genes of each phenotype in the application:
+ * <ul>
+ *     <li>a phenotype, and an OR of phenotypes, is a filter on the associations themselves</li>
+ *     <li>the other operands of an AND, and the operand of a NOT, are joins from the gene's associations to the
+ *     associations of the same gene matching the operand ({@code {!join from=marker_accession_id
+ *     to=marker_accession_id}})</li>
+ * </ul>
+ */
+public class PhenotypeCriteria {
+
+    private static final String JOIN = "{!join from=" + GenotypePhenotypeDTO.MARKER_ACCESSION_ID + " to=" + GenotypePhenotypeDTO.MARKER_ACCESSION_ID + " v=$%s}";
+
+    private enum Operator { PHENOTYPE, AND, OR, NOT }
+
+    private final Operator                operator;
+    private final String                  mpId;
+    private final List<PhenotypeCriteria> operands;
+
+    private PhenotypeCriteria(Operator operator, String mpId, List<PhenotypeCriteria> operands) {
+        this.operator = operator;
+        this.mpId = mpId;
+        this.operands = operands;
+    }
+
+
+    /**
+     * @param mpId an MP term id, e.g. MP:0002078
+     */
+    public static PhenotypeCriteria phenotype(String mpId) {
+        return new PhenotypeCriteria(Operator.PHENOTYPE, mpId, Collections.emptyList());
+    }
+
+    public static PhenotypeCriteria and(PhenotypeCriteria... operands) {
+        return new PhenotypeCriteria(Operator.AND, null, toList(operands));
+    }
+
+    public static PhenotypeCriteria or(PhenotypeCriteria... operands) {
+        return new PhenotypeCriteria(Operator.OR, null, toList(operands));
+    }
+
+    public static PhenotypeCriteria not(PhenotypeCriteria operand) {
+        return new PhenotypeCriteria(Operator.NOT, null, Collections.singletonList(operand));
+    }
+
+
+    /**
+     * Restricts {@code query}, on the genotype-phenotype core, to associations of the genes that meet the criteria.
+     * Every such gene keeps at least one association, so faceting on a gene field gives exactly those genes.
+     */
+    public void addFilterQueries(SolrQuery query) {
+
+        if (operator != Operator.AND) {
+            query.addFilterQuery(hasAssociationQuery() ? getAssociationQuery() : getGeneQuery(query));
+            return;
+        }
+
+        // One operand can filter the associations themselves; the others must then hold for the same gene
+        boolean filteredAssociations = false;
+        for (PhenotypeCriteria operand : operands) {
+            if ( ! filteredAssociations && operand.hasAssociationQuery()) {
+                query.addFilterQuery(operand.getAssociationQuery());
+                filteredAssociations = true;
+            } else {
+                query.addFilterQuery(operand.getGeneQuery(query));
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        switch (operator) {
+            case PHENOTYPE:
+                return mpId;
+            case NOT:
+                return "NOT " + operands.get(0);
+            default:
+                return operands.stream().map(PhenotypeCriteria::toString).collect(Collectors.joining(" " + operator + " ", "(", ")"));
+        }
+    }
+
+
+    // PRIVATE METHODS
+
+
+    private static List<PhenotypeCriteria> toList(PhenotypeCriteria[] operands) {
+        if (operands.length == 0) {
+            throw new IllegalArgumentException("At least one operand is required");
+        }
+
+        return Collections.unmodifiableList(new ArrayList<>(Arrays.asList(operands)));
+    }
+
+    /**
+     * @return true if the criteria can be checked on each association on its own, i.e. without looking at the other
+     * associations of the same gene
+     */
+    private boolean hasAssociationQuery() {
+        switch (operator) {
+            case PHENOTYPE:
+                return true;
+            case OR:
+                return operands.stream().allMatch(PhenotypeCriteria::hasAssociationQuery);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return the query matching the associations that meet the criteria on their own
+     */
+    private String getAssociationQuery() {
+
+        if (operator == Operator.OR) {
+            return operands.stream().map(PhenotypeCriteria::getAssociationQuery).collect(Collectors.joining(" OR ", "(", ")"));
+        }
+
+        String term = "\"" + mpId.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+
+        return "(" + GenotypePhenotypeDTO.MP_TERM_ID + ":" + term +
+                " OR " + GenotypePhenotypeDTO.TOP_LEVEL_MP_TERM_ID + ":" + term +
+                " OR " + GenotypePhenotypeDTO.INTERMEDIATE_MP_TERM_ID + ":" + term + ")";
+    }
+
+    /**
+     * @param query the query the gene query is for; the joined queries are added to it as parameters
+     * @return the query matching all the associations of the genes that meet the criteria
+     */
+    private String getGeneQuery(SolrQuery query) {
+
+        if (hasAssociationQuery()) {
+            String parameter = "gq" + getParameterCount(query);
+            query.set(parameter, getAssociationQuery());
+
+            return "_query_:\"" + String.format(JOIN, parameter) + "\"";
+        }
+
+        switch (operator) {
+            case NOT:
+                return "(*:* -" + operands.get(0).getGeneQuery(query) + ")";
+            case AND:
+                return operands.stream().map(operand -> "+" + operand.getGeneQuery(query)).collect(Collectors.joining(" ", "(", ")"));
+            default:
+                return operands.stream().map(operand -> operand.getGeneQuery(query)).collect(Collectors.joining(" OR ", "(", ")"));
+        }
+    }
+
+    private int getParameterCount(SolrQuery query) {
+        int count = 0;
+        while (query.get("gq" + count) != null) {
+            count++;
+        }
+
+        return count;
+    }
+}
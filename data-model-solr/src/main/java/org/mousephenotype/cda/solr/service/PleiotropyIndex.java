@@ -0,0 +1,245 @@
+/*******************************************************************************
+ * Copyright © 2019 EMBL - European Bioinformatics Institute
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ ******************************************************************************/
+
+package org.mousephenotype.cda.solr.service;
+
+import org.mousephenotype.cda.solr.service.dto.GenotypePhenotypeDTO;
+
+import java.util.*;
+
+/**
+ * The top level MP terms of every gene with a genotype-phenotype association, for the pleiotropy charts.
+ *
+ * Genes and top level terms are numbered densely (genes in order of accession id, terms in order of name), and the
+ * genes of each term are held as a {@link BitSet}, so that selecting genes by term and counting the genes two terms
+ * share are a few word-wise operations. The index is immutable once built, and so safe to share between threads; it is
+ * rebuilt rather than updated when the data changes (see {@link GenotypePhenotypeService#refreshPleiotropyIndex()}).
+ */
+public class PleiotropyIndex {
+
+    private final String[]             accessionIds;
+    private final String[]             symbols;
+    private final Map<String, Integer> genesByAccessionId;
+    private final String[]             termNames;
+    private final Map<String, Integer> termsByNameOrId;
+    private final BitSet[]             genesByTerm;
+    private final BitSet               singleTermGenes;
+
+    // The number of distinct associations of each gene with each term, at [gene * termNames.length + term]
+    private final int[] associationCounts;
+
+
+    private PleiotropyIndex(SortedMap<String, String> symbolsByAccessionId, SortedMap<String, Set<String>> idsByTermName,
+                            Map<String, Set<List<String>>> termNamesByAccessionId) {
+
+        accessionIds = symbolsByAccessionId.keySet().toArray(new String[0]);
+        symbols = symbolsByAccessionId.values().toArray(new String[0]);
+        genesByAccessionId = new HashMap<>();
+        for (int gene = 0; gene < accessionIds.length; gene++) {
+            genesByAccessionId.put(accessionIds[gene], gene);
+        }
+
+        termNames = idsByTermName.keySet().toArray(new String[0]);
+        termsByNameOrId = new HashMap<>();
+        genesByTerm = new BitSet[termNames.length];
+        for (int term = 0; term < termNames.length; term++) {
+            termsByNameOrId.put(termNames[term], term);
+            for (String id : idsByTermName.get(termNames[term])) {
+                termsByNameOrId.put(id, term);
+            }
+            genesByTerm[term] = new BitSet(accessionIds.length);
+        }
+
+        singleTermGenes = new BitSet(accessionIds.length);
+        associationCounts = new int[accessionIds.length * termNames.length];
+        for (int gene = 0; gene < accessionIds.length; gene++) {
+            for (List<String> names : termNamesByAccessionId.get(accessionIds[gene])) {
+                for (String name : names) {
+                    int term = termsByNameOrId.get(name);
+                    genesByTerm[term].set(gene);
+                    associationCounts[gene * termNames.length + term]++;
+                }
+            }
+        }
+        for (int gene = 0; gene < accessionIds.length; gene++) {
+            if (getTerms(gene).cardinality() == 1) {
+                singleTermGenes.set(gene);
+            }
+        }
+    }
+
+
+    /**
+     * @param associations genotype-phenotype associations with their marker accession id, marker symbol, top level MP
+     *                     term names and matching top level MP term ids. Associations without a top level MP term are
+     *                     left out, and associations of a gene with the same top level terms are counted once.
+     */
+    public static PleiotropyIndex build(Iterable<GenotypePhenotypeDTO> associations) {
+
+        SortedMap<String, String>      symbolsByAccessionId   = new TreeMap<>();
+        SortedMap<String, Set<String>> idsByTermName          = new TreeMap<>();
+        Map<String, Set<List<String>>> termNamesByAccessionId = new HashMap<>();
+
+        for (GenotypePhenotypeDTO association : associations) {
+
+            List<String> names = association.getTopLevelMpTermName();
+            if (association.getMarkerAccessionId() == null || names == null || names.isEmpty()) {
+                continue;
+            }
+
+            List<String> ids = association.getTopLevelMpTermId();
+            for (int i = 0; i < names.size(); i++) {
+                Set<String> termIds = idsByTermName.computeIfAbsent(names.get(i), k -> new HashSet<>());
+                if (ids != null && ids.size() == names.size()) {
+                    termIds.add(ids.get(i));
+                }
+            }
+
+            symbolsByAccessionId.putIfAbsent(association.getMarkerAccessionId(), association.getMarkerSymbol());
+            termNamesByAccessionId.computeIfAbsent(association.getMarkerAccessionId(), k -> new HashSet<>()).add(names);
+        }
+
+        return new PleiotropyIndex(symbolsByAccessionId, idsByTermName, termNamesByAccessionId);
+    }
+
+
+    /**
+     * @param topLevelMpTerms the names or ids of the top level MP terms the genes must all have, or null for any terms
+     * @param accessionIds the genes to choose from, or null for all genes
+     * @return the genes in both, possibly none
+     */
+    public BitSet getGenes(Collection<String> topLevelMpTerms, Collection<String> accessionIds) {
+
+        BitSet genes = new BitSet(this.accessionIds.length);
+        if (accessionIds == null) {
+            genes.set(0, this.accessionIds.length);
+        } else {
+            for (String accessionId : accessionIds) {
+                Integer gene = genesByAccessionId.get(accessionId);
+                if (gene != null) {
+                    genes.set(gene);
+                }
+            }
+        }
+
+        if (topLevelMpTerms != null) {
+            for (String name : topLevelMpTerms) {
+                Integer term = termsByNameOrId.get(name);
+                if (term == null) {
+                    return new BitSet();
+                }
+                genes.and(genesByTerm[term]);
+            }
+        }
+
+        return genes;
+    }
+
+    /**
+     * @return the terms any of {@code genes} have
+     */
+    public BitSet getTerms(BitSet genes) {
+
+        BitSet terms = new BitSet(termNames.length);
+        for (int term = 0; term < termNames.length; term++) {
+            if (genesByTerm[term].intersects(genes)) {
+                terms.set(term);
+            }
+        }
+
+        return terms;
+    }
+
+    /**
+     * @return the terms of {@code gene}
+     */
+    public BitSet getTerms(int gene) {
+
+        BitSet terms = new BitSet(termNames.length);
+        for (int term = 0; term < termNames.length; term++) {
+            if (associationCounts[gene * termNames.length + term] > 0) {
+                terms.set(term);
+            }
+        }
+
+        return terms;
+    }
+
+    /**
+     * @return how many of {@code genes} have {@code term}
+     */
+    public int countGenes(BitSet genes, int term) {
+        return countIntersection(genes, genesByTerm[term]);
+    }
+
+    /**
+     * @return how many of {@code genes} have both {@code term} and {@code other}
+     */
+    public int countGenes(BitSet genes, int term, int other) {
+        BitSet both = (BitSet) genesByTerm[term].clone();
+        both.and(genesByTerm[other]);
+
+        return countIntersection(genes, both);
+    }
+
+    /**
+     * @return how many of {@code genes} have {@code term} and no other term
+     */
+    public int countSingleTermGenes(BitSet genes, int term) {
+        BitSet only = (BitSet) genesByTerm[term].clone();
+        only.and(singleTermGenes);
+
+        return countIntersection(genes, only);
+    }
+
+    /**
+     * @return the number of distinct associations of {@code gene} with {@code term}
+     */
+    public int getAssociationCount(int gene, int term) {
+        return associationCounts[gene * termNames.length + term];
+    }
+
+    public String getAccessionId(int gene) {
+        return accessionIds[gene];
+    }
+
+    public String getSymbol(int gene) {
+        return symbols[gene];
+    }
+
+    public String getTermName(int term) {
+        return termNames[term];
+    }
+
+    public int getGeneCount() {
+        return accessionIds.length;
+    }
+
+    public int getTermCount() {
+        return termNames.length;
+    }
+
+
+    // PRIVATE METHODS
+
+
+    private int countIntersection(BitSet first, BitSet second) {
+        BitSet intersection = (BitSet) first.clone();
+        intersection.and(second);
+
+        return intersection.cardinality();
+    }
+}
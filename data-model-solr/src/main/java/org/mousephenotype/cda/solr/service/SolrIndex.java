@@ -21,8 +21,11 @@ import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.SolrRequest.METHOD;
 import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.request.schema.SchemaRequest;
 import org.apache.solr.client.solrj.response.QueryResponse;
 import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.CursorMarkParams;
 import org.mousephenotype.cda.solr.SolrUtils;
 import org.mousephenotype.cda.utilities.HttpProxy;
 import org.slf4j.Logger;
@@ -37,7 +40,10 @@ import javax.validation.constraints.NotNull;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class SolrIndex {
@@ -64,6 +70,8 @@ public class SolrIndex {
 
 	private List<String> phenoStatuses = new ArrayList<String>();
 
+	private final Map<String, String> uniqueKeys = new ConcurrentHashMap<>();
+
 	private Object Json;
 
 
@@ -305,6 +313,64 @@ public class SolrIndex {
 		return getResults(url);
 	}
 
+	/**
+	 * Get a page of rows for saving to an external file, using solr's cursorMark deep paging. Unlike start offsets,
+	 * every page costs the same, and a commit or replication during the export cannot skip or repeat documents.
+	 *
+	 * @param core
+	 *            the solr core to query
+	 * @param gridSolrParams
+	 *            the query parameters. Any start, rows and cursorMark are replaced, and the core's unique key is
+	 *            appended to the sort order as the tie-breaker cursorMark requires.
+	 * @param cursorMark
+	 *            the nextCursorMark of the previous page, or {@link CursorMarkParams#CURSOR_MARK_START}
+	 * @param length
+	 *            how many documents to return
+	 * @return json representation of the results of the solr query, including its nextCursorMark
+	 */
+	public JSONObject getDataTableExportPage(String core, String gridSolrParams, String cursorMark, int length)
+			throws IOException, URISyntaxException, SolrServerException {
+
+		String       uniqueKey = getUniqueKey(core);
+		String       sort      = uniqueKey + " asc";
+		List<String> params    = new ArrayList<>();
+
+		for (String param : gridSolrParams.split("&")) {
+			String[] nameValue = param.split("=", 2);
+			String   name      = nameValue[0];
+
+			if (name.equals(CommonParams.SORT) && (nameValue.length > 1) && ( ! nameValue[1].trim().isEmpty())) {
+				String clauses = URLDecoder.decode(nameValue[1], "UTF-8");
+				sort = (Arrays.stream(clauses.split(",")).anyMatch(clause -> clause.trim().split("\\s+")[0].equals(uniqueKey))
+						? clauses
+						: clauses + "," + sort);
+			} else if ( ! (name.isEmpty() || name.equals(CommonParams.SORT) || name.equals(CommonParams.START)
+					|| name.equals(CommonParams.ROWS) || name.equals(CursorMarkParams.CURSOR_MARK_PARAM))) {
+				params.add(param);
+			}
+		}
+
+		params.add(CommonParams.SORT + "=" + URLEncoder.encode(sort, "UTF-8"));
+		params.add(CommonParams.ROWS + "=" + length);
+		params.add(CursorMarkParams.CURSOR_MARK_PARAM + "=" + URLEncoder.encode(cursorMark, "UTF-8"));
+
+		String url = SolrUtils.getBaseURL(getSolrServer(core)) + "/select?" + StringUtils.join(params, "&");
+
+		System.out.println("Export data URL: " + url);
+		return getResults(url);
+	}
+
+	private String getUniqueKey(String core) throws SolrServerException, IOException {
+
+		String uniqueKey = uniqueKeys.get(core);
+		if (uniqueKey == null) {
+			uniqueKey = new SchemaRequest.UniqueKey().process(getSolrServer(core)).getUniqueKey();
+			uniqueKeys.put(core, uniqueKey);
+		}
+
+		return uniqueKey;
+	}
+
 	public JSONObject getBqDataTableExportRows(String core, String gridFields, String idList)
 			throws IOException, URISyntaxException {
 
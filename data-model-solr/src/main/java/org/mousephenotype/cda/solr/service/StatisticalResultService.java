@@ -36,6 +36,7 @@ import org.mousephenotype.cda.db.repositories.*;
 import org.mousephenotype.cda.enumerations.ObservationType;
 import org.mousephenotype.cda.enumerations.SexType;
 import org.mousephenotype.cda.enumerations.ZygosityType;
+import org.mousephenotype.cda.solr.SolrCursorReader;
 import org.mousephenotype.cda.solr.SolrUtils;
 import org.mousephenotype.cda.solr.generic.util.GeneRowForHeatMap3IComparator;
 import org.mousephenotype.cda.solr.generic.util.PhenotypeFacetResult;
@@ -52,6 +53,7 @@ import org.springframework.stereotype.Service;
 import javax.inject.Inject;
 import javax.validation.constraints.NotNull;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URISyntaxException;
 import java.util.*;
@@ -534,6 +536,118 @@ public class StatisticalResultService extends GenotypePhenotypeService implement
 
 	}
 
+	/**
+	 * Reads what the parallel coordinates of a procedure are computed from, for all the centers and genes at once.
+	 *
+	 * @param procedureStableId the procedure stable id prefix, e.g. IMPC_CBC
+	 * @return the dataset of the procedure, to be passed to {@link #getGenotypeEffectFor(Collection, List, List)}
+	 */
+	public ParallelCoordinatesDataset getParallelCoordinatesDataset(String procedureStableId)
+			throws SolrServerException, IOException {
+
+		String pivot = StatisticalResultDTO.PARAMETER_STABLE_ID + "," + StatisticalResultDTO.PHENOTYPING_CENTER;
+
+		SolrQuery query = new SolrQuery();
+		query.setQuery("*:*");
+		query.addFilterQuery(StatisticalResultDTO.PROCEDURE_STABLE_ID + ":" + procedureStableId + "*");
+		query.addFilterQuery(StatisticalResultDTO.DATA_TYPE + ":unidimensional");
+		query.setRows(0);
+		query.setFacet(true);
+		query.setFacetMinCount(1);
+		query.setFacetLimit(-1);
+		query.addFacetField(StatisticalResultDTO.PARAMETER_STABLE_ID);
+		query.addFacetPivotField(pivot);
+
+		QueryResponse response = statisticalResultCore.query(query);
+
+		Map<String, Set<String>> centersByParameter = new HashMap<>();
+		for (String parameterStableId : getFacets(response).get(StatisticalResultDTO.PARAMETER_STABLE_ID).keySet()) {
+			centersByParameter.put(parameterStableId, new HashSet<>());
+		}
+		for (Map.Entry<String, List<String>> centers : getFacetPivotResults(response, pivot).entrySet()) {
+			centersByParameter.computeIfAbsent(centers.getKey(), k -> new HashSet<>()).addAll(centers.getValue());
+		}
+
+		List<ParameterDTO> parameters = impressService.getParameters(Collections.singletonList(procedureStableId), "unidimensional", null);
+		List<String> parameterStableIds = parameters.stream()
+				.map(ParameterDTO::getStableId)
+				.filter(centersByParameter::containsKey)
+				.distinct()
+				.collect(Collectors.toList());
+
+		List<StatisticalResultDTO> results = new ArrayList<>();
+		if ( ! parameterStableIds.isEmpty()) {
+			query = new SolrQuery();
+			query.setQuery("-" + StatisticalResultDTO.STATISTICAL_METHOD + ":Wilcoxon*"); // See getGenotypeEffectFor
+			query.addFilterQuery(StatisticalResultDTO.PARAMETER_STABLE_ID + ":\"" +
+					StringUtils.join(parameterStableIds, "\" OR " + StatisticalResultDTO.PARAMETER_STABLE_ID + ":\"") + "\"");
+			query.addFilterQuery(StatisticalResultDTO.STATUS + ":Success");
+
+			query.addField(StatisticalResultDTO.DOCUMENT_ID);
+			query.addField(StatisticalResultDTO.GENOTYPE_EFFECT_PARAMETER_ESTIMATE);
+			query.addField(StatisticalResultDTO.MARKER_ACCESSION_ID);
+			query.addField(StatisticalResultDTO.PARAMETER_STABLE_ID);
+			query.addField(StatisticalResultDTO.FEMALE_KO_PARAMETER_ESTIMATE);
+			query.addField(StatisticalResultDTO.MALE_KO_PARAMETER_ESTIMATE);
+			query.addField(StatisticalResultDTO.PHENOTYPING_CENTER);
+			query.addField(StatisticalResultDTO.PROCEDURE_NAME);
+			query.addField(StatisticalResultDTO.MARKER_SYMBOL);
+			query.addField(StatisticalResultDTO.SIGNIFICANT);
+			query.setRows(Integer.MAX_VALUE);
+			query.setSort(StatisticalResultDTO.DOCUMENT_ID, SolrQuery.ORDER.asc);
+
+			results = statisticalResultCore.query(query, SolrRequest.METHOD.POST).getBeans(StatisticalResultDTO.class);
+		}
+
+		return new ParallelCoordinatesDataset(procedureStableId, parameters, centersByParameter, results);
+	}
+
+	/**
+	 * The same as {@link #getGenotypeEffectFor(List, List, Boolean, String, List, String)} with all the parameters
+	 * and no top level MP term, computed from the datasets of the procedures rather than queried from solr.
+	 *
+	 * @param datasets the datasets of the procedures, see {@link #getParallelCoordinatesDataset(String)}
+	 * @param phenotypingCenters the centers to keep, or null or empty for all centers
+	 * @param genes the marker symbols to keep, or null for all genes
+	 */
+	public TreeMap<String, ParallelCoordinatesDTO> getGenotypeEffectFor(Collection<ParallelCoordinatesDataset> datasets,
+																		List<String> phenotypingCenters, List<String> genes) {
+
+		boolean allCenters = (phenotypingCenters == null || phenotypingCenters.isEmpty());
+
+		TreeSet<ParameterDTO> parameterUniqueByStableId = new TreeSet<>(ParameterDTO.getComparatorByName());
+		for (ParallelCoordinatesDataset dataset : datasets) {
+			for (ParameterDTO param : dataset.getParameters()) {
+				Set<String> centers = dataset.getCentersByParameter().get(param.getStableId());
+				if (centers != null && (allCenters || !Collections.disjoint(centers, phenotypingCenters)) && !parameterUniqueByStableId.contains(param)) {
+					parameterUniqueByStableId.add(param);
+				}
+			}
+		}
+
+		List<ParameterDTO> parameters = new ArrayList<>(parameterUniqueByStableId);
+		Map<String, ParameterDTO> parameterMap = new HashMap<>();
+		for (ParameterDTO p: parameterUniqueByStableId){
+			parameterMap.put(p.getStableId(), p);
+		}
+
+		// Procedure ids are prefixes, so the datasets of two procedures may share results
+		List<StatisticalResultDTO> result = datasets.stream()
+				.flatMap(dataset -> dataset.getResults().stream())
+				.filter(doc -> parameterMap.containsKey(doc.getParameterStableId()))
+				.filter(doc -> allCenters || phenotypingCenters.contains(doc.getPhenotypingCenter()))
+				.filter(doc -> genes == null || genes.contains(doc.getMarkerSymbol()))
+				.sorted(Comparator.comparing(StatisticalResultDTO::getDocId, Comparator.nullsLast(Comparator.naturalOrder())))
+				.distinct()
+				.collect(Collectors.toList());
+
+		TreeMap<String, ParallelCoordinatesDTO> row = addMaxGenotypeEffects(result, parameterMap, null);
+		row = addMeanValues(row, parameters);
+		row = addDefaultValues(row, parameters); // add normal/no effect values after mean so that they're not used in the computation
+
+		return row;
+	}
+
 	private Comparator<String> getParallelCoordsComparator(){
 		return (o1, o2) -> {
 			if ((o1.equals(ParallelCoordinatesDTO.DEFAULT) || o1.equals(ParallelCoordinatesDTO.MEAN)) && !o2.equals(ParallelCoordinatesDTO.DEFAULT) && !o2.equals(ParallelCoordinatesDTO.MEAN)){
@@ -1006,6 +1120,92 @@ public class StatisticalResultService extends GenotypePhenotypeService implement
 		return results;
 	}
 
+	/**
+	 * Get the results for several phenotyping centers and zygosities of one
+	 *  allele strain pipeline, parameter, metadata, sex
+	 * in one query, rather than calling {@link #getStatisticalResult} once per center and zygosity.
+	 *
+	 * As with {@link #getStatisticalResult}, at most 10 results are returned per center and zygosity, and only
+	 * unidimensional and categorical results are translated; other types map to empty lists.
+	 *
+	 * @return the results keyed by phenotyping center, then zygosity. Every requested combination is present.
+	 * @throws SolrServerException, IOException
+	 */
+	public Map<String, Map<ZygosityType, List<StatisticalResult>>> getStatisticalResults(
+			String alleleAccession,
+			String strain,
+			Collection<String> phenotypingCenters,
+			String pipelineStableId,
+			String parameterStableId,
+			String metadataGroup,
+			Collection<ZygosityType> zygosities,
+			SexType sex,
+			ObservationType statisticalType) throws SolrServerException, IOException  {
+
+		Map<String, Map<ZygosityType, List<StatisticalResult>>> results = new HashMap<>();
+		for (String phenotypingCenter : phenotypingCenters) {
+			Map<ZygosityType, List<StatisticalResult>> byZygosity = new EnumMap<>(ZygosityType.class);
+			for (ZygosityType zygosity : zygosities) {
+				byZygosity.put(zygosity, new ArrayList<>());
+			}
+			results.put(phenotypingCenter, byZygosity);
+		}
+
+		if (phenotypingCenters.isEmpty() || zygosities.isEmpty()) {
+			return results;
+		}
+
+		SolrQuery query = new SolrQuery()
+				.setQuery("*:*")
+				.addFilterQuery(StatisticalResultDTO.ALLELE_ACCESSION_ID + ":\"" + alleleAccession + "\"")
+				.addFilterQuery(phenotypingCenters.stream()
+						.map(center -> StatisticalResultDTO.PHENOTYPING_CENTER + ":\"" + center + "\"")
+						.collect(Collectors.joining(" OR ")))
+				.addFilterQuery(StatisticalResultDTO.PIPELINE_STABLE_ID + ":" + pipelineStableId)
+				.addFilterQuery(StatisticalResultDTO.PARAMETER_STABLE_ID + ":" + parameterStableId)
+				.addFilterQuery(zygosities.stream()
+						.map(zygosity -> StatisticalResultDTO.ZYGOSITY + ":" + zygosity.name())
+						.collect(Collectors.joining(" OR ")));
+
+		if(strain != null) {
+			query.addFilterQuery(StatisticalResultDTO.STRAIN_ACCESSION_ID + ":\"" + strain + "\"");
+		}
+
+		if(sex != null) {
+			query.addFilterQuery(StatisticalResultDTO.SEX + ":" + sex);
+		}
+
+		if(metadataGroup==null) {
+			// don't add a metadata group filter
+		} else if (metadataGroup.isEmpty()) {
+			query.addFilterQuery(StatisticalResultDTO.METADATA_GROUP + ":\"\"");
+		} else {
+			query.addFilterQuery(StatisticalResultDTO.METADATA_GROUP + ":" + metadataGroup);
+		}
+
+		try {
+			for (StatisticalResultDTO solrResult : new SolrCursorReader<>(statisticalResultCore, query, StatisticalResultDTO.class).uniqueKey(StatisticalResultDTO.DOCUMENT_ID)) {
+
+				Map<ZygosityType, List<StatisticalResult>> byZygosity = results.get(solrResult.getPhenotypingCenter());
+				List<StatisticalResult>                    list       = (byZygosity == null ? null : byZygosity.get(ZygosityType.valueOf(solrResult.getZygosity())));
+				if ((list == null) || (list.size() >= 10)) {
+					continue;
+				}
+
+				if (statisticalType == ObservationType.unidimensional) {
+					list.add(translateStatisticalResultToUnidimensionalResult(solrResult));
+				} else if (statisticalType == ObservationType.categorical) {
+					list.add(translateStatisticalResultToCategoricalResult(solrResult));
+				}
+			}
+
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+
+		return results;
+	}
+
 
 	public Map<String, Set<String>> getAccessionProceduresMap(String resourceName){
 
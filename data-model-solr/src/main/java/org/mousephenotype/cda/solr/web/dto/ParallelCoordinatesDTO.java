@@ -16,11 +16,13 @@
 
 package org.mousephenotype.cda.solr.web.dto;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import org.mousephenotype.cda.solr.service.dto.ParameterDTO;
 import org.mousephenotype.cda.utilities.CommonUtils;
 import org.springframework.boot.configurationprocessor.json.JSONException;
 import org.springframework.boot.configurationprocessor.json.JSONObject;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -109,6 +111,41 @@ public class ParallelCoordinatesDTO {
 
 
 
+	/**
+	 * Writes the row as a JSON object, with the same fields as {@link #toString(boolean)} for all rows.
+	 */
+	public void writeJson(JsonGenerator generator) throws IOException {
+
+		generator.writeStartObject();
+		generator.writeStringField("gene", geneSymbol + "(" + geneAccession + ")");
+		generator.writeStringField("group", group);
+
+		List<Boolean> significant = new ArrayList<>();
+		if (this.values.values().size() > 0){
+
+			List <MaxGenotypeEffectBean> values = new ArrayList<MaxGenotypeEffectBean>(this.values.values());
+			Collections.sort(values, this.values.values().iterator().next().getComparatorByTerry());
+
+			for (MaxGenotypeEffectBean mean : values){
+				generator.writeFieldName(mean.getParameterName());
+				if (mean.genotypeEffect == null) {
+					generator.writeNull();
+				} else {
+					generator.writeNumber(mean.genotypeEffect);
+				}
+				significant.add(mean.getSignificant());
+			}
+		}
+
+		generator.writeArrayFieldStart("significantMask");
+		for (Double mask : CommonUtils.getBitMask(significant)) {
+			generator.writeNumber(mask);
+		}
+		generator.writeEndArray();
+		generator.writeEndObject();
+	}
+
+
 	public boolean isComplete(){
 
 		boolean complete = true;
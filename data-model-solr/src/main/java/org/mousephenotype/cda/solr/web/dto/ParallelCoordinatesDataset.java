@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright © 2019 EMBL - European Bioinformatics Institute
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ ******************************************************************************/
+
+package org.mousephenotype.cda.solr.web.dto;
+
+import org.mousephenotype.cda.solr.service.dto.ParameterDTO;
+import org.mousephenotype.cda.solr.service.dto.StatisticalResultDTO;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Everything the parallel coordinates of one procedure are computed from, for every phenotyping center and gene, so
+ * that the parallel coordinates of any selection of centers and genes can be computed without querying solr (see
+ * {@code StatisticalResultService.getGenotypeEffectFor(Collection, List, List)}).
+ */
+public class ParallelCoordinatesDataset {
+
+    private final String                     procedureStableId;
+    private final List<ParameterDTO>         parameters;
+    private final Map<String, Set<String>>   centersByParameter;
+    private final List<StatisticalResultDTO> results;
+
+    /**
+     * @param parameters the unidimensional parameters of the procedure in IMPReSS
+     * @param centersByParameter the centers with unidimensional results of each parameter of the procedure, by
+     *                           parameter stable id. A parameter with results has an entry even if its results have no
+     *                           center.
+     * @param results the successful results of those parameters, sorted by document id
+     */
+    public ParallelCoordinatesDataset(String procedureStableId, List<ParameterDTO> parameters, Map<String, Set<String>> centersByParameter, List<StatisticalResultDTO> results) {
+        this.procedureStableId = procedureStableId;
+        this.parameters = Collections.unmodifiableList(parameters);
+        this.centersByParameter = Collections.unmodifiableMap(centersByParameter);
+        this.results = Collections.unmodifiableList(results);
+    }
+
+    public String getProcedureStableId() {
+        return procedureStableId;
+    }
+
+    public List<ParameterDTO> getParameters() {
+        return parameters;
+    }
+
+    public Map<String, Set<String>> getCentersByParameter() {
+        return centersByParameter;
+    }
+
+    public List<StatisticalResultDTO> getResults() {
+        return results;
+    }
+}
@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright 2015 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ *******************************************************************************/
+
+package org.mousephenotype.cda.solr;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.beans.Field;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.CursorMarkParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class SolrCursorReaderTest {
+
+    public static class TestBean {
+        @Field("id")
+        public String id;
+    }
+
+    // Serves the ids 0 .. documentCount - 1 in pages, using the id of the last document sent as the next cursorMark,
+    // and records the parameters of every request.
+    private static class PagingSolrClient extends SolrClient {
+        final int              documentCount;
+        final List<SolrParams> requests = new ArrayList<>();
+        boolean                fail     = false;
+
+        PagingSolrClient(int documentCount) {
+            this.documentCount = documentCount;
+        }
+
+        @Override
+        public NamedList<Object> request(SolrRequest solrRequest, String s) throws SolrServerException, IOException {
+            if (fail) {
+                throw new SolrServerException("Simulated failure");
+            }
+
+            // The reader reuses its query for every page, so keep a copy.
+            SolrParams params = new ModifiableSolrParams(solrRequest.getParams());
+            requests.add(params);
+
+            String cursorMark = params.get(CursorMarkParams.CURSOR_MARK_PARAM);
+            int    from       = (cursorMark.equals(CursorMarkParams.CURSOR_MARK_START) ? 0 : Integer.parseInt(cursorMark) + 1);
+            int    to         = Math.min(from + params.getInt(CommonParams.ROWS), documentCount);
+
+            SolrDocumentList documents = new SolrDocumentList();
+            for (int i = from; i < to; i++) {
+                SolrDocument document = new SolrDocument();
+                document.setField("id", Integer.toString(i));
+                documents.add(document);
+            }
+            documents.setNumFound(documentCount);
+
+            // As solr does, return the same cursorMark once there are no more documents.
+            NamedList<Object> response = new NamedList<>();
+            response.add("response", documents);
+            response.add(CursorMarkParams.CURSOR_MARK_NEXT, (to > from ? Integer.toString(to - 1) : cursorMark));
+
+            return response;
+        }
+
+        @Override
+        public void close() {
+
+        }
+    }
+
+    @Test
+    public void testReadsEveryPageUntilTheCursorMarkRepeats() {
+
+        PagingSolrClient core = new PagingSolrClient(25);
+
+        List<String> ids = new SolrCursorReader<>(core, new SolrQuery("*:*"), TestBean.class)
+                .uniqueKey("id")
+                .pageSize(10)
+                .stream()
+                .map(bean -> bean.id)
+                .collect(Collectors.toList());
+
+        assertEquals(25, ids.size());
+        assertEquals("0", ids.get(0));
+        assertEquals("24", ids.get(24));
+
+        // Pages of 10, 10 and 5, then an empty page whose cursorMark is the one sent, which ends the read.
+        assertEquals(4, core.requests.size());
+        assertEquals(CursorMarkParams.CURSOR_MARK_START, core.requests.get(0).get(CursorMarkParams.CURSOR_MARK_PARAM));
+        assertEquals("9", core.requests.get(1).get(CursorMarkParams.CURSOR_MARK_PARAM));
+        assertEquals("24", core.requests.get(3).get(CursorMarkParams.CURSOR_MARK_PARAM));
+    }
+
+    @Test
+    public void testEmptyResult() {
+
+        PagingSolrClient core = new PagingSolrClient(0);
+
+        assertFalse(SolrCursorReader.documents(core, new SolrQuery("*:*")).uniqueKey("id").iterator().hasNext());
+        assertEquals(1, core.requests.size());
+    }
+
+    @Test
+    public void testUniqueKeyIsAddedAsTieBreaker() {
+
+        PagingSolrClient core  = new PagingSolrClient(5);
+        SolrQuery        query = new SolrQuery("*:*").setStart(100).setRows(Integer.MAX_VALUE);
+        query.addSort("p_value", SolrQuery.ORDER.desc);
+
+        SolrCursorReader.documents(core, query).uniqueKey("id").pageSize(3).forEach(document -> { });
+
+        SolrParams first = core.requests.get(0);
+        assertEquals("p_value desc,id asc", first.get(CommonParams.SORT));
+        assertEquals(3, first.getInt(CommonParams.ROWS).intValue());
+        assertNull(first.get(CommonParams.START));
+
+        // The caller's query is left as it was.
+        assertEquals(100, query.getStart().intValue());
+        assertEquals(1, query.getSorts().size());
+    }
+
+    @Test
+    public void testExistingUniqueKeySortIsKept() {
+
+        PagingSolrClient core  = new PagingSolrClient(5);
+        SolrQuery        query = new SolrQuery("*:*");
+        query.addSort("id", SolrQuery.ORDER.desc);
+
+        SolrCursorReader.documents(core, query).uniqueKey("id").forEach(document -> { });
+
+        assertEquals("id desc", core.requests.get(0).get(CommonParams.SORT));
+    }
+
+    @Test
+    public void testSortParameterIsKept() {
+
+        PagingSolrClient core  = new PagingSolrClient(5);
+        SolrQuery        query = new SolrQuery("*:*");
+        query.set(CommonParams.SORT, "p_value desc");
+
+        SolrCursorReader.documents(core, query).uniqueKey("id").forEach(document -> { });
+
+        assertEquals("p_value desc,id asc", core.requests.get(0).get(CommonParams.SORT));
+    }
+
+    @Test(expected = UncheckedIOException.class)
+    public void testSolrErrorIsUnchecked() {
+
+        PagingSolrClient core = new PagingSolrClient(5);
+        core.fail = true;
+
+        SolrCursorReader.documents(core, new SolrQuery("*:*")).uniqueKey("id").iterator().hasNext();
+    }
+}
@@ -0,0 +1,129 @@
+package org.mousephenotype.cda.solr.service;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mousephenotype.cda.solr.service.PhenotypeCriteria.*;
+
+public class PhenotypeCriteriaTest {
+
+    private static final String GLUCOSE   = "MP:0002078";
+    private static final String BODY_SIZE = "MP:0003956";
+    private static final String HEARING   = "MP:0005377";
+    private static final String VISION    = "MP:0005391";
+
+    // The filter on the associations to the phenotype, or to a term below it
+    private static String phenotypeQuery(String term) {
+        return "(mp_term_id:" + term + " OR top_level_mp_term_id:" + term + " OR intermediate_mp_term_id:" + term + ")";
+    }
+
+    private static String associations(String mpId) {
+        return phenotypeQuery("\"" + mpId + "\"");
+    }
+
+    // The join to the associations of the same gene matching the query in parameter gq<n>
+    private static String join(int n) {
+        return "_query_:\"{!join from=marker_accession_id to=marker_accession_id v=$gq" + n + "}\"";
+    }
+
+    private static SolrQuery compile(PhenotypeCriteria criteria) {
+        SolrQuery query = new SolrQuery("*:*");
+        criteria.addFilterQueries(query);
+
+        return query;
+    }
+
+
+    @Test
+    public void testPhenotypeFiltersTheAssociations() {
+
+        SolrQuery query = compile(phenotype(GLUCOSE));
+
+        assertArrayEquals(new String[] { associations(GLUCOSE) }, query.getFilterQueries());
+        assertNull(query.get("gq0"));
+    }
+
+    @Test
+    public void testOrOfPhenotypesFiltersTheAssociations() {
+
+        SolrQuery query = compile(or(phenotype(GLUCOSE), phenotype(BODY_SIZE)));
+
+        assertArrayEquals(new String[] { "(" + associations(GLUCOSE) + " OR " + associations(BODY_SIZE) + ")" }, query.getFilterQueries());
+        assertNull(query.get("gq0"));
+    }
+
+    // The first operand filters the associations directly, the others are joined on the gene
+    @Test
+    public void testAndJoinsTheOtherOperands() {
+
+        SolrQuery query = compile(and(phenotype(GLUCOSE), phenotype(BODY_SIZE), not(phenotype(HEARING))));
+
+        assertArrayEquals(new String[] { associations(GLUCOSE), join(0), "(*:* -" + join(1) + ")" }, query.getFilterQueries());
+        assertEquals(associations(BODY_SIZE), query.get("gq0"));
+        assertEquals(associations(HEARING), query.get("gq1"));
+    }
+
+    @Test
+    public void testTopLevelNot() {
+
+        SolrQuery query = compile(not(phenotype(GLUCOSE)));
+
+        assertArrayEquals(new String[] { "(*:* -" + join(0) + ")" }, query.getFilterQueries());
+        assertEquals(associations(GLUCOSE), query.get("gq0"));
+    }
+
+    @Test
+    public void testNestedCriteria() {
+
+        SolrQuery query = compile(and(
+                not(or(phenotype(GLUCOSE), phenotype(BODY_SIZE))),
+                or(phenotype(HEARING), and(phenotype(VISION), not(phenotype(GLUCOSE))))));
+
+        // No operand can filter the associations on its own, so both are joined
+        assertArrayEquals(new String[] {
+                "(*:* -" + join(0) + ")",
+                "(" + join(1) + " OR (+" + join(2) + " +(*:* -" + join(3) + ")))" }, query.getFilterQueries());
+        assertEquals("(" + associations(GLUCOSE) + " OR " + associations(BODY_SIZE) + ")", query.get("gq0"));
+        assertEquals(associations(HEARING), query.get("gq1"));
+        assertEquals(associations(VISION), query.get("gq2"));
+        assertEquals(associations(GLUCOSE), query.get("gq3"));
+        assertNull(query.get("gq4"));
+    }
+
+    @Test
+    public void testCriteriaAddedToTheSameQueryUseDistinctParameters() {
+
+        SolrQuery query = new SolrQuery("*:*");
+        not(phenotype(GLUCOSE)).addFilterQueries(query);
+        not(phenotype(BODY_SIZE)).addFilterQueries(query);
+
+        assertEquals(Arrays.asList("(*:* -" + join(0) + ")", "(*:* -" + join(1) + ")"), Arrays.asList(query.getFilterQueries()));
+        assertEquals(associations(GLUCOSE), query.get("gq0"));
+        assertEquals(associations(BODY_SIZE), query.get("gq1"));
+    }
+
+    @Test
+    public void testQuotesInIdsAreEscaped() {
+
+        SolrQuery query = compile(and(phenotype("MP:\"0002078"), phenotype("MP:\\\" OR *:*")));
+
+        assertEquals(phenotypeQuery("\"MP:\\\"0002078\""), query.getFilterQueries()[0]);
+        assertEquals(phenotypeQuery("\"MP:\\\\\\\" OR *:*\""), query.get("gq0"));
+    }
+
+    @Test
+    public void testToString() {
+        assertEquals("(MP:0002078 AND NOT (MP:0003956 OR MP:0005377))",
+                     and(phenotype(GLUCOSE), not(or(phenotype(BODY_SIZE), phenotype(HEARING)))).toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOperandIsRequired() {
+        and();
+    }
+}
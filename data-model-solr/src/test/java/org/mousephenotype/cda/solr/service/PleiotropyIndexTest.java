@@ -0,0 +1,160 @@
+package org.mousephenotype.cda.solr.service;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mousephenotype.cda.solr.service.dto.GenotypePhenotypeDTO;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PleiotropyIndexTest {
+
+    private static final String BEHAVIOR    = "behavior/neurological phenotype";
+    private static final String GROWTH      = "growth/size/body region phenotype";
+    private static final String SKELETON    = "skeleton phenotype";
+    private static final String BEHAVIOR_ID = "MP:0004924";
+    private static final String GROWTH_ID   = "MP:0005378";
+    private static final String SKELETON_ID = "MP:0005390";
+
+    // Terms are numbered in order of name, genes in order of accession id
+    private static final int B = 0;
+    private static final int G = 1;
+    private static final int S = 2;
+
+    private PleiotropyIndex index;
+
+
+    private static GenotypePhenotypeDTO association(String accessionId, String symbol, String... termNames) {
+
+        List<String> ids = new ArrayList<>();
+        for (String name : termNames) {
+            ids.add(name.equals(BEHAVIOR) ? BEHAVIOR_ID : (name.equals(GROWTH) ? GROWTH_ID : SKELETON_ID));
+        }
+
+        GenotypePhenotypeDTO association = new GenotypePhenotypeDTO();
+        association.setMarkerAccessionId(accessionId);
+        association.setMarkerSymbol(symbol);
+        association.setTopLevelMpTermName(Arrays.asList(termNames));
+        association.setTopLevelMpTermId(ids);
+
+        return association;
+    }
+
+    private static BitSet bits(int... values) {
+        BitSet bits = new BitSet();
+        for (int value : values) {
+            bits.set(value);
+        }
+
+        return bits;
+    }
+
+    @Before
+    public void setUp() {
+
+        GenotypePhenotypeDTO noTopLevelTerm = new GenotypePhenotypeDTO();
+        noTopLevelTerm.setMarkerAccessionId("MGI:5");
+        noTopLevelTerm.setMarkerSymbol("Eee");
+
+        index = PleiotropyIndex.build(Arrays.asList(
+                association("MGI:4", "Ddd", BEHAVIOR, SKELETON),
+                association("MGI:1", "Aaa", BEHAVIOR, GROWTH),
+                association("MGI:1", "Aaa", BEHAVIOR, GROWTH),
+                association("MGI:1", "Aaa", BEHAVIOR),
+                association("MGI:2", "Bbb", SKELETON),
+                association("MGI:3", "Ccc", BEHAVIOR),
+                association("MGI:3", "Ccc", BEHAVIOR),
+                noTopLevelTerm));
+    }
+
+
+    @Test
+    public void testGenesAndTermsAreNumberedInOrder() {
+
+        assertEquals(4, index.getGeneCount());
+        assertEquals(Arrays.asList("MGI:1", "MGI:2", "MGI:3", "MGI:4"),
+                     Arrays.asList(index.getAccessionId(0), index.getAccessionId(1), index.getAccessionId(2), index.getAccessionId(3)));
+        assertEquals("Ddd", index.getSymbol(3));
+
+        assertEquals(3, index.getTermCount());
+        assertEquals(Arrays.asList(BEHAVIOR, GROWTH, SKELETON), Arrays.asList(index.getTermName(B), index.getTermName(G), index.getTermName(S)));
+    }
+
+    // The cells of the chord diagram: genes with only the term on the diagonal, genes with both terms elsewhere
+    @Test
+    public void testChordDiagramCounts() {
+
+        BitSet genes = index.getGenes(null, null);
+        assertEquals(bits(0, 1, 2, 3), genes);
+        assertEquals(bits(B, G, S), index.getTerms(genes));
+
+        assertEquals(1, index.countSingleTermGenes(genes, B));
+        assertEquals(0, index.countSingleTermGenes(genes, G));
+        assertEquals(1, index.countSingleTermGenes(genes, S));
+
+        assertEquals(1, index.countGenes(genes, B, G));
+        assertEquals(1, index.countGenes(genes, G, B));
+        assertEquals(1, index.countGenes(genes, B, S));
+        assertEquals(0, index.countGenes(genes, G, S));
+
+        assertEquals(3, index.countGenes(genes, B));
+        assertEquals(1, index.countGenes(genes, G));
+        assertEquals(2, index.countGenes(genes, S));
+    }
+
+    @Test
+    public void testFilterByTermNameOrId() {
+
+        assertEquals(bits(1, 3), index.getGenes(Collections.singletonList(SKELETON), null));
+        assertEquals(bits(1, 3), index.getGenes(Collections.singletonList(SKELETON_ID), null));
+
+        // Genes must have all the terms
+        assertEquals(bits(3), index.getGenes(Arrays.asList(BEHAVIOR, SKELETON_ID), null));
+        assertEquals(bits(), index.getGenes(Arrays.asList(GROWTH_ID, SKELETON), null));
+
+        assertEquals(bits(), index.getGenes(Collections.singletonList("MP:0000001"), null));
+
+        // The other terms of the filtered genes are still counted
+        BitSet genes = index.getGenes(Collections.singletonList(GROWTH), null);
+        assertEquals(bits(B, G), index.getTerms(genes));
+        assertEquals(1, index.countGenes(genes, B));
+        assertEquals(0, index.countSingleTermGenes(genes, B));
+    }
+
+    @Test
+    public void testRestrictionToIdgGenes() {
+
+        List<String> idgGenes = Arrays.asList("MGI:3", "MGI:4", "MGI:99");
+
+        assertEquals(bits(2, 3), index.getGenes(null, idgGenes));
+        assertEquals(bits(3), index.getGenes(Collections.singletonList(SKELETON), idgGenes));
+        assertTrue(index.getGenes(null, Collections.emptyList()).isEmpty());
+
+        BitSet genes = index.getGenes(null, idgGenes);
+        assertEquals(bits(B, S), index.getTerms(genes));
+        assertEquals(1, index.countSingleTermGenes(genes, B));
+        assertEquals(0, index.countSingleTermGenes(genes, S));
+    }
+
+    // The counts of the CSV export: distinct associations of each gene with each of its terms
+    @Test
+    public void testAssociationCounts() {
+
+        assertEquals(bits(B, G), index.getTerms(0));
+        assertEquals(2, index.getAssociationCount(0, B));
+        assertEquals(1, index.getAssociationCount(0, G));
+        assertEquals(0, index.getAssociationCount(0, S));
+
+        assertEquals(bits(B), index.getTerms(2));
+        assertEquals(1, index.getAssociationCount(2, B));
+
+        assertEquals(bits(B, S), index.getTerms(3));
+        assertEquals(1, index.getAssociationCount(3, S));
+    }
+}
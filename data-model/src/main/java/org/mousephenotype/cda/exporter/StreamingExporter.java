@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Copyright © 2019 EMBL - European Bioinformatics Institute
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ ******************************************************************************/
+
+package org.mousephenotype.cda.exporter;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Writes a download one row at a time, for exports too large to collect first as {@link Exporter} requires.
+ *
+ * tsv rows go straight to the response. Excel rows are kept in memory only until the next
+ * {@link #EXCEL_ROWS_IN_MEMORY} rows have been written, then spill to a temporary file; the workbook is sent, and the
+ * temporary file deleted, when the exporter is closed.
+ */
+public abstract class StreamingExporter implements AutoCloseable {
+
+    public static final int EXCEL_ROWS_IN_MEMORY = 100;
+
+    protected int rowCount = 0;
+
+    /**
+     * Starts a download.
+     *
+     * @param response {@link HttpServletResponse} to write the download to
+     * @param exportType Type of export. See the ExportType class for valid types
+     * @param filename The name of the download file that will be created
+     * @param headings The headings. If null, no heading is written
+     * @throws IOException if {@code exportType} is not valid
+     */
+    public static StreamingExporter open(HttpServletResponse response, String exportType, String filename, List<String> headings) throws IOException {
+
+        StreamingExporter exporter;
+        if (exportType.toLowerCase().startsWith("xls")) {
+            exporter = new Excel(response, filename);
+        } else if (exportType.toLowerCase().startsWith("tsv")) {
+            exporter = new Tsv(response, filename);
+        } else {
+            throw new IOException("Unknown export filetype " + exportType);
+        }
+
+        if (headings != null) {
+            exporter.writeRow(headings);
+        }
+
+        return exporter;
+    }
+
+    /**
+     * Writes a row of cells.
+     */
+    public void write(List<String> row) throws IOException {
+        writeRow(row);
+        rowCount++;
+    }
+
+    /**
+     * @return the number of rows written, not counting the headings
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Finishes the download.
+     */
+    @Override
+    public abstract void close() throws IOException;
+
+    protected abstract void writeRow(List<String> row) throws IOException;
+
+    private static void setHeaders(HttpServletResponse response, String filename) {
+        response.setHeader("Pragma", "no-cache");
+        response.setHeader("Expires", "0");
+        response.setHeader("Content-disposition", "attachment; filename=" + filename);
+    }
+
+
+    private static class Tsv extends StreamingExporter {
+
+        private final Writer output;
+
+        Tsv(HttpServletResponse response, String filename) throws IOException {
+            setHeaders(response, filename + ".tsv");
+            response.setContentType("text/tab-separated-values; charset=utf-8");
+            output = response.getWriter();
+        }
+
+        @Override
+        protected void writeRow(List<String> row) throws IOException {
+            output.write(String.join("\t", row));
+            output.write("\n");
+        }
+
+        @Override
+        public void close() throws IOException {
+            output.flush();
+            output.close();
+        }
+    }
+
+
+    private static class Excel extends StreamingExporter {
+
+        private final HttpServletResponse response;
+        private final SXSSFWorkbook       workbook = new SXSSFWorkbook(EXCEL_ROWS_IN_MEMORY);
+        private final Sheet               sheet    = workbook.createSheet("Sheet 1");
+        private       int                 nextRow  = 0;
+
+        Excel(HttpServletResponse response, String filename) {
+            this.response = response;
+            setHeaders(response, filename + ".xlsx");
+            response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+        }
+
+        @Override
+        protected void writeRow(List<String> data) {
+            Row row = sheet.createRow(nextRow++);
+            for (int i = 0; i < data.size(); i++) {
+                Cell cell = row.createCell(i, CellType.STRING);
+                cell.setCellValue(data.get(i));
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                workbook.write(response.getOutputStream());
+                workbook.close();
+
+            } finally {
+                workbook.dispose();
+            }
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package org.mousephenotype.cda.owl;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * The transitive closure of an ontology's parent (is_a and part_of) relations, with the term ids mapped to dense ints
+ * so that each term's ancestors, descendants, top levels and intermediate terms are sorted int arrays computed once.
+ *
+ * Lookups by index are array reads: the arrays returned are the index's own and must not be modified. Lookups by id
+ * cost one hash lookup to find the index first.
+ *
+ * Built by {@link OntologyParser}, which uses it to fill the ancestor-derived fields of {@link OntologyTermDTO}
+ * (intermediate and top level ids, names and synonyms). Instances are immutable and safe to share between threads.
+ */
+public class OntologyAncestorIndex implements Serializable {
+
+    private static final long  serialVersionUID = 1L;
+    private static final int[] NONE             = new int[0];
+
+    private final String               prefix;
+    private final String[]             ids;
+    private final Map<String, Integer> indexes;
+    private final int[][]              ancestors;
+    private final int[][]              descendants;
+    private final int[][]              topLevels;
+    private final int[][]              intermediates;
+
+    /**
+     * @param prefix the prefix of the terms followed as ancestors, or null if all were
+     * @param ids the term ids, in index order. Duplicates are not allowed.
+     * @param parents the indexes of each term's direct parents
+     * @param topLevelIds the top level term ids, or null if there are none
+     * @param notIntermediateIds ids never counted as intermediate terms (e.g. the root), when there are top levels
+     */
+    public OntologyAncestorIndex(String prefix, List<String> ids, int[][] parents, Collection<String> topLevelIds, Collection<String> notIntermediateIds) {
+
+        int size = ids.size();
+
+        this.prefix = prefix;
+        this.ids = ids.toArray(new String[0]);
+        this.indexes = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            if (indexes.put(this.ids[i], i) != null) {
+                throw new IllegalArgumentException("Duplicate term id " + this.ids[i]);
+            }
+        }
+
+        ancestors = computeAncestors(parents);
+        descendants = invert(ancestors);
+
+        if (topLevelIds == null) {
+            topLevels = new int[size][];
+            Arrays.fill(topLevels, NONE);
+            intermediates = ancestors;
+
+        } else {
+            BitSet isTopLevel = toBitSet(topLevelIds);
+            BitSet isExcluded = toBitSet(notIntermediateIds);
+            isExcluded.or(isTopLevel);
+
+            topLevels = new int[size][];
+            intermediates = new int[size][];
+            for (int i = 0; i < size; i++) {
+                topLevels[i] = filter(ancestors[i], isTopLevel, true);
+                intermediates[i] = filter(ancestors[i], isExcluded, false);
+            }
+        }
+    }
+
+
+    /**
+     * @return the prefix of the terms followed as ancestors, or null if all were
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * @return the index of {@code id}, or -1 if it is not in the index
+     */
+    public int indexOf(String id) {
+        Integer index = indexes.get(id);
+
+        return (index == null ? -1 : index);
+    }
+
+    public String getId(int index) {
+        return ids[index];
+    }
+
+    /**
+     * @return the indexes of all ancestors of the term at {@code index}, in ascending order. Read-only.
+     */
+    public int[] getAncestors(int index) {
+        return ancestors[index];
+    }
+
+    /**
+     * @return the indexes of all descendants of the term at {@code index}, in ascending order. Read-only.
+     */
+    public int[] getDescendants(int index) {
+        return descendants[index];
+    }
+
+    /**
+     * @return the indexes of the top level terms among the ancestors of the term at {@code index}, in ascending
+     * order. Read-only.
+     */
+    public int[] getTopLevels(int index) {
+        return topLevels[index];
+    }
+
+    /**
+     * @return the indexes of the ancestors of the term at {@code index} that are not top levels, in ascending order.
+     * Read-only.
+     */
+    public int[] getIntermediates(int index) {
+        return intermediates[index];
+    }
+
+    /**
+     * @return true if the term at {@code ancestor} is an ancestor of the term at {@code index}
+     */
+    public boolean isAncestor(int ancestor, int index) {
+        return Arrays.binarySearch(ancestors[index], ancestor) >= 0;
+    }
+
+    /**
+     * @return the ids of all ancestors of {@code id}; empty if it is not in the index
+     */
+    public Set<String> getAncestorIds(String id) {
+        int index = indexOf(id);
+
+        return (index < 0 ? new HashSet<>() : toIds(ancestors[index]));
+    }
+
+    /**
+     * @return the ids of all descendants of {@code id}; empty if it is not in the index
+     */
+    public Set<String> getDescendantIds(String id) {
+        int index = indexOf(id);
+
+        return (index < 0 ? new HashSet<>() : toIds(descendants[index]));
+    }
+
+
+    /**
+     * Follows the parents of each term in turn. The ontologies are small enough (tens of thousands of terms, a few
+     * dozen ancestors each) that this is quicker than merging the parents' closures, and it copes with cycles: a term
+     * on a cycle is its own ancestor, as it is when walking the OWL classes.
+     */
+    private static int[][] computeAncestors(int[][] parents) {
+
+        int     size    = parents.length;
+        int[][] result  = new int[size][];
+        int[]   seenBy  = new int[size];                  // seenBy[j] == i + 1 when j has been reached from i
+        int[]   stack   = new int[size + 1];              // each term is pushed at most once, and i at most twice
+        int[]   found   = new int[size];
+
+        for (int i = 0; i < size; i++) {
+            int top   = 0;
+            int count = 0;
+
+            stack[top++] = i;
+            while (top > 0) {
+                int current = stack[--top];
+                for (int parent : parents[current]) {
+                    if (seenBy[parent] != i + 1) {
+                        seenBy[parent] = i + 1;
+                        found[count++] = parent;
+                        stack[top++] = parent;
+                    }
+                }
+            }
+
+            if (count == 0) {
+                result[i] = NONE;
+            } else {
+                result[i] = Arrays.copyOf(found, count);
+                Arrays.sort(result[i]);
+            }
+        }
+
+        return result;
+    }
+
+    private static int[][] invert(int[][] ancestors) {
+
+        int[] counts = new int[ancestors.length];
+        for (int[] termAncestors : ancestors) {
+            for (int ancestor : termAncestors) {
+                counts[ancestor]++;
+            }
+        }
+
+        int[][] result = new int[ancestors.length][];
+        for (int i = 0; i < ancestors.length; i++) {
+            result[i] = (counts[i] == 0 ? NONE : new int[counts[i]]);
+            counts[i] = 0;
+        }
+
+        // Terms are visited in ascending order, so each descendant array is filled in ascending order.
+        for (int i = 0; i < ancestors.length; i++) {
+            for (int ancestor : ancestors[i]) {
+                result[ancestor][counts[ancestor]++] = i;
+            }
+        }
+
+        return result;
+    }
+
+    private BitSet toBitSet(Collection<String> termIds) {
+        BitSet bits = new BitSet(ids.length);
+        if (termIds != null) {
+            for (String termId : termIds) {
+                int index = indexOf(termId);
+                if (index >= 0) {
+                    bits.set(index);
+                }
+            }
+        }
+
+        return bits;
+    }
+
+    private static int[] filter(int[] indexes, BitSet bits, boolean keepSet) {
+        int[] result = new int[indexes.length];
+        int   count  = 0;
+        for (int index : indexes) {
+            if (bits.get(index) == keepSet) {
+                result[count++] = index;
+            }
+        }
+
+        return (count == 0 ? NONE : (count == indexes.length ? indexes : Arrays.copyOf(result, count)));
+    }
+
+    private Set<String> toIds(int[] indexes) {
+        Set<String> result = new HashSet<>(indexes.length * 2);
+        for (int index : indexes) {
+            result.add(ids[index]);
+        }
+
+        return result;
+    }
+}
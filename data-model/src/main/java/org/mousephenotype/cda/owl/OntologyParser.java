@@ -17,6 +17,7 @@ import uk.ac.manchester.cs.owl.owlapi.OWLObjectPropertyImpl;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 
@@ -44,8 +45,11 @@ public class OntologyParser {
     private Map<String, OWLClass> classMap = new HashMap<>(); // OBO id to OWLClass object. We need this to avoid pre-loading of referrenced classes (MAs from MP)
     private Set<String> termsInSlim; // <ids of classes on slim>
     private TreeSet<String> topLevelIds;
-    private List<OntologyTermDTO> toplevelterms;
+    private volatile List<OntologyTermDTO> toplevelterms;
     private Map<Integer, OntologyTermDTO> nodeTermMap = new HashMap<>(); // <nodeId, ontologyId>
+    private OntologyAncestorIndex ancestorIndex; // closure of the parents with the parser's prefix, for every class
+    private OWLClass[] indexedClasses; // ancestorIndex index to OWLClass, while building the terms
+    private final String pathToOwlFile;
 
     /**
      *
@@ -91,17 +95,20 @@ public class OntologyParser {
     public OntologyParser(String pathToOwlFile, String prefix, Collection<String> topLevelIds, Set<String> wantedIds)
             throws OWLOntologyCreationException, IOException, OWLOntologyStorageException {
 
+        this.pathToOwlFile = pathToOwlFile;
         setUpParser(pathToOwlFile);
 
-        if (wantedIds != null){
-            getTermsInSlim(wantedIds, prefix);
-        }
-
         if (topLevelIds != null) {
             this.topLevelIds = new TreeSet<>(); // sort alphabetically
             this.topLevelIds.addAll(topLevelIds);
         }
 
+        buildAncestorIndex(prefix);
+
+        if (wantedIds != null){
+            getTermsInSlim(wantedIds, prefix);
+        }
+
         OWLReasoner r = null;
         if (pathToOwlFile.contains("mp-hp.owl")) {
             r = new ElkReasonerFactory().createReasoner(ontology);
@@ -176,6 +183,126 @@ public class OntologyParser {
                 LogManager.getLogger("org.semanticweb.elk").setLevel(Level.WARN);
             }
         }
+
+        indexedClasses = null;
+    }
+
+    /**
+     * Restores a parser from a snapshot of one built from {@code pathToOwlFile}. The OWL file is not loaded until a
+     * method that needs the OWL graph (getReferencedClasses, getNarrowSynonyms, fillJsonTreePath, getOwlClass, ...)
+     * is first called.
+     */
+    OntologyParser(String pathToOwlFile, OntologyParserSnapshot snapshot) {
+
+        this.pathToOwlFile = pathToOwlFile;
+        this.termMap = snapshot.termMap;
+        this.termsInSlim = snapshot.termsInSlim;
+        this.topLevelIds = snapshot.topLevelIds;
+        this.nodeTermMap = snapshot.nodeTermMap;
+        this.ancestorIndex = snapshot.ancestorIndex;
+    }
+
+    /**
+     * @return the terms computed by this parser, to be written to disk and restored with {@link #OntologyParser(String, OntologyParserSnapshot)}
+     */
+    OntologyParserSnapshot getSnapshot() {
+        return new OntologyParserSnapshot(termMap, termsInSlim, topLevelIds, nodeTermMap, ancestorIndex);
+    }
+
+    /**
+     * @return a parser of the same OWL file with copies of this parser's terms, which can be changed (e.g. by
+     * {@link #fillJsonTreePath}) without changing the terms of this parser
+     */
+    OntologyParser copy() throws IOException {
+        return new OntologyParser(pathToOwlFile, getSnapshot().copy());
+    }
+
+    /**
+     * Loads the OWL file of a parser restored from a snapshot, and reattaches the OWL classes to its terms.
+     */
+    private synchronized void loadOntology() {
+
+        if (ontology != null) {
+            return;
+        }
+
+        logger.info("Loading {} for a parser restored from a snapshot", pathToOwlFile);
+        try {
+            setUpParser(pathToOwlFile);
+        } catch (OWLOntologyCreationException | OWLOntologyStorageException e) {
+            throw new IllegalStateException("Unable to load ontology file " + pathToOwlFile, e);
+        }
+
+        for (OWLClass cls : ontology.getClassesInSignature()) {
+            OntologyTermDTO term = termMap.get(getIdentifierShortForm(cls));
+            if (term != null) {
+                term.setCls(cls);
+                classMap.put(term.getAccessionId(), cls);
+            }
+        }
+    }
+
+    /**
+     * Maps every class to a dense int and computes the closure of its parents (is_a and part_of) with {@code prefix},
+     * with the top level and intermediate projections, so the terms' ancestor fields are filled from int arrays
+     * rather than by walking the OWL classes term by term.
+     */
+    private void buildAncestorIndex(String prefix) {
+
+        Map<String, Integer> indexes = new HashMap<>();
+        List<String>         ids     = new ArrayList<>();
+        List<OWLClass>       classes = new ArrayList<>();
+        List<Set<Integer>>   parents = new ArrayList<>();
+
+        Set<OWLClass> allClasses = ontology.getClassesInSignature();
+        for (OWLClass cls : allClasses) {
+            String id = getIdentifierShortForm(cls);
+            if ( ! indexes.containsKey(id)) {
+                indexes.put(id, ids.size());
+                ids.add(id);
+                classes.add(cls);
+                parents.add(new HashSet<>());
+            }
+        }
+
+        // Classes sharing a short form (from different namespaces) share an index entry and their parents.
+        for (OWLClass cls : allClasses) {
+            Set<Integer> clsParents = parents.get(indexes.get(getIdentifierShortForm(cls)));
+            for (OWLClass parent : getParents(cls, prefix, true)) {
+                Integer parentIndex = indexes.get(getIdentifierShortForm(parent));
+                if (parentIndex != null) {
+                    clsParents.add(parentIndex);
+                }
+            }
+        }
+
+        int[][] parentIndexes = new int[ids.size()][];
+        for (int i = 0; i < parentIndexes.length; i++) {
+            parentIndexes[i] = parents.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        ancestorIndex = new OntologyAncestorIndex(prefix, ids, parentIndexes, topLevelIds, Collections.singleton("MP:0000001"));
+        indexedClasses = classes.toArray(new OWLClass[0]);
+    }
+
+    /**
+     * @return the closure of the parents (is_a and part_of) of every class in the ontology, restricted to the terms
+     * with this parser's prefix. Ancestor, descendant, top level and intermediate lookups by index are array reads.
+     */
+    public OntologyAncestorIndex getAncestorIndex() {
+        return ancestorIndex;
+    }
+
+    /**
+     * @return the index of {@code cls} in {@link #ancestorIndex}, or -1 if the index is not for {@code prefix} or
+     * has not been built
+     */
+    private int getAncestorIndexOf(OWLClass cls, String prefix) {
+        if ((ancestorIndex == null) || (indexedClasses == null) || ( ! Objects.equals(ancestorIndex.getPrefix(), prefix))) {
+            return -1;
+        }
+
+        return ancestorIndex.indexOf(getIdentifierShortForm(cls));
     }
 
     private void getNextLevelNarrowSynonyms(OWLReasoner r,  OWLClass oc, Integer level, Set<OntologyTermDTO> narrowSynonymClasses ){
@@ -199,13 +326,16 @@ public class OntologyParser {
 
 
     public List<OntologyTermDTO> getTopLevelTerms(){
-        if (toplevelterms == null){
-            toplevelterms = new ArrayList<>();
+        // Parsers are shared between threads, so the list is only published once it is complete.
+        List<OntologyTermDTO> terms = toplevelterms;
+        if (terms == null){
+            terms = new ArrayList<>();
             for (String topLevelId : topLevelIds){
-                toplevelterms.add(termMap.get(topLevelId));
+                terms.add(termMap.get(topLevelId));
             }
+            toplevelterms = terms;
         }
-        return toplevelterms;
+        return terms;
 
     }
 
@@ -216,6 +346,7 @@ public class OntologyParser {
      */
     public void fillJsonTreePath(String rootId, String pathToPage,  Map<String, Integer>  countsMap, List<String> treeBrowserTopLevels, Boolean withPartOf) throws JSONException {
 
+        loadOntology();
         OWLClass root = classMap.get(rootId);
         // fill lists with nodes on path
         fillJsonTreePath(root, new ArrayList<>(), withPartOf, rootId);
@@ -338,7 +469,7 @@ public class OntologyParser {
 
         ontology = setUpOntology(manager, pathToOwlFile);
 
-        ancestorsCache = new HashMap<>();
+        ancestorsCache = new ConcurrentHashMap<>();
     }
 
     private OWLOntology setUpOntology(OWLOntologyManager manager, String pathToOwlFile) throws OWLOntologyStorageException{
@@ -377,6 +508,7 @@ public class OntologyParser {
      */
     public Set<String> getNarrowSynonyms(OntologyTermDTO cls, int maxLevels){
 
+        loadOntology();
         Set<OWLClass> descendents = new HashSet<>();
         TreeSet<String> res = new TreeSet<String>();
         descendents = getDescendentsPartOf(cls.getCls(), 1, 0, descendents);
@@ -545,6 +677,7 @@ public class OntologyParser {
 
     public Set<String> getReferencedClasses(String clsId, Set<OWLObjectPropertyImpl> viaProperties, String prefixOfReferrencedClass){
 
+        loadOntology();
         Set<OWLClass> res = new HashSet<>();
 
         if (classMap.containsKey(clsId)) {
@@ -627,7 +760,14 @@ public class OntologyParser {
             if (wantedIDs.contains(getIdentifierShortForm(cls))) {
                 if (startsWithPrefix(cls, prefix)) {
                     classesInSlim.add(getIdentifierShortForm(cls));
-                    classesInSlim.addAll(getClassAncestors(cls, prefix).stream().map(item -> {return getIdentifierShortForm(item);}).collect(Collectors.toSet()));
+                    int index = getAncestorIndexOf(cls, prefix);
+                    if (index >= 0) {
+                        for (int ancestor : ancestorIndex.getAncestors(index)) {
+                            classesInSlim.add(ancestorIndex.getId(ancestor));
+                        }
+                    } else {
+                        classesInSlim.addAll(getClassAncestors(cls, prefix).stream().map(item -> {return getIdentifierShortForm(item);}).collect(Collectors.toSet()));
+                    }
                 }
             }
         }
@@ -639,6 +779,7 @@ public class OntologyParser {
     }
 
     protected OWLClass getOwlClass(String shortFormId){
+        loadOntology();
         return classMap.get(shortFormId);
     }
 
@@ -648,7 +789,7 @@ public class OntologyParser {
      * @param prefix
      * @return
      */
-    private Set<OWLClass> getClassAncestors(OWLClass cls, String prefix){
+    protected Set<OWLClass> getClassAncestors(OWLClass cls, String prefix){
 
         if( ancestorsCache.containsKey(getIdentifierShortForm(cls))){
             return ancestorsCache.get(getIdentifierShortForm(cls));
@@ -664,6 +805,7 @@ public class OntologyParser {
 
     protected String getXref(OWLClass cls,  String prefixOfCrossRef) {
 
+        loadOntology();
         if (!cls.getIRI().isNothing() && EntitySearcher.getAnnotations(cls, ontology, X_REF) != null) {
             for (OWLAnnotation annotation : EntitySearcher.getAnnotations(cls, ontology, X_REF)) {
                 if (annotation.getValue() instanceof OWLLiteral) {
@@ -743,6 +885,14 @@ public class OntologyParser {
 
     private void addTopLevelInfo (OWLClass cls, OntologyTermDTO term, String prefix){
 
+        int index = getAncestorIndexOf(cls, prefix);
+        if (index >= 0) {
+            for (int topLevel : ancestorIndex.getTopLevels(index)) {
+                addTopLevel(term, indexedClasses[topLevel]);
+            }
+            return;
+        }
+
         Set<OWLClass> classAncestors = getClassAncestors(cls, prefix);
         if (classAncestors != null && topLevelIds != null) {
             // Intersect list of ancestors with list of top Levels
@@ -751,15 +901,19 @@ public class OntologyParser {
                         return topLevelIds.contains(getIdentifierShortForm(item)); // filter out ancestors that are not top levels
                     }).collect(Collectors.toSet());
             for (OWLClass topLevel : localTopLevels) {
-                term.addTopLevelId(getIdentifierShortForm(topLevel));
-                term.addTopLevelName(getLabel(topLevel));
-                term.addTopLevelSynonym(getSynonyms(topLevel));
-                term.addTopLevelTermIdsConcatenated(getLabel(topLevel), getIdentifierShortForm(topLevel));
+                addTopLevel(term, topLevel);
             }
         }
 
     }
 
+    private void addTopLevel(OntologyTermDTO term, OWLClass topLevel){
+        term.addTopLevelId(getIdentifierShortForm(topLevel));
+        term.addTopLevelName(getLabel(topLevel));
+        term.addTopLevelSynonym(getSynonyms(topLevel));
+        term.addTopLevelTermIdsConcatenated(getLabel(topLevel), getIdentifierShortForm(topLevel));
+    }
+
     /**
      * [!] At the moment this adds ancestors - topLevels . So it can adds terms on top of the higher level too.
      * @param cls
@@ -768,6 +922,14 @@ public class OntologyParser {
      */
     private void addIntermediateInfo(OWLClass cls, OntologyTermDTO term, String prefix ){
 
+        int index = getAncestorIndexOf(cls, prefix);
+        if (index >= 0) {
+            for (int intermediate : ancestorIndex.getIntermediates(index)) {
+                addIntermediate(term, indexedClasses[intermediate]);
+            }
+            return;
+        }
+
         Set<OWLClass> classAncestors = getClassAncestors(cls, prefix);
         if (classAncestors != null) {
             Set<OWLClass> intermediates = classAncestors;
@@ -781,14 +943,18 @@ public class OntologyParser {
             }
 
             for (OWLClass intermediateTerm : intermediates) {
-                term.addIntermediateIds(getIdentifierShortForm(intermediateTerm));
-                term.addIntermediateNames(getLabel(intermediateTerm));
-                term.addIntermediateSynonyms(getSynonyms(intermediateTerm));
+                addIntermediate(term, intermediateTerm);
             }
         }
 
     }
 
+    private void addIntermediate(OntologyTermDTO term, OWLClass intermediateTerm){
+        term.addIntermediateIds(getIdentifierShortForm(intermediateTerm));
+        term.addIntermediateNames(getLabel(intermediateTerm));
+        term.addIntermediateSynonyms(getSynonyms(intermediateTerm));
+    }
+
 
     /**
      * @param term
@@ -805,6 +971,7 @@ public class OntologyParser {
 
     protected Set<OWLClass> getParents(OWLClass cls, String prefix, Boolean partOfToo){
 
+        loadOntology();
         Set<OWLClass> res = new HashSet<>();
         for (OWLClassExpression classExpression : EntitySearcher.getSuperClasses(cls, ontology)){
             if (classExpression.isClassExpressionLiteral() && startsWithPrefix(classExpression.asOWLClass(), prefix)){
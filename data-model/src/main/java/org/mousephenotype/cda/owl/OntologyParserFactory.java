@@ -19,37 +19,80 @@ import uk.ac.manchester.cs.owl.owlapi.OWLObjectPropertyImpl;
 
 import javax.sql.DataSource;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 /**
  * Created by ilinca on 29/03/2017.
  */
 /**
  * pdsimplify: This class refers to old Phenodigm objects or db
+ *
+ * Parsers are shared process-wide: asking any factory for a parser of the same OWL file with the same prefix, top
+ * levels and wanted ids returns the same instance, so indexers running in one JVM parse each ontology once. Callers
+ * must therefore treat the parsers, and the terms they return, as read-only.
+ *
+ * Parsed terms are also written to a snapshot in {@code snapshotDir}, named by the checksum of the OWL file and the
+ * parser arguments, from which later runs restore the parser without loading and reasoning over the OWL file. A
+ * changed OWL file has a new checksum and so is parsed again; old snapshots are never read again and may be deleted.
  */
 public class OntologyParserFactory {
 
+    public static final String DEFAULT_SNAPSHOT_DIR = ".snapshots";
+
+    private static final ConcurrentMap<String, FutureTask<OntologyParser>> parsers = new ConcurrentHashMap<>();
+
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
     private String owlpath;
     private DataSource komp2DataSource;
+    private File snapshotDir;
 
     @Autowired
     @Qualifier("phenodigmCore")
     SolrClient phenodigmCore;
 
 
+    /**
+     * Snapshots are kept in {@code owlpath}/{@value #DEFAULT_SNAPSHOT_DIR}.
+     */
     public OntologyParserFactory(DataSource komp2DataSource, String owlpath){
 
+        this(komp2DataSource, owlpath, new File(owlpath, DEFAULT_SNAPSHOT_DIR));
+    }
+
+    /**
+     * @param snapshotDir where to keep parser snapshots. If null, parsers are always built from the OWL files and no
+     *                    snapshots are written.
+     */
+    public OntologyParserFactory(DataSource komp2DataSource, String owlpath, File snapshotDir){
+
         this.komp2DataSource = komp2DataSource;
         this.owlpath = owlpath;
+        this.snapshotDir = snapshotDir;
 
     }
 
+    /**
+     * Drops the shared parsers, so that the next request for each builds or restores it again (e.g. after the OWL
+     * files have been downloaded anew, or to release their memory).
+     */
+    public static void clearParsers() {
+        parsers.clear();
+    }
+
     // Properties we want to follow to get MA terms form MP
     public static final Set<OWLObjectPropertyImpl> VIA_PROPERTIES = new HashSet<>(Arrays.asList(new OWLObjectPropertyImpl(IRI.create("http://purl.obolibrary.org/obo/BFO_0000052")),
             new OWLObjectPropertyImpl(IRI.create("http://purl.obolibrary.org/obo/BFO_0000070")),
@@ -82,47 +125,192 @@ public class OntologyParserFactory {
 
     // These parsers are used by several indexers so it makes sense to initialize them in one place, so that they don't get out of synch.
     public OntologyParser getMpParser() throws OWLOntologyCreationException, OWLOntologyStorageException, IOException, SQLException {
-        return  new OntologyParser(owlpath + "/mp.owl", "MP", TOP_LEVEL_MP_TERMS, getWantedMPIds());
+        return getParser("mp.owl", "MP", TOP_LEVEL_MP_TERMS, getWantedMPIds(), null);
     }
 
     public OntologyParser getMpMaParser() throws OWLOntologyCreationException, OWLOntologyStorageException, IOException {
-        return new OntologyParser(owlpath + "/mp-ext-merged.owl", "MP", null, null);
+        return getParser("mp-ext-merged.owl", "MP", null, null, null);
     }
 
     public OntologyParser getMpHpParser() throws OWLOntologyCreationException, OWLOntologyStorageException, IOException, SQLException {
-        return new OntologyParser(owlpath + "/mp-hp.owl", "MP", null, null);
+        return getParser("mp-hp.owl", "MP", null, null, null);
     }
 
     public OntologyParser getMaParser() throws OWLOntologyCreationException, OWLOntologyStorageException, IOException, SQLException {
-        return new OntologyParser(owlpath + "/ma.owl", "MA", TOP_LEVEL_MA_TERMS, getMaWantedIds());
+        return getParser("ma.owl", "MA", TOP_LEVEL_MA_TERMS, getMaWantedIds(), null);
     }
 
     public OntologyParser getHpParser() throws OWLOntologyCreationException, OWLOntologyStorageException, IOException, SQLException {
-        return new OntologyParser(owlpath + "/hp.owl", "HP", TOP_LEVEL_HP_TERMS, getHpWantedIds());
+        return getParser("hp.owl", "HP", TOP_LEVEL_HP_TERMS, getHpWantedIds(), null);
     }
 
     public OntologyParser getEmapaParser() throws OWLOntologyCreationException, OWLOntologyStorageException, IOException, SQLException {
-        return new OntologyParser(owlpath + "/emapa.owl", "EMAPA", TOP_LEVEL_EMAPA_TERMS, getEmapaWantedIds());
+        return getParser("emapa.owl", "EMAPA", TOP_LEVEL_EMAPA_TERMS, getEmapaWantedIds(), null);
     }
 
     public OntologyParser getUberonParser() throws OWLOntologyCreationException, OWLOntologyStorageException, IOException, SQLException {
-        return new OntologyParser(owlpath + "/uberon.owl", "UBERON", null, null);
+        return getParser("uberon.owl", "UBERON", null, null, null);
     }
 
+    // The tree json is added to the terms, so the parsers with trees are kept apart from the plain ones.
     public OntologyParser getMaParserWithTreeJson() throws OWLOntologyStorageException, IOException, SQLException, OWLOntologyCreationException, JSONException {
 
-        OntologyParser parser = getMaParser();
-        parser.fillJsonTreePath("MA:0002405", "/data/anatomy/", null, TREE_TOP_LEVEL_MA_TERMS, true); // postnatal mouse
-        return parser;
+        return getParser("ma.owl", "MA", TOP_LEVEL_MA_TERMS, getMaWantedIds(),
+                         parser -> parser.fillJsonTreePath("MA:0002405", "/data/anatomy/", null, TREE_TOP_LEVEL_MA_TERMS, true)); // postnatal mouse
     }
 
     public OntologyParser getEmapaParserWithTreeJson() throws OWLOntologyStorageException, IOException, SQLException, OWLOntologyCreationException, JSONException {
 
-        OntologyParser parser = getEmapaParser();
-        parser.fillJsonTreePath("EMAPA:25765", "/data/anatomy/", null, TREE_TOP_LEVEL_EMAPA_TERMS, true); // mouse
+        return getParser("emapa.owl", "EMAPA", TOP_LEVEL_EMAPA_TERMS, getEmapaWantedIds(),
+                         parser -> parser.fillJsonTreePath("EMAPA:25765", "/data/anatomy/", null, TREE_TOP_LEVEL_EMAPA_TERMS, true)); // mouse
+    }
+
+    /**
+     * The MP tree json holds the caller's counts, so unlike the MA and EMAPA tree parsers this one is not shared: each
+     * call returns a parser of the caller's own, copied from the shared MP parser, with its tree json filled from
+     * {@code countsMap}.
+     */
+    public OntologyParser getMpParserWithTreeJson(Map<String, Integer> countsMap) throws OWLOntologyStorageException, IOException, SQLException, OWLOntologyCreationException, JSONException {
+
+        OntologyParser parser = getMpParser().copy();
+        parser.fillJsonTreePath("MP:0000001", "/data/phenotypes/", countsMap, TOP_LEVEL_MP_TERMS, false);
+
         return parser;
     }
 
+
+    private interface TreeFiller {
+        void fill(OntologyParser parser) throws JSONException;
+    }
+
+    /**
+     * @return the shared parser for these arguments, restoring it from its snapshot or building it (and writing the
+     * snapshot) if this is the first request for it
+     */
+    private OntologyParser getParser(String owlFilename, String prefix, Collection<String> topLevelIds, Set<String> wantedIds, TreeFiller treeFiller)
+            throws OWLOntologyCreationException, OWLOntologyStorageException, IOException {
+
+        File   owlFile   = new File(owlpath, owlFilename);
+        String arguments = prefix + "|"
+                + (topLevelIds == null ? null : new TreeSet<>(topLevelIds)) + "|"
+                + (wantedIds == null ? null : new TreeSet<>(wantedIds)) + "|"
+                + (treeFiller != null);
+        String key       = sha256((owlFile.getAbsolutePath() + "|" + owlFile.lastModified() + "|" + owlFile.length() + "|" + arguments).getBytes(StandardCharsets.UTF_8));
+
+        FutureTask<OntologyParser> task     = new FutureTask<>(() -> loadParser(owlFile, prefix, topLevelIds, wantedIds, treeFiller, arguments));
+        FutureTask<OntologyParser> existing = parsers.putIfAbsent(key, task);
+        if (existing == null) {
+            existing = task;
+            task.run();
+        }
+
+        try {
+            return existing.get();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading " + owlFile, e);
+
+        } catch (ExecutionException e) {
+            parsers.remove(key, existing);
+
+            Throwable cause = e.getCause();
+            if (cause instanceof OWLOntologyCreationException) {
+                throw (OWLOntologyCreationException) cause;
+            } else if (cause instanceof OWLOntologyStorageException) {
+                throw (OWLOntologyStorageException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException("Unable to load " + owlFile, cause);
+        }
+    }
+
+    private OntologyParser loadParser(File owlFile, String prefix, Collection<String> topLevelIds, Set<String> wantedIds, TreeFiller treeFiller, String arguments)
+            throws OWLOntologyCreationException, OWLOntologyStorageException, IOException, JSONException {
+
+        File snapshotFile = null;
+
+        if (snapshotDir != null) {
+            String checksum = sha256(owlFile, arguments);
+            snapshotFile = new File(snapshotDir, owlFile.getName() + "." + checksum.substring(0, 32) + ".ser.gz");
+
+            if (snapshotFile.exists()) {
+                try {
+                    OntologyParser parser = new OntologyParser(owlFile.getPath(), OntologyParserSnapshot.read(snapshotFile));
+                    logger.info("Restored {} parser from snapshot {}", owlFile.getName(), snapshotFile);
+
+                    return parser;
+
+                } catch (IOException e) {
+                    logger.warn("Unable to restore {} parser from snapshot {}. Parsing the OWL file instead. Reason: {}", owlFile.getName(), snapshotFile, e.getLocalizedMessage());
+                }
+            }
+        }
+
+        // The parser adds to and removes from wantedIds, so give it a copy.
+        OntologyParser parser = new OntologyParser(owlFile.getPath(), prefix, topLevelIds, (wantedIds == null ? null : new HashSet<>(wantedIds)));
+        if (treeFiller != null) {
+            treeFiller.fill(parser);
+        }
+
+        if (snapshotFile != null) {
+            try {
+                parser.getSnapshot().write(snapshotFile);
+                logger.info("Wrote {} parser snapshot {}", owlFile.getName(), snapshotFile);
+
+            } catch (IOException e) {
+                logger.warn("Unable to write {} parser snapshot {}. Reason: {}", owlFile.getName(), snapshotFile, e.getLocalizedMessage());
+            }
+        }
+
+        return parser;
+    }
+
+    /**
+     * @return the hex SHA-256 of the contents of {@code file} followed by {@code suffix}
+     */
+    private static String sha256(File file, String suffix) throws IOException {
+
+        MessageDigest digest = newSha256();
+        byte[]        buffer = new byte[64 * 1024];
+
+        try (InputStream in = new FileInputStream(file)) {
+            int count;
+            while ((count = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, count);
+            }
+        }
+        digest.update(suffix.getBytes(StandardCharsets.UTF_8));
+
+        return toHex(digest.digest());
+    }
+
+    private static String sha256(byte[] bytes) {
+        return toHex(newSha256().digest(bytes));
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);             // Every JVM has SHA-256.
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+
+        return hex.toString();
+    }
+
     protected Set<String> getHpWantedIds() throws SQLException, OWLOntologyCreationException, OWLOntologyStorageException, IOException {
 
         OntologyParser mpParser = getMpParser();
@@ -0,0 +1,89 @@
+package org.mousephenotype.cda.owl;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The terms an {@link OntologyParser} computed from its OWL file (term map with synonyms, ancestors, top levels and,
+ * if filled, tree paths and json; the slim; the top level ids; the ancestor index), written to disk so that a later
+ * run can restore the parser without loading the OWL file and reasoning over it again.
+ *
+ * A snapshot does not record which OWL file it came from; the file it is kept in must be named so that it changes
+ * when the OWL file or the parser arguments change (see {@link OntologyParserFactory}).
+ */
+class OntologyParserSnapshot implements Serializable {
+
+    private static final long serialVersionUID = 2L;
+
+    final Map<String, OntologyTermDTO>  termMap;
+    final Set<String>                   termsInSlim;
+    final TreeSet<String>               topLevelIds;
+    final Map<Integer, OntologyTermDTO> nodeTermMap;
+    final OntologyAncestorIndex         ancestorIndex;
+
+    OntologyParserSnapshot(Map<String, OntologyTermDTO> termMap, Set<String> termsInSlim, TreeSet<String> topLevelIds, Map<Integer, OntologyTermDTO> nodeTermMap, OntologyAncestorIndex ancestorIndex) {
+        this.termMap = termMap;
+        this.termsInSlim = termsInSlim;
+        this.topLevelIds = topLevelIds;
+        this.nodeTermMap = nodeTermMap;
+        this.ancestorIndex = ancestorIndex;
+    }
+
+    /**
+     * @return the snapshot in {@code file}
+     * @throws IOException if the file cannot be read or was written by an incompatible version of this class
+     */
+    static OntologyParserSnapshot read(File file) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new GZIPInputStream(new BufferedInputStream(new FileInputStream(file))))) {
+            return (OntologyParserSnapshot) in.readObject();
+
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Unable to read ontology snapshot " + file, e);
+        }
+    }
+
+    /**
+     * @return a deep copy of the snapshot, whose terms can be changed without changing these
+     */
+    OntologyParserSnapshot copy() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(this);
+        }
+
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return (OntologyParserSnapshot) in.readObject();
+
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unable to copy ontology snapshot", e);
+        }
+    }
+
+    /**
+     * Writes the snapshot to a temporary file next to {@code file}, then moves it into place, so that other processes
+     * never read a partly-written snapshot.
+     */
+    void write(File file) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (( ! dir.isDirectory()) && ( ! dir.mkdirs())) {
+            throw new IOException("Unable to create ontology snapshot directory " + dir);
+        }
+
+        File temp = File.createTempFile(file.getName(), ".tmp", dir);
+        try {
+            try (ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(temp))))) {
+                out.writeObject(this);
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+}
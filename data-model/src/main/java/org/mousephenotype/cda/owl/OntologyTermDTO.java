@@ -2,12 +2,15 @@ package org.mousephenotype.cda.owl;
 
 import org.semanticweb.owlapi.model.OWLClass;
 
+import java.io.Serializable;
 import java.util.*;
 
 /**
  * Created by ilinca on 10/08/2016.
  */
-public class OntologyTermDTO {
+public class OntologyTermDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     String               accessionId;
     String               name;
@@ -32,7 +35,7 @@ public class OntologyTermDTO {
     String              replacementAccessionId;
     String              definition;
     boolean             isObsolete;
-    OWLClass            cls;
+    transient OWLClass  cls;                    // not kept in parser snapshots; see OntologyParser
     Map<Integer, List<Integer>> pathsToRoot; // <nodeId, <nodeids>>
     String              seachJson;
     String              childrenJson;
@@ -0,0 +1,78 @@
+package org.mousephenotype.cda.exporter;
+
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Test;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import java.io.*;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class StreamingExporterTest {
+
+    private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+    private final Map<String, String>   headers = new HashMap<>();
+
+
+    @Test
+    public void tsv() throws IOException {
+
+        try (StreamingExporter exporter = StreamingExporter.open(response(), "tsv", "genes", Arrays.asList("Gene symbol", "Gene id"))) {
+            exporter.write(Arrays.asList("Cib2", "MGI:1929293"));
+            exporter.write(Arrays.asList("Akt2", "MGI:104874"));
+            assertEquals(2, exporter.getRowCount());
+        }
+
+        assertEquals("attachment; filename=genes.tsv", headers.get("Content-disposition"));
+        assertEquals("Gene symbol\tGene id\nCib2\tMGI:1929293\nAkt2\tMGI:104874\n", new String(content.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void excelRowsSpillToDisk() throws IOException {
+
+        int rows = StreamingExporter.EXCEL_ROWS_IN_MEMORY * 3;
+        try (StreamingExporter exporter = StreamingExporter.open(response(), "xls", "genes", Arrays.asList("Gene symbol", "Gene id"))) {
+            for (int i = 0; i < rows; i++) {
+                exporter.write(Arrays.asList("gene " + i, "MGI:" + i));
+            }
+        }
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(content.toByteArray()))) {
+            Sheet sheet = workbook.getSheetAt(0);
+            assertEquals(rows, sheet.getLastRowNum());
+            assertEquals("Gene id", sheet.getRow(0).getCell(1).getStringCellValue());
+            assertEquals("MGI:" + (rows - 1), sheet.getRow(rows).getCell(1).getStringCellValue());
+        }
+    }
+
+
+    /**
+     * A response that keeps the headers and the content written, and does nothing else.
+     */
+    private HttpServletResponse response() {
+
+        ServletOutputStream outputStream = new ServletOutputStream() {
+            @Override public boolean isReady() { return true; }
+            @Override public void setWriteListener(WriteListener writeListener) { }
+            @Override public void write(int b) { content.write(b); }
+        };
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+
+        return (HttpServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { HttpServletResponse.class }, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "setHeader":       headers.put((String) args[0], (String) args[1]); return null;
+                case "getOutputStream": return outputStream;
+                case "getWriter":       return writer;
+                default:                return null;
+            }
+        });
+    }
+}
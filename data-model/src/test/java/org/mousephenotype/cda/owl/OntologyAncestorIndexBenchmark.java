@@ -0,0 +1,157 @@
+package org.mousephenotype.cda.owl;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.semanticweb.owlapi.model.OWLClass;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares ancestor lookups through the OWL classes (memoized in the parser's ancestorsCache) with lookups in the
+ * {@link OntologyAncestorIndex}, on a generated MP-sized ontology.
+ *
+ * Run the main method from the test classpath (e.g. from the IDE). Not run by the build.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OntologyAncestorIndexBenchmark {
+
+    private static final int TERMS   = 13000;
+    private static final int LOOKUPS = 1000;
+
+    private OntologyParser        parser;
+    private OntologyAncestorIndex index;
+    private OWLClass[]            classes;
+    private int[]                 indexes;
+    private int[]                 candidates;
+    private File                  owl;
+
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(OntologyAncestorIndexBenchmark.class.getSimpleName()).build()).run();
+    }
+
+
+    @Setup
+    public void setUp() throws Exception {
+
+        owl = writeOntology();
+        parser = new OntologyParser(owl.getPath(), "MP", Arrays.asList("MP:0000002", "MP:0000003", "MP:0000004"), null);
+        index = parser.getAncestorIndex();
+
+        Random random = new Random(42);
+        classes = new OWLClass[LOOKUPS];
+        indexes = new int[LOOKUPS];
+        candidates = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            String id = termId(1 + random.nextInt(TERMS));
+            classes[i] = parser.getOwlClass(id);
+            indexes[i] = index.indexOf(id);
+            candidates[i] = index.indexOf(termId(1 + random.nextInt(100)));
+
+            parser.getClassAncestors(classes[i], "MP");               // warm the cache, as the indexers' lookups would
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        owl.delete();
+    }
+
+
+    @Benchmark
+    public int owlAncestors() {
+        int count = 0;
+        for (OWLClass cls : classes) {
+            count += parser.getClassAncestors(cls, "MP").size();
+        }
+
+        return count;
+    }
+
+    @Benchmark
+    public int indexAncestors() {
+        int count = 0;
+        for (int i : indexes) {
+            count += index.getAncestors(i).length;
+        }
+
+        return count;
+    }
+
+    @Benchmark
+    public int owlIsAncestor() {
+        int count = 0;
+        for (int i = 0; i < LOOKUPS; i++) {
+            if (parser.getClassAncestors(classes[i], "MP").contains(parser.getOwlClass(index.getId(candidates[i])))) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    @Benchmark
+    public int indexIsAncestor() {
+        int count = 0;
+        for (int i = 0; i < LOOKUPS; i++) {
+            if (index.isAncestor(candidates[i], indexes[i])) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+
+    /**
+     * A random DAG under MP:0000001, each term having one or two parents among the terms an eighth to a quarter of
+     * the way back, so that the graph is about as deep as MP and terms have up to a few dozen ancestors.
+     */
+    private static File writeOntology() throws IOException {
+
+        File   file   = File.createTempFile("mp-benchmark", ".owl");
+        Random random = new Random(7);
+
+        try (Writer writer = new FileWriter(file)) {
+            writer.write("Prefix(:=<http://purl.obolibrary.org/obo/>)\n");
+            writer.write("Prefix(rdfs:=<http://www.w3.org/2000/01/rdf-schema#>)\n");
+            writer.write("Ontology(<http://purl.obolibrary.org/obo/mp.owl>\n");
+
+            for (int i = 1; i <= TERMS; i++) {
+                String cls = ":" + termId(i).replace(":", "_");
+                writer.write("Declaration(Class(" + cls + "))\n");
+                writer.write("AnnotationAssertion(rdfs:label " + cls + " \"term " + i + "\")\n");
+
+                if (i > 1) {
+                    int from        = Math.max(1, (i - 1) / 8);
+                    int to          = Math.max(from, (i - 1) / 4);
+                    int parentCount = (random.nextInt(10) < 3 ? 2 : 1);
+                    for (int p = 0; p < parentCount; p++) {
+                        int parent = from + random.nextInt(to - from + 1);
+                        writer.write("SubClassOf(" + cls + " :" + termId(parent).replace(":", "_") + ")\n");
+                    }
+                }
+            }
+
+            writer.write(")\n");
+        }
+
+        return file;
+    }
+
+    private static String termId(int i) {
+        return String.format("MP:%07d", i);
+    }
+}
@@ -0,0 +1,106 @@
+package org.mousephenotype.cda.owl;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.semanticweb.owlapi.model.OWLClass;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class OntologyAncestorIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    @Test
+    public void closureAndProjections() {
+
+        //      0
+        //     / \
+        //    1   2        3 is a top level; 0 is never an intermediate
+        //     \ / \
+        //      3   4
+        //      |
+        //      5
+        List<String> ids     = Arrays.asList("T:0", "T:1", "T:2", "T:3", "T:4", "T:5");
+        int[][]      parents = { {}, {0}, {0}, {1, 2}, {2}, {3} };
+
+        OntologyAncestorIndex index = new OntologyAncestorIndex("T", ids, parents, Arrays.asList("T:1", "T:2"), Collections.singleton("T:0"));
+
+        assertArrayEquals(new int[] {0, 1, 2, 3}, index.getAncestors(5));
+        assertArrayEquals(new int[] {1, 2, 3, 4, 5}, index.getDescendants(0));
+        assertArrayEquals(new int[] {1, 2}, index.getTopLevels(5));
+        assertArrayEquals(new int[] {3}, index.getIntermediates(5));
+        assertArrayEquals(new int[] {}, index.getIntermediates(1));
+
+        assertTrue(index.isAncestor(2, 5));
+        assertFalse(index.isAncestor(4, 5));
+        assertEquals(new HashSet<>(Arrays.asList("T:3", "T:5")), index.getDescendantIds("T:1"));
+        assertEquals(-1, index.indexOf("T:6"));
+    }
+
+
+    @Test
+    public void termsOnCyclesAreTheirOwnAncestors() {
+
+        List<String> ids     = Arrays.asList("T:0", "T:1", "T:2");
+        int[][]      parents = { {2}, {0}, {1} };
+
+        OntologyAncestorIndex index = new OntologyAncestorIndex("T", ids, parents, null, null);
+
+        assertArrayEquals(new int[] {0, 1, 2}, index.getAncestors(0));
+        assertArrayEquals(index.getAncestors(0), index.getIntermediates(0));
+    }
+
+
+    @Test
+    public void indexMatchesOwlWalk() throws Exception {
+
+        File owl = new File(folder.getRoot(), "ma.owl");
+        try (Writer writer = new FileWriter(owl)) {
+            writer.write(
+                    "Prefix(:=<http://purl.obolibrary.org/obo/>)\n" +
+                    "Prefix(rdfs:=<http://www.w3.org/2000/01/rdf-schema#>)\n" +
+                    "Ontology(<http://purl.obolibrary.org/obo/ma.owl>\n" +
+                    "Declaration(Class(:MA_0000001))\n" +
+                    "Declaration(Class(:MA_0000002))\n" +
+                    "Declaration(Class(:MA_0000003))\n" +
+                    "Declaration(Class(:MA_0000004))\n" +
+                    "Declaration(Class(:MA_0000005))\n" +
+                    "Declaration(Class(:UBERON_0000001))\n" +
+                    "Declaration(ObjectProperty(:BFO_0000050))\n" +
+                    "AnnotationAssertion(rdfs:label :MA_0000002 \"organ system\")\n" +
+                    "SubClassOf(:MA_0000002 :MA_0000001)\n" +
+                    "SubClassOf(:MA_0000003 :MA_0000002)\n" +
+                    "SubClassOf(:MA_0000004 ObjectSomeValuesFrom(:BFO_0000050 :MA_0000003))\n" +
+                    "SubClassOf(:MA_0000005 :UBERON_0000001)\n" +
+                    "SubClassOf(:UBERON_0000001 :MA_0000002)\n" +
+                    ")\n");
+        }
+
+        OntologyParser        parser = new OntologyParser(owl.getPath(), "MA", Collections.singleton("MA:0000002"), null);
+        OntologyAncestorIndex index  = parser.getAncestorIndex();
+
+        for (OntologyTermDTO term : parser.getTerms()) {
+            OWLClass    cls      = parser.getOwlClass(term.getAccessionId());
+            Set<String> expected = parser.getClassAncestors(cls, "MA").stream().map(parser::getIdentifierShortForm).collect(Collectors.toSet());
+
+            assertEquals(term.getAccessionId(), expected, index.getAncestorIds(term.getAccessionId()));
+        }
+
+        OntologyTermDTO term = parser.getOntologyTerm("MA:0000004");
+        assertEquals(new HashSet<>(Arrays.asList("MA:0000001", "MA:0000003")), term.getIntermediateIds());
+        assertEquals(new HashSet<>(Arrays.asList("MA:0000002")), term.getTopLevelIds());
+        assertEquals(new HashSet<>(Arrays.asList("organ system")), term.getTopLevelNames());
+
+        // Non-MA classes are walked through only to their MA parents.
+        assertEquals(new HashSet<>(), parser.getOntologyTerm("MA:0000005").getIntermediateIds());
+    }
+}
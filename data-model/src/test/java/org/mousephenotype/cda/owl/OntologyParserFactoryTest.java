@@ -0,0 +1,140 @@
+package org.mousephenotype.cda.owl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+public class OntologyParserFactoryTest {
+
+    private static final String UBERON_OWL =
+            "Prefix(:=<http://purl.obolibrary.org/obo/>)\n" +
+            "Prefix(rdfs:=<http://www.w3.org/2000/01/rdf-schema#>)\n" +
+            "Ontology(<http://purl.obolibrary.org/obo/uberon.owl>\n" +
+            "Declaration(Class(:UBERON_0000001))\n" +
+            "Declaration(Class(:UBERON_0000002))\n" +
+            "Declaration(Class(:UBERON_0000003))\n" +
+            "AnnotationAssertion(rdfs:label :UBERON_0000001 \"anatomical entity\")\n" +
+            "AnnotationAssertion(rdfs:label :UBERON_0000002 \"organ\")\n" +
+            "AnnotationAssertion(rdfs:label :UBERON_0000003 \"heart\")\n" +
+            "SubClassOf(:UBERON_0000002 :UBERON_0000001)\n" +
+            "SubClassOf(:UBERON_0000003 :UBERON_0000002)\n" +
+            "%s" +
+            ")\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File owlpath;
+    private File snapshotDir;
+
+
+    @Before
+    public void setUp() throws IOException {
+        OntologyParserFactory.clearParsers();
+
+        owlpath = folder.newFolder("owl");
+        snapshotDir = new File(owlpath, OntologyParserFactory.DEFAULT_SNAPSHOT_DIR);
+        writeOwl("");
+    }
+
+    @After
+    public void tearDown() {
+        OntologyParserFactory.clearParsers();
+    }
+
+
+    @Test
+    public void parsersAreShared() throws Exception {
+
+        OntologyParser parser = new OntologyParserFactory(null, owlpath.getPath()).getUberonParser();
+
+        assertSame(parser, new OntologyParserFactory(null, owlpath.getPath()).getUberonParser());
+        assertEquals(3, parser.getTerms().size());
+    }
+
+
+    @Test
+    public void parsersAreRestoredFromSnapshot() throws Exception {
+
+        OntologyParser parsed = new OntologyParserFactory(null, owlpath.getPath()).getUberonParser();
+        File[] snapshots = snapshotDir.listFiles();
+        assertNotNull(snapshots);
+        assertEquals(1, snapshots.length);
+
+        OntologyParserFactory.clearParsers();
+        OntologyParser restored = new OntologyParserFactory(null, owlpath.getPath()).getUberonParser();
+
+        assertNotSame(parsed, restored);
+        assertEquals(3, restored.getTerms().size());
+
+        OntologyTermDTO heart = restored.getOntologyTerm("UBERON:0000003");
+        assertEquals("heart", heart.getName());
+        assertEquals(new HashSet<>(Arrays.asList("UBERON:0000002")), heart.getParentIds());
+        assertEquals(new HashSet<>(Arrays.asList("UBERON:0000001", "UBERON:0000002")), heart.getIntermediateIds());
+
+        // The OWL graph is loaded on demand for the methods that need it.
+        assertNull(heart.getCls());
+        assertNotNull(restored.getOwlClass("UBERON:0000003"));
+        assertNotNull(heart.getCls());
+    }
+
+
+    @Test
+    public void changedOwlFileIsParsedAgain() throws Exception {
+
+        new OntologyParserFactory(null, owlpath.getPath()).getUberonParser();
+
+        OntologyParserFactory.clearParsers();
+        writeOwl("Declaration(Class(:UBERON_0000004))\nSubClassOf(:UBERON_0000004 :UBERON_0000002)\n");
+        OntologyParser parser = new OntologyParserFactory(null, owlpath.getPath()).getUberonParser();
+
+        assertEquals(4, parser.getTerms().size());
+        assertEquals(2, snapshotDir.listFiles().length);
+    }
+
+
+    @Test
+    public void noSnapshotsWithoutSnapshotDir() throws Exception {
+
+        OntologyParser parser = new OntologyParserFactory(null, owlpath.getPath(), null).getUberonParser();
+
+        assertEquals(3, parser.getTerms().size());
+        assertFalse(snapshotDir.exists());
+    }
+
+
+    @Test
+    public void copiesDoNotShareTerms() throws Exception {
+
+        OntologyParser shared = new OntologyParser(new File(owlpath, "uberon.owl").getPath(), "UBERON", Arrays.asList("UBERON:0000002"),
+                                                   new HashSet<>(Arrays.asList("UBERON:0000001", "UBERON:0000002", "UBERON:0000003")));
+        OntologyParser copy   = shared.copy();
+
+        copy.fillJsonTreePath("UBERON:0000001", "/data/anatomy/", null, Arrays.asList("UBERON:0000002"), false);
+
+        assertNotNull(copy.getOntologyTerm("UBERON:0000003").getSeachJson());
+        assertEquals("UBERON:0000001", copy.getOntologyTerm(0).getAccessionId());
+
+        assertNull(shared.getOntologyTerm("UBERON:0000003").getSeachJson());
+        assertNull(shared.getOntologyTerm("UBERON:0000003").getNodeIds());
+        assertNull(shared.getOntologyTerm(0));
+    }
+
+
+    private void writeOwl(String extraAxioms) throws IOException {
+        try (Writer writer = new FileWriter(new File(owlpath, "uberon.owl"))) {
+            writer.write(String.format(UBERON_OWL, extraAxioms));
+        }
+    }
+}
@@ -19,10 +19,14 @@ import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.response.PivotField;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.params.CursorMarkParams;
 import org.mousephenotype.cda.db.pojo.OntologyTerm;
 import org.mousephenotype.cda.db.repositories.OntologyTermRepository;
 import org.mousephenotype.cda.enumerations.LifeStage;
 import org.mousephenotype.cda.indexers.exceptions.IndexerException;
+import org.mousephenotype.cda.indexers.utils.SolrBatchWriter;
 import org.mousephenotype.cda.utilities.CommonUtils;
 import org.mousephenotype.cda.utilities.LifeStageMapper;
 import org.mousephenotype.cda.utilities.RunStatus;
@@ -35,8 +39,12 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import javax.inject.Inject;
 import javax.sql.DataSource;
 import javax.validation.constraints.NotNull;
+import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
 
@@ -46,6 +54,19 @@ public abstract class AbstractIndexer implements CommandLineRunner {
     @Value("${owlpath}")
     protected String owlpath;
 
+    // Batched solr writes. See newBatchWriter().
+    @Value("${solrBatchSize:1000}")
+    protected int solrBatchSize = 1000;
+
+    @Value("${solrBatchMaxBytes:10000000}")
+    protected long solrBatchMaxBytes = 10000000L;
+
+    @Value("${solrBatchRetryCount:2}")
+    protected int solrBatchRetryCount = 2;
+
+    @Value("${solrDeadLetterDirectory:}")
+    protected String solrDeadLetterDirectory;
+
     private final   Logger  logger    = LoggerFactory.getLogger(this.getClass());
 
     protected final int     MINIMUM_DOCUMENT_COUNT = 80;
@@ -90,6 +111,13 @@ public abstract class AbstractIndexer implements CommandLineRunner {
     // It is used for later validation by querying the core after the build.
     protected long expectedDocumentCount = 0L;
 
+    // The number of documents that could not be written and were sent to a dead-letter file instead.
+    protected long deadLetterDocumentCount = 0L;
+
+    // The number of documents written and deleted by this build. Used to tell whether an incremental build changed the core.
+    protected long writtenDocumentCount = 0L;
+    protected long deletedDocumentCount = 0L;
+
 	@Override
 	public void run(String... strings) throws Exception {
 
@@ -175,9 +203,150 @@ public abstract class AbstractIndexer implements CommandLineRunner {
             runStatus.addWarning("SOLR DOCUMENT COUNT VALIDATION: Expected " + expectedDocumentCount + ". Actual:" + actualDocumentCount);
         }
 
+        if (deadLetterDocumentCount > 0) {
+            runStatus.addWarning("SOLR DOCUMENT COUNT VALIDATION: " + deadLetterDocumentCount + " documents failed to load and were written to a dead-letter file.");
+        }
+
         return runStatus;
     }
 
+    /**
+     * Returns a writer that sends beans to {@code core} in batches of up to {@code solrBatchSize} documents or
+     * {@code solrBatchMaxBytes} bytes, retrying failed batches {@code solrBatchRetryCount} times before writing them to
+     * a dead-letter file named after {@code coreName} in {@code solrDeadLetterDirectory} (default: java.io.tmpdir).
+     *
+     * Close the writer with {@link #closeBatchWriter(SolrBatchWriter)} before committing the core so the remaining
+     * documents are sent and counted.
+     *
+     * @param core           the core to write to
+     * @param coreName       the core name, used to name the dead-letter file
+     * @param commitWithinMs solr commitWithin value for each batch
+     */
+    protected SolrBatchWriter newBatchWriter(SolrClient core, String coreName, int commitWithinMs) {
+        String directory = ((solrDeadLetterDirectory == null) || (solrDeadLetterDirectory.trim().isEmpty())
+                ? System.getProperty("java.io.tmpdir")
+                : solrDeadLetterDirectory);
+        File deadLetterFile = new File(directory, coreName + "-deadletter-" + System.currentTimeMillis() + ".xml");
+
+        return new SolrBatchWriter(core, commitWithinMs, solrBatchSize, solrBatchMaxBytes, solrBatchRetryCount, deadLetterFile);
+    }
+
+    /**
+     * Sends any documents still buffered in {@code writer} and adds its document counts to
+     * {@code expectedDocumentCount} and {@code deadLetterDocumentCount}.
+     */
+    protected void closeBatchWriter(SolrBatchWriter writer) throws IndexerException {
+        writer.flush();
+        expectedDocumentCount += writer.getDocumentCount();
+        writtenDocumentCount += writer.getDocumentCount();
+        deadLetterDocumentCount += writer.getFailedDocumentCount();
+
+        if (writer.getFailedDocumentCount() > 0) {
+            logger.error("{} documents could not be written. See {}", writer.getFailedDocumentCount(), writer.getDeadLetterFile().getAbsolutePath());
+        }
+    }
+
+    /**
+     * @return the number of database connections this indexer holds at once while it runs. IndexerManager uses this
+     * to limit the number of cores built concurrently. Override if the indexer opens more than one.
+     */
+    public int getDatabaseConnectionCount() {
+        return 1;
+    }
+
+    /**
+     * @return the number of documents added or deleted by this build
+     */
+    public long getChangedDocumentCount() {
+        return writtenDocumentCount + deletedDocumentCount;
+    }
+
+    /**
+     * @return the highest id in {@code table}, or 0 if the table is empty
+     */
+    protected long getMaxId(String table) throws IndexerException {
+
+        try (Connection connection = komp2DataSource.getConnection();
+             PreparedStatement p = connection.prepareStatement("SELECT MAX(id) AS max_id FROM " + table)) {
+
+            ResultSet r = p.executeQuery();
+            return (r.next() ? r.getLong("max_id") : 0L);
+
+        } catch (SQLException e) {
+            throw new IndexerException(e);
+        }
+    }
+
+    /**
+     * Deletes, by id, every document in {@code core} whose id is not returned by {@code liveIdQuery}. Documents are
+     * read from the core in id order with a cursor, so the core is never loaded into memory; the live ids are held in
+     * a bitset. Adds the number of documents deleted to {@code deletedDocumentCount}.
+     *
+     * @param core        the core to prune. Its document ids must be the integer ids of the source rows
+     * @param liveIdQuery a query returning the source row ids that still exist, as column 1
+     * @return the number of documents deleted
+     */
+    protected long deleteStaleDocuments(SolrClient core, String liveIdQuery) throws IndexerException {
+
+        BitSet liveIds = new BitSet();
+        try (Connection connection = komp2DataSource.getConnection();
+             PreparedStatement p = connection.prepareStatement(liveIdQuery, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            ResultSet r = p.executeQuery();
+            while (r.next()) {
+                liveIds.set(r.getInt(1));
+            }
+
+        } catch (SQLException e) {
+            throw new IndexerException(e);
+        }
+
+        long         deleted  = 0L;
+        List<String> staleIds = new ArrayList<>();
+        String       cursor   = CursorMarkParams.CURSOR_MARK_START;
+        SolrQuery    query    = new SolrQuery("*:*")
+                .setFields("id")
+                .setRows(solrBatchSize)
+                .setSort(SolrQuery.SortClause.asc("id"));
+
+        try {
+            while (true) {
+                query.set(CursorMarkParams.CURSOR_MARK_PARAM, cursor);
+                QueryResponse response = core.query(query);
+                for (SolrDocument doc : response.getResults()) {
+                    String id = doc.getFieldValue("id").toString();
+                    if ( ! liveIds.get(Integer.parseInt(id))) {
+                        staleIds.add(id);
+                    }
+                }
+
+                if (staleIds.size() >= solrBatchSize) {
+                    core.deleteById(staleIds);
+                    deleted += staleIds.size();
+                    staleIds.clear();
+                }
+
+                if (cursor.equals(response.getNextCursorMark())) {
+                    break;
+                }
+                cursor = response.getNextCursorMark();
+            }
+
+            if ( ! staleIds.isEmpty()) {
+                core.deleteById(staleIds);
+                deleted += staleIds.size();
+            }
+
+        } catch (SolrServerException | IOException | NumberFormatException e) {
+            throw new IndexerException(e);
+        }
+
+        deletedDocumentCount += deleted;
+        logger.info("  Deleted {} stale documents", deleted);
+
+        return deleted;
+    }
+
     /**
      * Method for allele2 and product core indexins. Helper methods to parse the tsv file.
      * @param field The field name to lookup
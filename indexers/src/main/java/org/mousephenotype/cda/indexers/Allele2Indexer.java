@@ -4,6 +4,7 @@ import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.mousephenotype.cda.db.repositories.OntologyTermRepository;
 import org.mousephenotype.cda.indexers.exceptions.IndexerException;
+import org.mousephenotype.cda.indexers.utils.SolrBatchWriter;
 import org.mousephenotype.cda.solr.service.dto.Allele2DTO;
 import org.mousephenotype.cda.utilities.RunStatus;
 import org.slf4j.Logger;
@@ -56,7 +57,7 @@ public class Allele2Indexer  extends AbstractIndexer implements CommandLineRunne
 
 
     @Override
-    public RunStatus run() throws IOException, SolrServerException {
+    public RunStatus run() throws IndexerException, IOException, SolrServerException {
 
         RunStatus runStatus = new RunStatus();
 
@@ -64,6 +65,7 @@ public class Allele2Indexer  extends AbstractIndexer implements CommandLineRunne
         allele2Core.commit();
 
         long start = System.currentTimeMillis();
+        SolrBatchWriter writer = newBatchWriter(allele2Core, IndexerManager.ALLELE2_CORE, 30000);
         BufferedReader in = new BufferedReader(new FileReader(new File(pathToAlleleFile)));
         String[] header = in.readLine().split("\t");
         for (int i = 0; i < header.length; i++){
@@ -141,10 +143,11 @@ public class Allele2Indexer  extends AbstractIndexer implements CommandLineRunne
 
             line = in.readLine();
 
-            allele2Core.addBean(doc, 30000);
+            writer.addBean(doc);
 
         }
 
+        closeBatchWriter(writer);
         allele2Core.commit();
         alleleDocCount = index;
 
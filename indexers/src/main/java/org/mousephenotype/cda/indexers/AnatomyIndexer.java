@@ -20,6 +20,7 @@ import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.mousephenotype.cda.db.repositories.OntologyTermRepository;
 import org.mousephenotype.cda.indexers.exceptions.IndexerException;
+import org.mousephenotype.cda.indexers.utils.SolrBatchWriter;
 import org.mousephenotype.cda.owl.AnatomogramMapper;
 import org.mousephenotype.cda.owl.OntologyParser;
 import org.mousephenotype.cda.owl.OntologyParserFactory;
@@ -106,6 +107,7 @@ public class AnatomyIndexer extends AbstractIndexer implements CommandLineRunner
             anatomyCore.commit();
 
             initialiseSupportingBeans();
+            SolrBatchWriter writer = newBatchWriter(anatomyCore, IndexerManager.ANATOMY_CORE, 60000);
 
             Set<String> maIds = maParser.getTermsInSlim();
             Set<String> emapaIds = emapaParser.getTermsInSlim();
@@ -135,8 +137,7 @@ public class AnatomyIndexer extends AbstractIndexer implements CommandLineRunner
                     }
                 }
 
-                expectedDocumentCount++;
-                anatomyCore.addBean(anatomyTerm, 60000);
+                writer.addBean(anatomyTerm);
 
             }
 
@@ -151,13 +152,13 @@ public class AnatomyIndexer extends AbstractIndexer implements CommandLineRunner
 
                 addBasicFields(emapa, emapaDTO);
 
-                expectedDocumentCount++;
-                anatomyCore.addBean(emapa, 60000);
+                writer.addBean(emapa);
 
             }
 
 
             // Send a final commit
+            closeBatchWriter(writer);
             anatomyCore.commit();
 
         } catch (SolrServerException | IOException e) {
@@ -20,12 +20,11 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.SolrServerException;
-import org.apache.solr.client.solrj.response.QueryResponse;
 import org.apache.solr.common.SolrDocument;
-import org.apache.solr.common.SolrDocumentList;
 import org.mousephenotype.cda.db.repositories.OntologyTermRepository;
 import org.mousephenotype.cda.indexers.beans.AutosuggestBean;
 import org.mousephenotype.cda.indexers.exceptions.IndexerException;
+import org.mousephenotype.cda.solr.SolrCursorReader;
 import org.mousephenotype.cda.solr.service.dto.*;
 import org.mousephenotype.cda.utilities.RunStatus;
 import org.slf4j.Logger;
@@ -41,6 +40,7 @@ import javax.inject.Inject;
 import javax.sql.DataSource;
 import javax.validation.constraints.NotNull;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.sql.SQLException;
 import java.util.*;
 
@@ -193,6 +193,8 @@ public class AutosuggestIndexer extends AbstractIndexer implements CommandLineRu
 
         } catch (SolrServerException | IOException e) {
             throw new IndexerException(e);
+        } catch (UncheckedIOException e) {
+            throw new IndexerException(e.getCause());
         }
 
         logger.info(" Added {} total beans in {}", expectedDocumentCount, commonUtils.msToHms(System.currentTimeMillis() - start));
@@ -205,11 +207,9 @@ public class AutosuggestIndexer extends AbstractIndexer implements CommandLineRu
 
         SolrQuery query = new SolrQuery()
             .setQuery("*:*")
-            .setFields(StringUtils.join(geneFields, ","))
-            .setRows(Integer.MAX_VALUE);
+            .setFields(StringUtils.join(geneFields, ","));
 
-        List<GeneDTO> genes = geneCore.query(query).getBeans(GeneDTO.class);
-        for (GeneDTO gene : genes) {
+        for (GeneDTO gene : new SolrCursorReader<>(geneCore, query, GeneDTO.class)) {
 
             Set<AutosuggestBean> beans = new HashSet<>();
             for (String field : geneFields) {
@@ -306,16 +306,11 @@ public class AutosuggestIndexer extends AbstractIndexer implements CommandLineRu
 
         SolrQuery query = new SolrQuery()
                 .setQuery("*:*")
-                .setFields(StringUtils.join(pipelineFields, ","))
-                .setRows(Integer.MAX_VALUE);
-
-
-        QueryResponse rsp = pipelineCore.query(query);
-        SolrDocumentList pipelineDocs = rsp.getResults();
+                .setFields(StringUtils.join(pipelineFields, ","));
 
         Set<AutosuggestBean> beans = new HashSet<>();
 
-        for(SolrDocument pd : pipelineDocs){
+        for(SolrDocument pd : SolrCursorReader.documents(pipelineCore, query)){
 
             AutosuggestBean a = new AutosuggestBean();
             a.setDocType("pipeline");
@@ -339,11 +334,9 @@ public class AutosuggestIndexer extends AbstractIndexer implements CommandLineRu
 
         SolrQuery query = new SolrQuery()
             .setQuery("*:*")
-            .setFields(StringUtils.join(mpFields, ","))
-            .setRows(Integer.MAX_VALUE);
+            .setFields(StringUtils.join(mpFields, ","));
         //System.out.println("QRY: " + query);
-        List<MpDTO> mps = mpCore.query(query).getBeans(MpDTO.class);
-        for (MpDTO mp : mps) {
+        for (MpDTO mp : new SolrCursorReader<>(mpCore, query, MpDTO.class)) {
 
             Set<AutosuggestBean> beans = new HashSet<>();
             for (String field : mpFields) {
@@ -623,11 +616,9 @@ public class AutosuggestIndexer extends AbstractIndexer implements CommandLineRu
         SolrQuery query = new SolrQuery()
             .setQuery("*:*")
             .setFilterQueries("type:disease_search")
-            .setFields(StringUtils.join(diseaseFields, ","))
-            .setRows(Integer.MAX_VALUE);
+            .setFields(StringUtils.join(diseaseFields, ","));
 
-        List<PhenodigmDTO> diseases = phenodigmCore.query(query).getBeans(PhenodigmDTO.class);
-        for (PhenodigmDTO disease : diseases) {
+        for (PhenodigmDTO disease : new SolrCursorReader<>(phenodigmCore, query, PhenodigmDTO.class)) {
 
             Set<AutosuggestBean> beans = new HashSet<>();
             for (String field : diseaseFields) {
@@ -689,13 +680,9 @@ public class AutosuggestIndexer extends AbstractIndexer implements CommandLineRu
 
         SolrQuery query = new SolrQuery()
             .setQuery("*:*")
-            .setFields(StringUtils.join(anatomyFields, ","))
-            .setRows(Integer.MAX_VALUE);
+            .setFields(StringUtils.join(anatomyFields, ","));
 
-
-        List<AnatomyDTO> anatomies = anatomyCore.query(query).getBeans(AnatomyDTO.class);
-
-        for (AnatomyDTO anatomy : anatomies) {
+        for (AnatomyDTO anatomy : new SolrCursorReader<>(anatomyCore, query, AnatomyDTO.class)) {
 
             Set<AutosuggestBean> beans = new HashSet<>();
 
@@ -922,15 +909,11 @@ public class AutosuggestIndexer extends AbstractIndexer implements CommandLineRu
 
         SolrQuery query = new SolrQuery()
                 .setQuery("type:Allele")
-                .setFields(StringUtils.join(productFields, ","))
-                .setRows(Integer.MAX_VALUE);
-
-        QueryResponse response = allele2Core.query(query);
-        List<Allele2DTO> alleles = response.getBeans(Allele2DTO.class);
+                .setFields(StringUtils.join(productFields, ","));
 
         String docType = "allele2";
 
-        for (Allele2DTO allele : alleles) {
+        for (Allele2DTO allele : new SolrCursorReader<>(allele2Core, query, Allele2DTO.class)) {
 
             Set<AutosuggestBean> beans = new HashSet<>();
             for (String field : productFields) {
@@ -28,6 +28,7 @@ import org.mousephenotype.cda.indexers.exceptions.IndexerException;
 import org.mousephenotype.cda.indexers.utils.DmddDataUnit;
 import org.mousephenotype.cda.indexers.utils.EmbryoStrain;
 import org.mousephenotype.cda.indexers.utils.IndexerMap;
+import org.mousephenotype.cda.indexers.utils.SolrBatchWriter;
 import org.mousephenotype.cda.solr.SolrUtils;
 import org.mousephenotype.cda.solr.service.dto.AlleleDTO;
 import org.mousephenotype.cda.solr.service.dto.GeneDTO;
@@ -132,6 +133,7 @@ public class GeneIndexer extends AbstractIndexer implements CommandLineRunner {
 
             List<AlleleDTO> alleles = IndexerMap.getAlleles(alleleCore);
             geneCore.deleteByQuery("*:*");
+            SolrBatchWriter writer = newBatchWriter(geneCore, IndexerManager.GENE_CORE, 60000);
 
             int proceduresFoundCount = 0;
             int proceduresMissingCount = 0;
@@ -557,13 +559,13 @@ public class GeneIndexer extends AbstractIndexer implements CommandLineRunner {
                 gene.setInferredSelectedTopLevelMaTerm(new ArrayList<>(new HashSet<>(gene.getInferredSelectedTopLevelMaTerm())));
                 gene.setInferredSelectedTopLevelMaTermSynonym(new ArrayList<>(new HashSet<>(gene.getInferredSelectedTopLevelMaTermSynonym())));
 
-                expectedDocumentCount++;
-                geneCore.addBean(gene, 60000);
+                writer.addBean(gene);
                 count ++;
             }
 
             logger.info("proceduresMissing: {}. procedures found: {}", proceduresMissingCount, proceduresFoundCount);
 
+            closeBatchWriter(writer);
             geneCore.commit();
 
         } catch (SQLException | IOException | SolrServerException e) {
@@ -24,6 +24,7 @@ import org.mousephenotype.cda.enumerations.LifeStage;
 import org.mousephenotype.cda.enumerations.SexType;
 import org.mousephenotype.cda.indexers.exceptions.IndexerException;
 import org.mousephenotype.cda.indexers.utils.IndexerMap;
+import org.mousephenotype.cda.indexers.utils.SolrBatchWriter;
 import org.mousephenotype.cda.owl.OntologyParser;
 import org.mousephenotype.cda.owl.OntologyParserFactory;
 import org.mousephenotype.cda.owl.OntologyTermDTO;
@@ -56,7 +57,7 @@ import java.util.*;
  * Populate the Genotype-Phenotype core
  */
 @EnableAutoConfiguration
-public class GenotypePhenotypeIndexer extends AbstractIndexer {
+public class GenotypePhenotypeIndexer extends AbstractIndexer implements IncrementalIndexer {
 
     private final Logger logger = LoggerFactory.getLogger(GenotypePhenotypeIndexer.class);
 
@@ -74,6 +75,7 @@ public class GenotypePhenotypeIndexer extends AbstractIndexer {
     private OntologyParser            mpMaParser;
     private OntologyParser            maParser;
     private OntologyParserFactory     ontologyParserFactory;
+    private long                      sinceId               = -1L;  // If not negative, index only phenotype_call_summary rows with a greater id.
 
     protected GenotypePhenotypeIndexer() {
 
@@ -96,6 +98,17 @@ public class GenotypePhenotypeIndexer extends AbstractIndexer {
         return super.validateBuild(genotypePhenotypeCore);
     }
 
+    @Override
+    public long getHighWaterMark() throws IndexerException {
+        return getMaxId("phenotype_call_summary");
+    }
+
+    @Override
+    public RunStatus runSince(long highWaterMark) throws IndexerException {
+        sinceId = highWaterMark;
+        return run();
+    }
+
     @Override
     public RunStatus run() throws IndexerException {
         int count = 0;
@@ -126,11 +139,19 @@ public class GenotypePhenotypeIndexer extends AbstractIndexer {
     }
 
     // Returns document count.
-    public int populateGenotypePhenotypeSolrCore(Connection connection, RunStatus runStatus) throws SQLException, IOException, SolrServerException {
+    public int populateGenotypePhenotypeSolrCore(Connection connection, RunStatus runStatus) throws SQLException, IOException, SolrServerException, IndexerException {
 
         int count = 0;
 
-        genotypePhenotypeCore.deleteByQuery("*:*");
+        if (sinceId < 0) {
+            genotypePhenotypeCore.deleteByQuery("*:*");
+        } else {
+            // Incremental build: keep the core, less the documents whose phenotype calls no longer exist.
+            logger.info("  Indexing phenotype calls with id > {}", sinceId);
+            long existingDocumentCount = getDocumentCount(genotypePhenotypeCore);
+            expectedDocumentCount = existingDocumentCount - deleteStaleDocuments(genotypePhenotypeCore, "SELECT id FROM phenotype_call_summary");
+        }
+        SolrBatchWriter writer = newBatchWriter(genotypePhenotypeCore, IndexerManager.GENOTYPE_PHENOTYPE_CORE, 30000);
 
         // conditions of WHERE clauses
         /*
@@ -159,11 +180,15 @@ public class GenotypePhenotypeIndexer extends AbstractIndexer {
                 "  LEFT OUTER JOIN strain st ON s.strain_acc = st.acc " +
                 "  LEFT OUTER JOIN allele al ON s.allele_acc = al.acc " +
                 "  INNER JOIN external_db db ON s.external_db_id = db.id " +
-                "WHERE (0.0001 >= s.p_value " +
+                "WHERE ((0.0001 >= s.p_value " +
                 "  OR (s.p_value IS NULL AND s.sex='male' AND sur.gender_male_ko_pvalue <= 0.0001) " +
                 "  OR (s.p_value IS NULL AND s.sex='female' AND sur.gender_female_ko_pvalue <= 0.0001)) " +
                 "OR (s.parameter_id IN (SELECT id FROM phenotype_parameter WHERE stable_id like 'IMPC_VIA%' OR stable_id LIKE 'IMPC_FER%')) " +
-                "OR s.p_value IS NULL ";
+                "OR s.p_value IS NULL) ";
+
+        if (sinceId >= 0) {
+            query += "AND s.id > " + sinceId;
+        }
 
         try (PreparedStatement p = connection.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
 
@@ -356,8 +381,7 @@ public class GenotypePhenotypeIndexer extends AbstractIndexer {
                     runStatus.addError(" Found unknown ontology term: " + r.getString("ontology_term_id"));
                 }
 
-                expectedDocumentCount++;
-                genotypePhenotypeCore.addBean(doc, 30000);
+                writer.addBean(doc);
 
                 count++;
             }
@@ -370,6 +394,7 @@ public class GenotypePhenotypeIndexer extends AbstractIndexer {
             }
 
             // Final commit to save the rest of the docs
+            closeBatchWriter(writer);
             genotypePhenotypeCore.commit();
 
         } catch (Exception e) {
@@ -22,9 +22,11 @@ import org.mousephenotype.cda.db.repositories.OntologyTermRepository;
 import org.mousephenotype.cda.indexers.exceptions.IndexerException;
 import org.mousephenotype.cda.indexers.utils.IndexerMap;
 import org.mousephenotype.cda.indexers.utils.PhisService;
+import org.mousephenotype.cda.indexers.utils.SolrBatchWriter;
 import org.mousephenotype.cda.owl.OntologyParser;
 import org.mousephenotype.cda.owl.OntologyParserFactory;
 import org.mousephenotype.cda.owl.OntologyTermDTO;
+import org.mousephenotype.cda.solr.SolrCursorReader;
 import org.mousephenotype.cda.solr.service.ImageService;
 import org.mousephenotype.cda.solr.service.ImpressService;
 import org.mousephenotype.cda.solr.service.dto.AlleleDTO;
@@ -46,6 +48,7 @@ import javax.inject.Inject;
 import javax.sql.DataSource;
 import javax.validation.constraints.NotNull;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -185,13 +188,16 @@ public class ImpcImagesIndexer extends AbstractIndexer implements CommandLineRun
 		impcAnnotationBaseUrl = impcMediaBaseUrl.replace("webgateway", "webclient");
 
 		try {
-			List<ImageDTO> imageList=new ArrayList<>();
 			//populate image DTOs from phis solr dto objects
 			logger.info("  Starting indexing.....");
 			impcImagesCore.deleteByQuery("*:*");
-			SolrQuery query = ImageService.allImageRecordSolrQuery().setRows(Integer.MAX_VALUE);
-			List<ImageDTO> imagePrimaryList = experimentCore.query(query).getBeans(ImageDTO.class);
-			primaryGenesProcedures = getPrimaryImagesByGeneAndProcedure(imagePrimaryList);
+			SolrBatchWriter writer = newBatchWriter(impcImagesCore, IndexerManager.IMPC_IMAGES_CORE, 30000);
+			SolrQuery query = ImageService.allImageRecordSolrQuery();
+
+			// The secondary project images need the gene and procedure of every primary image, so read those two
+			// fields first. The primary images themselves are then read and written a page at a time.
+			SolrQuery geneProcedureQuery = query.getCopy().setFields(ImageDTO.GENE_SYMBOL, ImageDTO.PROCEDURE_NAME);
+			primaryGenesProcedures = getPrimaryImagesByGeneAndProcedure(new SolrCursorReader<>(experimentCore, geneProcedureQuery, ImageDTO.class));
 
 			try {
 				this.secondaryProjectImages =populateSecondaryProjectImages(runStatus);
@@ -199,106 +205,115 @@ public class ImpcImagesIndexer extends AbstractIndexer implements CommandLineRun
 				e2.printStackTrace();
 			}
 
-			imageList.addAll(secondaryProjectImages);
-			logger.debug("primary imageList size is "+imagePrimaryList.size());
-			imageList.addAll(imagePrimaryList);
-		
-			
-			for (ImageDTO imageDTO : imageList) {
+			for (ImageDTO imageDTO : secondaryProjectImages) {
+				addImage(imageDTO, writer, runStatus);
+			}
 
-				int omeroId=0;
+			long primaryImageCount = 0;
+			for (ImageDTO imageDTO : new SolrCursorReader<>(experimentCore, query, ImageDTO.class)) {
+				addImage(imageDTO, writer, runStatus);
+				primaryImageCount++;
+			}
+			logger.debug("primary image count is " + primaryImageCount);
 
-				String downloadFilePath = imageDTO.getDownloadFilePath();
-				if (imageBeans.containsKey(downloadFilePath)) {
+			closeBatchWriter(writer);
+			impcImagesCore.commit();
 
-					ImageBean iBean = imageBeans.get(downloadFilePath);
-					String fullResFilePath = iBean.fullResFilePath;
-					if (iBean.image_link != null) {
-						imageDTO.setImageLink(iBean.image_link);
-					}
-					if(iBean.increment!=null){
-						imageDTO.setIncrement(iBean.increment);
-					}
-					imageDTO.setFullResolutionFilePath(fullResFilePath);
+		} catch (SolrServerException | IOException e) {
+			e.printStackTrace();
+			throw new IndexerException(e);
+		} catch (UncheckedIOException e) {
+			throw new IndexerException(e.getCause());
+		}
 
-					omeroId = iBean.omeroId;
-					imageDTO.setOmeroId(omeroId);
-				}
+		logger.info(" Added {} total beans in {}", expectedDocumentCount,
+					commonUtils.msToHms(System.currentTimeMillis() - start));
 
-				if (omeroId == 0 && imageDTO.getFullResolutionFilePath() == null) {// modified this so phis images should be loaded now
-					continue;
-				}
+		return runStatus;
+	}
 
-				// need to add a full path to image in omero as part of api
-				// e.g.
-				// https://wwwdev.ebi.ac.uk/mi/media/omero/webgateway/render_image/4855/
-				if (omeroId != 0 && downloadFilePath != null) {
-					if (downloadFilePath.endsWith(".pdf")) {
-						// http://wwwdev.ebi.ac.uk/mi/media/omero/webclient/annotation/119501/
-						imageDTO.setDownloadUrl(impcAnnotationBaseUrl + "/annotation/" + omeroId);
-						imageDTO.setJpegUrl(Constants.PDF_THUMBNAIL_RELATIVE_URL);// pdf thumnail
-						// placeholder
-					} else {
-						imageDTO.setDownloadUrl(impcMediaBaseUrl + "/archived_files/download/" + omeroId);
-						imageDTO.setJpegUrl(impcMediaBaseUrl + "/render_image/" + omeroId);
-						imageDTO.setThumbnailUrl(impcMediaBaseUrl + "/render_birds_eye_view/" + omeroId);
-					}
-				}
 
-				// add the extra stuf we need for the searching and faceting
-				// here
-				if (imageDTO.getGeneAccession() != null && !imageDTO.getGeneAccession().equals("")) {
-
-					String geneAccession = imageDTO.getGeneAccession();
-					if (alleles.containsKey(geneAccession)) {
-						populateImageDtoStatuses(imageDTO, geneAccession);
-
-						if (imageDTO.getSymbol() != null) {
-							String symbolGene = imageDTO.getSymbol() + "_" + imageDTO.getGeneAccession();
-							imageDTO.setSymbolGene(symbolGene);
-
-							if (imageDTO.getMarkerSynonym() != null) {
-								List<String> synSymGene = new ArrayList<>();
-								for (String syn : imageDTO.getMarkerSynonym()) {
-									synSymGene.add(syn + FIELD_SEPARATOR + symbolGene);
-								}
-								imageDTO.setMarkerSynonymSymbolGene(synSymGene);
-							}
-						}
-					}
-				}
-				List<String> paramAssocNameProcName = new ArrayList<>();
+	private void addImage(ImageDTO imageDTO, SolrBatchWriter writer, RunStatus runStatus) throws IndexerException {
 
-				if (imageDTO.getParameterAssociationName() != null) {
-					for (String paramAssocName : imageDTO.getParameterAssociationName()) {
-						paramAssocNameProcName.add(paramAssocName + FIELD_SEPARATOR + imageDTO.getProcedureName());
-					}
-					imageDTO.setParameterAssociationNameProcedureName(paramAssocNameProcName);
-				}
+		int omeroId=0;
 
-				addOntologyTerms(imageDTO, parameterStableIdToMaTermIdMap, runStatus);
-				addOntologyTerms(imageDTO, parameterStableIdToEmapaTermIdMap, runStatus);
-				addOntologyTerms(imageDTO, parameterStableIdToMpTermIdMap, runStatus);
+		String downloadFilePath = imageDTO.getDownloadFilePath();
+		if (imageBeans.containsKey(downloadFilePath)) {
 
-				impcImagesCore.addBean(imageDTO, 30000);
-				expectedDocumentCount++;
+			ImageBean iBean = imageBeans.get(downloadFilePath);
+			String fullResFilePath = iBean.fullResFilePath;
+			if (iBean.image_link != null) {
+				imageDTO.setImageLink(iBean.image_link);
+			}
+			if(iBean.increment!=null){
+				imageDTO.setIncrement(iBean.increment);
 			}
+			imageDTO.setFullResolutionFilePath(fullResFilePath);
 
-			impcImagesCore.commit();
+			omeroId = iBean.omeroId;
+			imageDTO.setOmeroId(omeroId);
+		}
 
-		} catch (SolrServerException | IOException e) {
-			e.printStackTrace();
-			throw new IndexerException(e);
+		if (omeroId == 0 && imageDTO.getFullResolutionFilePath() == null) {// modified this so phis images should be loaded now
+			return;
 		}
 
-		logger.info(" Added {} total beans in {}", expectedDocumentCount,
-					commonUtils.msToHms(System.currentTimeMillis() - start));
+		// need to add a full path to image in omero as part of api
+		// e.g.
+		// https://wwwdev.ebi.ac.uk/mi/media/omero/webgateway/render_image/4855/
+		if (omeroId != 0 && downloadFilePath != null) {
+			if (downloadFilePath.endsWith(".pdf")) {
+				// http://wwwdev.ebi.ac.uk/mi/media/omero/webclient/annotation/119501/
+				imageDTO.setDownloadUrl(impcAnnotationBaseUrl + "/annotation/" + omeroId);
+				imageDTO.setJpegUrl(Constants.PDF_THUMBNAIL_RELATIVE_URL);// pdf thumnail
+				// placeholder
+			} else {
+				imageDTO.setDownloadUrl(impcMediaBaseUrl + "/archived_files/download/" + omeroId);
+				imageDTO.setJpegUrl(impcMediaBaseUrl + "/render_image/" + omeroId);
+				imageDTO.setThumbnailUrl(impcMediaBaseUrl + "/render_birds_eye_view/" + omeroId);
+			}
+		}
 
-		return runStatus;
+		// add the extra stuf we need for the searching and faceting
+		// here
+		if (imageDTO.getGeneAccession() != null && !imageDTO.getGeneAccession().equals("")) {
+
+			String geneAccession = imageDTO.getGeneAccession();
+			if (alleles.containsKey(geneAccession)) {
+				populateImageDtoStatuses(imageDTO, geneAccession);
+
+				if (imageDTO.getSymbol() != null) {
+					String symbolGene = imageDTO.getSymbol() + "_" + imageDTO.getGeneAccession();
+					imageDTO.setSymbolGene(symbolGene);
+
+					if (imageDTO.getMarkerSynonym() != null) {
+						List<String> synSymGene = new ArrayList<>();
+						for (String syn : imageDTO.getMarkerSynonym()) {
+							synSymGene.add(syn + FIELD_SEPARATOR + symbolGene);
+						}
+						imageDTO.setMarkerSynonymSymbolGene(synSymGene);
+					}
+				}
+			}
+		}
+		List<String> paramAssocNameProcName = new ArrayList<>();
+
+		if (imageDTO.getParameterAssociationName() != null) {
+			for (String paramAssocName : imageDTO.getParameterAssociationName()) {
+				paramAssocNameProcName.add(paramAssocName + FIELD_SEPARATOR + imageDTO.getProcedureName());
+			}
+			imageDTO.setParameterAssociationNameProcedureName(paramAssocNameProcName);
+		}
+
+		addOntologyTerms(imageDTO, parameterStableIdToMaTermIdMap, runStatus);
+		addOntologyTerms(imageDTO, parameterStableIdToEmapaTermIdMap, runStatus);
+		addOntologyTerms(imageDTO, parameterStableIdToMpTermIdMap, runStatus);
+
+		writer.addBean(imageDTO);
 	}
 
 
-	private Map<String,Set<String>> getPrimaryImagesByGeneAndProcedure(List<ImageDTO> imagePrimaryList) {
+	private Map<String,Set<String>> getPrimaryImagesByGeneAndProcedure(Iterable<ImageDTO> imagePrimaryList) {
 
 		Map<String, Set<String>> res = new HashMap<>();
 		for (ImageDTO img : imagePrimaryList){
@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright 2015 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ *******************************************************************************/
+
+package org.mousephenotype.cda.indexers;
+
+import org.mousephenotype.cda.indexers.exceptions.IndexerException;
+import org.mousephenotype.cda.utilities.RunStatus;
+
+/**
+ * An indexer that can bring its core up to date by indexing only the source rows loaded since a previous build,
+ * rather than rebuilding the core from scratch. Source rows are identified by an auto-increment database id; the
+ * highest id at the start of a build is that build's high-water mark.
+ */
+public interface IncrementalIndexer {
+
+    /**
+     * @return the highest source row id currently in the database. Take this before the build starts so that rows
+     * loaded during the build are picked up by the next one.
+     */
+    long getHighWaterMark() throws IndexerException;
+
+    /**
+     * Adds documents for the source rows with an id greater than {@code highWaterMark} and deletes, by id, the
+     * documents whose source rows no longer exist. The rest of the core is left alone.
+     */
+    RunStatus runSince(long highWaterMark) throws IndexerException;
+
+    /**
+     * @return the number of documents added or deleted by the last build
+     */
+    long getChangedDocumentCount();
+}
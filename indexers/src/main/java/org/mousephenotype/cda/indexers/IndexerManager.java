@@ -21,10 +21,15 @@ import joptsimple.OptionDescriptor;
 import joptsimple.OptionParser;
 import joptsimple.OptionSet;
 import org.apache.commons.lang3.StringUtils;
+import org.mousephenotype.cda.db.pojo.MetaInfo;
+import org.mousephenotype.cda.db.repositories.MetaInfoRepository;
 import org.mousephenotype.cda.indexers.exceptions.*;
+import org.mousephenotype.cda.indexers.utils.HighWaterMarks;
+import org.mousephenotype.cda.indexers.utils.HighWaterMarks.HighWaterMark;
 import org.mousephenotype.cda.utilities.CommonUtils;
 import org.mousephenotype.cda.utilities.RunStatus;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.Banner;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
@@ -36,8 +41,14 @@ import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
 
 import javax.inject.Inject;
+import java.io.File;
 import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
 
 /**
  * This class encapsulates the code and data necessary to represent an index
@@ -105,6 +116,20 @@ public class IndexerManager  implements CommandLineRunner {
     private List<String> cores;
     private Boolean daily;
     private Boolean nodeps;
+    private String since;
+
+    // Incremental builds (--since). Each successful build of an IncrementalIndexer appends its high-water mark here.
+    @Value("${indexerHighWaterMarkFile:indexer-high-water-marks.tsv}")
+    private String highWaterMarkFile = "indexer-high-water-marks.tsv";
+
+    // Independent cores are built concurrently on this many threads (1 builds them one at a time, in dependency
+    // order). If dbConnectionCount > 0, a core does not start until the database connections it declares (see
+    // AbstractIndexer.getDatabaseConnectionCount()) are available.
+    @Value("${indexerManagerThreads:1}")
+    private int threadCount = 1;
+
+    @Value("${indexerManagerDbConnections:0}")
+    private int dbConnectionCount = 0;
 
     public static final String[] allCoresArray = new String[] {      // In dependency order.
           // In dependency order. These are built only for a new data release.
@@ -139,6 +164,29 @@ public class IndexerManager  implements CommandLineRunner {
         , AUTOSUGGEST_CORE
     };
 
+    // The cores each core reads while it is built. A core is not started until those of its upstream cores being built
+    // in the same run have finished.
+    private static final Map<String, List<String>> upstreamCores = new HashMap<>();
+    static {
+        upstreamCores.put(PRODUCT_CORE, Arrays.asList(ALLELE2_CORE));
+        upstreamCores.put(ALLELE_CORE, Arrays.asList(ALLELE2_CORE));
+        upstreamCores.put(IMAGES_CORE, Arrays.asList(ALLELE_CORE));
+        upstreamCores.put(IMPC_IMAGES_CORE, Arrays.asList(PIPELINE_CORE, OBSERVATION_CORE, ALLELE_CORE));
+        upstreamCores.put(MP_CORE, Arrays.asList(PIPELINE_CORE, GENOTYPE_PHENOTYPE_CORE, ALLELE_CORE));
+        upstreamCores.put(GENE_CORE, Arrays.asList(ALLELE_CORE, MP_CORE));
+        upstreamCores.put(AUTOSUGGEST_CORE, Arrays.asList(PIPELINE_CORE, ANATOMY_CORE, ALLELE2_CORE, MP_CORE, GENE_CORE));
+    }
+
+    // With --since, a core that cannot be built incrementally is rebuilt only if one of these upstream cores changed.
+    // Cores not listed here are skipped.
+    private static final Map<String, List<String>> incrementalUpstreamCores = new HashMap<>();
+    static {
+        incrementalUpstreamCores.put(STATSTICAL_RESULT_CORE, Arrays.asList(OBSERVATION_CORE, GENOTYPE_PHENOTYPE_CORE));
+        incrementalUpstreamCores.put(MP_CORE, Arrays.asList(GENOTYPE_PHENOTYPE_CORE, STATSTICAL_RESULT_CORE));
+        incrementalUpstreamCores.put(GENE_CORE, Arrays.asList(OBSERVATION_CORE, GENOTYPE_PHENOTYPE_CORE, STATSTICAL_RESULT_CORE));
+        incrementalUpstreamCores.put(AUTOSUGGEST_CORE, Arrays.asList(GENOTYPE_PHENOTYPE_CORE, MP_CORE, GENE_CORE));
+    }
+
     public static final int RETRY_COUNT = 2;                                    // If any core fails, retry building it up to this many times.
     public static final int RETRY_SLEEP_IN_MS = 60000;                          // If any core fails, sleep this long before reattempting to build the core.
     public static final String STAGING_SUFFIX = "_staging";                     // This snippet is appended to core names meant to be staging core names.
@@ -162,6 +210,7 @@ public class IndexerManager  implements CommandLineRunner {
     private static final String CORES_ARG = "cores";
     private static final String DAILY_ARG = "daily";
     private static final String NO_DEPS_ARG = "nodeps";
+    private static final String SINCE_ARG = "since";
 
 
     @Inject
@@ -182,7 +231,8 @@ public class IndexerManager  implements CommandLineRunner {
     private enum RunResult {
         OK,
         WARNING,
-        FAIL;
+        FAIL,
+        SKIPPED;
 
         private String getName(){
        		return this.toString();
@@ -210,6 +260,18 @@ public class IndexerManager  implements CommandLineRunner {
         return nodeps;
     }
 
+    public String getSince() {
+        return since;
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    public void setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
 
     // PUBLIC/PROTECTED METHODS
 
@@ -247,25 +309,123 @@ public class IndexerManager  implements CommandLineRunner {
         initialise(args);
 
         System.out.println("run indexer...");
-        SimpleDateFormat dateFormatter = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
         ExecutionStatsList executionStatsList = new ExecutionStatsList();
         logger.debug("IndexerManager: nodeps = " + nodeps);
         System.out.println("Building these cores in this order:	" + StringUtils.join(cores));
+        if (since != null) {
+            System.out.println("Building incrementally since " + since);
+        }
+        logger.info("Using {} indexer threads and {} database connections", threadCount, (dbConnectionCount > 0 ? dbConnectionCount : "unlimited"));
+
+        HighWaterMarks highWaterMarks = new HighWaterMarks(new File(highWaterMarkFile));
+        String         release        = getDataReleaseVersion();
+        Set<String>    changedCores   = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        Semaphore      dbConnections  = (dbConnectionCount > 0 ? new Semaphore(dbConnectionCount) : null);
+        HeapMonitor    heapMonitor    = new HeapMonitor();
+
+        // Dependency-ordered scheduler. A core is submitted once every selected core upstream of it has finished, so
+        // independent cores build concurrently, up to threadCount at a time.
+        ExecutorService                      pool       = Executors.newFixedThreadPool(threadCount);
+        CompletionService<ExecutionStatsRow> completion = new ExecutorCompletionService<>(pool);
+        List<IndexerItem>                    pending    = new ArrayList<>(Arrays.asList(indexerItems));
+        Set<String>                          finished   = new HashSet<>();
+        int                                  running    = 0;
+
+        try {
+            while ( ! pending.isEmpty() || (running > 0)) {
+
+                Iterator<IndexerItem> it = pending.iterator();
+                while (it.hasNext()) {
+                    IndexerItem indexerItem = it.next();
+                    if (isReady(indexerItem.name, finished)) {
+                        it.remove();
+                        completion.submit(() -> buildCore(indexerItem, highWaterMarks, release, changedCores, dbConnections, heapMonitor));
+                        running++;
+                    }
+                }
+
+                if (running == 0) {
+                    throw new IndexerException("Unable to schedule cores " + pending.stream().map(item -> item.name).collect(Collectors.toList()) + ": circular dependency");
+                }
+
+                ExecutionStatsRow row;
+                try {
+                    row = completion.take().get();
+                } catch (ExecutionException e) {
+                    throw (e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+                }
+                running--;
+                finished.add(row.coreName);
+                executionStatsList.add(row);
+            }
+
+        } finally {
+            pool.shutdownNow();
+            heapMonitor.close();
+        }
+
+        System.out.println(executionStatsList.toString());
+    }
+
+    /**
+     * Builds and validates one core.
+     *
+     * @return the core's execution statistics
+     */
+    private ExecutionStatsRow buildCore(IndexerItem indexerItem, HighWaterMarks highWaterMarks, String release, Set<String> changedCores,
+                                        Semaphore dbConnections, HeapMonitor heapMonitor) throws Exception {
+
+        SimpleDateFormat dateFormatter = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        RunStatus runStatus = new RunStatus();
+        RunResult runResult = RunResult.OK;
+        HighWaterMark highWaterMark = null;
+        int connections = 0;
 
-		for (IndexerItem indexerItem : indexerItems) {
-            long start = System.currentTimeMillis();
-            RunStatus runStatus = new RunStatus();
-            RunResult runResult = RunResult.OK;
+        long start = System.currentTimeMillis();
+        heapMonitor.start(indexerItem.name);
+        try {
+
+            AbstractIndexer indexer = (AbstractIndexer) applicationContext.getAutowireCapableBeanFactory().createBean(indexerItem.indexerClass.newInstance().getClass());
+
+            if (dbConnections != null) {
+                connections = Math.min(indexer.getDatabaseConnectionCount(), dbConnectionCount);
+                dbConnections.acquire(connections);
+            }
 
+            start = System.currentTimeMillis();
             logger.info("[START] {} at {}", indexerItem.name.toUpperCase(), dateFormatter.format(new Date()));
-            try {
 
-                AbstractIndexer indexer = (AbstractIndexer) applicationContext.getAutowireCapableBeanFactory().createBean(indexerItem.indexerClass.newInstance().getClass());
+            if (indexer instanceof IncrementalIndexer) {
+                highWaterMark = new HighWaterMark(indexerItem.name, release, Instant.now(), ((IncrementalIndexer) indexer).getHighWaterMark());
+            }
+
+            if (since == null) {
                 runStatus = indexer.run();
+            } else {
+                runStatus = runSince(indexerItem.name, indexer, highWaterMarks, changedCores);
+                if (runStatus == null) {
+                    logger.info("[SKIP]  {}: no upstream core changed", indexerItem.name.toUpperCase());
+                    return new ExecutionStatsRow(indexerItem.name, RunResult.SKIPPED, start, new Date().getTime(), heapMonitor.stop(indexerItem.name));
+                }
+            }
 
+            if (runStatus.hasErrors()) {
+                for (String errorMessage : runStatus.getErrorMessages()) {
+                    logger.error(errorMessage);
+                    runResult = RunResult.FAIL;
+                }
+            } else {
+                if (runStatus.hasWarnings()) {
+                    for (String warningMessage : runStatus.getWarningMessages()) {
+                        logger.warn(warningMessage);
+                        runResult = RunResult.WARNING;
+                    }
+                }
+
+                runStatus = indexer.validateBuild();
                 if (runStatus.hasErrors()) {
                     for (String errorMessage : runStatus.getErrorMessages()) {
-                    	logger.error(errorMessage);
+                        logger.error(errorMessage);
                         runResult = RunResult.FAIL;
                     }
                 } else {
@@ -275,38 +435,60 @@ public class IndexerManager  implements CommandLineRunner {
                             runResult = RunResult.WARNING;
                         }
                     }
-
-	                runStatus = indexer.validateBuild();
-                    if (runStatus.hasErrors()) {
-                        for (String errorMessage : runStatus.getErrorMessages()) {
-                        	logger.error(errorMessage);
-                            runResult = RunResult.FAIL;
-                        }
-                    } else {
-                        if (runStatus.hasWarnings()) {
-                            for (String warningMessage : runStatus.getWarningMessages()) {
-                                logger.warn(warningMessage);
-                                runResult = RunResult.WARNING;
-                            }
-                        }
-                    }
                 }
+            }
 
+        } catch (IndexerException ie) {
+            runStatus.addError(ie.getLocalizedMessage());
+            logExceptions(ie);
+            runResult = RunResult.FAIL;
+        } catch (IllegalAccessException | InstantiationException e) {
+            logger.error("error:", e);
+            runResult = RunResult.FAIL;
+        } finally {
+            if (connections > 0) {
+                dbConnections.release(connections);
+            }
+        }
+
+        if ((highWaterMark != null) && (runResult != RunResult.FAIL)) {
+            try {
+                highWaterMarks.record(highWaterMark);
             } catch (IndexerException ie) {
-                runStatus.addError(ie.getLocalizedMessage());
                 logExceptions(ie);
-                runResult = RunResult.FAIL;
-            } catch (IllegalAccessException | InstantiationException e) {
-	            logger.error("error:", e);
-	            runResult = RunResult.FAIL;
             }
+        }
 
-			logger.info("[END]   {} at {}", indexerItem.name.toUpperCase(), dateFormatter.format(new Date()));
-            executionStatsList.add(new ExecutionStatsRow(indexerItem.name, runResult, start, new Date().getTime()));
-            CommonUtils.printJvmMemoryConfiguration();
+        logger.info("[END]   {} at {}", indexerItem.name.toUpperCase(), dateFormatter.format(new Date()));
+        CommonUtils.printJvmMemoryConfiguration();
+
+        return new ExecutionStatsRow(indexerItem.name, runResult, start, new Date().getTime(), heapMonitor.stop(indexerItem.name));
+    }
+
+    /**
+     * @return true if every core upstream of {@code core} that is being built in this run has finished
+     */
+    private boolean isReady(String core, Set<String> finished) {
+        for (String upstreamCore : getUpstreamCores(core)) {
+            if (cores.contains(upstreamCore) && ! finished.contains(upstreamCore)) {
+                return false;
+            }
         }
 
-        System.out.println(executionStatsList.toString());
+        return true;
+    }
+
+    /**
+     * @return the cores that must be built before {@code core}. With --since, this includes the cores whose changes
+     * decide whether {@code core} is rebuilt.
+     */
+    public List<String> getUpstreamCores(String core) {
+        Set<String> upstream = new LinkedHashSet<>(upstreamCores.getOrDefault(core, new ArrayList<>()));
+        if (since != null) {
+            upstream.addAll(incrementalUpstreamCores.getOrDefault(core, new ArrayList<>()));
+        }
+
+        return new ArrayList<>(upstream);
     }
 
     protected ApplicationContext loadApplicationContext() {
@@ -353,6 +535,14 @@ public class IndexerManager  implements CommandLineRunner {
             }
         }
 
+        // SINCE_ARG must have a value.
+        if (options.has(SINCE_ARG)) {
+            String sinceValue = (String) options.valueOf(SINCE_ARG);
+            if ((sinceValue == null) || (sinceValue.trim().isEmpty())) {
+                throw new IndexerException(new MissingRequiredArgumentException("Expected --since=<timestamp|release>"));
+            }
+        }
+
         // Verify that each core name in coresRequested exists. Throw an exception if any does not.
         for (String core : coresRequested) {
             if ( ! allCoresList.contains(core)) {
@@ -365,6 +555,56 @@ public class IndexerManager  implements CommandLineRunner {
     // PRIVATE METHODS
 
 
+    /**
+     * Builds one core in --since mode. An incremental indexer indexes only what was loaded after its high-water mark
+     * for {@code since}, or the whole core if there is no such mark. Any other indexer rebuilds its whole core if one
+     * of its upstream cores changed in this run.
+     *
+     * @return the run status, or null if the core was skipped
+     */
+    private RunStatus runSince(String core, AbstractIndexer indexer, HighWaterMarks highWaterMarks, Set<String> changedCores) throws Exception {
+
+        if (indexer instanceof IncrementalIndexer) {
+            RunStatus     runStatus;
+            HighWaterMark mark = highWaterMarks.find(core, since);
+            if (mark == null) {
+                logger.info("No {} high-water mark found for '{}'. Building the whole core.", core, since);
+                runStatus = indexer.run();
+            } else {
+                logger.info("Building {} incrementally from {}", core, mark);
+                runStatus = ((IncrementalIndexer) indexer).runSince(mark.getId());
+            }
+
+            if (indexer.getChangedDocumentCount() > 0) {
+                changedCores.add(core);
+            }
+
+            return runStatus;
+        }
+
+        for (String upstreamCore : incrementalUpstreamCores.getOrDefault(core, new ArrayList<>())) {
+            if (changedCores.contains(upstreamCore)) {
+                changedCores.add(core);
+                return indexer.run();
+            }
+        }
+
+        return null;
+    }
+
+    private String getDataReleaseVersion() {
+        try {
+            MetaInfo metaInfo = applicationContext.getBean(MetaInfoRepository.class).findByPropertyKey("data_release_version");
+            if (metaInfo != null) {
+                return metaInfo.getPropertyValue();
+            }
+        } catch (Exception e) {
+            logger.warn("Unable to get the data release version: {}", e.getLocalizedMessage());
+        }
+
+        return "unknown";
+    }
+
     private void loadIndexers() {
         List<IndexerItem> indexerItemList = new ArrayList();
 
@@ -454,6 +694,12 @@ public class IndexerManager  implements CommandLineRunner {
         parser.accepts(DAILY_ARG);
         parser.accepts(NO_DEPS_ARG);
 
+        // since [optional]
+        parser.accepts(SINCE_ARG)
+                .withRequiredArg()
+                .ofType(String.class)
+                .describedAs("Build incrementally from the high-water mark at this timestamp or data release.");
+
         try {
             // Parse the parameters.
             options = parser.parse(args);
@@ -487,6 +733,8 @@ public class IndexerManager  implements CommandLineRunner {
 
             validateParameters(options, coresRequested);
 
+            since = (options.has(SINCE_ARG) ? ((String) options.valueOf(SINCE_ARG)).trim() : null);
+
             // Build the cores list as follows:
             //   If --all specified, set firstCore to pipeline.
             //   Else if --daily specified, set firstCore to allele2.
@@ -631,16 +879,18 @@ public class IndexerManager  implements CommandLineRunner {
         private RunResult runResult;
         private Long startTimeInMs;
         private Long endTimeInMs;
+        private Long peakHeapInBytes;
 
         public ExecutionStatsRow() {
-            this("<undefined>", RunResult.FAIL, 0, 0);
+            this("<undefined>", RunResult.FAIL, 0, 0, 0);
         }
 
-        public ExecutionStatsRow(String coreName, RunResult runResult, long startTimeInMs, long endTimeInMs) {
+        public ExecutionStatsRow(String coreName, RunResult runResult, long startTimeInMs, long endTimeInMs, long peakHeapInBytes) {
             this.coreName = coreName;
             this.runResult = runResult;
             this.startTimeInMs = startTimeInMs;
             this.endTimeInMs = endTimeInMs;
+            this.peakHeapInBytes = peakHeapInBytes;
         }
 
         @Override
@@ -650,9 +900,9 @@ public class IndexerManager  implements CommandLineRunner {
             Formatter formatter = new Formatter(sb);
             long millis = endTimeInMs - startTimeInMs;
             String elapsed = commonUtils.msToHms(millis);
-            formatter.format("%20s started %s. Finished (%s) %s. Elapsed time: %s",
+            formatter.format("%20s started %s. Finished (%s) %s. Elapsed time: %s. Peak heap: %d MB",
                              coreName, dateFormatter.format(startTimeInMs), runResult.name(),
-                             dateFormatter.format(endTimeInMs), elapsed);
+                             dateFormatter.format(endTimeInMs), elapsed, peakHeapInBytes / (1024 * 1024));
 
             return sb.toString();
         }
@@ -682,15 +932,64 @@ public class IndexerManager  implements CommandLineRunner {
                     sb.append("\n");
                 }
                 sb.append("\n");
+                // Cores may have been built concurrently, so measure from the earliest start to the latest finish.
+                long start = rows.stream().mapToLong(row -> row.startTimeInMs).min().getAsLong();
+                long end   = rows.stream().mapToLong(row -> row.endTimeInMs).max().getAsLong();
                 sb.append("Total build time: ");
-                String elapsed = commonUtils.msToHms(rows.get(rows.size() - 1).endTimeInMs - rows.get(0).startTimeInMs);
-                sb.append(elapsed);
+                sb.append(commonUtils.msToHms(end - start));
             }
 
             return sb.toString();
         }
     }
 
+    /**
+     * Samples the used heap once a second and tracks its peak while each core is being built. The heap is shared, so
+     * the peak reported for a core includes whatever other cores were building at the same time.
+     */
+    private static class HeapMonitor {
+        private static final long SAMPLE_INTERVAL_IN_MS = 1000;
+
+        private final MemoryMXBean               memoryBean = ManagementFactory.getMemoryMXBean();
+        private final Map<String, Long>          peaks      = new ConcurrentHashMap<>();
+        private final ScheduledExecutorService   sampler    = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "heap-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        public HeapMonitor() {
+            sampler.scheduleAtFixedRate(this::sample, SAMPLE_INTERVAL_IN_MS, SAMPLE_INTERVAL_IN_MS, TimeUnit.MILLISECONDS);
+        }
+
+        public void start(String coreName) {
+            peaks.put(coreName, used());
+        }
+
+        /**
+         * @return the peak heap used, in bytes, since {@link #start(String)} was called for {@code coreName}
+         */
+        public long stop(String coreName) {
+            sample();
+            Long peak = peaks.remove(coreName);
+
+            return (peak == null ? 0L : peak);
+        }
+
+        public void close() {
+            sampler.shutdownNow();
+        }
+
+        private void sample() {
+            long used = used();
+            peaks.replaceAll((coreName, peak) -> Math.max(peak, used));
+        }
+
+        private long used() {
+            return memoryBean.getHeapMemoryUsage().getUsed();
+        }
+    }
+
     public class IndexManagerHelpFormatter implements HelpFormatter {
         private String errorMessage;
 
@@ -702,6 +1001,7 @@ public class IndexerManager  implements CommandLineRunner {
                     "   | --daily\n" +
                     "   | --cores=aaa [--nodeps]\n" +
                     "   | --cores=aaa,bbb[,ccc [, ...]]\n" +
+                    "   [--since=<timestamp|release>]\n" +
                     "   \n" +
                     "where aaa, bbb, and ccc are cores chosen from the list shown below." +
                     "\n" +
@@ -710,9 +1010,16 @@ public class IndexerManager  implements CommandLineRunner {
                     "if ('--core=aaa' is specified, all cores from aaa to autosuggest are built.\n" +
                     "if ('--cores=aaa --nodeps' is specified, ony core 'aaa' is built.\n" +
                     "if ('--cores=aaa,bbb[,ccc [, ...]] is specified (i.e. 2 or more cores), only\n" +
-                    "   the specified cores are built, and in the order specified.\n" +
+                    "   the specified cores are built, in the order specified (but after any of them they depend on).\n" +
                     "   NOTE: specifying --nodeps with multiple cores is superfluous and is ignored,\n" +
                     "         as nodeps is the default for this case.\n" +
+                    "cores that do not depend on each other are built concurrently if the indexerManagerThreads\n" +
+                    "   property is greater than 1 (default 1).\n" +
+                    "if '--since=<timestamp|release>' is specified, the selected cores are brought up to date\n" +
+                    "   instead of rebuilt. experiment and genotype-phenotype index only the data loaded after\n" +
+                    "   their high-water mark at the given timestamp (yyyy-MM-dd[ HH:mm:ss]) or data release,\n" +
+                    "   and delete documents whose data no longer exist. statistical-result, mp, gene and\n" +
+                    "   autosuggest are rebuilt only if an upstream core changed. Other cores are skipped.\n" +
                     "\n" +
                     "Core list (in priority build order):\n" +
                     "   pipeline\n" +
@@ -19,6 +19,7 @@ import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.mousephenotype.cda.db.repositories.OntologyTermRepository;
 import org.mousephenotype.cda.indexers.exceptions.IndexerException;
+import org.mousephenotype.cda.indexers.utils.SolrBatchWriter;
 import org.mousephenotype.cda.owl.OntologyParser;
 import org.mousephenotype.cda.owl.OntologyParserFactory;
 import org.mousephenotype.cda.owl.OntologyTermDTO;
@@ -120,6 +121,7 @@ public class MGIPhenotypeIndexer extends AbstractIndexer implements CommandLineR
 	    int count = 1;
 
         mgiPhenotypeCore.deleteByQuery("*:*");
+        SolrBatchWriter writer = newBatchWriter(mgiPhenotypeCore, IndexerManager.MGI_PHENOTYPE_CORE, 30000);
 
         String query="SELECT DISTINCT CONCAT_WS(\"-\", bm.id, gf.acc, bmp.phenotype_acc) as id, bm.zygosity, org.short_name AS project_name, " +
 	        "org.name as project_fullname, gf.acc AS marker_accession_id, gf.symbol as marker_symbol, " +
@@ -210,8 +212,7 @@ public class MGIPhenotypeIndexer extends AbstractIndexer implements CommandLineR
                 doc.setLifeStageAcc(developmentalStageAcc);
                 doc.setLifeStageName(developmentalStageName);
 
-                expectedDocumentCount++;
-                mgiPhenotypeCore.addBean(doc, 30000);
+                writer.addBean(doc);
                 count ++;
 
 	            if (count % 100000 == 0) {
@@ -220,6 +221,7 @@ public class MGIPhenotypeIndexer extends AbstractIndexer implements CommandLineR
             }
 
             // Final commit to save the rest of the docs
+            closeBatchWriter(writer);
             mgiPhenotypeCore.commit();
 
         } catch (Exception e) {
@@ -26,6 +26,7 @@ import org.mousephenotype.cda.indexers.beans.ParamProcedurePipelineBean;
 import org.mousephenotype.cda.indexers.beans.PhenotypeCallSummaryBean;
 import org.mousephenotype.cda.indexers.exceptions.IndexerException;
 import org.mousephenotype.cda.indexers.utils.IndexerMap;
+import org.mousephenotype.cda.indexers.utils.SolrBatchWriter;
 import org.mousephenotype.cda.owl.OntologyParser;
 import org.mousephenotype.cda.owl.OntologyParserFactory;
 import org.mousephenotype.cda.owl.OntologyTermDTO;
@@ -90,6 +91,7 @@ public class MPIndexer extends AbstractIndexer implements CommandLineRunner {
 
     private OntologyParser        mpHpParser;
     private OntologyParser        mpParser;
+    private OntologyParser        mpTreeParser;      // this indexer's own copy of mpParser, with the tree json
     private OntologyParser        mpMaParser;
     private OntologyParser        maParser;
     private OntologyParserFactory ontologyParserFactory;
@@ -157,13 +159,18 @@ public class MPIndexer extends AbstractIndexer implements CommandLineRunner {
                 logger.warn(warning);
             }
 
+            // The tree json needs the gene variant counts, so is filled in once they are known.
+            mpTreeParser = ontologyParserFactory.getMpParserWithTreeJson(mpGeneVariantCount);
+            logger.debug("Loaded mp tree parser");
+
             // Delete the documents in the core if there are any.
             mpCore.deleteByQuery("*:*");
             mpCore.commit();
+            SolrBatchWriter writer = newBatchWriter(mpCore, IndexerManager.MP_CORE, 60000);
 
             for (String mpId: mpParser.getTermsInSlim()) {
 
-                OntologyTermDTO mpDTO = mpParser.getOntologyTerm(mpId);
+                OntologyTermDTO mpDTO = mpTreeParser.getOntologyTerm(mpId);
                 String termId = mpDTO.getAccessionId();
 
                 MpDTO mp = new MpDTO();
@@ -243,13 +250,11 @@ public class MPIndexer extends AbstractIndexer implements CommandLineRunner {
                 logger.debug(" Added {} records for termId {}", count, termId);
                 count ++;
 
-                expectedDocumentCount++;
-                mpCore.addBean(mp, 60000);
-
-                mpParser.fillJsonTreePath("MP:0000001", "/data/phenotypes/", mpGeneVariantCount, ontologyParserFactory.TOP_LEVEL_MP_TERMS, false); // call this if you want node ids from the objects
+                writer.addBean(mp);
             }
 
             // Send a final commit
+            closeBatchWriter(writer);
             mpCore.commit();
 
         } catch (SolrServerException | IOException | OWLOntologyCreationException | OWLOntologyStorageException | SQLException | URISyntaxException | JSONException e) {
@@ -28,7 +28,9 @@ import org.mousephenotype.cda.enumerations.ObservationType;
 import org.mousephenotype.cda.enumerations.SexType;
 import org.mousephenotype.cda.enumerations.ZygosityType;
 import org.mousephenotype.cda.indexers.exceptions.IndexerException;
+import org.mousephenotype.cda.indexers.utils.BatchPipeline;
 import org.mousephenotype.cda.indexers.utils.IndexerMap;
+import org.mousephenotype.cda.indexers.utils.SolrBatchWriter;
 import org.mousephenotype.cda.owl.OntologyParser;
 import org.mousephenotype.cda.owl.OntologyParserFactory;
 import org.mousephenotype.cda.owl.OntologyTermDTO;
@@ -52,6 +54,7 @@ import org.springframework.context.ConfigurableApplicationContext;
 import javax.inject.Inject;
 import javax.sql.DataSource;
 import javax.validation.constraints.NotNull;
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
@@ -66,17 +69,34 @@ import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Populate the experiment core
  */
 @EnableAutoConfiguration
-public class ObservationIndexer extends AbstractIndexer implements CommandLineRunner {
+public class ObservationIndexer extends AbstractIndexer implements CommandLineRunner, IncrementalIndexer {
 
     @Value("${experimenterIdMap}")
     String experimenterIdMap;
 
+    // Parallel indexing. With observationIndexerThreads > 1, each observation query is split into observation.id
+    // ranges that are run on a pool of that many workers (one database connection each), with the resulting documents
+    // handed in batches to observationIndexerWriterThreads dedicated solr writers over a bounded queue.
+    @Value("${observationIndexerThreads:1}")
+    int threadCount;
+
+    @Value("${observationIndexerWriterThreads:2}")
+    int writerThreadCount;
+
+    @Value("${observationIndexerBatchSize:1000}")
+    int batchSize;
+
+    // If set, the weight map is memory-mapped from this snapshot file, which is first written from the database if it
+    // does not exist or was built from older data.
+    @Value("${weightMapSnapshot:}")
+    String weightMapSnapshot;
 
 	private final Logger logger = LoggerFactory.getLogger(ObservationIndexer.class);
 
@@ -115,12 +135,14 @@ public class ObservationIndexer extends AbstractIndexer implements CommandLineRu
 
     private final long    DISPLAY_INTERVAL_IN_SECONDS                       = 300;
     private final int     MAX_MISSING_BIOLOGICAL_DATA_ERROR_COUNT_DISPLAYED = 100;
-    private final Boolean USE_PARALLEL_STREAM                               = Boolean.FALSE;
-    private       int     missingBiologicalDataErrorCount                   = 0;
+    private final int     PARTITIONS_PER_THREAD                             = 4;
+    private final int     BATCHES_QUEUED_PER_WRITER                         = 4;
+    private AtomicInteger missingBiologicalDataErrorCount                   = new AtomicInteger(0);
 
     private long       startTimestamp;
     private AtomicLong lastTimestamp         = new AtomicLong(0L);
-    private AtomicLong expectedDocumentCount = new AtomicLong(0L);      // Override inherited variable with AtomicLong to avoid concurrency issues.
+    private AtomicLong documentCount         = new AtomicLong(0L);      // Documents built so far, for progress logging. Shared by all worker threads.
+    private long       sinceId               = -1L;                     // If not negative, index only observations with a greater id (see runSince()).
 
 	protected ObservationIndexer() {
 
@@ -153,10 +175,30 @@ public class ObservationIndexer extends AbstractIndexer implements CommandLineRu
     }
 
 
+    @Override
+    public int getDatabaseConnectionCount() {
+        return Math.max(1, threadCount);
+    }
+
+    @Override
+    public long getHighWaterMark() throws IndexerException {
+        return getMaxId("observation");
+    }
+
+    @Override
+    public RunStatus runSince(long highWaterMark) throws IndexerException {
+        sinceId = highWaterMark;
+        try {
+            return run();
+        } catch (SQLException e) {
+            throw new IndexerException(e);
+        }
+    }
+
     @Override
 	public RunStatus run() throws IndexerException, SQLException {
 	    if ( ! SKIP_SLOW_LOADING_MAPS) {
-            weightMap = new WeightMap(komp2DataSource);
+            weightMap = loadWeightMap();
         }
         long count;
         RunStatus runStatus = new RunStatus();
@@ -215,7 +257,6 @@ public class ObservationIndexer extends AbstractIndexer implements CommandLineRu
             logger.info("  maps populated");
 
 			count = populateObservationSolrCore(runStatus);
-			super.expectedDocumentCount = expectedDocumentCount.get();      // Save atomic document count in parent class.
 
 
         } catch (SolrServerException | SQLException | IOException | OWLOntologyCreationException | OWLOntologyStorageException e) {
@@ -238,7 +279,14 @@ public class ObservationIndexer extends AbstractIndexer implements CommandLineRu
     }
 	public long populateObservationSolrCore(RunStatus runStatus) throws IOException, SolrServerException, IndexerException {
 
-		experimentCore.deleteByQuery("*:*");
+        if (sinceId < 0) {
+            experimentCore.deleteByQuery("*:*");
+        } else {
+            // Incremental build: keep the core, less the documents whose observations no longer exist.
+            logger.info("  Indexing observations with id > {}", sinceId);
+            long existingDocumentCount = getDocumentCount(experimentCore);
+            expectedDocumentCount = existingDocumentCount - deleteStaleDocuments(experimentCore, "SELECT id FROM observation WHERE missing = 0");
+        }
 
 		List<NamedQuery> observationQueries = Arrays.asList(
                 new NamedQuery("Categorical", "SELECT o.id as id, o.db_id as datasource_id, o.parameter_id as parameter_id, o.parameter_stable_id, o.observation_type, o.missing, o.parameter_status, o.parameter_status_message, o.biological_sample_id, o.sequence_id as sequence_id ,e.project_id as project_id, e.pipeline_id as pipeline_id, e.procedure_id as procedure_id, e.date_of_experiment, e.external_id, e.id as experiment_id, e.metadata_combined as metadata_combined, e.metadata_group as metadata_group, bs.project_id AS specimen_project_id, co.category as raw_category FROM observation o INNER JOIN categorical_observation co ON o.id=co.id INNER JOIN experiment_observation eo ON eo.observation_id=o.id INNER JOIN experiment e on eo.experiment_id=e.id  LEFT OUTER JOIN biological_sample bs ON bs.id = o.biological_sample_id WHERE o.missing=0"),
@@ -249,43 +297,33 @@ public class ObservationIndexer extends AbstractIndexer implements CommandLineRu
                 new NamedQuery("Image", "SELECT o.id as id, o.db_id as datasource_id, o.parameter_id as parameter_id, o.parameter_stable_id, o.observation_type, o.missing, o.parameter_status, o.parameter_status_message, o.biological_sample_id, o.sequence_id as sequence_id ,e.project_id as project_id, e.pipeline_id as pipeline_id, e.procedure_id as procedure_id, e.date_of_experiment, e.external_id, e.id as experiment_id, e.metadata_combined as metadata_combined, e.metadata_group as metadata_group, bs.project_id AS specimen_project_id, iro.file_type, iro.download_file_path FROM observation o INNER JOIN image_record_observation iro ON o.id=iro.id INNER JOIN experiment_observation eo ON eo.observation_id=o.id INNER JOIN experiment e on eo.experiment_id=e.id LEFT OUTER JOIN biological_sample bs ON bs.id = o.biological_sample_id WHERE o.missing=0"),
                 new NamedQuery("OntologyTerm", "SELECT o.id as id, o.db_id as datasource_id, o.parameter_id as parameter_id, o.parameter_stable_id, o.observation_type, o.missing, o.parameter_status, o.parameter_status_message, o.biological_sample_id, o.sequence_id as sequence_id ,e.project_id as project_id, e.pipeline_id as pipeline_id, e.procedure_id as procedure_id, e.date_of_experiment, e.external_id, e.id as experiment_id, e.metadata_combined as metadata_combined, e.metadata_group as metadata_group, bs.project_id AS specimen_project_id, onto.term AS ontology_id, onto.term_value AS ontology_term FROM observation o INNER JOIN ontology_entity onto ON o.id=onto.ontology_observation_id INNER JOIN experiment_observation eo ON eo.observation_id=o.id INNER JOIN experiment e on eo.experiment_id=e.id LEFT OUTER JOIN biological_sample bs ON bs.id = o.biological_sample_id WHERE o.missing=0")
          );
+        if (sinceId >= 0) {
+            List<NamedQuery> sinceQueries = new ArrayList<>();
+            for (NamedQuery query : observationQueries) {
+                sinceQueries.add(new NamedQuery(query.name, query.query + " AND o.id > " + sinceId));
+            }
+            observationQueries = sinceQueries;
+        }
+
 
         startTimestamp = System.currentTimeMillis();
         lastTimestamp.getAndSet(startTimestamp);
 
         logger.info("  BEGIN processing experiments");
 
-        if (USE_PARALLEL_STREAM) {
-
-            observationQueries
-                .parallelStream()
-                .forEach(query -> {
-
-                    long documentCountForQuery = 0L;
-                    try (Connection connection = komp2DataSource.getConnection()) {
-
-                        logger.info("STARTING QUERY '" + query.name + "'");
-                        documentCountForQuery = executeQueryAndWriteObservations(connection, query, runStatus);
-                        logger.info("FINISHED QUERY '" + query.name + "'. Wrote {} documents.", documentCountForQuery);
-
-                    } catch (Exception e) {
+        if (threadCount > 1) {
 
-                        logger.error("EXCEPTION in query {}. Wrote {} documents before error. Query aborted.", query.name, documentCountForQuery);
-                        e.printStackTrace();
-                        throw new RuntimeException(e);
-                    }
-
-                }
-            );
+            populateObservationSolrCoreInParallel(observationQueries, runStatus);
 
         } else {
 
+            SolrBatchWriter writer = newBatchWriter(experimentCore, IndexerManager.OBSERVATION_CORE, 60000);
             for (NamedQuery query : observationQueries) {
                 long documentCountForQuery = 0L;
                 try (Connection connection = komp2DataSource.getConnection()) {
 
                     logger.info("  STARTING QUERY {}", query.name);
-                    documentCountForQuery = executeQueryAndWriteObservations(connection, query, runStatus);
+                    documentCountForQuery = executeQueryAndWriteObservations(connection, query, writer, runStatus);
                     logger.info("  FINISHED QUERY {}. Wrote {} documents.", query.name, documentCountForQuery);
 
                 } catch (Exception e) {
@@ -295,18 +333,165 @@ public class ObservationIndexer extends AbstractIndexer implements CommandLineRu
                     throw new RuntimeException(e);
                 }
             }
+            closeBatchWriter(writer);
         }
 
         logger.info("  FINISHED processing experiments.");
 
-        if (missingBiologicalDataErrorCount > 0) {
-            logger.error("'Cannot find biological data for specimen id...' occurred " + missingBiologicalDataErrorCount + " times.");
+        if (missingBiologicalDataErrorCount.get() > 0) {
+            logger.error("'Cannot find biological data for specimen id...' occurred " + missingBiologicalDataErrorCount.get() + " times.");
+        }
+
+        return expectedDocumentCount;
+    }
+
+    private WeightMap loadWeightMap() throws IndexerException, SQLException {
+
+        if ((weightMapSnapshot == null) || weightMapSnapshot.trim().isEmpty()) {
+            return new WeightMap(komp2DataSource);
+        }
+
+        try {
+            return WeightMap.openOrCreate(komp2DataSource, new File(weightMapSnapshot.trim()));
+        } catch (IOException e) {
+            throw new IndexerException("Unable to open or create weight map snapshot " + weightMapSnapshot, e);
+        }
+    }
+
+    /**
+     * Splits each observation query into observation.id ranges and runs every (query, range) partition on a
+     * {@link BatchPipeline} of {@code threadCount} workers, each with its own database connection. Workers build the
+     * documents and hand them, {@code batchSize} at a time, to a bounded queue drained by {@code writerThreadCount}
+     * solr writer threads, each with its own {@link SolrBatchWriter}. When the queue is full the workers block until
+     * the writers catch up.
+     *
+     * The supporting maps are read-only by the time this is called, so they are shared by all workers. Each
+     * partition accumulates its own {@link RunStatus}, which is merged into {@code runStatus} once it completes. As in
+     * the sequential build, a failed partition aborts the build.
+     */
+    private void populateObservationSolrCoreInParallel(List<NamedQuery> observationQueries, RunStatus runStatus) throws IndexerException {
+
+        // Populate the life stage map up front so the workers never race to lazily load it.
+        doLiveStageLookup();
+
+        List<IdRange> ranges = getObservationIdRanges(threadCount * PARTITIONS_PER_THREAD);
+        logger.info("  Using {} worker threads, {} writer threads, batch size {}, {} partitions per query",
+                    threadCount, writerThreadCount, batchSize, ranges.size());
+
+        Map<String, BatchPipeline.Partition<ObservationDTOWrite>> partitions = new LinkedHashMap<>();
+        for (NamedQuery query : observationQueries) {
+            for (IdRange range : ranges) {
+                partitions.put(query.name + " " + range, queue -> executePartition(query, range, queue));
+            }
+        }
+
+        List<SolrBatchWriter> writers = new ArrayList<>();
+        BatchPipeline<ObservationDTOWrite> pipeline = new BatchPipeline<>(threadCount, writerThreadCount, writerThreadCount * BATCHES_QUEUED_PER_WRITER);
+        runStatus.add(pipeline.run(partitions, () -> {
+            SolrBatchWriter writer = newBatchWriter(experimentCore, IndexerManager.OBSERVATION_CORE + "-" + writers.size(), 60000);
+            writers.add(writer);
+            return writer::addBeans;
+        }));
+
+        for (SolrBatchWriter writer : writers) {
+            closeBatchWriter(writer);
+        }
+
+        try {
+            experimentCore.commit();
+        } catch (SolrServerException | IOException e) {
+            throw new IndexerException(e);
+        }
+    }
+
+    private RunStatus executePartition(NamedQuery query, IdRange range, BatchPipeline.BatchQueue<ObservationDTOWrite> queue) throws Exception {
+
+        RunStatus                 partitionStatus        = new RunStatus();
+        List<ObservationDTOWrite> batch                  = new ArrayList<>(batchSize);
+        long                      partitionDocumentCount = 0L;
+
+        logger.debug("  STARTING QUERY {} {}", query.name, range);
+        try (Connection connection = komp2DataSource.getConnection();
+             PreparedStatement p = connection.prepareStatement(query.query + " AND o.id >= ? AND o.id < ?", ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            setFetchSize(p);
+            p.setLong(1, range.from);
+            p.setLong(2, range.to);
+
+            ResultSet r = p.executeQuery();
+            while (r.next()) {
+                batch.add(buildObservation(r, partitionStatus));
+                documentCount.getAndIncrement();
+                partitionDocumentCount++;
+
+                if (batch.size() >= batchSize) {
+                    queue.put(batch);
+                    batch = new ArrayList<>(batchSize);
+                    checkAndLogProgress(query.name);
+                }
+            }
+
+            if ( ! batch.isEmpty()) {
+                queue.put(batch);
+            }
+        }
+        logger.debug("  FINISHED QUERY {} {}. Built {} documents.", query.name, range, partitionDocumentCount);
+
+        return partitionStatus;
+    }
+
+    /**
+     * Returns {@code partitionCount} contiguous, half-open observation.id ranges covering every observation (in an
+     * incremental build, every observation with an id greater than {@code sinceId}).
+     */
+    private List<IdRange> getObservationIdRanges(int partitionCount) throws IndexerException {
+
+        try (Connection connection = komp2DataSource.getConnection();
+             PreparedStatement p = connection.prepareStatement("SELECT MIN(id) AS min_id, MAX(id) AS max_id FROM observation")) {
+
+            ResultSet r = p.executeQuery();
+            if (r.next()) {
+                return IdRange.split(Math.max(r.getLong("min_id"), sinceId + 1), r.getLong("max_id") + 1, partitionCount);
+            }
+
+        } catch (SQLException e) {
+            throw new IndexerException(e);
         }
 
-        return expectedDocumentCount.get();
+        return new ArrayList<>();
     }
 
-    private long executeQueryAndWriteObservations(Connection connection, NamedQuery query, RunStatus runStatus) {
+    static class IdRange {
+        public final long from;
+        public final long to;
+
+        public IdRange(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * @return at most {@code partitionCount} contiguous, half-open ranges of about the same size covering
+         * [{@code from}, {@code to}), or none if the range is empty
+         */
+        static List<IdRange> split(long from, long to, int partitionCount) {
+
+            List<IdRange> ranges = new ArrayList<>();
+            long          step   = Math.max(1L, (to - from + partitionCount - 1) / partitionCount);
+            for (long start = from; start < to; start += step) {
+                ranges.add(new IdRange(start, Math.min(start + step, to)));
+            }
+
+            return ranges;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + from + ", " + to + ")";
+        }
+    }
+
+    private long executeQueryAndWriteObservations(Connection connection, NamedQuery query, SolrBatchWriter writer, RunStatus runStatus) {
 
 	    long documentCountForQuery = 0L;
         try (PreparedStatement p = connection.prepareStatement(query.query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
@@ -317,8 +502,9 @@ public class ObservationIndexer extends AbstractIndexer implements CommandLineRu
             ResultSet r = p.executeQuery();
             logger.debug("  QUERY END");		// 2019-08-16 16:57:05.791  INFO 32731 --- [           main] o.m.cda.indexers.ObservationIndexer      :   QUERY END
 
-            documentCountForQuery = writeObservations(query, r, runStatus);
+            documentCountForQuery = writeObservations(query, r, writer, runStatus);
             checkAndLogProgress(query.name);
+            writer.flush();
             experimentCore.commit();
 
         } catch (Exception e) {
@@ -344,13 +530,14 @@ public class ObservationIndexer extends AbstractIndexer implements CommandLineRu
         }
     }
 
-    private long writeObservations(NamedQuery query, ResultSet r, RunStatus runStatus) throws Exception {
+    private long writeObservations(NamedQuery query, ResultSet r, SolrBatchWriter writer, RunStatus runStatus) throws Exception {
 
 	    long documentCountForQuery = 0L;
         while (r.next()) {
 
-            if (writeObservation(query, r, runStatus))
-                continue;
+            writer.addBean(buildObservation(r, runStatus));
+            documentCount.getAndIncrement();
+            checkAndLogProgress(query.name);
 
             documentCountForQuery++;
         }
@@ -358,7 +545,7 @@ public class ObservationIndexer extends AbstractIndexer implements CommandLineRu
         return documentCountForQuery;
     }
 
-    private boolean writeObservation(NamedQuery query, ResultSet r, RunStatus runStatus) throws Exception {
+    private ObservationDTOWrite buildObservation(ResultSet r, RunStatus runStatus) throws Exception {
         ObservationDTOWrite o = new ObservationDTOWrite();
 
         o.setId(r.getString("id"));
@@ -382,25 +569,7 @@ public class ObservationIndexer extends AbstractIndexer implements CommandLineRu
         addParameterAssociationsIfApplicable(r, o);
         addWeightParametersIfApplicable(o);
 
-        try {
-
-            experimentCore.addBean(o, 60000);
-
-        } catch (Exception e) {
-
-            logger.error("Failed to add experimentId: {}, dateOfBirth: {},  dateOfExperiment: {}, weightDate: {}. Reason: {}\nquery: {}",
-                         o.getExperimentId(),
-                         o.getDateOfBirthAsZonedDateTime() == null ? "null" : o.getDateOfBirthAsZonedDateTime().toString(),
-                         o.getDateOfExperimentAsZonedDateTime() == null ? "null" : o.getDateOfExperimentAsZonedDateTime().toString(),
-                         o.getWeightDateAsZonedDateTime() == null ? "null" : o.getWeightDateAsZonedDateTime().toString(),
-                         e.getLocalizedMessage(),
-                         query);
-            return true;
-        }
-
-        checkAndLogProgress(query.name);
-        expectedDocumentCount.getAndIncrement();
-        return false;
+        return o;
     }
 
     private void addSequenceIdIfApplicable(ResultSet r, ObservationDTOWrite o) throws SQLException {
@@ -519,7 +688,7 @@ public class ObservationIndexer extends AbstractIndexer implements CommandLineRu
         } else {
             if (addBiologicalDataForSamples(o, bioSampleId)) {
 
-                if (missingBiologicalDataErrorCount++ < MAX_MISSING_BIOLOGICAL_DATA_ERROR_COUNT_DISPLAYED) {
+                if (missingBiologicalDataErrorCount.getAndIncrement() < MAX_MISSING_BIOLOGICAL_DATA_ERROR_COUNT_DISPLAYED) {
                     runStatus.addError(" Cannot find biological data for specimen id: " + r.getString("biological_sample_id") + ", experiment id: " + r.getString("experiment_id"));
                 }
 
@@ -1198,7 +1367,7 @@ public class ObservationIndexer extends AbstractIndexer implements CommandLineRu
     private synchronized void checkAndLogProgress(String queryName) {
         long currentTimestamp = System.currentTimeMillis();
         if (currentTimestamp - lastTimestamp.get() >= (DISPLAY_INTERVAL_IN_SECONDS * 1000)) {
-            logCurrentProgress(queryName, expectedDocumentCount.get(), startTimestamp);
+            logCurrentProgress(queryName, documentCount.get(), startTimestamp);
             lastTimestamp.getAndSet(currentTimestamp);
         }
     }
@@ -20,6 +20,7 @@ import org.apache.solr.client.solrj.SolrServerException;
 import org.mousephenotype.cda.db.repositories.OntologyTermRepository;
 import org.mousephenotype.cda.enumerations.ObservationType;
 import org.mousephenotype.cda.indexers.exceptions.IndexerException;
+import org.mousephenotype.cda.indexers.utils.SolrBatchWriter;
 import org.mousephenotype.cda.owl.OntologyParser;
 import org.mousephenotype.cda.owl.OntologyParserFactory;
 import org.mousephenotype.cda.owl.OntologyTermDTO;
@@ -134,6 +135,7 @@ public class PipelineIndexer extends AbstractIndexer implements CommandLineRunne
 			initialiseSupportingBeans(connection, runStatus);
 			pipelineCore.deleteByQuery("*:*");
 			pipelineCore.commit();
+			SolrBatchWriter writer = newBatchWriter(pipelineCore, IndexerManager.PIPELINE_CORE, -1);
 
 			for (PipelineDTO pipeline : pipelines.values()) {
 
@@ -271,8 +273,7 @@ public class PipelineIndexer extends AbstractIndexer implements CommandLineRunne
 								logger.debug(" EMAP Id {} is not mapped to an EMAPA Id", emapId);
 							}
 						}
-						pipelineCore.addBean(doc);
-						expectedDocumentCount++;
+						writer.addBean(doc);
 					}
 				}
 			}
@@ -304,6 +305,7 @@ public class PipelineIndexer extends AbstractIndexer implements CommandLineRunne
 						.collect(Collectors.toSet());
 			}
 
+			closeBatchWriter(writer);
 			pipelineCore.commit();
 
 		} catch (IOException | SolrServerException | NullPointerException e) {
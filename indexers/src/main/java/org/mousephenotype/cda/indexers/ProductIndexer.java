@@ -5,6 +5,7 @@ import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.mousephenotype.cda.db.repositories.OntologyTermRepository;
 import org.mousephenotype.cda.indexers.exceptions.IndexerException;
+import org.mousephenotype.cda.indexers.utils.SolrBatchWriter;
 import org.mousephenotype.cda.solr.service.dto.ProductDTO;
 import org.mousephenotype.cda.utilities.RunStatus;
 import org.slf4j.Logger;
@@ -69,6 +70,7 @@ public class ProductIndexer  extends AbstractIndexer implements CommandLineRunne
         long start = System.currentTimeMillis();
 
         RunStatus runStatus = new RunStatus();
+        SolrBatchWriter writer = newBatchWriter(productCore, IndexerManager.PRODUCT_CORE, 30000);
         BufferedReader in = new BufferedReader(new FileReader(new File(pathToProductFile)));
         String[] header = in.readLine().split("\t");
         for (int i = 0; i < header.length; i++){
@@ -122,10 +124,11 @@ public class ProductIndexer  extends AbstractIndexer implements CommandLineRunne
 
             line = in.readLine();
 
-            productCore.addBean(doc, 30000);
+            writer.addBean(doc);
 
         }
 
+        closeBatchWriter(writer);
         productCore.commit();
         productDocCount = index;
 
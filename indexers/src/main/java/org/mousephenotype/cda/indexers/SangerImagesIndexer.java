@@ -20,6 +20,7 @@ import org.mousephenotype.cda.db.repositories.OntologyTermRepository;
 import org.mousephenotype.cda.indexers.exceptions.IndexerException;
 import org.mousephenotype.cda.indexers.utils.IndexerMap;
 import org.mousephenotype.cda.indexers.utils.SangerProcedureMapper;
+import org.mousephenotype.cda.indexers.utils.SolrBatchWriter;
 import org.mousephenotype.cda.owl.OntologyParser;
 import org.mousephenotype.cda.owl.OntologyParserFactory;
 import org.mousephenotype.cda.owl.OntologyTermDTO;
@@ -186,6 +187,7 @@ public class SangerImagesIndexer extends AbstractIndexer implements CommandLineR
 				java.sql.ResultSet.CONCUR_READ_ONLY)) {
 
 			sangerImagesCore.deleteByQuery("*:*");
+			SolrBatchWriter writer = newBatchWriter(sangerImagesCore, IndexerManager.IMAGES_CORE, 10000);
 
 			p.setFetchSize(Integer.MIN_VALUE);
 			ResultSet r = p.executeQuery();
@@ -415,8 +417,7 @@ public class SangerImagesIndexer extends AbstractIndexer implements CommandLineR
 
 				}
 
-				expectedDocumentCount++;
-				sangerImagesCore.addBean(o, 10000);
+				writer.addBean(o);
 
 				count += 1;
 			}
@@ -435,6 +436,7 @@ public class SangerImagesIndexer extends AbstractIndexer implements CommandLineR
 			}
 
 			// Final commit to save the rest of the docs
+			closeBatchWriter(writer);
 			sangerImagesCore.commit();
 
 		} catch (Exception e) {
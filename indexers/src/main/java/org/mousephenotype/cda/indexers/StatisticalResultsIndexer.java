@@ -29,6 +29,7 @@ import org.mousephenotype.cda.enumerations.SexType;
 import org.mousephenotype.cda.enumerations.ZygosityType;
 import org.mousephenotype.cda.indexers.exceptions.IndexerException;
 import org.mousephenotype.cda.indexers.utils.IndexerMap;
+import org.mousephenotype.cda.indexers.utils.SolrBatchWriter;
 import org.mousephenotype.cda.owl.OntologyParser;
 import org.mousephenotype.cda.owl.OntologyParserFactory;
 import org.mousephenotype.cda.owl.OntologyTermDTO;
@@ -70,10 +71,12 @@ public class StatisticalResultsIndexer extends AbstractIndexer implements Comman
 
     private final Logger logger = LoggerFactory.getLogger(StatisticalResultsIndexer.class);
     private Boolean SAVE = Boolean.TRUE;
+    private SolrBatchWriter writer;
     private Map<String, List<String>> impressAbnormals = new HashMap<>();
 
     private Double SIGNIFICANCE_THRESHOLD = GenotypePhenotypeService.P_VALUE_THRESHOLD;
     private final double REPORT_INTERVAL = 100000;
+    private final int    PRODUCER_THREAD_COUNT = 4;                           // Each result producer holds its own database connection.
 
     static final String RESOURCE_3I = "3i";
 
@@ -157,6 +160,11 @@ public class StatisticalResultsIndexer extends AbstractIndexer implements Comman
         return super.validateBuild(statisticalResultCore);
     }
 
+    @Override
+    public int getDatabaseConnectionCount() {
+        return PRODUCER_THREAD_COUNT;
+    }
+
 
 
     @Override
@@ -207,6 +215,9 @@ public class StatisticalResultsIndexer extends AbstractIndexer implements Comman
             if (SAVE) statisticalResultCore.deleteByQuery("*:*");
             if (SAVE) statisticalResultCore.commit();
 
+            // Shared by all of the result generators below.
+            writer = newBatchWriter(statisticalResultCore, IndexerManager.STATSTICAL_RESULT_CORE, 30000);
+
             List<Callable<List<StatisticalResultDTO>>> resultGenerators = Arrays.asList(
                     getViabilityResults()
                     , getFertilityResults()
@@ -218,7 +229,7 @@ public class StatisticalResultsIndexer extends AbstractIndexer implements Comman
                     , getCategoricalResults()
             );
 
-            ExecutorService pool = Executors.newFixedThreadPool(4);
+            ExecutorService pool = Executors.newFixedThreadPool(PRODUCER_THREAD_COUNT);
             List<Future<List<StatisticalResultDTO>>> producers = new ArrayList<>();
 
             for (Callable<List<StatisticalResultDTO>> r : resultGenerators) {
@@ -243,6 +254,7 @@ public class StatisticalResultsIndexer extends AbstractIndexer implements Comman
 
             count = atomicInt.get();
 
+            if (SAVE) closeBatchWriter(writer);
             if (SAVE) statisticalResultCore.commit();
             checkSolrCount(count);
 
@@ -1184,7 +1196,7 @@ public class StatisticalResultsIndexer extends AbstractIndexer implements Comman
                     while (r.next()) {
                         StatisticalResultDTO doc = parseCategoricalResult(r, sexSpecificStats);
                         docs.add(doc);
-                        if (SAVE) statisticalResultCore.addBean(doc, 30000);
+                        if (SAVE) writer.addBean(doc);
                         shouldHaveAdded.add(doc.getDocId());
                         if (docs.size() % REPORT_INTERVAL == 0) {
                             logger.info((SAVE?"":"Would have") + " Added {} categorical doucments", docs.size());
@@ -1295,7 +1307,7 @@ public class StatisticalResultsIndexer extends AbstractIndexer implements Comman
                 while (r.next()) {
                     StatisticalResultDTO doc = parseUnidimensionalResult(r);
                     docs.add(doc);
-                    if (SAVE) statisticalResultCore.addBean(doc, 30000);
+                    if (SAVE) writer.addBean(doc);
                     shouldHaveAdded.add(doc.getDocId());
                     if (docs.size()% REPORT_INTERVAL ==0) {
                         logger.info((SAVE?"":"Would have") + " Added {} unidimensional doucments", docs.size());
@@ -1445,7 +1457,7 @@ public class StatisticalResultsIndexer extends AbstractIndexer implements Comman
                 while (r.next()) {
                     StatisticalResultDTO doc = parseReferenceRangeResult(r);
                     docs.add(doc);
-                    if (SAVE) statisticalResultCore.addBean(doc, 30000);
+                    if (SAVE) writer.addBean(doc);
                     shouldHaveAdded.add(doc.getDocId());
                 }
             } catch (Exception e) {
@@ -1693,7 +1705,7 @@ public class StatisticalResultsIndexer extends AbstractIndexer implements Comman
                         doc.setEffectSize(0.0);
                     }
                     docs.add(doc);
-                    if (SAVE) statisticalResultCore.addBean(doc, 30000);
+                    if (SAVE) writer.addBean(doc);
                     shouldHaveAdded.add(doc.getDocId());
                 }
 
@@ -1760,7 +1772,7 @@ public class StatisticalResultsIndexer extends AbstractIndexer implements Comman
                     StatisticalResultDTO doc = parseLineResult(r);
                     doc.setCategories(Collections.singletonList(r.getString("category")));
                     docs.add(doc);
-                    if (SAVE) statisticalResultCore.addBean(doc, 30000);
+                    if (SAVE) writer.addBean(doc);
                     shouldHaveAdded.add(doc.getDocId());
                 }
 
@@ -1825,7 +1837,7 @@ public class StatisticalResultsIndexer extends AbstractIndexer implements Comman
                     }
 
                     docs.add(doc);
-                    if (SAVE) statisticalResultCore.addBean(doc, 30000);
+                    if (SAVE) writer.addBean(doc);
                     shouldHaveAdded.add(doc.getDocId());
 
                 }
@@ -1890,7 +1902,7 @@ public class StatisticalResultsIndexer extends AbstractIndexer implements Comman
                     }
 
                     docs.add(doc);
-                    if (SAVE) statisticalResultCore.addBean(doc, 30000);
+                    if (SAVE) writer.addBean(doc);
                     shouldHaveAdded.add(doc.getDocId());
                 }
             } catch (Exception e) {
@@ -1948,7 +1960,7 @@ public class StatisticalResultsIndexer extends AbstractIndexer implements Comman
                     doc.setSignificant(true);
                     docs.add(doc);
 
-                    if (SAVE) statisticalResultCore.addBean(doc, 30000);
+                    if (SAVE) writer.addBean(doc);
                     shouldHaveAdded.add(doc.getDocId());
                 }
 
@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright 2015 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ *******************************************************************************/
+
+package org.mousephenotype.cda.indexers.utils;
+
+import org.mousephenotype.cda.indexers.exceptions.IndexerException;
+import org.mousephenotype.cda.utilities.RunStatus;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * This class runs the partitions of a build on a fixed pool of workers, which hand the documents they build, a batch at
+ * a time, to a bounded queue drained by a fixed pool of writers. When the queue is full the workers block until the
+ * writers catch up, so no more than {@code queueCapacity} batches are ever waiting in memory.
+ *
+ * The first partition or writer to fail stops the build: the remaining workers and writers are interrupted and
+ * {@link #run} throws an {@link IndexerException} whose cause is the failure. A failed writer can therefore never
+ * leave the workers blocked on a full queue.
+ */
+public class BatchPipeline<T> {
+
+    /**
+     * One independent part of the build, e.g. one id range of one query.
+     */
+    @FunctionalInterface
+    public interface Partition<T> {
+        RunStatus run(BatchQueue<T> queue) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface BatchQueue<T> {
+        void put(List<T> batch) throws InterruptedException;
+    }
+
+    @FunctionalInterface
+    public interface BatchWriter<T> {
+        void write(List<T> batch) throws Exception;
+    }
+
+    public static final int POLL_INTERVAL_IN_MS = 1000;
+
+    private final int workerCount;
+    private final int writerCount;
+    private final int queueCapacity;
+
+    // Queued once per writer, by identity, to tell it there are no more batches.
+    private final List<T> endOfBatches = new ArrayList<>();
+
+    public BatchPipeline(int workerCount, int writerCount, int queueCapacity) {
+        this.workerCount = workerCount;
+        this.writerCount = writerCount;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Runs every partition and writes every batch they build.
+     *
+     * @param partitions    the partitions, keyed by a name used in error messages
+     * @param writerFactory called once per writer thread, before any partition starts
+     * @return the {@link RunStatus} of every partition, merged
+     * @throws IndexerException if a partition or a writer fails, or the build is interrupted
+     */
+    public RunStatus run(Map<String, Partition<T>> partitions, Callable<BatchWriter<T>> writerFactory) throws IndexerException {
+
+        RunStatus              runStatus = new RunStatus();
+        BlockingQueue<List<T>> queue     = new ArrayBlockingQueue<>(queueCapacity);
+        ExecutorService        writers   = Executors.newFixedThreadPool(writerCount);
+        ExecutorService        workers   = Executors.newFixedThreadPool(workerCount);
+
+        try {
+
+            List<Future<Void>> writerFutures = new ArrayList<>();
+            for (int i = 0; i < writerCount; i++) {
+                BatchWriter<T> writer = writerFactory.call();
+                writerFutures.add(writers.submit(() -> drain(queue, writer)));
+            }
+
+            CompletionService<RunStatus>   completed      = new ExecutorCompletionService<>(workers);
+            Map<Future<RunStatus>, String> partitionNames = new HashMap<>();
+            for (Map.Entry<String, Partition<T>> partition : partitions.entrySet()) {
+                partitionNames.put(completed.submit(() -> partition.getValue().run(queue::put)), partition.getKey());
+            }
+
+            int remaining = partitionNames.size();
+            while (remaining > 0) {
+                Future<RunStatus> future = completed.poll(POLL_INTERVAL_IN_MS, TimeUnit.MILLISECONDS);
+                checkWriters(writerFutures);
+                if (future != null) {
+                    remaining--;
+                    try {
+                        runStatus.add(future.get());
+                    } catch (ExecutionException e) {
+                        throw new IndexerException("Partition " + partitionNames.get(future) + " failed", e.getCause());
+                    }
+                }
+            }
+
+            // Every batch is queued. Tell each writer to finish once it has drained the queue.
+            for (int i = 0; i < writerCount; i++) {
+                while ( ! queue.offer(endOfBatches, POLL_INTERVAL_IN_MS, TimeUnit.MILLISECONDS)) {
+                    checkWriters(writerFutures);
+                }
+            }
+            for (Future<Void> writerFuture : writerFutures) {
+                getWriterResult(writerFuture);
+            }
+
+        } catch (IndexerException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IndexerException(e);
+        } finally {
+            workers.shutdownNow();
+            writers.shutdownNow();
+        }
+
+        return runStatus;
+    }
+
+
+    // PRIVATE METHODS
+
+
+    private Void drain(BlockingQueue<List<T>> queue, BatchWriter<T> writer) throws Exception {
+        while (true) {
+            List<T> batch = queue.take();
+            if (batch == endOfBatches) {
+                return null;
+            }
+
+            writer.write(batch);
+        }
+    }
+
+    // A writer that finishes before it is told to can only have failed.
+    private void checkWriters(List<Future<Void>> writerFutures) throws IndexerException, InterruptedException {
+        for (Future<Void> writerFuture : writerFutures) {
+            if (writerFuture.isDone()) {
+                getWriterResult(writerFuture);
+            }
+        }
+    }
+
+    private void getWriterResult(Future<Void> writerFuture) throws IndexerException, InterruptedException {
+        try {
+            writerFuture.get();
+        } catch (ExecutionException e) {
+            throw new IndexerException("Writer failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Copyright 2015 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ *******************************************************************************/
+
+package org.mousephenotype.cda.indexers.utils;
+
+import org.mousephenotype.cda.indexers.exceptions.IndexerException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.*;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The history of high-water marks recorded for each core by successful builds of incremental indexers, kept in a
+ * tab-separated file with one line per build:
+ *
+ *   core   data release version   ISO-8601 instant the build started   highest source id at that instant
+ *
+ * A '--since' value is either a timestamp or a data release version. A timestamp selects the most recent mark taken
+ * at or before that time; a release selects the most recent mark taken while the database was at that release.
+ * Everything loaded after the selected mark (and possibly a little before the requested time) is re-indexed.
+ */
+public class HighWaterMarks {
+
+    private static final String[] TIMESTAMP_PATTERNS = { "yyyy-MM-dd HH:mm:ss", "yyyy-MM-dd'T'HH:mm:ss", "yyyy-MM-dd HH:mm", "yyyy-MM-dd" };
+
+    private final File                file;
+    private final List<HighWaterMark> marks = new ArrayList<>();
+
+    public HighWaterMarks(File file) throws IndexerException {
+        this.file = file;
+
+        if ( ! file.exists()) {
+            return;
+        }
+
+        try {
+            for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+                if (line.trim().isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\t");
+                if (parts.length != 4) {
+                    throw new IndexerException("Invalid high-water mark line '" + line + "' in " + file.getAbsolutePath());
+                }
+                marks.add(new HighWaterMark(parts[0], parts[1], Instant.parse(parts[2]), Long.parseLong(parts[3])));
+            }
+        } catch (IOException | DateTimeParseException | NumberFormatException e) {
+            throw new IndexerException("Unable to read high-water marks from " + file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * @param core  the core name
+     * @param since a timestamp or data release version
+     * @return the high-water mark to index {@code core} from, or null if there is none
+     */
+    public synchronized HighWaterMark find(String core, String since) {
+
+        Instant       sinceInstant = parseTimestamp(since);
+        HighWaterMark found        = null;
+
+        for (HighWaterMark mark : marks) {
+            if ( ! mark.getCore().equals(core)) {
+                continue;
+            }
+
+            boolean matches = (sinceInstant == null
+                    ? mark.getRelease().equals(since)
+                    : ! mark.getTimestamp().isAfter(sinceInstant));
+
+            if (matches && ((found == null) || ! mark.getTimestamp().isBefore(found.getTimestamp()))) {
+                found = mark;
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Appends {@code mark} to the file.
+     */
+    public synchronized void record(HighWaterMark mark) throws IndexerException {
+
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8))) {
+            writer.write(mark.getCore() + "\t" + mark.getRelease() + "\t" + mark.getTimestamp() + "\t" + mark.getId() + "\n");
+        } catch (IOException e) {
+            throw new IndexerException("Unable to write high-water mark to " + file.getAbsolutePath(), e);
+        }
+
+        marks.add(mark);
+    }
+
+    /**
+     * @return {@code value} as an instant (local time zone), or null if it is not a timestamp
+     */
+    public static Instant parseTimestamp(String value) {
+
+        try {
+            return Instant.parse(value);
+        } catch (DateTimeParseException e) {
+            // Not an ISO-8601 instant. Try the local formats.
+        }
+
+        for (String pattern : TIMESTAMP_PATTERNS) {
+            try {
+                DateTimeFormatter formatter = DateTimeFormatter.ofPattern(pattern);
+                LocalDateTime     dateTime  = (pattern.contains("HH")
+                        ? LocalDateTime.parse(value, formatter)
+                        : LocalDate.parse(value, formatter).atStartOfDay());
+
+                return dateTime.atZone(ZoneId.systemDefault()).toInstant();
+
+            } catch (DateTimeParseException e) {
+                // Try the next pattern.
+            }
+        }
+
+        return null;
+    }
+
+
+    public static class HighWaterMark {
+        private final String  core;
+        private final String  release;
+        private final Instant timestamp;
+        private final long    id;
+
+        public HighWaterMark(String core, String release, Instant timestamp, long id) {
+            this.core = core;
+            this.release = release;
+            this.timestamp = timestamp;
+            this.id = id;
+        }
+
+        public String getCore() {
+            return core;
+        }
+
+        public String getRelease() {
+            return release;
+        }
+
+        public Instant getTimestamp() {
+            return timestamp;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        @Override
+        public String toString() {
+            return "HighWaterMark{" + "core='" + core + '\'' + ", release='" + release + '\'' + ", timestamp=" + timestamp + ", id=" + id + '}';
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/*******************************************************************************
+ * Copyright 2015 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ *******************************************************************************/
+
+package org.mousephenotype.cda.indexers.utils;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.beans.DocumentObjectBinder;
+import org.apache.solr.client.solrj.util.ClientUtils;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.SolrInputField;
+import org.mousephenotype.cda.indexers.exceptions.IndexerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * This class buffers solr beans and sends them to a core in batches, replacing one http round trip per document with
+ * one per batch. A batch is sent when it reaches {@code maxDocuments} documents or roughly {@code maxBytes} bytes,
+ * whichever comes first. Because the caller blocks while a full batch is sent, a slow core throttles the producer
+ * rather than letting unsent documents pile up in memory.
+ *
+ * A batch that still fails after {@code retryCount} retries is appended to the dead-letter file, one
+ * {@code <doc>...</doc>} element per line, so the documents can be re-posted to the core's /update handler later
+ * (wrap the lines in {@code <add>...</add>}). Indexing continues with the next batch.
+ *
+ * Instances are thread-safe. A full batch is swapped out under the lock and sent outside it, so while one thread sends
+ * a batch the others keep filling the next one. Call {@link #close()} (or {@link #flush()}) before committing the
+ * core; it waits for batches still being sent by other threads.
+ */
+public class SolrBatchWriter implements Closeable {
+
+    private final Logger logger = LoggerFactory.getLogger(SolrBatchWriter.class);
+
+    public static final int RETRY_SLEEP_IN_MS = 5000;                          // Sleep this long times the attempt number between retries.
+
+    private final SolrClient           core;
+    private final int                  commitWithinMs;
+    private final int                  maxDocuments;
+    private final long                 maxBytes;
+    private final int                  retryCount;
+    private final File                 deadLetterFile;
+    private final DocumentObjectBinder binder;
+
+    private List<SolrInputDocument> batch = new ArrayList<>();
+    private long                    batchBytes          = 0L;
+    private long                    documentCount       = 0L;
+    private long                    failedDocumentCount = 0L;
+    private int                     batchesSending      = 0;
+
+    public SolrBatchWriter(SolrClient core, int commitWithinMs, int maxDocuments, long maxBytes, int retryCount, File deadLetterFile) {
+        this.core = core;
+        this.commitWithinMs = commitWithinMs;
+        this.maxDocuments = maxDocuments;
+        this.maxBytes = maxBytes;
+        this.retryCount = retryCount;
+        this.deadLetterFile = deadLetterFile;
+        this.binder = core.getBinder();
+    }
+
+    /**
+     * Queue a single bean, sending the current batch first if it is full.
+     */
+    public void addBean(Object bean) throws IndexerException {
+        SolrInputDocument       doc = binder.toSolrInputDocument(bean);
+        List<SolrInputDocument> docs = null;
+
+        synchronized (this) {
+            batch.add(doc);
+            batchBytes += estimateSize(doc);
+
+            if ((batch.size() >= maxDocuments) || (batchBytes >= maxBytes)) {
+                docs = takeBatch();
+            }
+        }
+
+        if (docs != null) {
+            send(docs);
+        }
+    }
+
+    public void addBeans(Collection<?> beans) throws IndexerException {
+        for (Object bean : beans) {
+            addBean(bean);
+        }
+    }
+
+    /**
+     * Send any buffered documents now, and wait for the batches other threads are sending.
+     */
+    public void flush() throws IndexerException {
+        List<SolrInputDocument> docs;
+        synchronized (this) {
+            docs = takeBatch();
+        }
+
+        if (docs != null) {
+            send(docs);
+        }
+
+        synchronized (this) {
+            while (batchesSending > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IndexerException(e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } catch (IndexerException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * @return the number of documents successfully sent to the core
+     */
+    public synchronized long getDocumentCount() {
+        return documentCount;
+    }
+
+    /**
+     * @return the number of documents that could not be sent and were written to the dead-letter file
+     */
+    public synchronized long getFailedDocumentCount() {
+        return failedDocumentCount;
+    }
+
+    public File getDeadLetterFile() {
+        return deadLetterFile;
+    }
+
+
+    // PRIVATE METHODS
+
+
+    // Must be called holding the lock. Returns null if there is nothing to send.
+    private List<SolrInputDocument> takeBatch() {
+        if (batch.isEmpty()) {
+            return null;
+        }
+
+        List<SolrInputDocument> docs = batch;
+        batch = new ArrayList<>();
+        batchBytes = 0L;
+        batchesSending++;
+
+        return docs;
+    }
+
+    // Sends a batch taken with takeBatch(). Called without the lock, so other threads can fill the next batch meanwhile.
+    private void send(List<SolrInputDocument> docs) throws IndexerException {
+        try {
+
+            for (int attempt = 0; attempt <= retryCount; attempt++) {
+                try {
+
+                    core.add(docs, commitWithinMs);
+                    synchronized (this) {
+                        documentCount += docs.size();
+                    }
+                    return;
+
+                } catch (Exception e) {
+
+                    logger.warn("Attempt {} of {} to add a batch of {} documents failed. Reason: {}",
+                                attempt + 1, retryCount + 1, docs.size(), e.getLocalizedMessage());
+                    if (attempt < retryCount) {
+                        sleep(RETRY_SLEEP_IN_MS * (attempt + 1));
+                    }
+                }
+            }
+
+            writeDeadLetters(docs);
+
+        } finally {
+            synchronized (this) {
+                batchesSending--;
+                notifyAll();
+            }
+        }
+    }
+
+    private void writeDeadLetters(List<SolrInputDocument> docs) throws IndexerException {
+
+        synchronized (deadLetterFile) {
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(deadLetterFile, true), StandardCharsets.UTF_8))) {
+                for (SolrInputDocument doc : docs) {
+                    writer.write(ClientUtils.toXML(doc));
+                    writer.write("\n");
+                }
+            } catch (IOException e) {
+                throw new IndexerException(e);
+            }
+        }
+
+        synchronized (this) {
+            failedDocumentCount += docs.size();
+        }
+        logger.error("Wrote batch of {} documents to dead-letter file {}", docs.size(), deadLetterFile.getAbsolutePath());
+    }
+
+    // A rough size of the document on the wire: string values count their length, everything else a fixed amount.
+    private long estimateSize(SolrInputDocument doc) {
+        long size = 0L;
+        for (SolrInputField field : doc) {
+            size += field.getName().length();
+            for (Object value : field) {
+                size += (value instanceof CharSequence ? ((CharSequence) value).length() : 16);
+            }
+        }
+
+        return size;
+    }
+
+    private void sleep(long ms) throws IndexerException {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IndexerException(e);
+        }
+    }
+}
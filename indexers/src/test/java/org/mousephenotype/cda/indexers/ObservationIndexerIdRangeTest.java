@@ -0,0 +1,49 @@
+package org.mousephenotype.cda.indexers;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ObservationIndexerIdRangeTest {
+
+    // The ranges must be contiguous and cover [from, to) exactly, so no id is lost or read twice at a range edge.
+    private void assertCovers(List<ObservationIndexer.IdRange> ranges, long from, long to) {
+        long next = from;
+        for (ObservationIndexer.IdRange range : ranges) {
+            assertEquals("Gap or overlap at " + range, next, range.from);
+            assertTrue("Empty range " + range, range.to > range.from);
+            next = range.to;
+        }
+        assertEquals(to, next);
+    }
+
+    @Test
+    public void testRangesCoverEveryIdOnce() {
+
+        for (int partitionCount = 1; partitionCount <= 17; partitionCount++) {
+            for (long count = 1; count <= 50; count++) {
+                List<ObservationIndexer.IdRange> ranges = ObservationIndexer.IdRange.split(1000, 1000 + count, partitionCount);
+                assertCovers(ranges, 1000, 1000 + count);
+                assertTrue(ranges.size() <= partitionCount);
+            }
+        }
+    }
+
+    @Test
+    public void testLastIdIsIncluded() {
+
+        // The maximum observation id is passed as max_id + 1, so the last range must include it.
+        List<ObservationIndexer.IdRange> ranges = ObservationIndexer.IdRange.split(1, 101, 4);
+
+        assertEquals(4, ranges.size());
+        assertEquals(100, ranges.get(3).to - 1);
+    }
+
+    @Test
+    public void testEmptyRange() {
+        assertTrue(ObservationIndexer.IdRange.split(10, 10, 4).isEmpty());
+    }
+}
@@ -35,8 +35,12 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 @RunWith(SpringRunner.class)
@@ -468,6 +472,29 @@ public class IndexerManagerTest {
         }
     }
 
+    /**
+     * Test invoking static main with --since but no value
+     *
+     * Expected results: STATUS_NO_ARGUMENT.
+     */
+    @Test
+    public void testStaticSinceNoValue() throws Exception {
+        String testName = "testStaticSinceNoValue";
+        System.out.println("-------------------" + testName + "-------------------");
+        String[] args = {"--all", "--since"};
+        System.out.println("Command line = " + StringUtils.join(args, ","));
+        int retVal = indexerManager.mainReturnsStatus(args);
+
+        switch (retVal) {
+            case IndexerManager.STATUS_NO_ARGUMENT:
+                break;
+
+            default:
+                fail("Expected STATUS_NO_ARGUMENT");
+                break;
+        }
+    }
+
     /************************************************************************************************/
     /*    THE FOLLOWING TESTS ARE NOT EXPECTED TO GENERATE EXCEPTIONS; THUS THEY CAN                */
     /*    BUILD CORES. SINCE IT IS NOT THE JOB OF THE TESTS TO BUILD THE CORES, ONLY                */
@@ -528,6 +555,70 @@ public class IndexerManagerTest {
         assertArrayEquals(expectedCores, actualCores);
     }
 
+    /**
+     * Test that the dependency-ordered scheduler agrees with the build order: every core upstream of a core, with
+     * and without --since, comes before it in allCoresArray.
+     *
+     * Expected results: each core's upstream cores have a lower index in allCoresArray.
+     */
+    @Test
+    public void testUpstreamCoresPrecedeCore() throws IndexerException {
+        String testName = "testUpstreamCoresPrecedeCore";
+        System.out.println("-------------------" + testName + "-------------------");
+        List<String> allCores = Arrays.asList(IndexerManager.allCoresArray);
+
+        for (String[] args : new String[][] { {"--all"}, {"--all", "--since=10.1"} }) {
+            indexerManager.initialise(args);
+            for (String core : allCores) {
+                for (String upstreamCore : indexerManager.getUpstreamCores(core)) {
+                    assertTrue(upstreamCore + " must precede " + core, allCores.indexOf(upstreamCore) < allCores.indexOf(core));
+                }
+            }
+        }
+    }
+
+    /**
+     * Test that the product core waits for the allele2 core, which ProductIndexer.validateBuild() reads.
+     *
+     * Expected results: allele2 is upstream of product, and precedes it in the daily build order.
+     */
+    @Test
+    public void testProductWaitsForAllele2() throws IndexerException {
+        String testName = "testProductWaitsForAllele2";
+        System.out.println("-------------------" + testName + "-------------------");
+
+        indexerManager.initialise(new String[] { "--daily" });
+        assertTrue(indexerManager.getUpstreamCores(IndexerManager.PRODUCT_CORE).contains(IndexerManager.ALLELE2_CORE));
+
+        List<String> dailyCores = Arrays.asList(IndexerManager.dailyCoresArray);
+        assertTrue(dailyCores.indexOf(IndexerManager.ALLELE2_CORE) < dailyCores.indexOf(IndexerManager.PRODUCT_CORE));
+    }
+
+    /**
+     * Test invoking IndexerManager instance starting at the observation core, incrementally since a data release.
+     *
+     * Expected results: cores observation to autosuggest ready to run, with since set to the release.
+     */
+    @Test
+    public void testInstanceCoreSince() {
+        String testName = "testInstanceCoreSince";
+        System.out.println("-------------------" + testName + "-------------------");
+        String[] args = new String[]{"--cores=experiment", "--since=10.1"};
+        System.out.println("Command line = " + StringUtils.join(args, ","));
+
+        // Determine which cores to build.
+        try {
+            indexerManager.initialise(args);
+        } catch (IndexerException ie) {
+            fail(ie.getLocalizedMessage());
+        }
+
+        String[] actualCores   = indexerManager.getCores().toArray(new String[0]);
+        String[] expectedCores = Arrays.copyOfRange(IndexerManager.allCoresArray, 1, IndexerManager.allCoresArray.length);
+        assertArrayEquals(expectedCores, actualCores);
+        assertEquals("10.1", indexerManager.getSince());
+    }
+
     /**
      * Test invoking IndexerManager instance starting at the first daily core
      * (the preqc core).
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright 2015 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ *******************************************************************************/
+
+package org.mousephenotype.cda.indexers.utils;
+
+import org.junit.Test;
+import org.mousephenotype.cda.indexers.exceptions.IndexerException;
+import org.mousephenotype.cda.utilities.RunStatus;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BatchPipelineTest {
+
+    // Puts the numbers [from, to) on the queue in batches of three.
+    private BatchPipeline.Partition<Integer> numbers(int from, int to) {
+        return queue -> {
+            List<Integer> batch = new ArrayList<>();
+            for (int i = from; i < to; i++) {
+                batch.add(i);
+                if (batch.size() == 3) {
+                    queue.put(batch);
+                    batch = new ArrayList<>();
+                }
+            }
+            if ( ! batch.isEmpty()) {
+                queue.put(batch);
+            }
+
+            RunStatus status = new RunStatus();
+            status.successCount = to - from;
+            return status;
+        };
+    }
+
+    @Test
+    public void testEveryBatchIsWrittenOnce() throws Exception {
+
+        Map<String, BatchPipeline.Partition<Integer>> partitions = new LinkedHashMap<>();
+        for (int i = 0; i < 10; i++) {
+            partitions.put("partition " + i, numbers(i * 100, i * 100 + 100));
+        }
+
+        List<Integer> written = Collections.synchronizedList(new ArrayList<>());
+        RunStatus     status  = new BatchPipeline<Integer>(4, 2, 2).run(partitions, () -> written::addAll);
+
+        assertEquals(1000, status.successCount);
+        assertEquals(1000, written.size());
+        assertEquals(1000, new HashSet<>(written).size());
+    }
+
+    @Test
+    public void testFailedPartitionIsPropagated() throws Exception {
+
+        Map<String, BatchPipeline.Partition<Integer>> partitions = new LinkedHashMap<>();
+        partitions.put("good", numbers(0, 100));
+        partitions.put("bad", queue -> {
+            throw new IllegalStateException("Simulated failure");
+        });
+
+        try {
+            new BatchPipeline<Integer>(2, 1, 1).run(partitions, () -> batch -> { });
+            fail("Expected an IndexerException");
+        } catch (IndexerException e) {
+            assertTrue(e.getMessage().contains("bad"));
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testFailedWriterDoesNotBlockTheWorkers() throws Exception {
+
+        // Far more batches than the queue holds, so the workers would block forever if the failure went unnoticed.
+        Map<String, BatchPipeline.Partition<Integer>> partitions = new LinkedHashMap<>();
+        partitions.put("large", numbers(0, 10000));
+
+        try {
+            new BatchPipeline<Integer>(1, 1, 1).run(partitions, () -> batch -> {
+                throw new IllegalStateException("Simulated failure");
+            });
+            fail("Expected an IndexerException");
+        } catch (IndexerException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright 2015 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ *******************************************************************************/
+
+package org.mousephenotype.cda.indexers.utils;
+
+import org.junit.Test;
+import org.mousephenotype.cda.indexers.utils.HighWaterMarks.HighWaterMark;
+
+import java.io.File;
+import java.time.Instant;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class HighWaterMarksTest {
+
+    @Test
+    public void testFindByTimestampAndRelease() throws Exception {
+
+        File file = File.createTempFile("HighWaterMarksTest", ".tsv");
+        file.delete();
+        file.deleteOnExit();
+
+        HighWaterMarks marks = new HighWaterMarks(file);
+        marks.record(new HighWaterMark("experiment", "10.0", Instant.parse("2019-03-01T10:00:00Z"), 100L));
+        marks.record(new HighWaterMark("experiment", "10.1", Instant.parse("2019-04-01T10:00:00Z"), 200L));
+        marks.record(new HighWaterMark("experiment", "10.1", Instant.parse("2019-04-02T10:00:00Z"), 250L));
+        marks.record(new HighWaterMark("genotype-phenotype", "10.1", Instant.parse("2019-04-01T10:00:00Z"), 7L));
+
+        // Marks are read back from the file.
+        marks = new HighWaterMarks(file);
+
+        assertEquals(100L, marks.find("experiment", "2019-03-15T00:00:00Z").getId());
+        assertEquals(250L, marks.find("experiment", "2019-05-01T00:00:00Z").getId());
+        assertNull(marks.find("experiment", "2019-02-01T00:00:00Z"));
+
+        assertEquals(250L, marks.find("experiment", "10.1").getId());
+        assertEquals(7L, marks.find("genotype-phenotype", "10.1").getId());
+        assertNull(marks.find("genotype-phenotype", "10.0"));
+        assertNull(marks.find("gene", "10.1"));
+    }
+
+    @Test
+    public void testParseTimestamp() {
+        assertEquals(Instant.parse("2019-04-01T10:00:00Z"), HighWaterMarks.parseTimestamp("2019-04-01T10:00:00Z"));
+        assertEquals(HighWaterMarks.parseTimestamp("2019-04-01 00:00:00"), HighWaterMarks.parseTimestamp("2019-04-01"));
+        assertNull(HighWaterMarks.parseTimestamp("10.1"));
+    }
+}
@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright 2015 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ *******************************************************************************/
+
+package org.mousephenotype.cda.indexers.utils;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.beans.Field;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.util.NamedList;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SolrBatchWriterTest {
+
+    public static class TestBean {
+        @Field("id")
+        public String id;
+
+        public TestBean(String id) {
+            this.id = id;
+        }
+    }
+
+    // Records the size of each update request and optionally fails them all.
+    private static class RecordingSolrClient extends SolrClient {
+        final List<Integer> batchSizes = new ArrayList<>();
+        boolean fail = false;
+
+        @Override
+        public NamedList<Object> request(SolrRequest solrRequest, String s) throws SolrServerException, IOException {
+            if (fail) {
+                throw new SolrServerException("Simulated failure");
+            }
+            batchSizes.add(((UpdateRequest) solrRequest).getDocuments().size());
+            return new NamedList<>();
+        }
+
+        @Override
+        public void close() {
+
+        }
+    }
+
+    @Test
+    public void testBatchesByDocumentCount() throws Exception {
+
+        RecordingSolrClient core           = new RecordingSolrClient();
+        File                deadLetterFile = File.createTempFile("SolrBatchWriterTest", ".xml");
+        deadLetterFile.deleteOnExit();
+
+        SolrBatchWriter writer = new SolrBatchWriter(core, -1, 10, Long.MAX_VALUE, 0, deadLetterFile);
+        for (int i = 0; i < 25; i++) {
+            writer.addBean(new TestBean(Integer.toString(i)));
+        }
+        writer.close();
+
+        assertEquals("[10, 10, 5]", core.batchSizes.toString());
+        assertEquals(25, writer.getDocumentCount());
+        assertEquals(0, writer.getFailedDocumentCount());
+    }
+
+    @Test
+    public void testBatchesByByteSize() throws Exception {
+
+        RecordingSolrClient core           = new RecordingSolrClient();
+        File                deadLetterFile = File.createTempFile("SolrBatchWriterTest", ".xml");
+        deadLetterFile.deleteOnExit();
+
+        // Each document is about 6 bytes ("id" plus a 4-character value), so a 16-byte limit sends a batch every 3 documents.
+        SolrBatchWriter writer = new SolrBatchWriter(core, -1, 1000, 16, 0, deadLetterFile);
+        for (int i = 1000; i < 1006; i++) {
+            writer.addBean(new TestBean(Integer.toString(i)));
+        }
+        writer.close();
+
+        assertEquals("[3, 3]", core.batchSizes.toString());
+    }
+
+    @Test
+    public void testFailedBatchGoesToDeadLetterFile() throws Exception {
+
+        RecordingSolrClient core           = new RecordingSolrClient();
+        File                deadLetterFile = File.createTempFile("SolrBatchWriterTest", ".xml");
+        deadLetterFile.deleteOnExit();
+        core.fail = true;
+
+        SolrBatchWriter writer = new SolrBatchWriter(core, -1, 10, Long.MAX_VALUE, 0, deadLetterFile);
+        writer.addBean(new TestBean("a"));
+        writer.addBean(new TestBean("b"));
+        writer.close();
+
+        List<String> lines = Files.readAllLines(deadLetterFile.toPath());
+        assertEquals(0, writer.getDocumentCount());
+        assertEquals(2, writer.getFailedDocumentCount());
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).startsWith("<doc>"));
+        assertFalse(lines.get(1).isEmpty());
+    }
+
+    // Blocks the first update request until released.
+    private static class BlockingSolrClient extends SolrClient {
+        final CountDownLatch sending = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public NamedList<Object> request(SolrRequest solrRequest, String s) throws SolrServerException, IOException {
+            sending.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new SolrServerException(e);
+            }
+            return new NamedList<>();
+        }
+
+        @Override
+        public void close() {
+
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testOtherThreadsAddWhileABatchIsSent() throws Exception {
+
+        BlockingSolrClient core           = new BlockingSolrClient();
+        File               deadLetterFile = File.createTempFile("SolrBatchWriterTest", ".xml");
+        deadLetterFile.deleteOnExit();
+        ExecutorService    executor       = Executors.newFixedThreadPool(2);
+
+        try {
+            SolrBatchWriter writer = new SolrBatchWriter(core, -1, 10, Long.MAX_VALUE, 0, deadLetterFile);
+
+            // The tenth bean fills the batch, so this thread blocks sending it.
+            executor.submit(() -> {
+                for (int i = 0; i < 10; i++) {
+                    writer.addBean(new TestBean(Integer.toString(i)));
+                }
+                return null;
+            });
+            core.sending.await();
+
+            // Adding is not blocked by the send in progress, but flushing waits for it.
+            writer.addBean(new TestBean("10"));
+            Future<?> flushed = executor.submit(() -> {
+                writer.flush();
+                return null;
+            });
+            try {
+                flushed.get(500, TimeUnit.MILLISECONDS);
+                fail("flush() returned while a batch was still being sent");
+            } catch (TimeoutException e) {
+                // Expected
+            }
+
+            core.release.countDown();
+            flushed.get();
+            assertEquals(11, writer.getDocumentCount());
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
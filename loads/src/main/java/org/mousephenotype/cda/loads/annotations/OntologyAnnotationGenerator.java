@@ -2,7 +2,6 @@ package org.mousephenotype.cda.loads.annotations;
 
 import org.mousephenotype.cda.db.pojo.Datasource;
 import org.mousephenotype.cda.db.pojo.OntologyTerm;
-import org.mousephenotype.cda.db.pojo.Parameter;
 import org.mousephenotype.cda.db.repositories.OntologyTermRepository;
 import org.mousephenotype.cda.db.repositories.ParameterRepository;
 import org.mousephenotype.cda.db.statistics.MpTermService;
@@ -48,6 +47,14 @@ public class OntologyAnnotationGenerator implements CommandLineRunner {
     private static float BASE_SIGNIFICANCE_THRESHOLD = 0.05f;
     public static  Float RRPLUS_SIGNIFICANCE         = 0.0001f;
 
+    // Phenotype calls are written in batches of this many, with their ids allocated here rather than by the database
+    // so that the rows linking them to their statistical results can be batched with them
+    private static final int BATCH_SIZE = 1000;
+
+    private final Map<Long, String> parameterStableIds = new ConcurrentHashMap<>();
+    private       long              nextPhenotypeCallSummaryId;
+    private       int               pendingPhenotypeCalls;
+
     private DataSource             komp2DataSource;
     private MpTermService          mpTermService;
     private OntologyTermRepository ontologyTermRepository;
@@ -82,19 +89,38 @@ public class OntologyAnnotationGenerator implements CommandLineRunner {
     }
 
     void initializeInsertRRPlusStatResultPhenotypeCallSummaryStatement(Connection connection) throws SQLException {
-        insertRRPlusStatResultPhenotypeCallSummaryStatement = connection.prepareStatement("INSERT INTO stat_result_phenotype_call_summary(rrplus_result_id, phenotype_call_summary_id) VALUES (?, ?)", Statement.RETURN_GENERATED_KEYS);
+        insertRRPlusStatResultPhenotypeCallSummaryStatement = connection.prepareStatement("INSERT INTO stat_result_phenotype_call_summary(rrplus_result_id, phenotype_call_summary_id) VALUES (?, ?)");
     }
 
     void initializeInsertUnidimensionalStatResultPhenotypeCallSummaryStatement(Connection connection) throws SQLException {
-        insertUnidimensionalStatResultPhenotypeCallSummaryStatement = connection.prepareStatement("INSERT INTO stat_result_phenotype_call_summary(unidimensional_result_id, phenotype_call_summary_id) VALUES (?, ?)", Statement.RETURN_GENERATED_KEYS);
+        insertUnidimensionalStatResultPhenotypeCallSummaryStatement = connection.prepareStatement("INSERT INTO stat_result_phenotype_call_summary(unidimensional_result_id, phenotype_call_summary_id) VALUES (?, ?)");
     }
 
     void initializeInsertCategoricalStatResultPhenotypeCallSummaryStatement(Connection connection) throws SQLException {
-        insertCategoricalStatResultPhenotypeCallSummaryStatement = connection.prepareStatement("INSERT INTO stat_result_phenotype_call_summary(categorical_result_id, phenotype_call_summary_id) VALUES (?, ?)", Statement.RETURN_GENERATED_KEYS);
+        insertCategoricalStatResultPhenotypeCallSummaryStatement = connection.prepareStatement("INSERT INTO stat_result_phenotype_call_summary(categorical_result_id, phenotype_call_summary_id) VALUES (?, ?)");
     }
 
     void initializeInsertPhenotypeCallSummaryStatement(Connection connection) throws SQLException {
-        insertPhenotypeCallSummaryStatement = connection.prepareStatement("INSERT INTO phenotype_call_summary(external_db_id, project_id, gf_acc, gf_db_id, strain_acc, strain_db_id, allele_acc, allele_db_id, sex, zygosity, parameter_id, procedure_id, pipeline_id, mp_acc, mp_db_id, p_value, effect_size, organisation_id, colony_id, life_stage, life_stage_acc) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS);
+        insertPhenotypeCallSummaryStatement = connection.prepareStatement("INSERT INTO phenotype_call_summary(external_db_id, project_id, gf_acc, gf_db_id, strain_acc, strain_db_id, allele_acc, allele_db_id, sex, zygosity, parameter_id, procedure_id, pipeline_id, mp_acc, mp_db_id, p_value, effect_size, organisation_id, colony_id, life_stage, life_stage_acc, id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+
+        try (PreparedStatement statement = connection.prepareStatement("SELECT MAX(id) FROM phenotype_call_summary")) {
+            ResultSet resultSet = statement.executeQuery();
+            nextPhenotypeCallSummaryId = (resultSet.next() ? resultSet.getLong(1) : 0) + 1;
+        }
+        pendingPhenotypeCalls = 0;
+    }
+
+    /**
+     * Maps every parameter id to its stable id with one query, rather than loading each result's parameter.
+     */
+    void initializeParameterStableIds(Connection connection) throws SQLException {
+
+        try (PreparedStatement statement = connection.prepareStatement("SELECT id, stable_id FROM phenotype_parameter")) {
+            ResultSet resultSet = statement.executeQuery();
+            while (resultSet.next()) {
+                parameterStableIds.put(resultSet.getLong("id"), resultSet.getString("stable_id"));
+            }
+        }
     }
 
     /**
@@ -124,13 +150,17 @@ public class OntologyAnnotationGenerator implements CommandLineRunner {
 
         Connection connection = komp2DataSource.getConnection();
 
+		deleteData(connection);
+
+        // Phenotype call ids are allocated after the existing rows, so the tables must be emptied first
         initializeInsertPhenotypeCallSummaryStatement(connection);
         initializeInsertCategoricalStatResultPhenotypeCallSummaryStatement(connection);
         initializeInsertUnidimensionalStatResultPhenotypeCallSummaryStatement(connection);
         initializeInsertRRPlusStatResultPhenotypeCallSummaryStatement(connection);
 
-		deleteData(connection);
         initializeSexSpecificMap(connection);
+        initializeParameterStableIds(connection);
+        mpTermService.initializeDecisionTable(connection);
 		generateSkipProceduresSet(connection);
 
         logger.info("processThreeIStatsResults");
@@ -251,7 +281,7 @@ public class OntologyAnnotationGenerator implements CommandLineRunner {
             insertPhenotypeCallSummaryStatement.setString(21, lifeStageOntologyTermMap.get(lifeStage).getId().getAccession());
 
 
-            if (SAVE_RESULTS) insertPhenotypeCallSummaryStatement.executeUpdate();
+            addPhenotypeCall(null, null);
 
         } // end for (ResultDTO res : getLineOntologyResults(connection, "mpath")) {
 
@@ -288,7 +318,7 @@ public class OntologyAnnotationGenerator implements CommandLineRunner {
             insertPhenotypeCallSummaryStatement.setString(20, lifeStageOntologyTermMap.get(lifeStage).getName());
             insertPhenotypeCallSummaryStatement.setString(21, lifeStageOntologyTermMap.get(lifeStage).getId().getAccession());
 
-            if (SAVE_RESULTS) insertPhenotypeCallSummaryStatement.executeUpdate();
+            addPhenotypeCall(null, null);
 
         } // end for (ResultDTO res : getLineOntologyResults(connection, "emap")) {
 
@@ -325,11 +355,11 @@ public class OntologyAnnotationGenerator implements CommandLineRunner {
             insertPhenotypeCallSummaryStatement.setString(20, lifeStageOntologyTermMap.get(lifeStage).getName());
             insertPhenotypeCallSummaryStatement.setString(21, lifeStageOntologyTermMap.get(lifeStage).getId().getAccession());
 
-            if (SAVE_RESULTS) insertPhenotypeCallSummaryStatement.executeUpdate();
+            addPhenotypeCall(null, null);
 
 	    } // end for (ResultDTO res : getLineOntologyResults(connection, "mp")) {
 
-
+        flushPhenotypeCalls();
     }
 
 	public void processLineParameters(List<ResultDTO> lineResults) throws SQLException {
@@ -379,17 +409,19 @@ public class OntologyAnnotationGenerator implements CommandLineRunner {
             if (res.getFemalePvalue()!=null) {
                 insertPhenotypeCallSummaryStatement.setDouble(16, res.getFemalePvalue());
                 insertPhenotypeCallSummaryStatement.setDouble(17, res.getFemaleEffectSize());
-	            if (SAVE_RESULTS) insertPhenotypeCallSummaryStatement.executeUpdate();
+	            addPhenotypeCall(null, null);
             }
 
             insertPhenotypeCallSummaryStatement.setString(9, "male");
             if (res.getMalePvalue() != null) {
                 insertPhenotypeCallSummaryStatement.setDouble(16, res.getMalePvalue());
                 insertPhenotypeCallSummaryStatement.setDouble(17, res.getMaleEffectSize());
-	            if (SAVE_RESULTS) insertPhenotypeCallSummaryStatement.executeUpdate();
+	            addPhenotypeCall(null, null);
             }
 
 		} // end for (ResultDTO res : getLineResults(connection)) {
+
+		flushPhenotypeCalls();
 	}
 
     private void processThreeIStatsResults(Connection connection, MpTermService mpTermService) throws SQLException {
@@ -398,13 +430,13 @@ public class OntologyAnnotationGenerator implements CommandLineRunner {
 
         for (ResultDTO res : getThreeIResults(connection)) {
 
-            Parameter parameter = parameterRepository.findById(res.getParameterId()).get();
+            String parameterStableId = getParameterStableId(res.getParameterId());
 
             // Get the MP term directly from the stats result object for 3I calls
             OntologyTerm term = ontologyTermRepository.getByAccAndShortName(res.getMpTerm(), Datasource.MP);
 
             if (term == null) {
-                String msg = "No term could be found to associate for parameter: " + parameter.getStableId() + " (" + res.getParameterId() + ")";
+                String msg = "No term could be found to associate for parameter: " + parameterStableId + " (" + res.getParameterId() + ")";
                 if (!alreadyReported.contains(msg)) {
                     alreadyReported.add(msg);
                     logger.warn(msg);
@@ -457,12 +489,11 @@ public class OntologyAnnotationGenerator implements CommandLineRunner {
                 // increased/decreased term, but it's ok if it can't find it
                 // Simply fall back to the default
 
-                ResultSet rs;
                 OntologyTerm female = null;
                 OntologyTerm male = null;
 
                 if (res.getFemaleEffectSize() != null && res.getFemalePvalue() < significanceThreshold && (res.getFemaleControls() > 1 && res.getFemaleMutants() > 1)) {
-                    female = term = mpTermService.getMPTerm(parameter.getStableId(), res, SexType.female, connection, SIGNIFICANCE_THRESHOLD, true);
+                    female = term = mpTermService.getMPTerm(parameterStableId, res, SexType.female, connection, SIGNIFICANCE_THRESHOLD, true);
                     if (term != null) {
                         insertPhenotypeCallSummaryStatement.setString(9, "female");
                         insertPhenotypeCallSummaryStatement.setString(14, term.getId().getAccession());
@@ -479,17 +510,13 @@ public class OntologyAnnotationGenerator implements CommandLineRunner {
 
                         insertPhenotypeCallSummaryStatement.setDouble(17, res.getFemaleEffectSize());
 
-                        if (SAVE_RESULTS)
-                            insertPhenotypeCallSummaryStatement.executeUpdate();
-
-                        rs = insertPhenotypeCallSummaryStatement.getGeneratedKeys();
-                        saveOntologyResultAssociation(insertStatResultPhenotypeCallSummaryStatement, res, rs);
+                        addPhenotypeCall(insertStatResultPhenotypeCallSummaryStatement, res.getResultId());
                     }
 
                 }
 
                 if (res.getMaleEffectSize() != null && res.getMalePvalue() < significanceThreshold && (res.getMaleControls() > 1 && res.getMaleMutants() > 1)) {
-                    male = term = mpTermService.getMPTerm(parameter.getStableId(), res, SexType.male, connection, SIGNIFICANCE_THRESHOLD, true);
+                    male = term = mpTermService.getMPTerm(parameterStableId, res, SexType.male, connection, SIGNIFICANCE_THRESHOLD, true);
                     if (term != null) {
                         insertPhenotypeCallSummaryStatement.setString(9, "male");
                         insertPhenotypeCallSummaryStatement.setString(14, term.getId().getAccession());
@@ -505,11 +532,7 @@ public class OntologyAnnotationGenerator implements CommandLineRunner {
                         }
 
                         insertPhenotypeCallSummaryStatement.setDouble(17, res.getMaleEffectSize());
-                        if (SAVE_RESULTS)
-                            insertPhenotypeCallSummaryStatement.executeUpdate();
-
-                        rs = insertPhenotypeCallSummaryStatement.getGeneratedKeys();
-                        saveOntologyResultAssociation(insertStatResultPhenotypeCallSummaryStatement, res, rs);
+                        addPhenotypeCall(insertStatResultPhenotypeCallSummaryStatement, res.getResultId());
                     }
                 }
 
@@ -522,7 +545,7 @@ public class OntologyAnnotationGenerator implements CommandLineRunner {
 
                     if (res.getFemaleControls() > 1 && res.getFemaleMutants() > 1) {
                         // set female abnormal term (always return associated value by passing in a 1.0f)
-                        term = mpTermService.getMPTerm(parameter.getStableId(), res, SexType.female, connection, 1.0f, true);
+                        term = mpTermService.getMPTerm(parameterStableId, res, SexType.female, connection, 1.0f, true);
 
                         if (term != null) {
                             insertPhenotypeCallSummaryStatement.setString(9, "female");
@@ -530,28 +553,20 @@ public class OntologyAnnotationGenerator implements CommandLineRunner {
                             insertPhenotypeCallSummaryStatement.setDouble(16, res.getNullTestPvalue());
                             insertPhenotypeCallSummaryStatement.setDouble(17, res.getFemaleEffectSize());
 
-                            if (SAVE_RESULTS)
-                                insertPhenotypeCallSummaryStatement.executeUpdate();
-
-                            rs = insertPhenotypeCallSummaryStatement.getGeneratedKeys();
-                            saveOntologyResultAssociation(insertStatResultPhenotypeCallSummaryStatement, res, rs);
+                            addPhenotypeCall(insertStatResultPhenotypeCallSummaryStatement, res.getResultId());
                         }
                     }
 
                     if (res.getMaleControls() > 1 && res.getMaleMutants() > 1) {
                         // set male abnormal term (always return associated value by passing in a 1.0f)
-                        term = mpTermService.getMPTerm(parameter.getStableId(), res, SexType.male, connection, 1.0f, true);
+                        term = mpTermService.getMPTerm(parameterStableId, res, SexType.male, connection, 1.0f, true);
                         if (term != null) {
                             insertPhenotypeCallSummaryStatement.setString(9, "male");
                             insertPhenotypeCallSummaryStatement.setString(14, term.getId().getAccession());
                             insertPhenotypeCallSummaryStatement.setDouble(16, res.getNullTestPvalue());
                             insertPhenotypeCallSummaryStatement.setDouble(17, res.getMaleEffectSize());
 
-                            if (SAVE_RESULTS)
-                                insertPhenotypeCallSummaryStatement.executeUpdate();
-
-                            rs = insertPhenotypeCallSummaryStatement.getGeneratedKeys();
-                            saveOntologyResultAssociation(insertStatResultPhenotypeCallSummaryStatement, res, rs);
+                            addPhenotypeCall(insertStatResultPhenotypeCallSummaryStatement, res.getResultId());
                         }
                     }
                 }
@@ -588,14 +603,12 @@ public class OntologyAnnotationGenerator implements CommandLineRunner {
                 for (String sex : sexList) {
 
                     insertPhenotypeCallSummaryStatement.setString(9, sex);
-                    if (SAVE_RESULTS)
-                        insertPhenotypeCallSummaryStatement.executeUpdate();
-
-                    ResultSet rs = insertPhenotypeCallSummaryStatement.getGeneratedKeys();
-                    saveOntologyResultAssociation(insertStatResultPhenotypeCallSummaryStatement, res, rs);
+                    addPhenotypeCall(insertStatResultPhenotypeCallSummaryStatement, res.getResultId());
                 }
             }
         }
+
+        flushPhenotypeCalls();
     }
 
 
@@ -605,20 +618,20 @@ public class OntologyAnnotationGenerator implements CommandLineRunner {
 
         for (ResultDTO res : getUnidimensionalResults(connection)) {
 
-            Parameter parameter = parameterRepository.findById(res.getParameterId()).get();
+            String parameterStableId = getParameterStableId(res.getParameterId());
 
             // Get the MP term (by sex if no term found based on genotype result
             // effect size)
-            OntologyTerm term = mpTermService.getMPTerm(parameter.getStableId(), res, null, connection, SIGNIFICANCE_THRESHOLD, true);
+            OntologyTerm term = mpTermService.getMPTerm(parameterStableId, res, null, connection, SIGNIFICANCE_THRESHOLD, true);
             if (term == null) {
-                term = mpTermService.getMPTerm(parameter.getStableId(), res, SexType.female, connection, SIGNIFICANCE_THRESHOLD, true);
+                term = mpTermService.getMPTerm(parameterStableId, res, SexType.female, connection, SIGNIFICANCE_THRESHOLD, true);
                 if (term == null) {
-                    term = mpTermService.getMPTerm(parameter.getStableId(), res, SexType.male, connection, SIGNIFICANCE_THRESHOLD, true);
+                    term = mpTermService.getMPTerm(parameterStableId, res, SexType.male, connection, SIGNIFICANCE_THRESHOLD, true);
                 }
             }
 
             if (term == null) {
-                String msg = "No term could be found to associate for parameter: " + parameter.getStableId() + " (" + res.getParameterId() + ")";
+                String msg = "No term could be found to associate for parameter: " + parameterStableId + " (" + res.getParameterId() + ")";
                 if (!alreadyReported.contains(msg)) {
                     alreadyReported.add(msg);
                     logger.warn(msg);
@@ -671,12 +684,11 @@ public class OntologyAnnotationGenerator implements CommandLineRunner {
                 // increased/decreased term, but it's ok if it can't find it
                 // Simply fall back to the default
 
-                ResultSet rs;
                 OntologyTerm female = null;
                 OntologyTerm male = null;
 
                 if (res.getFemaleEffectSize() != null && res.getFemalePvalue() < significanceThreshold && (res.getFemaleControls() > 1 && res.getFemaleMutants() > 1)) {
-                    female = term = mpTermService.getMPTerm(parameter.getStableId(), res, SexType.female, connection, SIGNIFICANCE_THRESHOLD, true);
+                    female = term = mpTermService.getMPTerm(parameterStableId, res, SexType.female, connection, SIGNIFICANCE_THRESHOLD, true);
                     if (term != null) {
                         insertPhenotypeCallSummaryStatement.setString(9, "female");
                         insertPhenotypeCallSummaryStatement.setString(14, term.getId().getAccession());
@@ -693,17 +705,13 @@ public class OntologyAnnotationGenerator implements CommandLineRunner {
 
                         insertPhenotypeCallSummaryStatement.setDouble(17, res.getFemaleEffectSize());
 
-                        if (SAVE_RESULTS)
-                            insertPhenotypeCallSummaryStatement.executeUpdate();
-
-                        rs = insertPhenotypeCallSummaryStatement.getGeneratedKeys();
-                        saveOntologyResultAssociation(insertStatResultPhenotypeCallSummaryStatement, res, rs);
+                        addPhenotypeCall(insertStatResultPhenotypeCallSummaryStatement, res.getResultId());
                     }
 
                 }
 
                 if (res.getMaleEffectSize() != null && res.getMalePvalue() < significanceThreshold && (res.getMaleControls() > 1 && res.getMaleMutants() > 1)) {
-                    male = term = mpTermService.getMPTerm(parameter.getStableId(), res, SexType.male, connection, SIGNIFICANCE_THRESHOLD, true);
+                    male = term = mpTermService.getMPTerm(parameterStableId, res, SexType.male, connection, SIGNIFICANCE_THRESHOLD, true);
                     if (term != null) {
                         insertPhenotypeCallSummaryStatement.setString(9, "male");
                         insertPhenotypeCallSummaryStatement.setString(14, term.getId().getAccession());
@@ -719,11 +727,7 @@ public class OntologyAnnotationGenerator implements CommandLineRunner {
                         }
 
                         insertPhenotypeCallSummaryStatement.setDouble(17, res.getMaleEffectSize());
-                        if (SAVE_RESULTS)
-                            insertPhenotypeCallSummaryStatement.executeUpdate();
-
-                        rs = insertPhenotypeCallSummaryStatement.getGeneratedKeys();
-                        saveOntologyResultAssociation(insertStatResultPhenotypeCallSummaryStatement, res, rs);
+                        addPhenotypeCall(insertStatResultPhenotypeCallSummaryStatement, res.getResultId());
                     }
                 }
 
@@ -736,7 +740,7 @@ public class OntologyAnnotationGenerator implements CommandLineRunner {
 
                     if (res.getFemaleControls() > 1 && res.getFemaleMutants() > 1) {
                         // set female abnormal term (always return associated value by passing in a 1.0f)
-                        term = mpTermService.getMPTerm(parameter.getStableId(), res, SexType.female, connection, 1.0f, true);
+                        term = mpTermService.getMPTerm(parameterStableId, res, SexType.female, connection, 1.0f, true);
 
                         if (term != null) {
                             insertPhenotypeCallSummaryStatement.setString(9, "female");
@@ -744,28 +748,20 @@ public class OntologyAnnotationGenerator implements CommandLineRunner {
                             insertPhenotypeCallSummaryStatement.setDouble(16, res.getNullTestPvalue());
                             insertPhenotypeCallSummaryStatement.setDouble(17, res.getFemaleEffectSize());
 
-                            if (SAVE_RESULTS)
-                                insertPhenotypeCallSummaryStatement.executeUpdate();
-
-                            rs = insertPhenotypeCallSummaryStatement.getGeneratedKeys();
-                            saveOntologyResultAssociation(insertStatResultPhenotypeCallSummaryStatement, res, rs);
+                            addPhenotypeCall(insertStatResultPhenotypeCallSummaryStatement, res.getResultId());
                         }
                     }
 
                     if (res.getMaleControls() > 1 && res.getMaleMutants() > 1) {
                         // set male abnormal term (always return associated value by passing in a 1.0f)
-                        term = mpTermService.getMPTerm(parameter.getStableId(), res, SexType.male, connection, 1.0f, true);
+                        term = mpTermService.getMPTerm(parameterStableId, res, SexType.male, connection, 1.0f, true);
                         if (term != null) {
                             insertPhenotypeCallSummaryStatement.setString(9, "male");
                             insertPhenotypeCallSummaryStatement.setString(14, term.getId().getAccession());
                             insertPhenotypeCallSummaryStatement.setDouble(16, res.getNullTestPvalue());
                             insertPhenotypeCallSummaryStatement.setDouble(17, res.getMaleEffectSize());
 
-                            if (SAVE_RESULTS)
-                                insertPhenotypeCallSummaryStatement.executeUpdate();
-
-                            rs = insertPhenotypeCallSummaryStatement.getGeneratedKeys();
-                            saveOntologyResultAssociation(insertStatResultPhenotypeCallSummaryStatement, res, rs);
+                            addPhenotypeCall(insertStatResultPhenotypeCallSummaryStatement, res.getResultId());
                         }
                     }
                 }
@@ -803,15 +799,13 @@ public class OntologyAnnotationGenerator implements CommandLineRunner {
                 for (String sex : sexList) {
 
                     insertPhenotypeCallSummaryStatement.setString(9, sex);
-                    if (SAVE_RESULTS)
-                        insertPhenotypeCallSummaryStatement.executeUpdate();
-
-                    ResultSet rs = insertPhenotypeCallSummaryStatement.getGeneratedKeys();
-                    saveOntologyResultAssociation(insertStatResultPhenotypeCallSummaryStatement, res, rs);
+                    addPhenotypeCall(insertStatResultPhenotypeCallSummaryStatement, res.getResultId());
 
                 }
             }
         }
+
+        flushPhenotypeCalls();
     }
 
     private void processCategoricalParameters(Connection connection) throws SQLException {
@@ -819,6 +813,8 @@ public class OntologyAnnotationGenerator implements CommandLineRunner {
         for (ResultDTO res : getCategoricalResults(connection)) {
             saveCategoricalResult(connection, res);
         }
+
+        flushPhenotypeCalls();
     }
 
     protected void saveCategoricalResult(Connection connection, ResultDTO res) throws SQLException {
@@ -833,7 +829,7 @@ public class OntologyAnnotationGenerator implements CommandLineRunner {
 
             // Effect is significant, find out which term to associate
 
-            Parameter parameter = parameterRepository.findById(res.getParameterId()).get();
+            String parameterStableId = getParameterStableId(res.getParameterId());
 
             // Get the abnormal term
 
@@ -857,8 +853,6 @@ public class OntologyAnnotationGenerator implements CommandLineRunner {
             insertPhenotypeCallSummaryStatement.setString(20, lifeStageOntologyTermMap.get(lifeStage).getName());
             insertPhenotypeCallSummaryStatement.setString(21, lifeStageOntologyTermMap.get(lifeStage).getId().getAccession());
 
-            // Set the id of the stats result which is producing the phenotype call
-            insertStatResultPhenotypeCallSummaryStatement.setLong(1, res.getResultId());
             try {
 
                 if (
@@ -867,9 +861,9 @@ public class OntologyAnnotationGenerator implements CommandLineRunner {
                                 res.getNullTestPvalue() <= SIGNIFICANCE_THRESHOLD) &&
                                 ! sexSpecificParameters.contains(res.getParameterStableId())
                 ) {
-                    OntologyTerm term = mpTermService.getMPTerm(parameter.getStableId(), res, null, connection, SIGNIFICANCE_THRESHOLD, true);
+                    OntologyTerm term = mpTermService.getMPTerm(parameterStableId, res, null, connection, SIGNIFICANCE_THRESHOLD, true);
                     if (term == null) {
-                        String msg = "No term could be found to associate for category " + res.getCategoryA() + " for parameter: " + parameter.getStableId() + " (" + res.getParameterId() + ")";
+                        String msg = "No term could be found to associate for category " + res.getCategoryA() + " for parameter: " + parameterStableId + " (" + res.getParameterId() + ")";
                         if (!alreadyReported.contains(msg)) {
                             alreadyReported.add(msg);
                             logger.warn(msg);
@@ -877,7 +871,7 @@ public class OntologyAnnotationGenerator implements CommandLineRunner {
                         return;
                     }
 
-                    logger.debug("Assigning term " + term.getId().getAccession() + " for parameter: " + parameter.getStableId() + " (" + res.getParameterId() + ")");
+                    logger.debug("Assigning term " + term.getId().getAccession() + " for parameter: " + parameterStableId + " (" + res.getParameterId() + ")");
 
 
                     // Individually, not significant, but combined is
@@ -886,13 +880,7 @@ public class OntologyAnnotationGenerator implements CommandLineRunner {
                     insertPhenotypeCallSummaryStatement.setLong(15, term.getId().getDatabaseId());
                     insertPhenotypeCallSummaryStatement.setDouble(16, res.getNullTestPvalue());
                     insertPhenotypeCallSummaryStatement.setDouble(17, res.getGenotypeEffectSize());
-                    if (SAVE_RESULTS) insertPhenotypeCallSummaryStatement.executeUpdate();
-
-                    ResultSet rs = insertPhenotypeCallSummaryStatement.getGeneratedKeys();
-                    while (rs.next()) {
-                        insertStatResultPhenotypeCallSummaryStatement.setLong(2, rs.getLong(1));
-                        if (SAVE_RESULTS) insertStatResultPhenotypeCallSummaryStatement.executeUpdate();
-                    }
+                    addPhenotypeCall(insertStatResultPhenotypeCallSummaryStatement, res.getResultId());
 
                 } else {
 
@@ -900,9 +888,9 @@ public class OntologyAnnotationGenerator implements CommandLineRunner {
                     if (res.getFemalePvalue() != null && res.getFemalePvalue() <= SIGNIFICANCE_THRESHOLD) {
 
                         res.setSex(SexType.female);
-                        OntologyTerm term = mpTermService.getMPTerm(parameter.getStableId(), res, SexType.female, connection, SIGNIFICANCE_THRESHOLD, true);
+                        OntologyTerm term = mpTermService.getMPTerm(parameterStableId, res, SexType.female, connection, SIGNIFICANCE_THRESHOLD, true);
                         if (term == null) {
-                            String msg = "No term could be found to associate for category " + res.getCategoryA() + " for parameter: " + parameter.getStableId() + " (" + res.getParameterId() + ")";
+                            String msg = "No term could be found to associate for category " + res.getCategoryA() + " for parameter: " + parameterStableId + " (" + res.getParameterId() + ")";
                             if (!alreadyReported.contains(msg)) {
                                 alreadyReported.add(msg);
                                 logger.warn(msg);
@@ -910,29 +898,23 @@ public class OntologyAnnotationGenerator implements CommandLineRunner {
                             return;
                         }
 
-                        logger.debug("Assigning female specific term " + term.getId().getAccession() + " for parameter: " + parameter.getStableId() + " (" + res.getParameterId() + ")");
+                        logger.debug("Assigning female specific term " + term.getId().getAccession() + " for parameter: " + parameterStableId + " (" + res.getParameterId() + ")");
 
                         insertPhenotypeCallSummaryStatement.setString(9, SexType.female.getName());
                         insertPhenotypeCallSummaryStatement.setString(14, term.getId().getAccession());
                         insertPhenotypeCallSummaryStatement.setLong(15, term.getId().getDatabaseId());
                         insertPhenotypeCallSummaryStatement.setDouble(16, res.getFemalePvalue());
                         insertPhenotypeCallSummaryStatement.setDouble(17, res.getFemaleEffectSize());
-                        if (SAVE_RESULTS) insertPhenotypeCallSummaryStatement.executeUpdate();
-
-                        ResultSet rs = insertPhenotypeCallSummaryStatement.getGeneratedKeys();
-                        while (rs.next()) {
-                            insertStatResultPhenotypeCallSummaryStatement.setLong(2, rs.getLong(1));
-                            if (SAVE_RESULTS) insertStatResultPhenotypeCallSummaryStatement.executeUpdate();
-                        }
+                        addPhenotypeCall(insertStatResultPhenotypeCallSummaryStatement, res.getResultId());
                     }
 
                     // If male p_value is significant, add a female phenotype call
                     if (res.getMalePvalue() != null && res.getMalePvalue() <= SIGNIFICANCE_THRESHOLD) {
 
                         res.setSex(SexType.male);
-                        OntologyTerm term = mpTermService.getMPTerm(parameter.getStableId(), res, SexType.male, connection, SIGNIFICANCE_THRESHOLD, true);
+                        OntologyTerm term = mpTermService.getMPTerm(parameterStableId, res, SexType.male, connection, SIGNIFICANCE_THRESHOLD, true);
                         if (term == null) {
-                            String msg = "No term could be found to associate for category " + res.getCategoryA() + " for parameter: " + parameter.getStableId() + " (" + res.getParameterId() + ")";
+                            String msg = "No term could be found to associate for category " + res.getCategoryA() + " for parameter: " + parameterStableId + " (" + res.getParameterId() + ")";
                             if (!alreadyReported.contains(msg)) {
                                 alreadyReported.add(msg);
                                 logger.warn(msg);
@@ -940,20 +922,14 @@ public class OntologyAnnotationGenerator implements CommandLineRunner {
                             return;
                         }
 
-                        logger.debug("Assigning female specific term " + term.getId().getAccession() + " for parameter: " + parameter.getStableId() + " (" + res.getParameterId() + ")");
+                        logger.debug("Assigning female specific term " + term.getId().getAccession() + " for parameter: " + parameterStableId + " (" + res.getParameterId() + ")");
 
                         insertPhenotypeCallSummaryStatement.setString(9, SexType.male.getName());
                         insertPhenotypeCallSummaryStatement.setString(14, term.getId().getAccession());
                         insertPhenotypeCallSummaryStatement.setLong(15, term.getId().getDatabaseId());
                         insertPhenotypeCallSummaryStatement.setDouble(16, res.getMalePvalue());
                         insertPhenotypeCallSummaryStatement.setDouble(17, res.getMaleEffectSize());
-                        if (SAVE_RESULTS) insertPhenotypeCallSummaryStatement.executeUpdate();
-
-                        ResultSet rs = insertPhenotypeCallSummaryStatement.getGeneratedKeys();
-                        while (rs.next()) {
-                            insertStatResultPhenotypeCallSummaryStatement.setLong(2, rs.getLong(1));
-                            if (SAVE_RESULTS) insertStatResultPhenotypeCallSummaryStatement.executeUpdate();
-                        }
+                        addPhenotypeCall(insertStatResultPhenotypeCallSummaryStatement, res.getResultId());
                     }
                 }
             } catch (Exception e) {
@@ -968,14 +944,14 @@ public class OntologyAnnotationGenerator implements CommandLineRunner {
 
 		for (ResultDTO res : getRRPlusResults(connection)) {
 
-			Parameter parameter = parameterRepository.findById(res.getParameterId()).get();
+			String parameterStableId = getParameterStableId(res.getParameterId());
 
 			// Get the MP term (by sex if no term found based on genotype result
 			// effect size)
-			OntologyTerm term = mpTermService.getMPTerm(parameter.getStableId(), res, res.getSex(), connection, RRPLUS_SIGNIFICANCE, true);
+			OntologyTerm term = mpTermService.getMPTerm(parameterStableId, res, res.getSex(), connection, RRPLUS_SIGNIFICANCE, true);
 
 			if (term == null) {
-				String msg = "No term could be found to associate for parameter: " + parameter.getStableId() + " (" + res.getParameterId() + ")";
+				String msg = "No term could be found to associate for parameter: " + parameterStableId + " (" + res.getParameterId() + ")";
 				if (!alreadyReported.contains(msg)) {
 					alreadyReported.add(msg);
 					logger.warn(msg);
@@ -983,7 +959,7 @@ public class OntologyAnnotationGenerator implements CommandLineRunner {
 				continue;
 			}
 
-			logger.debug("Adding term {} to RR+ result for parameter {} for gene {} for sex {}", term.getId().getAccession(), parameter.getStableId(), res.getGeneAcc(), res.getSex());
+			logger.debug("Adding term {} to RR+ result for parameter {} for gene {} for sex {}", term.getId().getAccession(), parameterStableId, res.getGeneAcc(), res.getSex());
 
 			insertPhenotypeCallSummaryStatement.setLong(1, res.getDataSourceId());
 			insertPhenotypeCallSummaryStatement.setLong(2, res.getProjectId());
@@ -1009,21 +985,59 @@ public class OntologyAnnotationGenerator implements CommandLineRunner {
             insertPhenotypeCallSummaryStatement.setString(20, lifeStageOntologyTermMap.get(lifeStage).getName());
             insertPhenotypeCallSummaryStatement.setString(21, lifeStageOntologyTermMap.get(lifeStage).getId().getAccession());
 
-            if (SAVE_RESULTS) insertPhenotypeCallSummaryStatement.executeUpdate();
-
-			ResultSet rs = insertPhenotypeCallSummaryStatement.getGeneratedKeys();
-            saveOntologyResultAssociation(insertStatResultPhenotypeCallSummaryStatement, res, rs);
+            addPhenotypeCall(insertStatResultPhenotypeCallSummaryStatement, res.getResultId());
         }
+
+		flushPhenotypeCalls();
 	}
 
-    private void saveOntologyResultAssociation(PreparedStatement insertStatResultPhenotypeCallSummaryStatement, ResultDTO res, ResultSet rs) throws SQLException {
-        while (rs.next()) {
-            insertStatResultPhenotypeCallSummaryStatement.setLong(1, res.getResultId());
-            insertStatResultPhenotypeCallSummaryStatement.setLong(2, rs.getLong(1));
-            if (SAVE_RESULTS) insertStatResultPhenotypeCallSummaryStatement.executeUpdate();
+    /**
+     * Adds the phenotype call set up in insertPhenotypeCallSummaryStatement to the batch, under the next allocated
+     * id, together with the stat_result_phenotype_call_summary row linking it to the statistical result when
+     * insertStatResultPhenotypeCallSummaryStatement is not null.
+     */
+    private void addPhenotypeCall(PreparedStatement insertStatResultPhenotypeCallSummaryStatement, Long resultId) throws SQLException {
+
+        if ( ! SAVE_RESULTS) {
+            return;
+        }
+
+        long phenotypeCallSummaryId = nextPhenotypeCallSummaryId++;
+        insertPhenotypeCallSummaryStatement.setLong(22, phenotypeCallSummaryId);
+        insertPhenotypeCallSummaryStatement.addBatch();
+
+        if (insertStatResultPhenotypeCallSummaryStatement != null) {
+            insertStatResultPhenotypeCallSummaryStatement.setLong(1, resultId);
+            insertStatResultPhenotypeCallSummaryStatement.setLong(2, phenotypeCallSummaryId);
+            insertStatResultPhenotypeCallSummaryStatement.addBatch();
+        }
+
+        if (++pendingPhenotypeCalls >= BATCH_SIZE) {
+            flushPhenotypeCalls();
         }
     }
 
+    /**
+     * Writes the batched phenotype calls, then the rows linking them to their statistical results.
+     */
+    void flushPhenotypeCalls() throws SQLException {
+
+        if (pendingPhenotypeCalls == 0) {
+            return;
+        }
+
+        insertPhenotypeCallSummaryStatement.executeBatch();
+        insertCategoricalStatResultPhenotypeCallSummaryStatement.executeBatch();
+        insertUnidimensionalStatResultPhenotypeCallSummaryStatement.executeBatch();
+        insertRRPlusStatResultPhenotypeCallSummaryStatement.executeBatch();
+
+        pendingPhenotypeCalls = 0;
+    }
+
+    private String getParameterStableId(Long parameterId) {
+        return parameterStableIds.computeIfAbsent(parameterId, id -> parameterRepository.findById(id).get().getStableId());
+    }
+
 
     public void processEmbryonicParameters(Connection connection) throws SQLException {
 
@@ -1056,9 +1070,11 @@ public class OntologyAnnotationGenerator implements CommandLineRunner {
             insertPhenotypeCallSummaryStatement.setString(20, lifeStageOntologyTermMap.get(lifeStage).getName());
             insertPhenotypeCallSummaryStatement.setString(21, lifeStageOntologyTermMap.get(lifeStage).getId().getAccession());
 
-            if (SAVE_RESULTS) insertPhenotypeCallSummaryStatement.executeUpdate();
+            addPhenotypeCall(null, null);
 
 		}
+
+		flushPhenotypeCalls();
 	}
 
 	public void processEmbryonicLineParameters(Connection connection) throws SQLException {
@@ -1092,8 +1108,10 @@ public class OntologyAnnotationGenerator implements CommandLineRunner {
             insertPhenotypeCallSummaryStatement.setString(20, lifeStageOntologyTermMap.get(lifeStage).getName());
             insertPhenotypeCallSummaryStatement.setString(21, lifeStageOntologyTermMap.get(lifeStage).getId().getAccession());
 
-            if (SAVE_RESULTS) insertPhenotypeCallSummaryStatement.executeUpdate();
+            addPhenotypeCall(null, null);
 		}
+
+		flushPhenotypeCalls();
 	}
 
 	/**
@@ -92,6 +92,13 @@ public class CdaSqlUtils {
             "VALUES (:dbId, :biologicalSampleId, :parameterId, :parameterStableId, :sequenceId, :populationId, " +
             ":observationType, :missing, :parameterStatus, :parameterStatusMessage)";
 
+    // Used by ObservationBatchWriter, which assigns the primary key from an ObservationIdAllocator block.
+    public static final String OBSERVATION_INSERT_WITH_ID = "INSERT INTO observation (" +
+            "id, db_id, biological_sample_id, parameter_id, parameter_stable_id, sequence_id, population_id," +
+            "observation_type, missing, parameter_status, parameter_status_message) " +
+            "VALUES (:id, :dbId, :biologicalSampleId, :parameterId, :parameterStableId, :sequenceId, :populationId, " +
+            ":observationType, :missing, :parameterStatus, :parameterStatusMessage)";
+
     @NotNull
     private NamedParameterJdbcTemplate jdbcCda;
 
@@ -821,6 +828,11 @@ public class CdaSqlUtils {
     }
 
     public void insertExperiment_observation(long experimentPk, long observationPk) throws DataLoadException {
+        insertExperiment_observation(null, experimentPk, observationPk);
+    }
+
+    // The row is queued on writer, if it is not null; otherwise, it is inserted immediately.
+    public void insertExperiment_observation(ObservationBatchWriter writer, long experimentPk, long observationPk) throws DataLoadException {
 
         final String insert = "INSERT INTO experiment_observation (" +
                 "experiment_id, observation_id) " +
@@ -830,6 +842,11 @@ public class CdaSqlUtils {
         parameterMap.put("experimentPk", experimentPk);
         parameterMap.put("observationPk", observationPk);
 
+        if (writer != null) {
+            writer.add(insert, parameterMap);
+            return;
+        }
+
         KeyHolder          keyholder       = new GeneratedKeyHolder();
         SqlParameterSource parameterSource = new MapSqlParameterSource(parameterMap);
 
@@ -1506,6 +1523,19 @@ public class CdaSqlUtils {
         return projects;
     }
 
+    // Inserts the observation row, or queues it on writer if it is not null. Returns the observation primary key if successful; 0 otherwise.
+    private long insertObservationRow(ObservationBatchWriter writer, Map<String, Object> parameterMap) {
+
+        if (writer != null) {
+            return writer.addObservation(parameterMap);
+        }
+
+        KeyHolder keyholder = new GeneratedKeyHolder();
+        int       count     = jdbcCda.update(OBSERVATION_INSERT, new MapSqlParameterSource(parameterMap), keyholder);
+
+        return (count > 0 ? keyholder.getKey().longValue() : 0);
+    }
+
     // SimpleParameter version. Returns the newly-inserted primary key if successful; 0 otherwise.
     public long insertObservation(
             long dbId,
@@ -1521,9 +1551,30 @@ public class CdaSqlUtils {
             SimpleParameter simpleParameter
     ) throws DataLoadException {
 
+        return insertObservation(null, dbId, biologicalSamplePk, parameterStableId, parameterId, sequenceId,
+                                 populationId, observationType, missing, parameterStatus, parameterStatusMessage,
+                                 simpleParameter);
+    }
+
+    // SimpleParameter version. Rows are queued on writer, if it is not null; otherwise, they are inserted immediately.
+    public long insertObservation(
+            ObservationBatchWriter writer,
+            long dbId,
+            Long biologicalSamplePk,
+            String parameterStableId,
+            long parameterId,
+            String sequenceId,
+            int populationId,
+            ObservationType observationType,
+            int missing,
+            String parameterStatus,
+            String parameterStatusMessage,
+            SimpleParameter simpleParameter
+    ) throws DataLoadException {
+
         String detailInsert = null;
         String rawValue = simpleParameter.getValue();
-        int observationPk = 0;
+        long observationPk = 0;
 
         Map<String, Object> parameterMap = new HashMap<>();
         parameterMap.put("dbId", dbId);
@@ -1612,11 +1663,9 @@ public class CdaSqlUtils {
 
         parameterMap.put("missing", missing);
 
-        KeyHolder          keyholder       = new GeneratedKeyHolder();
         SqlParameterSource parameterSource = new MapSqlParameterSource(parameterMap);
-        int count = jdbcCda.update(OBSERVATION_INSERT, parameterSource, keyholder);
-        if (count > 0) {
-            observationPk = keyholder.getKey().intValue();
+        observationPk = insertObservationRow(writer, parameterMap);
+        if (observationPk > 0) {
             detailParameterMap.put("observationPk", observationPk);
         } else {
             logger.warn("Insert to observation table failed for parameterSource {}", parameterSource);
@@ -1624,7 +1673,12 @@ public class CdaSqlUtils {
         }
 
         if ((missing == 0) && (detailInsert != null)) {
-            count = jdbcCda.update(detailInsert, detailParameterMap);
+            if (writer != null) {
+                writer.addDetail(detailInsert, detailParameterMap);
+                return observationPk;
+            }
+
+            int count = jdbcCda.update(detailInsert, detailParameterMap);
             if (count == 0) {
                 logger.warn("Insert failed for parameterSource {}. Marking it as missing ...", parameterSource);
                 updateObservationMissingFlag(observationPk, true);
@@ -1657,8 +1711,36 @@ public class CdaSqlUtils {
             List<OntologyParameter> ontologyParameterList
     ) throws DataLoadException {
 
+        return insertObservation(null, dbId, biologicalSamplePk, parameterStableId, parameterPk, sequenceId,
+                                 populationId, observationType, missing, parameterStatus, parameterStatusMessage,
+                                 mediaSampleParameter, mediaFile, dccExperimentDTO, phenotypingCenter,
+                                 phenotypingCenterPk, experimentPk, simpleParameterList, ontologyParameterList);
+    }
+
+    // MediaSampleParameter version. Rows are queued on writer, if it is not null; otherwise, they are inserted immediately.
+    public long insertObservation(
+            ObservationBatchWriter writer,
+            long dbId,
+            long biologicalSamplePk,
+            String parameterStableId,
+            long parameterPk,
+            String sequenceId,
+            int populationId,
+            ObservationType observationType,
+            int missing,
+            String parameterStatus,
+            String parameterStatusMessage,
+            MediaSampleParameter mediaSampleParameter,
+            MediaFile mediaFile,
+            DccExperimentDTO dccExperimentDTO,
+            String phenotypingCenter,
+            long phenotypingCenterPk,
+            long experimentPk,
+            List<SimpleParameter> simpleParameterList,
+            List<OntologyParameter> ontologyParameterList
+    ) throws DataLoadException {
+
         String    URI       = mediaFile.getURI();
-        KeyHolder keyholder = new GeneratedKeyHolder();
         long      observationPk;
 
         Map<String, Object> parameterMap = new HashMap<>();
@@ -1675,14 +1757,14 @@ public class CdaSqlUtils {
 
         SqlParameterSource parameterSource = new MapSqlParameterSource(parameterMap);
 
-        int count = jdbcCda.update(OBSERVATION_INSERT, parameterSource, keyholder);
-        if (count > 0) {
-            observationPk = keyholder.getKey().intValue();
-        } else {
+        observationPk = insertObservationRow(writer, parameterMap);
+        if (observationPk == 0) {
             logger.warn("Insert MediaSampleParameter to observation table failed for parameterSource {}", parameterSource);
             return 0;
         }
 
+        int count = 0;
+
         if (missing == 0) {
             final String insert =
                     "INSERT INTO image_record_observation (" +
@@ -1707,6 +1789,13 @@ public class CdaSqlUtils {
             parameterMap.put("organisationPk", phenotypingCenterPk);
             parameterMap.put("fullResolutionFilePath", fullResolutionFilePath);
 
+            if (writer != null) {
+                writer.addDetail(insert, parameterMap);
+                writer.afterFlush(observationPk, () -> insertMediaFileAssociations(
+                        observationPk, mediaFile, dccExperimentDTO, experimentPk, simpleParameterList, ontologyParameterList));
+                return observationPk;
+            }
+
             try {
                 count = jdbcCda.update(insert, parameterMap);
             } catch (Exception e) {
@@ -1722,18 +1811,7 @@ public class CdaSqlUtils {
                 logger.warn("Insert MediaSampleParameter failed for parameterSource {}. Marking it as missing ...", parameterSource);
                 updateObservationMissingFlag(observationPk, true);
             } else {
-                // Save parameter associations
-                for (ParameterAssociation parameterAssociation : mediaFile.getParameterAssociation()) {
-                    long parameterAssociationPk = insertParameterAssociation(observationPk, parameterAssociation, simpleParameterList, ontologyParameterList);
-
-                    // Save Dimensions
-                    for (Dimension dimension : parameterAssociation.getDim()) {
-                        insertDimension(parameterAssociationPk, dimension);
-                    }
-                }
-
-                // Save procedure metadata
-                insertProcedureMetadata(mediaFile.getProcedureMetadata(), dccExperimentDTO.getProcedureId(), experimentPk, observationPk);
+                insertMediaFileAssociations(observationPk, mediaFile, dccExperimentDTO, experimentPk, simpleParameterList, ontologyParameterList);
             }
         } else {
             logger.debug("Image record not loaded (missing = 1). parameterStableId {}, URI {}" + parameterStableId,  URI);
@@ -1742,9 +1820,51 @@ public class CdaSqlUtils {
         return observationPk;
     }
 
+    // Saves the media file's parameter associations (with their dimensions) and procedure metadata.
+    private void insertMediaFileAssociations(long observationPk, MediaFile mediaFile, DccExperimentDTO dccExperimentDTO, long experimentPk,
+                                             List<SimpleParameter> simpleParameterList, List<OntologyParameter> ontologyParameterList) {
+
+        // Save parameter associations
+        for (ParameterAssociation parameterAssociation : mediaFile.getParameterAssociation()) {
+            long parameterAssociationPk = insertParameterAssociation(observationPk, parameterAssociation, simpleParameterList, ontologyParameterList);
+
+            // Save Dimensions
+            for (Dimension dimension : parameterAssociation.getDim()) {
+                insertDimension(parameterAssociationPk, dimension);
+            }
+        }
+
+        // Save procedure metadata
+        insertProcedureMetadata(mediaFile.getProcedureMetadata(), dccExperimentDTO.getProcedureId(), experimentPk, observationPk);
+    }
+
 
     // MediaParameter version. Returns the newly-inserted primary key if successful; 0 otherwise.
-    public synchronized long insertObservation(
+    public long insertObservation(
+            long dbId,
+            long biologicalSamplePk,
+            String parameterStableId,
+            long parameterPk,
+            String sequenceId,
+            int populationId,
+            ObservationType observationType,
+            int missing,
+            String parameterStatus,
+            String parameterStatusMessage,
+            MediaParameter mediaParameter,
+            DccExperimentDTO dccExperimentDTO,
+            String phenotypingCenter,
+            long phenotypingCenterPk
+    ) throws DataLoadException {
+
+        return insertObservation(null, dbId, biologicalSamplePk, parameterStableId, parameterPk, sequenceId,
+                                 populationId, observationType, missing, parameterStatus, parameterStatusMessage,
+                                 mediaParameter, dccExperimentDTO, phenotypingCenter, phenotypingCenterPk);
+    }
+
+    // MediaParameter version. Rows are queued on writer, if it is not null; otherwise, they are inserted immediately.
+    public long insertObservation(
+            ObservationBatchWriter writer,
             long dbId,
             long biologicalSamplePk,
             String parameterStableId,
@@ -1761,7 +1881,6 @@ public class CdaSqlUtils {
             long phenotypingCenterPk
     ) throws DataLoadException {
 
-        KeyHolder keyholder = new GeneratedKeyHolder();
         long      observationPk;
 
         Map<String, Object> parameterMap = new HashMap<>();
@@ -1778,14 +1897,14 @@ public class CdaSqlUtils {
 
         SqlParameterSource parameterSource = new MapSqlParameterSource(parameterMap);
 
-        int count = jdbcCda.update(OBSERVATION_INSERT, parameterSource, keyholder);
-        if (count > 0) {
-            observationPk = keyholder.getKey().intValue();
-        } else {
+        observationPk = insertObservationRow(writer, parameterMap);
+        if (observationPk == 0) {
             logger.warn("Insert MediaParameter to observation table failed for parameterSource {}", parameterSource);
             return 0;
         }
 
+        int count = 0;
+
         if (missing == 0) {
             final String insert =
                     "INSERT INTO image_record_observation (" +
@@ -1810,6 +1929,11 @@ public class CdaSqlUtils {
             parameterMap.put("organisationPk", phenotypingCenterPk);
             parameterMap.put("fullResolutionFilePath", fullResolutionFilePath);
 
+            if (writer != null) {
+                writer.addDetail(insert, parameterMap);
+                return observationPk;
+            }
+
             try {
                 count = jdbcCda.update(insert, parameterMap);
             } catch (Exception e) {
@@ -1848,7 +1972,29 @@ public class CdaSqlUtils {
             long experimentPk                        // Used for logging/debugging purposes only.
     ) throws DataLoadException {
 
-        KeyHolder keyholder     = new GeneratedKeyHolder();
+        return insertObservation(null, dbId, biologicalSamplePk, parameterStableId, parameterPk, sequenceId,
+                                 populationId, observationType, missing, parameterStatus, parameterStatusMessage,
+                                 ontologyParameter, experimentId, experimentPk);
+    }
+
+    // OntologyParameter version. Rows are queued on writer, if it is not null; otherwise, they are inserted immediately.
+    public long insertObservation(
+            ObservationBatchWriter writer,
+            long dbId,
+            long biologicalSamplePk,
+            String parameterStableId,
+            long parameterPk,
+            Integer sequenceId,
+            int populationId,
+            ObservationType observationType,
+            int missing,
+            String parameterStatus,
+            String parameterStatusMessage,
+            OntologyParameter ontologyParameter,
+            String experimentId,                     // Used for logging/debugging purposes only.
+            long experimentPk                        // Used for logging/debugging purposes only.
+    ) throws DataLoadException {
+
         long observationPk;
 
         Map<String, Object> parameterMap = new HashMap<>();
@@ -1865,14 +2011,14 @@ public class CdaSqlUtils {
 
         SqlParameterSource parameterSource = new MapSqlParameterSource(parameterMap);
 
-        int count = jdbcCda.update(OBSERVATION_INSERT, parameterSource, keyholder);
-        if (count > 0) {
-            observationPk = keyholder.getKey().intValue();
-        } else {
+        observationPk = insertObservationRow(writer, parameterMap);
+        if (observationPk == 0) {
             logger.warn("Insert OntologyParameter to observation table failed for parameterSource {}", parameterSource);
             return 0;
         }
 
+        int count = 0;
+
         if (missing == 0) {
             final String insert =
                     "INSERT INTO ontology_observation (id, parameter_id, sequence_id)" +
@@ -1887,6 +2033,27 @@ public class CdaSqlUtils {
             parameterMap.put("parameterId", ontologyParameter.getParameterID());
             parameterMap.put("sequenceId", ontologyParameter.getSequenceID());
 
+            if (writer != null) {
+                writer.addDetail(insert, parameterMap);
+
+                for (String term : ontologyParameter.getTerm()) {
+                    OntologyTerm t = getOntologyTerm(term);
+                    if (t == null) {
+                        logger.warn("Unknown ontology term {} for experimentId {}, experimentPk {}, observationPk {}, parameterStableId {}. Skipping ontology_entity ...",
+                                    term, experimentId, experimentPk, observationPk, parameterStableId);
+                        continue;
+                    }
+
+                    parameterMap.clear();
+                    parameterMap.put("observationPk", observationPk);
+                    parameterMap.put("term", term);
+                    parameterMap.put("termValue", t.getName());
+                    writer.add(insertOntologyEntity, parameterMap);
+                }
+
+                return observationPk;
+            }
+
             try {
                 count = jdbcCda.update(insert, parameterMap);
 
@@ -1947,7 +2114,35 @@ public class CdaSqlUtils {
             List<OntologyParameter> ontologyParameterList
     ) throws DataLoadException {
 
-        KeyHolder keyholder     = new GeneratedKeyHolder();
+        return insertObservation(null, dbId, biologicalSamplePk, parameterStableId, parameterPk, sequenceId,
+                                 populationId, observationType, missing, parameterStatus, parameterStatusMessage,
+                                 seriesMediaParameterValue, dccExperimentDTO, samplePk, phenotypingCenter,
+                                 phenotypingCenterPk, experimentPk, simpleParameterList, ontologyParameterList);
+    }
+
+    // SeriesMediaParameterValue version. Rows are queued on writer, if it is not null; otherwise, they are inserted immediately.
+    public long insertObservation(
+            ObservationBatchWriter writer,
+            long dbId,
+            long biologicalSamplePk,
+            String parameterStableId,
+            long parameterPk,
+            String sequenceId,
+            int populationId,
+            ObservationType observationType,
+            int missing,
+            String parameterStatus,
+            String parameterStatusMessage,
+            SeriesMediaParameterValue seriesMediaParameterValue,
+            DccExperimentDTO dccExperimentDTO,
+            long samplePk,
+            String phenotypingCenter,
+            long phenotypingCenterPk,
+            long experimentPk,
+            List<SimpleParameter> simpleParameterList,
+            List<OntologyParameter> ontologyParameterList
+    ) throws DataLoadException {
+
         long       observationPk;
 
         Map<String, Object> parameterMap = new HashMap<>();
@@ -1964,14 +2159,14 @@ public class CdaSqlUtils {
 
         SqlParameterSource parameterSource = new MapSqlParameterSource(parameterMap);
 
-        int count = jdbcCda.update(OBSERVATION_INSERT, parameterSource, keyholder);
-        if (count > 0) {
-            observationPk = keyholder.getKey().intValue();
-        } else {
+        observationPk = insertObservationRow(writer, parameterMap);
+        if (observationPk == 0) {
             logger.warn("Insert SeriesMediaParameter to observation table failed for parameterSource {}", parameterSource);
             return 0;
         }
 
+        int count = 0;
+
         if (missing == 0) {
             final String insert =
                     "INSERT INTO image_record_observation (" +
@@ -1996,18 +2191,8 @@ public class CdaSqlUtils {
             parameterMap.put("organisationPk", phenotypingCenterPk);
             parameterMap.put("fullResolutionFilePath", fullResolutionFilePath);
 
-            try {
-                count = jdbcCda.update(insert, parameterMap);
-            } catch (Exception e) {
-                logger.error("INSERT to image_record_observation table for SeriesMediaParameterValue failed for parameterStableId {}, observationType {}, observationPk {}, samplePk {}, downloadFilePath {}, imageLink {}, fileType {}, organisationPk {}, fullResolutionFilePath {}. Reason:\n\t{}",
-                             parameterStableId, observationType.toString(), observationPk, samplePk, seriesMediaParameterValue.getURI(), seriesMediaParameterValue.getLink(),
-                             seriesMediaParameterValue.getFileType(), phenotypingCenterPk, fullResolutionFilePath, e.getLocalizedMessage());
-            }
-            if (count == 0) {
-                logger.warn("Insert SeriesMediaParameter failed for parameterSource {}. Marking it as missing ...", parameterSource);
-                updateObservationMissingFlag(observationPk, true);
-            } else {
-
+            // Saves the parameter associations (with their dimensions) and procedure metadata.
+            Runnable saveAssociations = () -> {
                 try {
                     // Save parameter associations
                     if (seriesMediaParameterValue.getParameterAssociation() != null && seriesMediaParameterValue.getParameterAssociation().size() > 0) {
@@ -2053,6 +2238,26 @@ public class CdaSqlUtils {
 
                 // Save any procedure metadata
                 insertProcedureMetadata(seriesMediaParameterValue.getProcedureMetadata(), dccExperimentDTO.getProcedureId(), experimentPk, observationPk);
+            };
+
+            if (writer != null) {
+                writer.addDetail(insert, parameterMap);
+                writer.afterFlush(observationPk, saveAssociations);
+                return observationPk;
+            }
+
+            try {
+                count = jdbcCda.update(insert, parameterMap);
+            } catch (Exception e) {
+                logger.error("INSERT to image_record_observation table for SeriesMediaParameterValue failed for parameterStableId {}, observationType {}, observationPk {}, samplePk {}, downloadFilePath {}, imageLink {}, fileType {}, organisationPk {}, fullResolutionFilePath {}. Reason:\n\t{}",
+                             parameterStableId, observationType.toString(), observationPk, samplePk, seriesMediaParameterValue.getURI(), seriesMediaParameterValue.getLink(),
+                             seriesMediaParameterValue.getFileType(), phenotypingCenterPk, fullResolutionFilePath, e.getLocalizedMessage());
+            }
+            if (count == 0) {
+                logger.warn("Insert SeriesMediaParameter failed for parameterSource {}. Marking it as missing ...", parameterSource);
+                updateObservationMissingFlag(observationPk, true);
+            } else {
+                saveAssociations.run();
             }
         } else {
             logger.debug("Image record not loaded: " + seriesMediaParameterValue.getURI());
@@ -2080,7 +2285,30 @@ public class CdaSqlUtils {
             Float discretePoint
     ) throws DataLoadException {
 
-        KeyHolder keyholder = new GeneratedKeyHolder();
+        return insertObservation(null, dbId, biologicalSamplePk, parameterStableId, parameterPk, sequenceId,
+                                 populationId, observationType, missing, parameterStatus, parameterStatusMessage,
+                                 seriesParameter, dataPoint, timePoint, discretePoint);
+    }
+
+    // SeriesParameter version. Rows are queued on writer, if it is not null; otherwise, they are inserted immediately.
+    public long insertObservation(
+            ObservationBatchWriter writer,
+            long dbId,
+            long biologicalSamplePk,
+            String parameterStableId,
+            long parameterPk,
+            String sequenceId,
+            int populationId,
+            ObservationType observationType,
+            int missing,
+            String parameterStatus,
+            String parameterStatusMessage,
+            SeriesParameter seriesParameter,
+            Float dataPoint,
+            Date timePoint,
+            Float discretePoint
+    ) throws DataLoadException {
+
         long      observationPk;
 
         Map<String, Object> parameterMap = new HashMap<>();
@@ -2097,14 +2325,14 @@ public class CdaSqlUtils {
 
         SqlParameterSource parameterSource = new MapSqlParameterSource(parameterMap);
 
-        int count = jdbcCda.update(OBSERVATION_INSERT, parameterSource, keyholder);
-        if (count > 0) {
-            observationPk = keyholder.getKey().intValue();
-        } else {
+        observationPk = insertObservationRow(writer, parameterMap);
+        if (observationPk == 0) {
             logger.warn("Insert SeriesParameter to observation table failed for parameterSource {}", parameterSource);
             return 0;
         }
 
+        int count = 0;
+
         if (missing == 0) {
             final String insert = "INSERT INTO time_series_observation (id, data_point, time_point, discrete_point)" +
                     "VALUES (:observationPk, :dataPoint, :timePoint, :discretePoint)";
@@ -2115,6 +2343,11 @@ public class CdaSqlUtils {
             parameterMap.put("timePoint", timePoint);
             parameterMap.put("discretePoint", discretePoint);
 
+            if (writer != null) {
+                writer.addDetail(insert, parameterMap);
+                return observationPk;
+            }
+
             try {
                 count = jdbcCda.update(insert, parameterMap);
             } catch (Exception e) {
@@ -2148,7 +2381,29 @@ public class CdaSqlUtils {
             String increment
     ) throws DataLoadException {
 
-        KeyHolder keyholder = new GeneratedKeyHolder();
+        return insertObservation(null, dbId, biologicalSamplePk, parameterStableId, parameterPk, sequenceId,
+                                 populationId, observationType, missing, parameterStatus, parameterStatusMessage,
+                                 seriesParameter, textValue, increment);
+    }
+
+    // SeriesParameter version. Rows are queued on writer, if it is not null; otherwise, they are inserted immediately.
+    public long insertObservation(
+            ObservationBatchWriter writer,
+            long dbId,
+            long biologicalSamplePk,
+            String parameterStableId,
+            long parameterPk,
+            String sequenceId,
+            int populationId,
+            ObservationType observationType,
+            int missing,
+            String parameterStatus,
+            String parameterStatusMessage,
+            SeriesParameter seriesParameter,
+            String textValue,
+            String increment
+    ) throws DataLoadException {
+
         long      observationPk;
 
         Map<String, Object> parameterMap = new HashMap<>();
@@ -2165,14 +2420,14 @@ public class CdaSqlUtils {
 
         SqlParameterSource parameterSource = new MapSqlParameterSource(parameterMap);
 
-        int count = jdbcCda.update(OBSERVATION_INSERT, parameterSource, keyholder);
-        if (count > 0) {
-            observationPk = keyholder.getKey().intValue();
-        } else {
+        observationPk = insertObservationRow(writer, parameterMap);
+        if (observationPk == 0) {
             logger.warn("Insert SeriesParameter to observation table failed for parameterSource {}", parameterSource);
             return 0;
         }
 
+        int count = 0;
+
         if (missing == 0) {
             final String insert = "INSERT INTO text_series_observation (id, text_value, increment)" +
                     "VALUES (:observationPk, :textValue, :increment)";
@@ -2182,6 +2437,11 @@ public class CdaSqlUtils {
             parameterMap.put("textValue", textValue);
             parameterMap.put("increment", increment);
 
+            if (writer != null) {
+                writer.addDetail(insert, parameterMap);
+                return observationPk;
+            }
+
             try {
                 count = jdbcCda.update(insert, parameterMap);
             } catch (Exception e) {
@@ -25,21 +25,29 @@ import org.mousephenotype.dcc.exportlibrary.datastructure.core.specimen.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.jdbc.support.MetaDataAccessException;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.util.Assert;
 
 import javax.inject.Inject;
+import javax.sql.DataSource;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.sql.Date;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -47,6 +55,10 @@ import java.util.stream.Stream;
 
 /**
  * Created by mrelac on 02/03/2016.
+ *
+ * The methods that log a failed query or insert and carry on still throw {@link TransientDataAccessException}s
+ * (deadlocks, lock wait timeouts). The database has then rolled back the caller's transaction, so the caller must
+ * retry it rather than commit the rows written after the failure on their own.
  */
 public class DccSqlUtils {
 
@@ -56,7 +68,7 @@ public class DccSqlUtils {
     private       LoadUtils            loadUtils;
 
     // Cache for toe PK key from the DCC database
-    private Map<Map<String, String>, Long> centerPkMap = new HashMap<>();
+    private Map<Map<String, String>, Long> centerPkMap = new ConcurrentHashMap<>();       // Shared by the extractor threads
 
 
 
@@ -323,6 +335,8 @@ public class DccSqlUtils {
            if (centerPk > 0) {
                centerPkMap.put(parameterMap, centerPk);
            }
+        } catch (TransientDataAccessException e) {
+            throw e;
         } catch (Exception e) {
 
         }
@@ -340,6 +354,8 @@ public class DccSqlUtils {
 
         try {
             center_specimenPk = loadUtils.queryForPk(npJdbcTemplate, query, parameterMap);
+        } catch (TransientDataAccessException e) {
+            throw e;
         } catch (Exception e) {
 
         }
@@ -1404,6 +1420,8 @@ public class DccSqlUtils {
                 return pk;
             }
 
+        } catch (TransientDataAccessException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("INSERT to mediaFile failed for fileType {}, localId {}, link {}, URI {}, mediaSectionPk {}. Reason:\n\t{}",
                          mediaFile.getFileType(), mediaFile.getLocalId(), mediaFile.getLink(), mediaFile.getURI(), mediaSectionPk, e.getLocalizedMessage());
@@ -1503,6 +1521,8 @@ public class DccSqlUtils {
                 return pk;
             }
 
+        } catch (TransientDataAccessException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("INSERT to mediaParameter failed for arameterId {}, procedurePk {}. Reason:\n\t{}",
                          mediaParameter.getParameterID(), procedurePk, e.getLocalizedMessage());
@@ -1534,6 +1554,8 @@ public class DccSqlUtils {
                              mediaParameterPk, parameterAssociationPk);
             }
 
+        } catch (TransientDataAccessException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("INSERT to mediaParameter_parameterAssociation failed for mediaParameterPk {}, parameterAssociationPk {}. Reason:\n\t{}",
                          mediaParameterPk, parameterAssociationPk, e.getLocalizedMessage());
@@ -1559,6 +1581,8 @@ public class DccSqlUtils {
 
             npJdbcTemplate.update(insert, parameterMap);
 
+        } catch (TransientDataAccessException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("INSERT to mediaParameter_procedureMetadata failed for mediaParameterPk {}, procedureMetadataPk {}. Reason:\n\t{}",
                          mediaParameterPk, procedureMetadataPk, e.getLocalizedMessage());
@@ -1592,6 +1616,8 @@ public class DccSqlUtils {
                 return pk;
             }
 
+        } catch (TransientDataAccessException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("INSERT to mediaSample failed for localId {}, mediaSampleParameterPk {}. Reason:\n\t{}",
                          mediaSample.getLocalId(), mediaSampleParameterPk, e.getLocalizedMessage());
@@ -1627,6 +1653,8 @@ public class DccSqlUtils {
                 return pk;
             }
 
+        } catch (TransientDataAccessException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("INSERT to mediaSampleParameter failed for parameterId {}, procedurePk {}. Reason:\n\t{}",
                          mediaSampleParameter.getParameterID(), procedurePk, e.getLocalizedMessage());
@@ -1663,6 +1691,8 @@ public class DccSqlUtils {
                 return pk;
             }
 
+        } catch (TransientDataAccessException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("INSERT to mediaSection failed for localId {}, mediaSamplePk {}. Reason:\n\t{}",
                          mediaSection.getLocalId(), mediaSamplePk, e.getLocalizedMessage());
@@ -1701,6 +1731,8 @@ public class DccSqlUtils {
                 return pk;
             }
 
+        } catch (TransientDataAccessException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("INSERT to ontologyParameter failed for ontologyParameterId {}, procedurePk {}. Reason:\n\t{}",
                          ontologyParameter.getParameterID(), procedurePk, e.getLocalizedMessage());
@@ -1811,6 +1843,8 @@ public class DccSqlUtils {
                 return pk;
             }
 
+        } catch (TransientDataAccessException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
             logger.error("INSERT to procedure_ failed for procedureId {}. Reason:\n\t{}",
@@ -1844,6 +1878,8 @@ public class DccSqlUtils {
                              procedurePk, procedureMetadataPk);
             }
 
+        } catch (TransientDataAccessException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
             logger.error("INSERT to procedure_procedureMetadata failed for procedurePk {}, procedureMetadataPk {}. Reason:\n\t{}",
@@ -1914,6 +1950,8 @@ public class DccSqlUtils {
                 return pk;
             }
 
+        } catch (TransientDataAccessException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("INSERT to seriesMediaParameter failed for seriesMediaParameter {}, procedurePk {}. Reason:\n\t{}",
                          seriesMediaParameter.getParameterID(), procedurePk, e.getLocalizedMessage());
@@ -1983,6 +2021,8 @@ public class DccSqlUtils {
                         seriesMediaParameterValuePk, parameterAssociationPk);
             }
 
+        } catch (TransientDataAccessException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("INSERT to seriesMediaParameterValue_parameterAssociation failed for seriesMediaParameterValuePk {}, parameterAssociationPk {}. Reason:\n\t{}",
                          seriesMediaParameterValuePk, parameterAssociationPk, e.getLocalizedMessage());
@@ -2012,6 +2052,8 @@ public class DccSqlUtils {
                              seriesMediaParameterValuePk, procedureMetadataPk);
             }
 
+        } catch (TransientDataAccessException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("INSERT to seriesMediaParameterValue_procedureMetadata failed for mediaseriesMediaParameterValuePkParameterPk {}, procedureMetadataPk {}. Reason:\n\t{}",
                          seriesMediaParameterValuePk, procedureMetadataPk, e.getLocalizedMessage());
@@ -2047,6 +2089,8 @@ public class DccSqlUtils {
                 return pk;
             }
 
+        } catch (TransientDataAccessException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("INSERT to seriesParameter failed for parameterId {}, procedurePk {}. Reason:\n\t{}",
                          seriesParameter.getParameterID(), procedurePk, e.getLocalizedMessage());
@@ -2081,6 +2125,8 @@ public class DccSqlUtils {
                              seriesParameterValue.getValue(), seriesParameterPk);
             }
 
+        } catch (TransientDataAccessException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("INSERT to seriesParameterValue failed for value {}, seriesParameterPk {}. Reason:\n\t{}",
                          seriesParameterValue.getValue(), seriesParameterPk, e.getLocalizedMessage());
@@ -2159,6 +2205,8 @@ public class DccSqlUtils {
                              simpleParameter.getParameterID(), procedurePk);
             }
 
+        } catch (TransientDataAccessException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("INSERT to simpleParameter failed for parameterId {}, procedurePk {}. Reason:\n\t{}",
                          simpleParameter.getParameterID(), procedurePk, e.getLocalizedMessage());
@@ -2303,6 +2351,8 @@ public class DccSqlUtils {
 
         try {
             pk = npJdbcTemplate.queryForObject(query, parameterMap, Long.class);
+        } catch (TransientDataAccessException e) {
+            throw e;
         } catch (Exception e) {
 
         }
@@ -2417,75 +2467,108 @@ public class DccSqlUtils {
     }
 
 
+    private static final String EXPERIMENTS_QUERY =
+            "-- dccExperimentDTO_load.sql\n" +
+                    "\n" +
+                    "SELECT\n" +
+                    "  e.datasourceShortName,\n" +
+                    "  e.experimentId,\n" +
+                    "  e.sequenceId,\n" +
+                    "  e.dateOfExperiment,\n" +
+                    "  c.centerId   AS phenotypingCenter,\n" +
+                    "  CASE WHEN s.productionCenter IS NULL THEN c.centerId\n" +
+                    "       ELSE s.productionCenter\n" +
+                    "  END AS productionCenter,\n" +
+                    "  c.pipeline,\n" +
+                    "  c.project,\n" +
+                    "  p.procedureId,\n" +
+                    "  p.pk         AS dcc_procedure_pk,\n" +
+                    "  s.colonyId   AS colonyId,\n" +
+                    "  s.specimenId AS specimenId,\n" +
+                    "  s.gender     AS gender,\n" +
+                    "  s.strainId   AS specimenStrainId,\n" +
+                    "  s.zygosity   AS zygosity,\n" +
+                    "  sc.value     AS rawProcedureStatus,\n" +
+                    "  0            AS isLineLevel,\n" +
+                    "  s.isBaseline AS isControl\n" +
+                    "FROM experiment e\n" +
+                    "JOIN center_procedure                 cp  ON cp .pk            = e  .center_procedure_pk\n" +
+                    "JOIN center                           c   ON c  .pk            = cp .center_pk\n" +
+                    "JOIN procedure_                       p   ON p  .pk            = cp .procedure_pk\n" +
+                    "JOIN experiment_specimen              es  ON es .experiment_pk = e  .pk\n" +
+                    "LEFT OUTER JOIN specimen              s   ON s  .pk            = es .specimen_pk\n" +
+                    "LEFT OUTER JOIN experiment_statuscode esc ON esc.experiment_pk = e  .pk\n" +
+                    "LEFT OUTER JOIN statuscode            sc  ON sc .pk            = esc.statuscode_pk\n" +
+                    "UNION ALL\n" +
+                    "SELECT\n" +
+                    "  l.datasourceShortName,\n" +
+                    "  CONCAT(p.procedureId, '-', l.colonyId) AS experimentId,\n" +
+                    "  NULL,\n" +
+                    "  NULL,\n" +
+                    "  c.centerId AS phenotypingCenter,\n" +
+                    "  NULL       AS productionCenter,\n" +
+                    "  c.pipeline,\n" +
+                    "  c.project,\n" +
+                    "  p.procedureId,\n" +
+                    "  p.pk       AS dcc_procedure_pk,\n" +
+                    "  l.colonyId,\n" +
+                    "  NULL       AS specimenId,\n" +
+                    "  NULL       AS gender,\n" +
+                    "  NULL       AS specimenStrainId,\n" +
+                    "  NULL       AS zygosity,\n" +
+                    "  sc.value   AS rawProcedureStatus,\n" +
+                    "  1          AS isLineLevel,\n" +
+                    "  0          AS isControl\n" +
+                    "FROM line l\n" +
+                    "JOIN center_procedure            cp  ON cp .pk            = l  .center_procedure_pk\n" +
+                    "JOIN center                      c   ON c  .pk            = cp .center_pk\n" +
+                    "JOIN procedure_                  p   ON p  .pk            = cp .procedure_pk\n" +
+                    "LEFT OUTER JOIN line_statuscode  lsc ON lsc.line_pk       = l  .pk\n" +
+                    "LEFT OUTER JOIN statuscode       sc  ON sc .pk            = lsc.statuscode_pk";
+
     /**
      * @return all line- and procedure-level experiments
      */
     public List<DccExperimentDTO> getExperiments() {
 
-        final String query =
-                "-- dccExperimentDTO_load.sql\n" +
-                        "\n" +
-                        "SELECT\n" +
-                        "  e.datasourceShortName,\n" +
-                        "  e.experimentId,\n" +
-                        "  e.sequenceId,\n" +
-                        "  e.dateOfExperiment,\n" +
-                        "  c.centerId   AS phenotypingCenter,\n" +
-                        "  CASE WHEN s.productionCenter IS NULL THEN c.centerId\n" +
-                        "       ELSE s.productionCenter\n" +
-                        "  END AS productionCenter,\n" +
-                        "  c.pipeline,\n" +
-                        "  c.project,\n" +
-                        "  p.procedureId,\n" +
-                        "  p.pk         AS dcc_procedure_pk,\n" +
-                        "  s.colonyId   AS colonyId,\n" +
-                        "  s.specimenId AS specimenId,\n" +
-                        "  s.gender     AS gender,\n" +
-                        "  s.strainId   AS specimenStrainId,\n" +
-                        "  s.zygosity   AS zygosity,\n" +
-                        "  sc.value     AS rawProcedureStatus,\n" +
-                        "  0            AS isLineLevel,\n" +
-                        "  s.isBaseline AS isControl\n" +
-                        "FROM experiment e\n" +
-                        "JOIN center_procedure                 cp  ON cp .pk            = e  .center_procedure_pk\n" +
-                        "JOIN center                           c   ON c  .pk            = cp .center_pk\n" +
-                        "JOIN procedure_                       p   ON p  .pk            = cp .procedure_pk\n" +
-                        "JOIN experiment_specimen              es  ON es .experiment_pk = e  .pk\n" +
-                        "LEFT OUTER JOIN specimen              s   ON s  .pk            = es .specimen_pk\n" +
-                        "LEFT OUTER JOIN experiment_statuscode esc ON esc.experiment_pk = e  .pk\n" +
-                        "LEFT OUTER JOIN statuscode            sc  ON sc .pk            = esc.statuscode_pk\n" +
-                        "UNION ALL\n" +
-                        "SELECT\n" +
-                        "  l.datasourceShortName,\n" +
-                        "  CONCAT(p.procedureId, '-', l.colonyId) AS experimentId,\n" +
-                        "  NULL,\n" +
-                        "  NULL,\n" +
-                        "  c.centerId AS phenotypingCenter,\n" +
-                        "  NULL       AS productionCenter,\n" +
-                        "  c.pipeline,\n" +
-                        "  c.project,\n" +
-                        "  p.procedureId,\n" +
-                        "  p.pk       AS dcc_procedure_pk,\n" +
-                        "  l.colonyId,\n" +
-                        "  NULL       AS specimenId,\n" +
-                        "  NULL       AS gender,\n" +
-                        "  NULL       AS specimenStrainId,\n" +
-                        "  NULL       AS zygosity,\n" +
-                        "  sc.value   AS rawProcedureStatus,\n" +
-                        "  1          AS isLineLevel,\n" +
-                        "  0          AS isControl\n" +
-                        "FROM line l\n" +
-                        "JOIN center_procedure            cp  ON cp .pk            = l  .center_procedure_pk\n" +
-                        "JOIN center                      c   ON c  .pk            = cp .center_pk\n" +
-                        "JOIN procedure_                  p   ON p  .pk            = cp .procedure_pk\n" +
-                        "LEFT OUTER JOIN line_statuscode  lsc ON lsc.line_pk       = l  .pk\n" +
-                        "LEFT OUTER JOIN statuscode       sc  ON sc .pk            = lsc.statuscode_pk";
-
-        List<DccExperimentDTO> experiments = npJdbcTemplate.query(query, new HashMap<>(), new DccExperimentRowMapper());
+        List<DccExperimentDTO> experiments = npJdbcTemplate.query(EXPERIMENTS_QUERY, new HashMap<>(), new DccExperimentRowMapper());
 
         return (experiments.isEmpty() ? new ArrayList<>() : experiments);
     }
 
+    /**
+     * Passes all line- and procedure-level experiments to {@code consumer} one at a time, in the same order as
+     * {@link #getExperiments()}, without holding them all in memory. On MySQL the rows are streamed from the server,
+     * so the connection stays busy until the last row has been consumed: {@code consumer} may block (e.g. on a
+     * bounded queue), but not for longer than the server's net_write_timeout.
+     *
+     * @return the number of experiments read
+     */
+    public long streamExperiments(Consumer<DccExperimentDTO> consumer) {
+
+        DataSource   dataSource   = ((JdbcTemplate) npJdbcTemplate.getJdbcOperations()).getDataSource();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+        try {
+            String product = JdbcUtils.extractDatabaseMetaData(dataSource, "getDatabaseProductName").toString();
+            if (product.toLowerCase().contains("mysql")) {
+                jdbcTemplate.setFetchSize(Integer.MIN_VALUE);           // Connector/J: stream rows instead of buffering the result set
+            }
+        } catch (MetaDataAccessException e) {
+            logger.warn("Unable to get database product name. Experiments will not be streamed. Reason: {}", e.getLocalizedMessage());
+        }
+
+        DccExperimentRowMapper rowMapper = new DccExperimentRowMapper();
+        long[]                 count     = { 0 };
+
+        new NamedParameterJdbcTemplate(jdbcTemplate).query(EXPERIMENTS_QUERY, new HashMap<>(), (RowCallbackHandler) rs -> {
+            consumer.accept(rowMapper.mapRow(rs, (int) count[0]));
+            count[0]++;
+        });
+
+        return count[0];
+    }
+
     /**
      * Inserts the given
      * Given a parameterId value, attempts to fetch the matching <code>ParameterAssociation</code> instance. If there is
@@ -2552,6 +2635,8 @@ public class DccSqlUtils {
                     }
                 }
 
+            } catch (TransientDataAccessException e) {
+                throw e;
             } catch (Exception e) {
                 e.printStackTrace();
                 throw new RuntimeException("INSERT of retVal(" + parameterId + ", " + sequenceId + ") FAILED: " + e.getLocalizedMessage());
@@ -2584,6 +2669,8 @@ public class DccSqlUtils {
             long pk = keyholder.getKey().longValue();
             return pk;
 
+        } catch (TransientDataAccessException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
             String s = String.format("INSERT INTO procedureMetadata (parameterId, parameterStatus, sequenceId, value) VALUES (%s, %s, %s, %s)", procedureMetadata.getParameterID(), procedureMetadata.getParameterStatus(), procedureMetadata.getSequenceID(), procedureMetadata.getValue());
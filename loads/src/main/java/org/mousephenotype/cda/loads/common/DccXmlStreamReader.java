@@ -0,0 +1,176 @@
+/*******************************************************************************
+ * Copyright © 2019 EMBL - European Bioinformatics Institute
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ ******************************************************************************/
+
+package org.mousephenotype.cda.loads.common;
+
+import org.mousephenotype.cda.loads.exceptions.DataLoadException;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.*;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Walks a DCC xml file (centreProcedureSet or centreSpecimenSet) with StAX, unmarshalling one element at a time, so
+ * that only the element being read is held in memory rather than the whole file's JAXB object graph.
+ *
+ * Usage:
+ *
+ *   try (DccXmlStreamReader reader = new DccXmlStreamReader(CONTEXT_PATH, filename)) {
+ *       String name;
+ *       while ((name = reader.nextElement("centre", "experiment")) != null) {
+ *           if (name.equals("centre")) {
+ *               centreId = reader.getAttribute("centreID");
+ *           } else {
+ *               Experiment experiment = reader.unmarshal(Experiment.class);
+ *           }
+ *       }
+ *   }
+ *
+ * Elements are matched by local name, ignoring the namespace. An element returned by {@link #nextElement(String...)}
+ * that is not unmarshalled is descended into, so its attributes can be read and its children found.
+ *
+ * Instances are not thread-safe; use one per file.
+ */
+public class DccXmlStreamReader implements AutoCloseable {
+
+    private static final XMLInputFactory                        inputFactory = XMLInputFactory.newInstance();
+    private static final ConcurrentHashMap<String, JAXBContext> contexts     = new ConcurrentHashMap<>();
+
+    static {
+        // DCC files don't use them, and resolving them would let a file read other files.
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private final String          filename;
+    private final InputStream     inputStream;
+    private final XMLStreamReader reader;
+    private final Unmarshaller    unmarshaller;
+    private       boolean         returned = false;        // true if the current event has been returned by nextElement()
+
+    /**
+     * @param contextPath the JAXB context path of the classes the file's elements are unmarshalled to. The context
+     *                    is created once per path and shared.
+     * @param filename the DCC xml file to read
+     */
+    public DccXmlStreamReader(String contextPath, String filename) throws DataLoadException {
+        this.filename = filename;
+
+        try {
+            JAXBContext context = contexts.computeIfAbsent(contextPath, path -> {
+                try {
+                    return JAXBContext.newInstance(path);
+                } catch (JAXBException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+
+            inputStream = new BufferedInputStream(new FileInputStream(filename));
+            reader = inputFactory.createXMLStreamReader(inputStream);
+            unmarshaller = context.createUnmarshaller();
+
+        } catch (IllegalStateException e) {
+            throw new DataLoadException("Unable to create JAXB context " + contextPath, e.getCause());
+        } catch (IOException | XMLStreamException | JAXBException e) {
+            throw new DataLoadException("Unable to open " + filename, e);
+        }
+    }
+
+    /**
+     * Advances to the start of the next element whose local name is one of {@code localNames}.
+     *
+     * @return the element's local name, or null at the end of the file
+     */
+    public String nextElement(String... localNames) throws DataLoadException {
+        Set<String> names = new HashSet<>(Arrays.asList(localNames));
+
+        try {
+            while (true) {
+                if (( ! returned) && (reader.getEventType() == XMLStreamConstants.START_ELEMENT) && names.contains(reader.getLocalName())) {
+                    returned = true;
+                    return reader.getLocalName();
+                }
+
+                if ( ! reader.hasNext()) {
+                    return null;
+                }
+
+                reader.next();
+                returned = false;
+            }
+
+        } catch (XMLStreamException e) {
+            throw new DataLoadException("Unable to read " + filename + " at " + getLocation(), e);
+        }
+    }
+
+    /**
+     * @return the value of the current element's attribute {@code localName}, or null if it has none
+     */
+    public String getAttribute(String localName) {
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            if (reader.getAttributeLocalName(i).equals(localName)) {
+                return reader.getAttributeValue(i);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Unmarshals the current element, including its children, and advances past its end.
+     */
+    public <T> T unmarshal(Class<T> type) throws DataLoadException {
+        try {
+            T value = unmarshaller.unmarshal(reader, type).getValue();
+            returned = false;
+
+            return value;
+
+        } catch (JAXBException e) {
+            throw new DataLoadException("Unable to unmarshal " + type.getSimpleName() + " from " + filename + " at " + getLocation(), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            // Nothing to do; the underlying stream is closed below.
+        }
+
+        try {
+            inputStream.close();
+        } catch (IOException e) {
+            // Nothing to do.
+        }
+    }
+
+
+    private String getLocation() {
+        return "line " + reader.getLocation().getLineNumber() + ", column " + reader.getLocation().getColumnNumber();
+    }
+}
@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Copyright © 2019 EMBL - European Bioinformatics Institute
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ ******************************************************************************/
+
+package org.mousephenotype.cda.loads.common;
+
+import org.mousephenotype.cda.utilities.CommonUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Progress and throughput counters for a load: items read, completed and failed, the depth of the work queue and the
+ * number of rows inserted per table. While started, a line is logged every {@code interval} with the rates since the
+ * previous line; {@link #stop()} logs the totals and overall rates.
+ *
+ * All counters are safe to update from any number of threads.
+ */
+public class LoadMetrics {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final String                           name;
+    private final LongAdder                        read       = new LongAdder();
+    private final LongAdder                        completed  = new LongAdder();
+    private final LongAdder                        failed     = new LongAdder();
+    private final ConcurrentMap<String, LongAdder> tableRows  = new ConcurrentHashMap<>();
+    private       IntSupplier                      queueDepth = () -> 0;
+
+    private ScheduledExecutorService reporter;
+    private long                     startNanos;
+    private long                     lastNanos;
+    private long                     lastCompleted;
+    private Map<String, Long>        lastTableRows = new TreeMap<>();
+
+    /**
+     * @param name what is being loaded (e.g. "experiments"), used in the log lines
+     */
+    public LoadMetrics(String name) {
+        this.name = name;
+    }
+
+    public void read() {
+        read.increment();
+    }
+
+    public void completed() {
+        completed.increment();
+    }
+
+    public void failed() {
+        failed.increment();
+    }
+
+    /**
+     * @param queueDepth the current number of items waiting to be processed
+     */
+    public void setQueueDepth(IntSupplier queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    /**
+     * @return the row counter for {@code table}, for callers that insert into it
+     */
+    public LongAdder getTableRows(String table) {
+        return tableRows.computeIfAbsent(table, k -> new LongAdder());
+    }
+
+    public long getRead() {
+        return read.sum();
+    }
+
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public synchronized void start(long interval, TimeUnit unit) {
+        startNanos = lastNanos = System.nanoTime();
+        reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "load-metrics-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(this::report, interval, interval, unit);
+    }
+
+    public synchronized void stop() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+
+        double seconds = Math.max(System.nanoTime() - startNanos, 1) / 1e9;
+        logger.info("{}: {} read, {} completed, {} failed in {} ({} {}/sec)",
+                    name, getRead(), getCompleted(), getFailed(), new CommonUtils().msToHms((long) (seconds * 1000)),
+                    String.format("%.1f", getCompleted() / seconds), name);
+
+        for (Map.Entry<String, Long> entry : snapshotTableRows().entrySet()) {
+            logger.info("  {}: {} rows ({} rows/sec)", entry.getKey(), entry.getValue(), String.format("%.1f", entry.getValue() / seconds));
+        }
+    }
+
+
+    private synchronized void report() {
+        long   now       = System.nanoTime();
+        double seconds   = Math.max(now - lastNanos, 1) / 1e9;
+        long   completed = getCompleted();
+
+        StringBuilder tables = new StringBuilder();
+        Map<String, Long> current = snapshotTableRows();
+        for (Map.Entry<String, Long> entry : current.entrySet()) {
+            long previous = lastTableRows.getOrDefault(entry.getKey(), 0L);
+            tables.append(tables.length() == 0 ? "" : ", ")
+                    .append(entry.getKey())
+                    .append(' ')
+                    .append(String.format("%.1f", (entry.getValue() - previous) / seconds))
+                    .append("/sec");
+        }
+
+        logger.info("{}: {} read, {} completed, {} failed, queue depth {}. {} {}/sec{}{}",
+                    name, getRead(), completed, getFailed(), queueDepth.getAsInt(),
+                    String.format("%.1f", (completed - lastCompleted) / seconds), name,
+                    (tables.length() == 0 ? "" : ". Rows: "), tables);
+
+        lastNanos = now;
+        lastCompleted = completed;
+        lastTableRows = current;
+    }
+
+    private Map<String, Long> snapshotTableRows() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        tableRows.forEach((table, rows) -> snapshot.put(table, rows.sum()));
+
+        return snapshot;
+    }
+}
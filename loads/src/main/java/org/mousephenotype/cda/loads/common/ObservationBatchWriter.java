@@ -0,0 +1,260 @@
+/*******************************************************************************
+ * Copyright © 2019 EMBL - European Bioinformatics Institute
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ ******************************************************************************/
+
+package org.mousephenotype.cda.loads.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Collects the rows written for one or more experiments' observations, grouped by insert statement, and writes
+ * each group with a single {@code batchUpdate} when flushed. With {@code rewriteBatchedStatements=true} on the
+ * connection, MySQL receives each group as a few multi-row INSERTs instead of a round trip per row.
+ *
+ * Observation primary keys are taken from blocks handed out by an {@link ObservationIdAllocator}, so the rows that
+ * reference an observation can be queued before the observation itself is written. Observation rows are always
+ * written first, then the other groups in the order they were first queued.
+ *
+ * If a batch fails, its rows are retried one at a time. Observations that cannot be written have their dependent
+ * rows and deferred actions dropped; observations whose detail row cannot be written are marked as missing, as
+ * {@link CdaSqlUtils} does for single-row inserts.
+ *
+ * If given a {@link LoadMetrics}, the rows written to each table are added to its per-table counters.
+ *
+ * Instances are not thread-safe. Use one per thread (e.g. one per experiment) and call {@link #flush()} when done.
+ */
+public class ObservationBatchWriter {
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private static final Pattern INSERT_TABLE = Pattern.compile("^\\s*INSERT\\s+(?:IGNORE\\s+)?INTO\\s+`?(\\w+)`?", Pattern.CASE_INSENSITIVE);
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final NamedParameterJdbcTemplate jdbcCda;
+    private final CdaSqlUtils                cdaSqlUtils;
+    private final ObservationIdAllocator     idAllocator;
+    private final int                        batchSize;
+    private final LoadMetrics                metrics;
+
+    private final Map<String, Batch>     batches  = new LinkedHashMap<>();
+    private final List<DeferredAction>   deferred = new ArrayList<>();
+    private       int                    rowCount = 0;
+
+    // Kept across flushes, as a flush on size can write an observation before its dependent rows are queued
+    private final Set<Long> failedObservationPks  = new HashSet<>();          // Not written; their dependent rows are dropped.
+    private final Set<Long> missingObservationPks = new HashSet<>();          // Written, but marked missing; their deferred actions are skipped.
+
+    private long nextId = 0;
+    private long endId  = 0;
+
+    public ObservationBatchWriter(NamedParameterJdbcTemplate jdbcCda, CdaSqlUtils cdaSqlUtils, ObservationIdAllocator idAllocator) {
+        this(jdbcCda, cdaSqlUtils, idAllocator, DEFAULT_BATCH_SIZE, null);
+    }
+
+    public ObservationBatchWriter(NamedParameterJdbcTemplate jdbcCda, CdaSqlUtils cdaSqlUtils, ObservationIdAllocator idAllocator, LoadMetrics metrics) {
+        this(jdbcCda, cdaSqlUtils, idAllocator, DEFAULT_BATCH_SIZE, metrics);
+    }
+
+    /**
+     * @param metrics where to count the rows written to each table. May be null.
+     */
+    public ObservationBatchWriter(NamedParameterJdbcTemplate jdbcCda, CdaSqlUtils cdaSqlUtils, ObservationIdAllocator idAllocator, int batchSize, LoadMetrics metrics) {
+        this.jdbcCda = jdbcCda;
+        this.cdaSqlUtils = cdaSqlUtils;
+        this.idAllocator = idAllocator;
+        this.batchSize = batchSize;
+        this.metrics = metrics;
+
+        batches.put(CdaSqlUtils.OBSERVATION_INSERT_WITH_ID, new Batch(CdaSqlUtils.OBSERVATION_INSERT_WITH_ID, false));
+    }
+
+    /**
+     * Queues an observation row.
+     *
+     * @param parameterMap the {@link CdaSqlUtils#OBSERVATION_INSERT} parameters. The map is copied.
+     * @return the observation's primary key
+     */
+    public long addObservation(Map<String, Object> parameterMap) {
+        if (nextId == endId) {
+            nextId = idAllocator.allocateBlock();
+            endId = nextId + idAllocator.getBlockSize();
+        }
+
+        long observationPk = nextId++;
+
+        MapSqlParameterSource row = new MapSqlParameterSource(parameterMap);
+        row.addValue("id", observationPk);
+        queue(CdaSqlUtils.OBSERVATION_INSERT_WITH_ID, false, row);
+
+        return observationPk;
+    }
+
+    /**
+     * Queues the row holding an observation's value (unidimensional_observation, image_record_observation, ...).
+     * If it cannot be written, the observation is marked as missing.
+     *
+     * @param parameterMap the insert's parameters, including {@code observationPk}. The map is copied.
+     */
+    public void addDetail(String insert, Map<String, Object> parameterMap) {
+        queue(insert, true, new MapSqlParameterSource(parameterMap));
+    }
+
+    /**
+     * Queues any other row that references an observation, such as experiment_observation or ontology_entity.
+     *
+     * @param parameterMap the insert's parameters, including {@code observationPk}. The map is copied.
+     */
+    public void add(String insert, Map<String, Object> parameterMap) {
+        queue(insert, false, new MapSqlParameterSource(parameterMap));
+    }
+
+    /**
+     * Runs {@code action} after the next flush has written the observation, for rows that need a generated key of
+     * their own (e.g. parameter_association, whose key is referenced by dimension). The action is skipped if the
+     * observation or its detail row could not be written.
+     */
+    public void afterFlush(long observationPk, Runnable action) {
+        deferred.add(new DeferredAction(observationPk, action));
+    }
+
+    /**
+     * Writes all queued rows, then runs the deferred actions.
+     */
+    public void flush() {
+
+        for (Batch batch : batches.values()) {
+            if (batch.rows.isEmpty()) {
+                continue;
+            }
+
+            List<MapSqlParameterSource> rows = new ArrayList<>(batch.rows.size());
+            for (MapSqlParameterSource row : batch.rows) {
+                if ( ! failedObservationPks.contains(getObservationPk(row))) {
+                    rows.add(row);
+                }
+            }
+
+            int written = 0;
+            try {
+                jdbcCda.batchUpdate(batch.insert, rows.toArray(new MapSqlParameterSource[0]));
+                written = rows.size();
+
+            } catch (DataAccessException e) {
+
+                logger.warn("Batch insert of {} rows failed. Retrying one row at a time. Reason: {}", rows.size(), e.getLocalizedMessage());
+                for (MapSqlParameterSource row : rows) {
+                    written += writeRow(batch, row, failedObservationPks, missingObservationPks);
+                }
+            }
+
+            if (metrics != null) {
+                metrics.getTableRows(batch.table).add(written);
+            }
+
+            batch.rows.clear();
+        }
+
+        for (DeferredAction action : deferred) {
+            if (( ! failedObservationPks.contains(action.observationPk)) && ( ! missingObservationPks.contains(action.observationPk))) {
+                action.action.run();
+            }
+        }
+
+        deferred.clear();
+        rowCount = 0;
+    }
+
+
+    private void queue(String insert, boolean isDetail, MapSqlParameterSource row) {
+        batches.computeIfAbsent(insert, k -> new Batch(insert, isDetail)).rows.add(row);
+
+        if (++rowCount >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * @return the number of rows written (0 or 1)
+     */
+    private int writeRow(Batch batch, MapSqlParameterSource row, Set<Long> failedObservationPks, Set<Long> missingObservationPks) {
+
+        Long observationPk = getObservationPk(row);
+        int  count;
+
+        try {
+            count = jdbcCda.update(batch.insert, row);
+        } catch (DuplicateKeyException e) {
+            // Written by the part of the failed batch that succeeded.
+            count = 1;
+        } catch (DataAccessException e) {
+            logger.warn("Insert failed for observationPk {}, parameters {}. Reason: {}", observationPk, row.getValues(), e.getLocalizedMessage());
+            count = 0;
+        }
+
+        if ((count == 0) && (observationPk != null)) {
+            if (batch.insert.equals(CdaSqlUtils.OBSERVATION_INSERT_WITH_ID)) {
+                failedObservationPks.add(observationPk);
+            } else if (batch.isDetail) {
+                logger.warn("Insert failed for observationPk {}. Marking it as missing ...", observationPk);
+                cdaSqlUtils.updateObservationMissingFlag(observationPk, true);
+                missingObservationPks.add(observationPk);
+            }
+        }
+
+        return (count == 0 ? 0 : 1);
+    }
+
+    private Long getObservationPk(MapSqlParameterSource row) {
+        Object value = (row.hasValue("observationPk") ? row.getValue("observationPk") : row.getValues().get("id"));
+
+        return (value == null ? null : ((Number) value).longValue());
+    }
+
+
+    private static class Batch {
+        private final String                      insert;
+        private final String                      table;
+        private final boolean                     isDetail;
+        private final List<MapSqlParameterSource> rows = new ArrayList<>();
+
+        Batch(String insert, boolean isDetail) {
+            Matcher matcher = INSERT_TABLE.matcher(insert);
+
+            this.insert = insert;
+            this.table = (matcher.find() ? matcher.group(1) : insert);
+            this.isDetail = isDetail;
+        }
+    }
+
+    private static class DeferredAction {
+        private final long     observationPk;
+        private final Runnable action;
+
+        DeferredAction(long observationPk, Runnable action) {
+            this.observationPk = observationPk;
+            this.action = action;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright © 2019 EMBL - European Bioinformatics Institute
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ ******************************************************************************/
+
+package org.mousephenotype.cda.loads.common;
+
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out blocks of observation primary keys, starting above the highest observation.id in the database, so that
+ * observations can be batch-inserted with their keys already known instead of one row at a time with a
+ * {@code GeneratedKeyHolder}. Blocks are taken without locking; the ids in a block that are not used leave gaps.
+ *
+ * The allocator assumes it is the only source of observation ids while it is in use: an auto-increment insert into
+ * observation from elsewhere could take an id from a block that has not been written yet.
+ */
+public class ObservationIdAllocator {
+
+    public static final int DEFAULT_BLOCK_SIZE = 1000;
+
+    private final AtomicLong nextBlockStart;
+    private final int        blockSize;
+
+    public ObservationIdAllocator(NamedParameterJdbcTemplate jdbcCda) {
+        this(jdbcCda, DEFAULT_BLOCK_SIZE);
+    }
+
+    public ObservationIdAllocator(NamedParameterJdbcTemplate jdbcCda, int blockSize) {
+        Long maxId = jdbcCda.queryForObject("SELECT MAX(id) FROM observation", new HashMap<>(), Long.class);
+
+        this.nextBlockStart = new AtomicLong((maxId == null ? 0 : maxId) + 1);
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * @return the first id of a new block of {@link #getBlockSize()} ids
+     */
+    public long allocateBlock() {
+        return nextBlockStart.getAndAdd(blockSize);
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+}
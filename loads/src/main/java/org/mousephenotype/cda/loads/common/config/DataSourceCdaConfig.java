@@ -55,7 +55,7 @@ public class DataSourceCdaConfig {
     @Primary
     @Bean
     public DataSource cdaDataSource() {
-        return SqlUtils.getConfiguredDatasource(cdaUrl, cdaUsername, cdaPassword);
+        return SqlUtils.getConfiguredDatasource(SqlUtils.withRewriteBatchedStatements(cdaUrl), cdaUsername, cdaPassword);
     }
 
     @Bean
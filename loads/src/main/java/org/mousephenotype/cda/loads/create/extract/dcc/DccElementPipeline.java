@@ -0,0 +1,277 @@
+/*******************************************************************************
+ * Copyright © 2019 EMBL - European Bioinformatics Institute
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ ******************************************************************************/
+
+package org.mousephenotype.cda.loads.create.extract.dcc;
+
+import org.mousephenotype.cda.loads.exceptions.DataLoadException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Writes the elements (experiments, lines, specimens) read from one DCC xml file to the DCC database.
+ *
+ * The file is read on its own thread into a bounded queue, so parsing the next elements overlaps writing the
+ * current ones, and no more than {@code queueCapacity} elements wait in memory. The elements are written in batches
+ * of {@code batchSize}, each batch in one transaction, rather than committing every row on its own.
+ *
+ * The element writer logs and returns false for elements it could not write, as the extractors always have, but must
+ * let {@link TransientDataAccessException}s (deadlocks, lock wait timeouts) through: those roll the batch back, and
+ * its elements are then written again one at a time, each committed on its own.
+ */
+public class DccElementPipeline<E> {
+
+    public static final int DEFAULT_BATCH_SIZE     = 200;
+    public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+
+    private static final Object END_OF_FILE = new Object();
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final TransactionTemplate transactionTemplate;
+    private final int                 batchSize;
+    private final int                 queueCapacity;
+    private final Function<E, String> kindOf;
+    private final ElementWriter<E>    writer;
+
+
+    /**
+     * Reads the elements of one file and passes each to {@code sink}, in file order.
+     */
+    public interface ElementReader<E> {
+        void read(Consumer<E> sink) throws DataLoadException;
+    }
+
+    /**
+     * Writes one element, returning true if it was written and false (having logged why) if it was not.
+     */
+    public interface ElementWriter<E> {
+        boolean write(E element);
+    }
+
+    /**
+     * Extracts one file.
+     */
+    public interface FileExtractor {
+        Counts extract(String filename) throws DataLoadException;
+    }
+
+
+    /**
+     * @param kindOf what kind of element (e.g. "experiment" or "line") each element is, for the counts
+     */
+    public DccElementPipeline(DataSource dataSource, Function<E, String> kindOf, ElementWriter<E> writer) {
+        this(dataSource, DEFAULT_BATCH_SIZE, DEFAULT_QUEUE_CAPACITY, kindOf, writer);
+    }
+
+    public DccElementPipeline(DataSource dataSource, int batchSize, int queueCapacity, Function<E, String> kindOf, ElementWriter<E> writer) {
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        this.batchSize = batchSize;
+        this.queueCapacity = queueCapacity;
+        this.kindOf = kindOf;
+        this.writer = writer;
+    }
+
+    /**
+     * Reads {@code filename} with {@code reader} and writes its elements.
+     *
+     * @return the number of elements written and failed, by kind
+     * @throws DataLoadException if the file could not be read. Elements already written stay written.
+     */
+    public Counts run(String filename, ElementReader<E> reader) throws DataLoadException {
+
+        BlockingQueue<Object> queue  = new ArrayBlockingQueue<>(queueCapacity);
+        Counts                counts = new Counts();
+
+        FutureTask<Void> readTask = new FutureTask<>(() -> {
+            try {
+                reader.read(element -> put(queue, element));
+            } finally {
+                put(queue, END_OF_FILE);
+            }
+            return null;
+        });
+
+        Thread readThread = new Thread(readTask, "dcc-reader-" + new File(filename).getName());
+        readThread.setDaemon(true);
+        readThread.start();
+
+        try {
+            List<E> batch = new ArrayList<>(batchSize);
+            Object  item;
+
+            while ((item = queue.take()) != END_OF_FILE) {
+                @SuppressWarnings("unchecked")
+                E element = (E) item;
+                batch.add(element);
+
+                if (batch.size() >= batchSize) {
+                    writeBatch(batch, counts);
+                    batch.clear();
+                }
+            }
+
+            if ( ! batch.isEmpty()) {
+                writeBatch(batch, counts);
+            }
+
+            readTask.get();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataLoadException("Interrupted while extracting " + filename, e);
+
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof DataLoadException) {
+                throw (DataLoadException) e.getCause();
+            }
+            throw new DataLoadException("Unable to read " + filename, e.getCause());
+
+        } finally {
+            // Unblocks the reader if writing failed while it was waiting on a full queue.
+            readThread.interrupt();
+        }
+
+        return counts;
+    }
+
+
+    /**
+     * Extracts {@code filenames}, up to {@code threads} at once. Every file is attempted even if others fail.
+     *
+     * @return the counts summed over all files
+     * @throws DataLoadException the first file's failure, once all files have been attempted
+     */
+    public static Counts extractFiles(List<String> filenames, int threads, FileExtractor extractor) throws DataLoadException {
+
+        ExecutorService             executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, filenames.size())));
+        Map<String, Future<Counts>> tasks    = new LinkedHashMap<>();
+        Counts                      counts   = new Counts();
+        DataLoadException           failure  = null;
+
+        for (String filename : filenames) {
+            tasks.put(filename, executor.submit(() -> extractor.extract(filename)));
+        }
+        executor.shutdown();
+
+        for (Map.Entry<String, Future<Counts>> task : tasks.entrySet()) {
+            try {
+                counts.add(task.getValue().get());
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                executor.shutdownNow();
+                throw new DataLoadException("Interrupted while extracting " + task.getKey(), e);
+
+            } catch (ExecutionException e) {
+                LoggerFactory.getLogger(DccElementPipeline.class).error("Unable to extract {}. Reason: {}", task.getKey(), e.getCause().getLocalizedMessage());
+                if (failure == null) {
+                    failure = (e.getCause() instanceof DataLoadException ? (DataLoadException) e.getCause() : new DataLoadException(e.getCause()));
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+
+        return counts;
+    }
+
+
+    private void writeBatch(List<E> batch, Counts counts) {
+
+        Counts batchCounts = new Counts();
+
+        try {
+            transactionTemplate.execute(status -> {
+                for (E element : batch) {
+                    batchCounts.count(kindOf.apply(element), writer.write(element));
+                }
+                return null;
+            });
+
+        } catch (TransientDataAccessException e) {
+
+            logger.warn("Batch of {} elements rolled back. Writing them one at a time. Reason: {}", batch.size(), e.getLocalizedMessage());
+
+            batchCounts.clear();
+            for (E element : batch) {
+                boolean written;
+                try {
+                    written = writer.write(element);
+                } catch (TransientDataAccessException te) {
+                    logger.error("Unable to write element. Reason: {}", te.getLocalizedMessage());
+                    written = false;
+                }
+                batchCounts.count(kindOf.apply(element), written);
+            }
+        }
+
+        counts.add(batchCounts);
+    }
+
+    private static void put(BlockingQueue<Object> queue, Object item) {
+        try {
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing element", e);
+        }
+    }
+
+
+    /**
+     * The number of elements written and failed, by kind. Safe to add to from several threads.
+     */
+    public static class Counts {
+        private final Map<String, Integer> written = new TreeMap<>();
+        private final Map<String, Integer> failed  = new TreeMap<>();
+
+        public synchronized int getWritten(String kind) {
+            return written.getOrDefault(kind, 0);
+        }
+
+        public synchronized int getFailed(String kind) {
+            return failed.getOrDefault(kind, 0);
+        }
+
+        public synchronized void add(Counts other) {
+            synchronized (other) {
+                other.written.forEach((kind, count) -> written.merge(kind, count, Integer::sum));
+                other.failed.forEach((kind, count) -> failed.merge(kind, count, Integer::sum));
+            }
+        }
+
+        synchronized void count(String kind, boolean isWritten) {
+            (isWritten ? written : failed).merge(kind, 1, Integer::sum);
+        }
+
+        synchronized void clear() {
+            written.clear();
+            failed.clear();
+        }
+    }
+}
@@ -22,8 +22,10 @@ import org.apache.commons.lang3.StringUtils;
 import org.mousephenotype.cda.loads.common.CdaSqlUtils;
 import org.mousephenotype.cda.loads.common.CommandLineUtils;
 import org.mousephenotype.cda.loads.common.DccSqlUtils;
+import org.mousephenotype.cda.loads.common.DccXmlStreamReader;
 import org.mousephenotype.cda.loads.common.SpecimenExtended;
 import org.mousephenotype.cda.loads.exceptions.DataLoadException;
+import org.mousephenotype.dcc.exportlibrary.datastructure.core.common.CentreILARcode;
 import org.mousephenotype.dcc.exportlibrary.datastructure.core.common.StatusCode;
 import org.mousephenotype.dcc.exportlibrary.datastructure.core.procedure.*;
 import org.mousephenotype.dcc.exportlibrary.datastructure.core.specimen.Specimen;
@@ -35,14 +37,19 @@ import org.springframework.boot.WebApplicationType;
 import org.springframework.boot.builder.SpringApplicationBuilder;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
 import org.springframework.retry.annotation.Backoff;
 import org.springframework.retry.annotation.Retryable;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.sql.DataSource;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * Created by mrelac on 09/02/2016.
@@ -54,11 +61,19 @@ import java.util.*;
 @ComponentScan
 public class DccExperimentExtractor implements CommandLineRunner {
 
-    private String datasourceShortName;
-    private String dbname;
-    private String filename;
+    private String       datasourceShortName;
+    private String       dbname;
+    private List<String> filenames;
+    private boolean      stream;
+    private int          threads;
     private final org.slf4j.Logger logger = LoggerFactory.getLogger(this.getClass());
 
+    // How many files are extracted at once, unless overridden on the command line
+    private static final int DEFAULT_THREADS = 4;
+
+    // Centres are selected or inserted in their own, immediately committed, transaction so that all files see them.
+    private TransactionTemplate centerTransactionTemplate;
+
     private Map<String, Long> specimenIdPhenotypingCenterMap = new HashMap<>();         // key = specimenId_phenotypingCenter. Value = specimenPk.
 
     // These procedures are always meant to be skipped. Additional skipped parameters passed in on the command line are
@@ -116,9 +131,15 @@ public class DccExperimentExtractor implements CommandLineRunner {
         // parameter to indicate the data source short name (e.g. EuroPhenome, IMPC, 3I, etc)
         parser.accepts("datasourceShortName").withRequiredArg().ofType(String.class);
 
-        // parameter to indicate the name of the file to process
+        // parameter to indicate the name of the file to process. May be repeated; the files are extracted in parallel.
         parser.accepts("filename").withRequiredArg().ofType(String.class);
 
+        // parameter to read the files one experiment/line element at a time rather than all at once
+        parser.accepts("stream");
+
+        // parameter to indicate the maximum number of files to extract at once
+        parser.accepts("threads").withRequiredArg().ofType(Integer.class);
+
         // parameter to indicate profile (subdirectory of configfiles containing application.properties)
         // NOTE: 'profile' is not required by this code, but it is passed in on the command line and consumed by the XxxConfig classes.
         parser.accepts("profile").withRequiredArg().ofType(String.class);
@@ -134,7 +155,22 @@ public class DccExperimentExtractor implements CommandLineRunner {
             throw new DataLoadException(message);
         }
         datasourceShortName = (String) options.valuesOf("datasourceShortName").get(0);
-        filename = (String) options.valuesOf("filename").get(0);
+
+        if ( ! options.has("filename")) {
+            String message = "Missing required command-line parameter 'filename'";
+            logger.error(message);
+            throw new DataLoadException(message);
+        }
+        filenames = new ArrayList<>();
+        for (Object filename : options.valuesOf("filename")) {
+            filenames.add((String) filename);
+        }
+
+        stream = options.has("stream");
+        threads = (options.has("threads") ? (Integer) options.valueOf("threads") : DEFAULT_THREADS);
+
+        centerTransactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dccDataSource));
+        centerTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
 
         // If we're loading 3I data, don't filter out the 3I procedures
         if (datasourceShortName.toLowerCase().equals("3i")) {
@@ -163,14 +199,52 @@ public class DccExperimentExtractor implements CommandLineRunner {
             logger.info("Skipping procedures {}", StringUtils.join(skipProcedures, ", "));
         }
 
-        logger.debug("Loading experiment file {}", filename);
+        logger.debug("Loading experiment files {}", StringUtils.join(filenames, ", "));
     }
 
     private void run() throws DataLoadException {
-        int                   totalExperiments       = 0;
-        int                   totalExperimentsFailed = 0;
-        int                   totalLines             = 0;
-        int                   totalLinesFailed       = 0;
+        DccElementPipeline.extractFiles(filenames, threads, this::extractFile);
+    }
+
+    private DccElementPipeline.Counts extractFile(String filename) throws DataLoadException {
+
+        DccElementPipeline<ProcedureElement> pipeline = new DccElementPipeline<>(
+                dccDataSource,
+                element -> (element.experiment != null ? "experiment" : "line"),
+                element -> insertElement(element, filename));
+
+        DccElementPipeline.Counts counts = pipeline.run(filename, sink -> {
+            if (stream) {
+                streamFile(filename, sink);
+            } else {
+                unmarshalFile(filename, sink);
+            }
+        });
+
+        int totalExperiments       = counts.getWritten("experiment");
+        int totalExperimentsFailed = counts.getFailed("experiment");
+        int totalLines             = counts.getWritten("line");
+        int totalLinesFailed       = counts.getFailed("line");
+
+        if (totalExperimentsFailed > 0) {
+            logger.warn("Inserted {} experiments ({} failed) from file {}.", totalExperiments, totalExperimentsFailed, filename);
+        } else {
+            logger.info("Inserted {} experiments from file {}.", totalExperiments, filename);
+        }
+
+        if (totalLinesFailed > 0) {
+            logger.warn("Inserted {} lines ({} failed) from file {}.", totalLines, totalLinesFailed, filename);
+        } else {
+            logger.info("Inserted {} line level experiments from file {}.", totalLines, filename);
+        }
+
+        return counts;
+    }
+
+    /**
+     * Unmarshals the whole file, then passes on its experiments and lines, centre by centre.
+     */
+    private void unmarshalFile(String filename, Consumer<ProcedureElement> sink) throws DataLoadException {
         List<CentreProcedure> centerProcedures;
 
         try {
@@ -189,67 +263,105 @@ public class DccExperimentExtractor implements CommandLineRunner {
         for (CentreProcedure centerProcedure : centerProcedures) {
             logger.info("Parsing experiments for center {}", centerProcedure.getCentreID().value());
 
-            // Load experiment info.
             for (Experiment experiment : centerProcedure.getExperiment()) {
+                sink.accept(new ProcedureElement(centerProcedure, experiment, null));
+            }
 
-                long centerPk = 0;
-                try {
-                    // Get centerPk
-                    centerPk = dccSqlUtils.getCenterPk(centerProcedure.getCentreID().value(), centerProcedure.getPipeline(), centerProcedure.getProject());
-                    if (centerPk < 1) {
-                        String center = "<null>";
-                        String pipeline = "<null>";
-                        String project = "<null>";
-                        try { center = centerProcedure.getCentreID().value(); } catch (Exception e) { }
-                        try { pipeline = centerProcedure.getPipeline(); } catch (Exception e) { }
-                        try { project = centerProcedure.getProject(); } catch (Exception e) { }
-                        logger.warn("UNKNOWN CENTER,PIPELINE,PROJECT: '{},{},{}. INSERTING ...", center, pipeline, project);
-                        centerPk = dccSqlUtils.insertCenter(centerProcedure.getCentreID().value(), centerProcedure.getPipeline(), centerProcedure.getProject());
-                    }
+            for (Line line : centerProcedure.getLine()) {
+                sink.accept(new ProcedureElement(centerProcedure, null, line));
+            }
+        }
+    }
 
-                    insertExperiment(experiment, datasourceShortName, centerProcedure, centerPk);
-                    totalExperiments++;
+    /**
+     * Walks the file with StAX, passing on each experiment and line as soon as it has been read. The centre each
+     * element belongs to carries only the centre's attributes and housing, not its other elements.
+     */
+    private void streamFile(String filename, Consumer<ProcedureElement> sink) throws DataLoadException {
 
-                } catch (Exception e) {
-                    logger.error("ERROR IMPORTING EXPERIMENT FROM FILE {}. experimentID: '{}'. datasourceShortName: {}. cenreID: {}, centerPk: {}. EXPERIMENT SKIPPED. ERROR:\n{}" ,
-                                 filename, experiment.getExperimentID(), datasourceShortName, centerProcedure.getCentreID().value(), centerPk, e.getLocalizedMessage());
-                    totalExperimentsFailed++;
-                }
-            }
+        try (DccXmlStreamReader reader = new DccXmlStreamReader(DccExperimentExtractor.CONTEXT_PATH, filename)) {
 
-            // Load line info.
-            for (Line line : centerProcedure.getLine()) {
+            CentreProcedure centerProcedure = null;
+            String          name;
 
-                try {
-                    // Get centerPk
-                    long centerPk = dccSqlUtils.getCenterPk(centerProcedure.getCentreID().value(), centerProcedure.getPipeline(), centerProcedure.getProject());
-                    if (centerPk < 1) {
-                        logger.warn("UNKNOWN CENTER,PIPELINE,PROJECT: '" + centerProcedure.getCentreID().value() + ","
-                                            + centerProcedure.getPipeline() + "," + centerProcedure.getProject() + "'. INSERTING...");
-                        centerPk = dccSqlUtils.insertCenter(centerProcedure.getCentreID().value(), centerProcedure.getPipeline(), centerProcedure.getProject());
-                    }
+            while ((name = reader.nextElement("centre", "housing", "experiment", "line")) != null) {
+
+                if (name.equals("centre")) {
+                    centerProcedure = new CentreProcedure();
+                    centerProcedure.setCentreID(CentreILARcode.fromValue(reader.getAttribute("centreID")));
+                    centerProcedure.setPipeline(reader.getAttribute("pipeline"));
+                    centerProcedure.setProject(reader.getAttribute("project"));
+                    logger.info("Parsing experiments for center {}", centerProcedure.getCentreID().value());
 
-                    insertLine(line, datasourceShortName, centerProcedure, centerPk);
-                    totalLines++;
-                } catch (Exception e) {
-                    logger.error("ERROR IMPORTING LINE. CENTER: {}. LINE: {}. EXPERIMENT SKIPPED. ERROR:\n{}" , centerProcedure.getCentreID(), line, e.getLocalizedMessage());
-                    totalLinesFailed++;
+                } else if (centerProcedure == null) {
+                    throw new DataLoadException("Found " + name + " outside of a centre in experiment file " + filename);
+
+                } else if (name.equals("housing")) {
+                    centerProcedure.setHousing(reader.unmarshal(Housing.class));
+
+                } else if (name.equals("experiment")) {
+                    sink.accept(new ProcedureElement(centerProcedure, reader.unmarshal(Experiment.class), null));
+
+                } else {
+                    sink.accept(new ProcedureElement(centerProcedure, null, reader.unmarshal(Line.class)));
                 }
             }
-        }
 
-        if (totalExperimentsFailed > 0) {
-            logger.warn("Inserted {} experiments ({} failed).", totalExperiments, totalExperimentsFailed);
-        } else {
-            logger.info("Inserted {} experiments from file {}.", totalExperiments, filename);
+            if (centerProcedure == null) {
+                logger.info("experiment file {} is empty.", filename);
+            }
         }
+    }
 
-        if (totalLinesFailed > 0) {
-            logger.warn("Inserted {} lines ({} failed).", totalLines, totalLinesFailed);
-        } else {
-            logger.info("Inserted {} line level experiments from file {}.", totalLines, filename);
+    private boolean insertElement(ProcedureElement element, String filename) {
+
+        CentreProcedure centerProcedure = element.centerProcedure;
+        long            centerPk        = 0;
+
+        try {
+            centerPk = selectOrInsertCenterPk(centerProcedure);
+
+            if (element.experiment != null) {
+                insertExperiment(element.experiment, datasourceShortName, centerProcedure, centerPk, filename);
+            } else {
+                insertLine(element.line, datasourceShortName, centerProcedure, centerPk, filename);
+            }
+
+            return true;
+
+        } catch (TransientDataAccessException e) {
+            // Let the pipeline roll back and retry the batch.
+            throw e;
+
+        } catch (Exception e) {
+            if (element.experiment != null) {
+                logger.error("ERROR IMPORTING EXPERIMENT FROM FILE {}. experimentID: '{}'. datasourceShortName: {}. cenreID: {}, centerPk: {}. EXPERIMENT SKIPPED. ERROR:\n{}" ,
+                             filename, element.experiment.getExperimentID(), datasourceShortName, centerProcedure.getCentreID().value(), centerPk, e.getLocalizedMessage());
+            } else {
+                logger.error("ERROR IMPORTING LINE. CENTER: {}. LINE: {}. EXPERIMENT SKIPPED. ERROR:\n{}" , centerProcedure.getCentreID(), element.line, e.getLocalizedMessage());
+            }
+
+            return false;
         }
+    }
 
+    private synchronized long selectOrInsertCenterPk(CentreProcedure centerProcedure) {
+
+        return centerTransactionTemplate.execute(status -> {
+            long centerPk = dccSqlUtils.getCenterPk(centerProcedure.getCentreID().value(), centerProcedure.getPipeline(), centerProcedure.getProject());
+            if (centerPk < 1) {
+                String center = "<null>";
+                String pipeline = "<null>";
+                String project = "<null>";
+                try { center = centerProcedure.getCentreID().value(); } catch (Exception e) { }
+                try { pipeline = centerProcedure.getPipeline(); } catch (Exception e) { }
+                try { project = centerProcedure.getProject(); } catch (Exception e) { }
+                logger.warn("UNKNOWN CENTER,PIPELINE,PROJECT: '{},{},{}. INSERTING ...", center, pipeline, project);
+                centerPk = dccSqlUtils.insertCenter(centerProcedure.getCentreID().value(), centerProcedure.getPipeline(), centerProcedure.getProject());
+            }
+
+            return centerPk;
+        });
     }
 
     // 300000 ms = 5 minutes
@@ -258,7 +370,7 @@ public class DccExperimentExtractor implements CommandLineRunner {
             backoff = @Backoff(delay = 300000)
     )
     @Transactional
-    public void insertExperiment(Experiment experiment, String datasourceShortName, CentreProcedure centerProcedure, long centerPk) throws DataLoadException {
+    public void insertExperiment(Experiment experiment, String datasourceShortName, CentreProcedure centerProcedure, long centerPk, String filename) throws DataLoadException {
 
         Long procedurePk, center_procedurePk;
 
@@ -389,7 +501,7 @@ public class DccExperimentExtractor implements CommandLineRunner {
     }
 
     @Transactional
-    public void insertLine(Line line, String datasourceShortName, CentreProcedure centerProcedure, long centerPk) throws DataLoadException {
+    public void insertLine(Line line, String datasourceShortName, CentreProcedure centerProcedure, long centerPk, String filename) throws DataLoadException {
 
         Long procedurePk, center_procedurePk;
 
@@ -591,4 +703,20 @@ public class DccExperimentExtractor implements CommandLineRunner {
             }
         }
     }
-}
\ No newline at end of file
+
+
+    /**
+     * An experiment or a line, with the centre it belongs to.
+     */
+    private static class ProcedureElement {
+        private final CentreProcedure centerProcedure;
+        private final Experiment      experiment;
+        private final Line            line;
+
+        ProcedureElement(CentreProcedure centerProcedure, Experiment experiment, Line line) {
+            this.centerProcedure = centerProcedure;
+            this.experiment = experiment;
+            this.line = line;
+        }
+    }
+}
@@ -18,10 +18,13 @@ package org.mousephenotype.cda.loads.create.extract.dcc;
 
 import joptsimple.OptionParser;
 import joptsimple.OptionSet;
+import org.apache.commons.lang3.StringUtils;
 import org.mousephenotype.cda.loads.common.CdaSqlUtils;
 import org.mousephenotype.cda.loads.common.CommandLineUtils;
 import org.mousephenotype.cda.loads.common.DccSqlUtils;
+import org.mousephenotype.cda.loads.common.DccXmlStreamReader;
 import org.mousephenotype.cda.loads.exceptions.DataLoadException;
+import org.mousephenotype.dcc.exportlibrary.datastructure.core.common.CentreILARcode;
 import org.mousephenotype.dcc.exportlibrary.datastructure.core.specimen.*;
 import org.mousephenotype.dcc.exportlibrary.xmlserialization.exceptions.XMLloadingException;
 import org.mousephenotype.dcc.utils.xml.XMLUtils;
@@ -33,12 +36,18 @@ import org.springframework.boot.WebApplicationType;
 import org.springframework.boot.builder.SpringApplicationBuilder;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.sql.DataSource;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Created by mrelac on 09/02/2016.
@@ -50,10 +59,18 @@ import java.util.List;
 @ComponentScan
 public class DccSpecimenExtractor implements CommandLineRunner {
 
-    private String datasourceShortName;
-    private String dbname;
-    private String filename;
-    private Logger logger = LoggerFactory.getLogger(this.getClass());
+    private String       datasourceShortName;
+    private String       dbname;
+    private List<String> filenames;
+    private boolean      stream;
+    private int          threads;
+    private Logger       logger = LoggerFactory.getLogger(this.getClass());
+
+    // How many files are extracted at once, unless overridden on the command line
+    private static final int DEFAULT_THREADS = 4;
+
+    // Centres are selected or inserted in their own, immediately committed, transaction so that all files see them.
+    private TransactionTemplate centerTransactionTemplate;
 
     // Required by the Harwell DCC export utilities
     public static final String CONTEXT_PATH = "org.mousephenotype.dcc.exportlibrary.datastructure.core.common:org.mousephenotype.dcc.exportlibrary.datastructure.core.procedure:org.mousephenotype.dcc.exportlibrary.datastructure.core.specimen:org.mousephenotype.dcc.exportlibrary.datastructure.tracker.submission:org.mousephenotype.dcc.exportlibrary.datastructure.tracker.validation";
@@ -97,9 +114,15 @@ public class DccSpecimenExtractor implements CommandLineRunner {
         // parameter to indicate the data source short name (e.g. EuroPhenome, IMPC, 3I, etc)
         parser.accepts("datasourceShortName").withRequiredArg().ofType(String.class);
 
-        // parameter to indicate the name of the file to process
+        // parameter to indicate the name of the file to process. May be repeated; the files are extracted in parallel.
         parser.accepts("filename").withRequiredArg().ofType(String.class);
 
+        // parameter to read the files one mouse/embryo element at a time rather than all at once
+        parser.accepts("stream");
+
+        // parameter to indicate the maximum number of files to extract at once
+        parser.accepts("threads").withRequiredArg().ofType(Integer.class);
+
         // parameter to indicate profile (subdirectory of configfiles containing application.properties)
         parser.accepts("profile").withRequiredArg().ofType(String.class);
 
@@ -117,7 +140,16 @@ public class DccSpecimenExtractor implements CommandLineRunner {
             logger.error(message);
             throw new DataLoadException(message);
         }
-        filename = (String) options.valuesOf("filename").get(0);
+        filenames = new ArrayList<>();
+        for (Object filename : options.valuesOf("filename")) {
+            filenames.add((String) filename);
+        }
+
+        stream = options.has("stream");
+        threads = (options.has("threads") ? (Integer) options.valueOf("threads") : DEFAULT_THREADS);
+
+        centerTransactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dccDataSource));
+        centerTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
 
         try {
             dbname = dccDataSource.getConnection().getCatalog();
@@ -133,12 +165,37 @@ public class DccSpecimenExtractor implements CommandLineRunner {
             logger.info("Dropping and creating dcc specimen tables for database {} - complete", dbname);
         }
 
-        logger.debug("Loading specimen file {}", filename);
+        logger.debug("Loading specimen files {}", StringUtils.join(filenames, ", "));
     }
 
     private void run() throws DataLoadException {
-        int                  totalSpecimens        = 0;
-        int                  totalSpecimenFailures = 0;
+        DccElementPipeline.extractFiles(filenames, threads, this::extractFile);
+    }
+
+    private DccElementPipeline.Counts extractFile(String filename) throws DataLoadException {
+
+        DccElementPipeline<SpecimenElement> pipeline = new DccElementPipeline<>(
+                dccDataSource,
+                element -> "specimen",
+                element -> insertElement(element, filename));
+
+        DccElementPipeline.Counts counts = pipeline.run(filename, sink -> {
+            if (stream) {
+                streamFile(filename, sink);
+            } else {
+                unmarshalFile(filename, sink);
+            }
+        });
+
+        logger.info("Added " + counts.getWritten("specimen") + " to the database with " + counts.getFailed("specimen") + " failures");
+
+        return counts;
+    }
+
+    /**
+     * Unmarshals the whole file, then passes on its specimens, centre by centre.
+     */
+    private void unmarshalFile(String filename, Consumer<SpecimenElement> sink) throws DataLoadException {
         List<CentreSpecimen> centerSpecimens;
 
         try {
@@ -158,17 +215,73 @@ public class DccSpecimenExtractor implements CommandLineRunner {
             logger.debug("Parsing specimens for center {}", centerSpecimen.getCentreID());
 
             for (Specimen specimen : centerSpecimen.getMouseOrEmbryo()) {
-                try {
-                    insertSpecimen(specimen, datasourceShortName, centerSpecimen);
-                    totalSpecimens++;
-                } catch (Exception e) {
-                    logger.error("ERROR IMPORTING SPECIMEN FROM FILE {}. specimenID: {}. datasourceShortName: {}. centreID: {}. SPECIMEN SKIPPED. ERROR:\n{}",
-                                 filename, specimen.getSpecimenID(), datasourceShortName, centerSpecimen.getCentreID(), e.getLocalizedMessage());
-                    totalSpecimenFailures++;
+                sink.accept(new SpecimenElement(centerSpecimen, specimen));
+            }
+        }
+    }
+
+    /**
+     * Walks the file with StAX, passing on each mouse and embryo as soon as it has been read. The centre each
+     * specimen belongs to carries only the centre's attributes, not its other specimens.
+     */
+    private void streamFile(String filename, Consumer<SpecimenElement> sink) throws DataLoadException {
+
+        try (DccXmlStreamReader reader = new DccXmlStreamReader(DccSpecimenExtractor.CONTEXT_PATH, filename)) {
+
+            CentreSpecimen centerSpecimen = null;
+            String         name;
+
+            while ((name = reader.nextElement("centre", "mouse", "embryo")) != null) {
+
+                if (name.equals("centre")) {
+                    centerSpecimen = new CentreSpecimen();
+                    centerSpecimen.setCentreID(CentreILARcode.fromValue(reader.getAttribute("centreID")));
+                    logger.debug("Parsing specimens for center {}", centerSpecimen.getCentreID());
+
+                } else if (centerSpecimen == null) {
+                    throw new DataLoadException("Found " + name + " outside of a centre in specimen file " + filename);
+
+                } else if (name.equals("mouse")) {
+                    sink.accept(new SpecimenElement(centerSpecimen, reader.unmarshal(Mouse.class)));
+
+                } else {
+                    sink.accept(new SpecimenElement(centerSpecimen, reader.unmarshal(Embryo.class)));
                 }
             }
+
+            if (centerSpecimen == null) {
+                logger.error("{} failed to unmarshall", filename);
+                throw new DataLoadException(filename + " failed to unmarshall.", new XMLloadingException());
+            }
+        }
+    }
+
+    private boolean insertElement(SpecimenElement element, String filename) {
+        try {
+            insertSpecimen(element.specimen, datasourceShortName, element.centerSpecimen);
+            return true;
+
+        } catch (TransientDataAccessException e) {
+            // Let the pipeline roll back and retry the batch.
+            throw e;
+
+        } catch (Exception e) {
+            logger.error("ERROR IMPORTING SPECIMEN FROM FILE {}. specimenID: {}. datasourceShortName: {}. centreID: {}. SPECIMEN SKIPPED. ERROR:\n{}",
+                         filename, element.specimen.getSpecimenID(), datasourceShortName, element.centerSpecimen.getCentreID(), e.getLocalizedMessage());
+            return false;
         }
-        logger.info("Added " + totalSpecimens + " to the database with " + totalSpecimenFailures + " failures");
+    }
+
+    private synchronized long selectOrInsertCenterPk(String centerId, String pipeline, String project) {
+
+        return centerTransactionTemplate.execute(status -> {
+            long centerPk = dccSqlUtils.getCenterPk(centerId, pipeline, project);
+            if (centerPk < 1) {
+                centerPk = dccSqlUtils.insertCenter(centerId, pipeline, project);
+            }
+
+            return centerPk;
+        });
     }
 
     @Transactional
@@ -177,10 +290,7 @@ public class DccSpecimenExtractor implements CommandLineRunner {
         Long specimenPk;
 
         // center
-        long centerPk = dccSqlUtils.getCenterPk(centerSpecimen.getCentreID().value(), specimen.getPipeline(), specimen.getProject());
-        if (centerPk < 1) {
-            centerPk = dccSqlUtils.insertCenter(centerSpecimen.getCentreID().value(), specimen.getPipeline(), specimen.getProject());
-        }
+        long centerPk = selectOrInsertCenterPk(centerSpecimen.getCentreID().value(), specimen.getPipeline(), specimen.getProject());
 
         // statuscode
         if (specimen.getStatusCode() != null) {
@@ -247,4 +357,18 @@ public class DccSpecimenExtractor implements CommandLineRunner {
             dccSqlUtils.insertRelatedSpecimen(centerId, specimenPk, specimen.getSpecimenID(), relatedSpecimen.getRelationship().value(), relatedSpecimen.getSpecimenID());
         }
     }
-}
\ No newline at end of file
+
+
+    /**
+     * A mouse or embryo, with the centre it belongs to.
+     */
+    private static class SpecimenElement {
+        private final CentreSpecimen centerSpecimen;
+        private final Specimen       specimen;
+
+        SpecimenElement(CentreSpecimen centerSpecimen, Specimen specimen) {
+            this.centerSpecimen = centerSpecimen;
+            this.specimen = specimen;
+        }
+    }
+}
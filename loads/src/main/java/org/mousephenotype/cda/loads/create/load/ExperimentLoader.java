@@ -42,6 +42,7 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -55,6 +56,14 @@ public class ExperimentLoader implements CommandLineRunner {
 
     // How many threads used to process experiments
     private static final int N_THREADS = 75;
+
+    // How many experiments may wait in the queue between the DCC reader and the worker threads
+    private static final int QUEUE_CAPACITY = 2 * N_THREADS;
+
+    // How often progress and throughput are logged
+    private static final int METRICS_INTERVAL_SECONDS = 60;
+
+    private static final DccExperimentDTO END_OF_EXPERIMENTS = new DccExperimentDTO();
     private static final Boolean ONE_AT_A_TIME = Boolean.FALSE;
     private static Boolean SHUFFLE = Boolean.FALSE;
 
@@ -123,6 +132,11 @@ public class ExperimentLoader implements CommandLineRunner {
 
     private int bioModelsAddedCount = 0;
 
+    // Observation primary keys are handed out in blocks so observations can be batch-inserted. This assumes nothing
+    // else inserts observations while the loader runs.
+    private ObservationIdAllocator observationIdAllocator;
+    private LoadMetrics            loadMetrics;
+
     static {
         Set<UniqueExperimentId> ignoredExperimentSet = new ConcurrentSkipListSet<>();
         ignoredExperimentSet.add(new UniqueExperimentId("Ucd", "GRS_2013-10-09_4326"));
@@ -180,16 +194,6 @@ public class ExperimentLoader implements CommandLineRunner {
         long startStep = new Date().getTime();
 
 
-        logger.info("Getting experiments");
-        List<DccExperimentDTO> dccExperiments = dccSqlUtils.getExperiments();
-
-        // Sometimes helpful to load the experiments in other-than-file order (for testing, etc.)
-        if (SHUFFLE) {
-            Collections.shuffle(dccExperiments);
-        }
-
-        logger.info("Getting experiments complete. Loading {} experiments from DCC.", dccExperiments.size());
-
         CommonUtils.printJvmMemoryConfiguration();
 
 
@@ -261,47 +265,15 @@ public class ExperimentLoader implements CommandLineRunner {
 //        cdaSqlUtils.manageIndexes("time_series_observation", CdaSqlUtils.IndexAction.DISABLE);
 //        cdaSqlUtils.manageIndexes("unidimensional_observation", CdaSqlUtils.IndexAction.DISABLE);
 
-        int experimentCount = 0;
-        int skippedExperimentsCount = 0;
-
-        ExecutorService executor = Executors.newFixedThreadPool(N_THREADS);
-
-        List<Future<Experiment>> tasks = new ArrayList<>();
-
-        for (DccExperimentDTO dccExperiment : dccExperiments) {
-
-            // Skip purposefully ignored experiments.
-            UniqueExperimentId uniqueExperiment = new UniqueExperimentId(dccExperiment.getPhenotypingCenter(), dccExperiment.getExperimentId());
-
-            if (ignoredExperiments.contains(uniqueExperiment)) {
-                continue;
-            }
-
-            experimentCount++;
-
-            if (ONE_AT_A_TIME) {
-
-                insertExperiment(dccExperiment);
-
-            } else {
-
-                Callable<Experiment> task = () -> insertExperiment(dccExperiment);
-                tasks.add(executor.submit(task));
-
-                if (experimentCount % 100000 == 0) {
-                    tasks = drainQueue(tasks);
-                }
-            }
-        }
+        observationIdAllocator = new ObservationIdAllocator(jdbcCda);
+        loadMetrics = new LoadMetrics("experiments");
 
-        // Drain the final set
-        if ( ! ONE_AT_A_TIME) {
-            logger.info("Processing final queue of " + tasks.size());
-            if ( ! tasks.isEmpty()) {
-                drainQueue(tasks);
-            }
+        logger.info("Loading experiments from DCC.");
+        if (ONE_AT_A_TIME) {
+            loadExperimentsSerially();
+        } else {
+            loadExperimentsConcurrently();
         }
-        executor.shutdown();
 
         logger.info("Loading complete.");
 
@@ -454,28 +426,112 @@ public class ExperimentLoader implements CommandLineRunner {
         logger.debug("Total steps elapsed time: " + commonUtils.msToHms(new Date().getTime() - startStep));
     }
 
-    private List<Future<Experiment>> drainQueue(List<Future<Experiment>> tasks) {
-        while (true) {
-            Integer left = 0;
-            for (Future<Experiment> future : tasks) {
-                if (!future.isDone()) {
-                    left += 1;
+    /**
+     * Streams the experiments from the DCC database into a bounded queue drained by {@code N_THREADS} workers, so
+     * only about {@code QUEUE_CAPACITY} experiments are held in memory at once however large the release is. The
+     * reader blocks while the queue is full; the workers block while it is empty. Each worker stops when it takes
+     * an end-of-experiments marker, and the reader waits on a {@link Phaser} for all workers to stop.
+     */
+    private void loadExperimentsConcurrently() throws DataLoadException {
+
+        BlockingQueue<DccExperimentDTO> queue    = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        Phaser                          workers  = new Phaser(1);       // The reader is registered as the first party.
+        ExecutorService                 executor = Executors.newFixedThreadPool(N_THREADS);
+
+        loadMetrics.setQueueDepth(queue::size);
+        loadMetrics.start(METRICS_INTERVAL_SECONDS, TimeUnit.SECONDS);
+
+        for (int i = 0; i < N_THREADS; i++) {
+            workers.register();
+            executor.execute(() -> {
+                try {
+                    DccExperimentDTO dccExperiment;
+                    while ((dccExperiment = queue.take()) != END_OF_EXPERIMENTS) {
+                        loadExperiment(dccExperiment);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    workers.arriveAndDeregister();
                 }
-            }
+            });
+        }
 
-            if (left == 0) {
-                tasks = new ArrayList<>();
-                break;
+        try {
+            forEachExperiment(dccExperiment -> {
+                try {
+                    queue.put(dccExperiment);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while queueing experiment " + dccExperiment.getExperimentId(), e);
+                }
+            });
+
+            for (int i = 0; i < N_THREADS; i++) {
+                queue.put(END_OF_EXPERIMENTS);
             }
 
-            try {
-                Thread.sleep(5000);
+            workers.arriveAndAwaitAdvance();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataLoadException("Interrupted while loading experiments", e);
+
+        } finally {
+            executor.shutdownNow();
+            loadMetrics.stop();
+        }
+    }
+
+    private void loadExperimentsSerially() {
+
+        loadMetrics.start(METRICS_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        try {
+            forEachExperiment(this::loadExperiment);
+        } finally {
+            loadMetrics.stop();
+        }
+    }
 
-            } catch (InterruptedException e) {
+    /**
+     * Passes each experiment that is not purposefully ignored to {@code consumer}, streaming them from the DCC
+     * database unless SHUFFLE is set, in which case they are all read first and shuffled.
+     */
+    private void forEachExperiment(Consumer<DccExperimentDTO> consumer) {
+
+        Consumer<DccExperimentDTO> unlessIgnored = dccExperiment -> {
+            UniqueExperimentId uniqueExperiment = new UniqueExperimentId(dccExperiment.getPhenotypingCenter(), dccExperiment.getExperimentId());
+            if ( ! ignoredExperiments.contains(uniqueExperiment)) {
+                loadMetrics.read();
+                consumer.accept(dccExperiment);
             }
+        };
+
+        // Sometimes helpful to load the experiments in other-than-file order (for testing, etc.)
+        if (SHUFFLE) {
+            List<DccExperimentDTO> dccExperiments = dccSqlUtils.getExperiments();
+            Collections.shuffle(dccExperiments);
+            dccExperiments.forEach(unlessIgnored);
+
+        } else {
+            dccSqlUtils.streamExperiments(unlessIgnored);
         }
+    }
+
+    /**
+     * Loads one experiment, logging and counting (rather than propagating) any failure so that one bad experiment
+     * does not stop the load.
+     */
+    private void loadExperiment(DccExperimentDTO dccExperiment) {
+        try {
+            insertExperiment(dccExperiment);
+            loadMetrics.completed();
 
-        return tasks;
+        } catch (Exception e) {
+            loadMetrics.failed();
+            logger.warn("Unable to load experiment {}::{}. Reason: {}",
+                        dccExperiment.getPhenotypingCenter(), dccExperiment.getExperimentId(), e.getLocalizedMessage());
+        }
     }
 
     private Experiment insertExperiment(DccExperimentDTO dccExperiment) throws DataLoadException {
@@ -872,14 +928,17 @@ public class ExperimentLoader implements CommandLineRunner {
         // Procedure-level metadata
         cdaSqlUtils.insertProcedureMetadata(dccMetadataList, dccExperiment.getProcedureId(), experimentPk, 0);
 
-        // Observations (including observation-level metadata)
-        createObservations(dccExperiment, dbId, experimentPk, phenotypingCenter, phenotypingCenterPk, biologicalSamplePk, missing);
+        // Observations (including observation-level metadata). The rows are queued while the experiment is read,
+        // then written in one batch per table.
+        ObservationBatchWriter writer = new ObservationBatchWriter(jdbcCda, cdaSqlUtils, observationIdAllocator, loadMetrics);
+        createObservations(writer, dccExperiment, dbId, experimentPk, phenotypingCenter, phenotypingCenterPk, biologicalSamplePk, missing);
+        writer.flush();
 
         return experiment;
     }
 
 
-    private void createObservations( DccExperimentDTO dccExperiment, long dbId, long experimentPk, String phenotypingCenter, long phenotypingCenterPk, Long biologicalSamplePk, int missing) throws DataLoadException {
+    private void createObservations(ObservationBatchWriter writer, DccExperimentDTO dccExperiment, long dbId, long experimentPk, String phenotypingCenter, long phenotypingCenterPk, Long biologicalSamplePk, int missing) throws DataLoadException {
 
         // simpleParameters
         List<SimpleParameter> simpleParameterList = dccSqlUtils.getSimpleParameters(dccExperiment.getDcc_procedure_pk());
@@ -887,10 +946,10 @@ public class ExperimentLoader implements CommandLineRunner {
             simpleParameterList = new ArrayList<>();
         for (SimpleParameter simpleParameter : simpleParameterList) {
             if (INCLUDE_DERIVED_PARAMETERS) {
-                insertSimpleParameter(dccExperiment, simpleParameter, experimentPk, dbId, biologicalSamplePk, missing);
+                insertSimpleParameter(writer, dccExperiment, simpleParameter, experimentPk, dbId, biologicalSamplePk, missing);
             } else {
                 if ( ! derivedImpressParameters.contains(simpleParameter.getParameterID())) {
-                    insertSimpleParameter(dccExperiment, simpleParameter, experimentPk, dbId, biologicalSamplePk, missing);
+                    insertSimpleParameter(writer, dccExperiment, simpleParameter, experimentPk, dbId, biologicalSamplePk, missing);
                 }
             }
         }
@@ -912,7 +971,7 @@ public class ExperimentLoader implements CommandLineRunner {
             List<ParameterAssociation> pma = dccSqlUtils.getMediaParameterParameterAssociations(mediaParameter.getHjid());
             mediaParameter.setParameterAssociation(pma);
 
-            insertMediaParameter(dccExperiment, mediaParameter, experimentPk, dbId, biologicalSamplePk, phenotypingCenter, phenotypingCenterPk, missing);
+            insertMediaParameter(writer, dccExperiment, mediaParameter, experimentPk, dbId, biologicalSamplePk, phenotypingCenter, phenotypingCenterPk, missing);
         }
 
 
@@ -926,7 +985,7 @@ public class ExperimentLoader implements CommandLineRunner {
             return;
         }
         for (OntologyParameter ontologyParameter : ontologyParameterList) {
-            insertOntologyParameters(dccExperiment, ontologyParameter, experimentPk, dbId, biologicalSamplePk, missing);
+            insertOntologyParameters(writer, dccExperiment, ontologyParameter, experimentPk, dbId, biologicalSamplePk, missing);
         }
 
 
@@ -944,10 +1003,10 @@ public class ExperimentLoader implements CommandLineRunner {
             seriesParameter.setValue(values);
 
             if (INCLUDE_DERIVED_PARAMETERS) {
-                insertSeriesParameter(dccExperiment, seriesParameter, experimentPk, dbId, biologicalSamplePk, missing);
+                insertSeriesParameter(writer, dccExperiment, seriesParameter, experimentPk, dbId, biologicalSamplePk, missing);
             } else {
                 if ( ! derivedImpressParameters.contains(seriesParameter.getParameterID())) {
-                    insertSeriesParameter(dccExperiment, seriesParameter, experimentPk, dbId, biologicalSamplePk, missing);
+                    insertSeriesParameter(writer, dccExperiment, seriesParameter, experimentPk, dbId, biologicalSamplePk, missing);
                 }
             }
         }
@@ -981,7 +1040,7 @@ public class ExperimentLoader implements CommandLineRunner {
             }
 
             seriesMediaParameter.setValue(values);
-            insertSeriesMediaParameter(dccExperiment, seriesMediaParameter, experimentPk, dbId, biologicalSamplePk,
+            insertSeriesMediaParameter(writer, dccExperiment, seriesMediaParameter, experimentPk, dbId, biologicalSamplePk,
                                        phenotypingCenter, phenotypingCenterPk, simpleParameterList, ontologyParameterList, missing);
         }
 
@@ -997,7 +1056,7 @@ public class ExperimentLoader implements CommandLineRunner {
         }
         for (MediaSampleParameter mediaSampleParameter : mediaSampleParameterList) {
 
-            insertMediaSampleParameter(dccExperiment, mediaSampleParameter, experimentPk, dbId, biologicalSamplePk,
+            insertMediaSampleParameter(writer, dccExperiment, mediaSampleParameter, experimentPk, dbId, biologicalSamplePk,
                                        phenotypingCenter, phenotypingCenterPk, simpleParameterList, ontologyParameterList, missing);
         }
     }
@@ -1036,7 +1095,7 @@ public class ExperimentLoader implements CommandLineRunner {
         return dateOfExperiment;
     }
 
-    private void insertSimpleParameter(DccExperimentDTO dccExperiment, SimpleParameter simpleParameter, long experimentPk,
+    private void insertSimpleParameter(ObservationBatchWriter writer, DccExperimentDTO dccExperiment, SimpleParameter simpleParameter, long experimentPk,
                                        long dbId, Long biologicalSamplePk, int missing) throws DataLoadException {
 
         if (dccExperiment.getSpecimenId() != null && dccExperiment.getSpecimenId().equals("B6NC_46853_163447") && dccExperiment.getProcedureId().startsWith("IMPC_CBC")) {
@@ -1099,7 +1158,7 @@ public class ExperimentLoader implements CommandLineRunner {
 
         long observationPk;
         try {
-            observationPk = cdaSqlUtils.insertObservation(dbId, biologicalSamplePk, parameterStableId, parameterPk,
+            observationPk = cdaSqlUtils.insertObservation(writer, dbId, biologicalSamplePk, parameterStableId, parameterPk,
                                                           sequenceId, populationId, observationType, missing,
                                                           parameterStatus, parameterStatusMessage,
                                                           simpleParameter);
@@ -1114,7 +1173,7 @@ public class ExperimentLoader implements CommandLineRunner {
         }
 
         // Insert experiment_observation
-        cdaSqlUtils.insertExperiment_observation(experimentPk, observationPk);
+        cdaSqlUtils.insertExperiment_observation(writer, experimentPk, observationPk);
 
         if (dccExperiment.getSpecimenId() != null && dccExperiment.getSpecimenId().equals("B6NC_46853_163447") && dccExperiment.getProcedureId().startsWith("IMPC_CBC")) {
             logger.debug("END CANARY -- Successfully inserted specimen B6NC_46853_163447, experimentPk {}, parameter {}", experimentPk, simpleParameter.getParameterID());
@@ -1124,7 +1183,7 @@ public class ExperimentLoader implements CommandLineRunner {
 
     }
 
-    private void insertMediaParameter(DccExperimentDTO dccExperiment, MediaParameter mediaParameter,
+    private void insertMediaParameter(ObservationBatchWriter writer, DccExperimentDTO dccExperiment, MediaParameter mediaParameter,
                                       long experimentPk, long dbId, Long biologicalSamplePk, String phenotypingCenter,
                                       long phenotypingCenterPk, int missing) throws DataLoadException
     {
@@ -1151,7 +1210,7 @@ public class ExperimentLoader implements CommandLineRunner {
 
         long observationPk;
         try {
-            observationPk = cdaSqlUtils.insertObservation(dbId, biologicalSamplePk, parameterStableId, parameterPk,
+            observationPk = cdaSqlUtils.insertObservation(writer, dbId, biologicalSamplePk, parameterStableId, parameterPk,
                                                           sequenceId, populationId, observationType, missing,
                                                           parameterStatus, parameterStatusMessage,
                                                           mediaParameter, dccExperiment, phenotypingCenter, phenotypingCenterPk);
@@ -1166,10 +1225,10 @@ public class ExperimentLoader implements CommandLineRunner {
         }
 
         // Insert experiment_observation
-        cdaSqlUtils.insertExperiment_observation(experimentPk, observationPk);
+        cdaSqlUtils.insertExperiment_observation(writer, experimentPk, observationPk);
     }
 
-    public void insertMediaSampleParameter(DccExperimentDTO dccExperiment, MediaSampleParameter mediaSampleParameter,
+    public void insertMediaSampleParameter(ObservationBatchWriter writer, DccExperimentDTO dccExperiment, MediaSampleParameter mediaSampleParameter,
                                            long experimentPk, long dbId, Long biologicalSamplePk, String phenotypingCenter,
                                            long phenotypingCenterPk, List<SimpleParameter> simpleParameterList,
                                            List<OntologyParameter> ontologyParameterList, int missing) throws DataLoadException
@@ -1227,7 +1286,7 @@ public class ExperimentLoader implements CommandLineRunner {
 
                     try {
                         observationPk = cdaSqlUtils.insertObservation(
-                                dbId, biologicalSamplePk, parameterStableId, parameterPk, sequenceId, populationId,
+                                writer, dbId, biologicalSamplePk, parameterStableId, parameterPk, sequenceId, populationId,
                                 observationType, missing, parameterStatus, parameterStatusMessage, mediaSampleParameter,
                                 mediaFile, dccExperiment, phenotypingCenter, phenotypingCenterPk, experimentPk,
                                 simpleParameterList, ontologyParameterList);
@@ -1246,10 +1305,10 @@ public class ExperimentLoader implements CommandLineRunner {
         }
 
         // Insert experiment_observation
-        cdaSqlUtils.insertExperiment_observation(experimentPk, observationPk);
+        cdaSqlUtils.insertExperiment_observation(writer, experimentPk, observationPk);
     }
 
-    private void insertSeriesMediaParameter(DccExperimentDTO dccExperiment, SeriesMediaParameter seriesMediaParameter,
+    private void insertSeriesMediaParameter(ObservationBatchWriter writer, DccExperimentDTO dccExperiment, SeriesMediaParameter seriesMediaParameter,
                                             long experimentPk, long dbId, Long biologicalSamplePk, String phenotypingCenter,
                                             long phenotypingCenterPk, List<SimpleParameter> simpleParameterList,
                                             List<OntologyParameter> ontologyParameterList, int missing) throws DataLoadException
@@ -1280,7 +1339,7 @@ public class ExperimentLoader implements CommandLineRunner {
 
             long observationPk;
             try {
-                observationPk = cdaSqlUtils.insertObservation(dbId, biologicalSamplePk, parameterStableId, parameterPk,
+                observationPk = cdaSqlUtils.insertObservation(writer, dbId, biologicalSamplePk, parameterStableId, parameterPk,
                                                               sequenceId, populationId, observationType, missing,
                                                               parameterStatus, parameterStatusMessage,
                                                               value, dccExperiment, biologicalSamplePk, phenotypingCenter,
@@ -1298,12 +1357,12 @@ public class ExperimentLoader implements CommandLineRunner {
             }
 
             // Insert experiment_observation
-            cdaSqlUtils.insertExperiment_observation(experimentPk, observationPk);
+            cdaSqlUtils.insertExperiment_observation(writer, experimentPk, observationPk);
         }
     }
 
 
-    private void insertSeriesParameter(DccExperimentDTO dccExperiment, SeriesParameter seriesParameter, long experimentPk,
+    private void insertSeriesParameter(ObservationBatchWriter writer, DccExperimentDTO dccExperiment, SeriesParameter seriesParameter, long experimentPk,
                                        long dbId, Long biologicalSamplePk, int missing) throws DataLoadException {
 
         if (dccExperiment.isLineLevel()) {
@@ -1335,14 +1394,14 @@ public class ExperimentLoader implements CommandLineRunner {
 
             switch (observationType) {
                 case time_series:
-                    observationPk = insertTimeSeries(dccExperiment, simpleValue, incrementValue, dccMetadataList,
+                    observationPk = insertTimeSeries(writer, dccExperiment, simpleValue, incrementValue, dccMetadataList,
                             dbId, biologicalSamplePk, parameterStableId, parameterPk,
                             sequenceId, populationId, observationType, missing,
                             parameterStatus, parameterStatusMessage,
                             seriesParameter);
                     break;
                 case text_series:
-                    observationPk = insertTextSeries(dccExperiment, simpleValue, incrementValue, dccMetadataList,
+                    observationPk = insertTextSeries(writer, dccExperiment, simpleValue, incrementValue, dccMetadataList,
                             dbId, biologicalSamplePk, parameterStableId, parameterPk,
                             sequenceId, populationId, observationType, missing,
                             parameterStatus, parameterStatusMessage,
@@ -1355,12 +1414,13 @@ public class ExperimentLoader implements CommandLineRunner {
 
             if (observationPk != null) {
                 // Insert experiment_observation
-                cdaSqlUtils.insertExperiment_observation(experimentPk, observationPk);
+                cdaSqlUtils.insertExperiment_observation(writer, experimentPk, observationPk);
             }
         }
     }
 
     private Long insertTimeSeries(
+            ObservationBatchWriter writer,
             DccExperimentDTO dccExperiment,
             String simpleValue,
             String incrementValue,
@@ -1452,7 +1512,7 @@ public class ExperimentLoader implements CommandLineRunner {
         }
 
         try {
-            observationPk = cdaSqlUtils.insertObservation(dbId, biologicalSamplePk, parameterStableId, parameterPk,
+            observationPk = cdaSqlUtils.insertObservation(writer, dbId, biologicalSamplePk, parameterStableId, parameterPk,
                     sequenceId, populationId, observationType, valueMissing,
                     parameterStatus, parameterStatusMessage,
                     seriesParameter, dataPoint, timePoint, discretePoint);
@@ -1471,6 +1531,7 @@ public class ExperimentLoader implements CommandLineRunner {
 
     // text series parameter
     private Long insertTextSeries(
+            ObservationBatchWriter writer,
             DccExperimentDTO dccExperiment,
             String simpleValue,
             String incrementValue,
@@ -1490,7 +1551,7 @@ public class ExperimentLoader implements CommandLineRunner {
         Long observationPk = null;
 
         try {
-            observationPk = cdaSqlUtils.insertObservation(dbId, biologicalSamplePk, parameterStableId, parameterPk,
+            observationPk = cdaSqlUtils.insertObservation(writer, dbId, biologicalSamplePk, parameterStableId, parameterPk,
                     sequenceId, populationId, observationType, valueMissing,
                     parameterStatus, parameterStatusMessage,
                     seriesParameter, simpleValue, incrementValue);
@@ -1508,7 +1569,7 @@ public class ExperimentLoader implements CommandLineRunner {
     }
 
 
-    private void insertOntologyParameters(DccExperimentDTO dccExperiment, OntologyParameter ontologyParameter,
+    private void insertOntologyParameters(ObservationBatchWriter writer, DccExperimentDTO dccExperiment, OntologyParameter ontologyParameter,
                                           long experimentPk, long dbId, Long biologicalSamplePk, int missing) throws DataLoadException
     {
         if (dccExperiment.isLineLevel()) {
@@ -1541,7 +1602,7 @@ public class ExperimentLoader implements CommandLineRunner {
 
         long observationPk;
         try {
-            observationPk = cdaSqlUtils.insertObservation(dbId, biologicalSamplePk, parameterStableId, parameterPk,
+            observationPk = cdaSqlUtils.insertObservation(writer, dbId, biologicalSamplePk, parameterStableId, parameterPk,
                                                           sequenceId, populationId, observationType, missing,
                                                           parameterStatus, parameterStatusMessage,
                                                           ontologyParameter, dccExperiment.getExperimentId(), experimentPk);
@@ -1557,7 +1618,7 @@ public class ExperimentLoader implements CommandLineRunner {
         }
 
         // Insert experiment_observation
-        cdaSqlUtils.insertExperiment_observation(experimentPk, observationPk);
+        cdaSqlUtils.insertExperiment_observation(writer, experimentPk, observationPk);
     }
 
 
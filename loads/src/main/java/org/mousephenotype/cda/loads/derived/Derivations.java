@@ -0,0 +1,298 @@
+/*******************************************************************************
+ * Copyright © 2019 EMBL - European Bioinformatics Institute
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ ******************************************************************************/
+
+package org.mousephenotype.cda.loads.derived;
+
+import org.mousephenotype.cda.loads.derived.GenerateDerivedParameters.ObservationDTO;
+import org.mousephenotype.cda.loads.derived.SpecimenParameterStore.Series;
+import org.mousephenotype.cda.loads.derived.SpecimenParameterStore.Values;
+
+import java.util.BitSet;
+import java.util.function.Predicate;
+
+/**
+ * The formulas of the derived parameters, computed over the columns of a {@link SpecimenParameterStore} for every
+ * specimen at once.
+ *
+ * The formulas over data points are computed in single precision, in the same order of operations as the original
+ * per-specimen code, so that the derived values are unchanged; the formulas over increments are computed in double
+ * precision. Specimens for which the formula is undefined (e.g. a divisor of 0) are left out of the result.
+ */
+public class Derivations {
+
+    private Derivations() {
+    }
+
+
+    /**
+     * numerator / divisor
+     */
+    public static Result divide(Values numerator, Values divisor) {
+
+        Result result = new Result(numerator.observations, true);
+        BitSet rows   = intersect(numerator.present, divisor.present);
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            if (divisor.dataPoints[row] != 0) {
+                result.set(row, numerator.dataPoints[row] / divisor.dataPoints[row]);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * numerator / divisor * 100
+     */
+    public static Result percentageOf(Values numerator, Values divisor) {
+
+        Result result = new Result(numerator.observations, true);
+        BitSet rows   = intersect(numerator.present, divisor.present);
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            if (divisor.dataPoints[row] != 0) {
+                result.set(row, numerator.dataPoints[row] / divisor.dataPoints[row] * 100);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * (minuend - subtrahend) / divisor * 100
+     */
+    public static Result percentageOfDifference(Values minuend, Values subtrahend, Values divisor) {
+
+        Result result = new Result(minuend.observations, true);
+        BitSet rows   = intersect(intersect(minuend.present, subtrahend.present), divisor.present);
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            if (divisor.dataPoints[row] != 0) {
+                result.set(row, (minuend.dataPoints[row] - subtrahend.dataPoints[row]) / divisor.dataPoints[row] * 100);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * first * second, for the specimens whose second value is not 0
+     */
+    public static Result multiply(Values first, Values second) {
+
+        Result result = new Result(first.observations, true);
+        BitSet rows   = intersect(first.present, second.present);
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            if (second.dataPoints[row] != 0) {
+                result.set(row, first.dataPoints[row] * second.dataPoints[row]);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * multiplicator * numerator / divisor
+     */
+    public static Result multiplyThenDivide(float multiplicator, Values numerator, Values divisor) {
+
+        Result result = new Result(numerator.observations, true);
+        BitSet rows   = intersect(numerator.present, divisor.present);
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            if (divisor.dataPoints[row] != 0) {
+                result.set(row, multiplicator * numerator.dataPoints[row] / divisor.dataPoints[row]);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * multiplicator * numerator / divisor, with the multiplicator taken from a parameter
+     */
+    public static Result multiplyThenDivide(Values multiplicator, Values numerator, Values divisor) {
+
+        Result result = new Result(numerator.observations, true);
+        BitSet rows   = intersect(intersect(numerator.present, divisor.present), multiplicator.present);
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            if (divisor.dataPoints[row] != 0) {
+                result.set(row, multiplicator.dataPoints[row] * numerator.dataPoints[row] / divisor.dataPoints[row]);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * sum_of_increments / number_of_increments
+     */
+    public static Result meanOfIncrements(Series series) {
+
+        Result result = new Result(series.observations, false);
+        BitSet rows   = series.present;
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            int count = series.counts[row];
+            if (count != 0) {
+                result.set(row, sum(series.increments, series.starts[row], count) / count);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * sum_of_increments
+     */
+    public static Result sumOfIncrements(Series series) {
+
+        Result result = new Result(series.observations, false);
+        BitSet rows   = series.present;
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            result.set(row, sum(series.increments, series.starts[row], series.counts[row]));
+        }
+
+        return result;
+    }
+
+    /**
+     * area_under_curve, for the specimens with a positive area (see {@link #getAUC})
+     */
+    public static Result areaUnderCurve(Series series) {
+
+        Result result = new Result(series.observations, false);
+        BitSet rows   = series.present;
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            double auc = getAUC(series.increments, series.discretePoints, series.starts[row], series.counts[row]);
+            if (auc > 0) {
+                result.set(row, auc);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * The area between a curve of 5 points and its first (baseline) value, counting the area below the baseline as
+     * positive.
+     *
+     * @param values the values of all the curves
+     * @param timePoints the time points of all the curves
+     * @param start the index of the first point of the curve in {@code values} and {@code timePoints}
+     * @param count the number of points of the curve
+     * @return the area, or -1 if the curve does not have exactly 5 points
+     */
+    public static double getAUC(double[] values, double[] timePoints, int start, int count) {
+        // |A| + |B|
+        double auc = 0;
+        if (count != 5)
+            return -1;
+        double baseline = values[start];
+        for (int i = start; i < start + count - 1; i++){
+            if (values[i] - baseline < 0 && values[i+1] - baseline > 0 || values[i] - baseline > 0 && values[i+1] - baseline < 0){
+                // compute each triangle separately
+                double a = Math.abs(values[i] - baseline);
+                double b = Math.abs(values[i+1] - baseline);
+                double k = timePoints[i+1] - timePoints[i];
+                double y = b * k / (a + b);
+                double x = k - y;
+                auc += y * b / 2; // we know it has a 90 degree angle between y and b
+                auc += a * x / 2;
+            }
+            else {
+                double height = timePoints[i+1] - timePoints[i];
+                auc += Math.abs((values[i] + values[i+1] - 2 * baseline) * height) / 2;
+            }
+        }
+        return auc;
+    }
+
+
+    // PRIVATE METHODS
+
+
+    private static BitSet intersect(BitSet first, BitSet second) {
+        BitSet rows = (BitSet) first.clone();
+        rows.and(second);
+
+        return rows;
+    }
+
+    private static double sum(double[] values, int start, int count) {
+        double sum = 0.0;
+        for (int i = start; i < start + count; i++) {
+            sum += values[i];
+        }
+
+        return sum;
+    }
+
+
+    /**
+     * The derived value of each specimen for which it could be computed, with the observation of the input whose
+     * experiment details (procedure, metadata, ...) the derived observation takes.
+     */
+    public static class Result {
+
+        private final BitSet           rows = new BitSet();
+        private final double[]         values;
+        private final ObservationDTO[] observations;
+        private final boolean          singlePrecision;
+
+        Result(ObservationDTO[] observations, boolean singlePrecision) {
+            this.values = new double[observations.length];
+            this.observations = observations;
+            this.singlePrecision = singlePrecision;
+        }
+
+        void set(int row, double value) {
+            rows.set(row);
+            values[row] = value;
+        }
+
+        /**
+         * Leaves out the specimens whose observation matches {@code filter}.
+         */
+        public Result removeIf(Predicate<ObservationDTO> filter) {
+            for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+                if (filter.test(observations[row])) {
+                    rows.clear(row);
+                }
+            }
+
+            return this;
+        }
+
+        public BitSet getRows() {
+            return rows;
+        }
+
+        public double getValue(int row) {
+            return values[row];
+        }
+
+        /**
+         * @return the value of {@code row} as the observation stores it
+         */
+        public String format(int row) {
+            return (singlePrecision ? Float.toString((float) values[row]) : Double.toString(values[row]));
+        }
+
+        public ObservationDTO getObservation(int row) {
+            return observations[row];
+        }
+
+        public int size() {
+            return rows.cardinality();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright © 2019 EMBL - European Bioinformatics Institute
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ ******************************************************************************/
+
+package org.mousephenotype.cda.loads.derived;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * The derived parameters to generate, with the derived parameters each one is computed from.
+ *
+ * {@link #submit} runs the derivations on an executor in dependency order: a derivation whose input is itself a
+ * derived parameter (e.g. IMPC_GRS_010_001 from IMPC_GRS_008_001) starts once that input has been generated, and is
+ * skipped if generating it failed. Independent derivations run concurrently.
+ */
+public class DerivedParameterGraph {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final Map<String, Node> nodes = new LinkedHashMap<>();
+
+
+    /**
+     * Adds a derived parameter. A parameter already added is not added again.
+     *
+     * @param parameter the derived parameter that {@code task} generates
+     * @param task generates {@code parameter}, returning the number of observations added
+     * @param derivedInputs the derived parameters {@code parameter} is computed from
+     */
+    public void add(String parameter, Callable<Integer> task, String... derivedInputs) {
+
+        if (nodes.containsKey(parameter)) {
+            logger.warn("Parameter {} is already to be generated", parameter);
+            return;
+        }
+
+        nodes.put(parameter, new Node(parameter, task, Arrays.asList(derivedInputs)));
+    }
+
+    /**
+     * Submits the derivations to {@code executor}, each after the derivations of its inputs. The executor must start
+     * its tasks in the order they are submitted, as a fixed thread pool does: a task waits for the tasks submitted
+     * before it that it depends on, so these must already have started.
+     *
+     * @return the derivations, in the order they were submitted
+     * @throws IllegalStateException if the parameters depend on each other in a cycle
+     */
+    public List<Future<Integer>> submit(ExecutorService executor) {
+
+        Map<String, Future<Integer>> submitted = new LinkedHashMap<>();
+        for (Node node : getDependencyOrder()) {
+
+            Map<String, Future<Integer>> dependencies = new LinkedHashMap<>();
+            for (String input : node.derivedInputs) {
+                if (submitted.containsKey(input)) {
+                    dependencies.put(input, submitted.get(input));
+                }
+            }
+
+            submitted.put(node.parameter, executor.submit(() -> run(node, dependencies)));
+        }
+
+        return new ArrayList<>(submitted.values());
+    }
+
+
+    // PRIVATE METHODS
+
+
+    private Integer run(Node node, Map<String, Future<Integer>> dependencies) throws Exception {
+
+        for (Map.Entry<String, Future<Integer>> dependency : dependencies.entrySet()) {
+            try {
+                dependency.getValue().get();
+
+            } catch (ExecutionException e) {
+                logger.error("Skipping parameter {}: its input {} could not be generated", node.parameter, dependency.getKey());
+                throw e;
+            }
+        }
+
+        try {
+            return node.task.call();
+
+        } catch (Exception e) {
+            logger.error("Error while generating parameter " + node.parameter, e);
+            throw e;
+        }
+    }
+
+    /**
+     * @return the nodes, each after the nodes of its derived inputs and otherwise in the order they were added
+     */
+    private List<Node> getDependencyOrder() {
+
+        List<Node>  order    = new ArrayList<>();
+        Set<String> visited  = new HashSet<>();
+        Set<String> visiting = new HashSet<>();
+        for (Node node : nodes.values()) {
+            visit(node, visited, visiting, order);
+        }
+
+        return order;
+    }
+
+    private void visit(Node node, Set<String> visited, Set<String> visiting, List<Node> order) {
+
+        if (visited.contains(node.parameter)) {
+            return;
+        }
+        if ( ! visiting.add(node.parameter)) {
+            throw new IllegalStateException("Derived parameter " + node.parameter + " depends on itself");
+        }
+
+        for (String input : node.derivedInputs) {
+            if (nodes.containsKey(input)) {
+                visit(nodes.get(input), visited, visiting, order);
+            }
+        }
+
+        visiting.remove(node.parameter);
+        visited.add(node.parameter);
+        order.add(node);
+    }
+
+
+    private static class Node {
+
+        private final String            parameter;
+        private final Callable<Integer> task;
+        private final List<String>      derivedInputs;
+
+        Node(String parameter, Callable<Integer> task, List<String> derivedInputs) {
+            this.parameter = parameter;
+            this.task = task;
+            this.derivedInputs = derivedInputs;
+        }
+    }
+}
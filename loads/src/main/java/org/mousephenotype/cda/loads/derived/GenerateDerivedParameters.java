@@ -42,6 +42,9 @@ public class GenerateDerivedParameters implements CommandLineRunner {
 
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
+    // The number of derived experiments (and observations) saved at a time
+    private static final int SAVE_BATCH_SIZE = 1000;
+
     private ExecutorService       executor;
     private List<Future<Integer>> tasks = new ArrayList<>();
 
@@ -51,6 +54,8 @@ public class GenerateDerivedParameters implements CommandLineRunner {
     private Map<String, Pipeline>     pipelines       = new ConcurrentHashMapAllowNull<>();
     private Map<String, Organisation> organisations   = new ConcurrentHashMapAllowNull<>();
 
+    private final SpecimenParameterStore inputs = new SpecimenParameterStore();
+
 
     private BiologicalModelRepository biologicalModelRepository;
     private DatasourceRepository      datasourceRepository;
@@ -129,6 +134,7 @@ public class GenerateDerivedParameters implements CommandLineRunner {
 
         // Reusable task for adding unit of work to the queue
         Callable<Integer> task;
+        DerivedParameterGraph graph = new DerivedParameterGraph();
 
         for (String parameter : parameters) {
 
@@ -139,316 +145,316 @@ public class GenerateDerivedParameters implements CommandLineRunner {
                 // Only called via manually passing in the parameter
                 case "IMPC_VIA_032_001":
                     task = () -> IMPC_VIA_032_001();
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "GMC_914_001_704":
                     task = () -> copyDivisionResult("GMC_914_001_704", "GMC_914_001_015", "GMC_914_001_001");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "GMC_914_001_701":
                     task = () -> copyMultiplicationResult("GMC_914_001_701", "GMC_914_001_005", "GMC_914_001_021");    // Could not test, no data
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "GMC_914_001_705":
                     task = () -> copyMultiplicationOfDivision("GMC_914_001_705", "GMC_914_001_015", "GMC_914_001_009", 100);    // Could not test, no data
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "GMC_914_001_702":
                     task = () -> copyMultiplicationOfDivision("GMC_914_001_702", "GMC_914_001_015", "GMC_914_001_009", "GMC_914_001_005");    // Could not test, no data
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "TCP_TFL_002_001":
                     task = () -> copyMeanOfIncrements("TCP_TFL_002_001", "IMPC_TFL_001_001");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "IMPC_DXA_007_001":
                     task = () -> copyDivisionResult("IMPC_DXA_007_001", "IMPC_DXA_005_001", "IMPC_DXA_001_001");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "IMPC_DXA_008_001":
                     task = () -> copyDivisionResult("IMPC_DXA_008_001", "IMPC_DXA_003_001", "IMPC_DXA_001_001");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "IMPC_DXA_009_001":
                     task = () -> copyDivisionResult("IMPC_DXA_009_001", "IMPC_DXA_002_001", "IMPC_DXA_001_001");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "IMPC_DXA_010_001":
                     task = () -> copyDivisionResult("IMPC_DXA_010_001", "IMPC_DXA_005_001", "IMPC_DXA_004_001");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "IMPC_GRS_008_001":
                     task = () -> copyMeanOfIncrements("IMPC_GRS_008_001", "IMPC_GRS_001_001");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "IMPC_GRS_009_001":
                     task = () -> copyMeanOfIncrements("IMPC_GRS_009_001", "IMPC_GRS_002_001");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "ICS_ROT_002_001":
                     task = () -> copyMeanOfIncrements("ICS_ROT_002_001", "ICS_ROT_001_001");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "IMPC_HWT_012_001":
                     task = () -> copyDivisionResult("IMPC_HWT_012_001", "IMPC_HWT_008_001", "IMPC_HWT_007_001");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "IMPC_OFD_020_001":
                     task = () -> copySumOfIncrements("IMPC_OFD_020_001", "IMPC_OFD_005_001");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "IMPC_OFD_021_001":
                     task = () -> copySumOfIncrements("IMPC_OFD_021_001", "IMPC_OFD_006_001");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "MGP_IPG_011_001":
                     task = () -> copyDifferenceOfIncrements("MGP_IPG_011_001", "MGP_IPG_002_001", 15.0, 0.0);
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "IMPC_IPG_012_001":
                     task = () -> copyAUC("IMPC_IPG_012_001", "IMPC_IPG_002_001");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "MGP_IPG_012_001":
                     task = () -> copyAUC("MGP_IPG_012_001", "MGP_IPG_002_001");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "IMPC_EYE_092_001":
                     task = () -> IMPC_EYE_092_001();
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "IMPC_ACS_033_001":
                     task = () -> copyPercentageOfDifference("IMPC_ACS_033_001", "IMPC_ACS_006_001", "IMPC_ACS_007_001", "IMPC_ACS_006_001");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "IMPC_ACS_034_001":
                     task = () -> copyPercentageOfDifference("IMPC_ACS_034_001", "IMPC_ACS_006_001", "IMPC_ACS_008_001", "IMPC_ACS_006_001");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "IMPC_ACS_035_001":
                     task = () -> copyPercentageOfDifference("IMPC_ACS_035_001", "IMPC_ACS_006_001", "IMPC_ACS_009_001", "IMPC_ACS_006_001");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "IMPC_ACS_036_001":
                     task = () -> copyPercentageOfDifference("IMPC_ACS_036_001", "IMPC_ACS_006_001", "IMPC_ACS_010_001", "IMPC_ACS_006_001");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "IMPC_OFD_022_001":
                     task = () -> copyPercentageOf("IMPC_OFD_022_001", "IMPC_OFD_016_001", "IMPC_OFD_008_001");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "IMPC_ACS_037_001":
                     task = () -> IMPC_ACS_037_001();
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "IMPC_IPG_010_001":
                     task = () -> copyIncrementValueAt("IMPC_IPG_010_001", "IMPC_IPG_002_001", 0);
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "MGP_IPG_010_001":
                     task = () -> copyIncrementValueAt("MGP_IPG_010_001", "MGP_IPG_002_001", 0);
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "IMPC_CAL_017_001":
                     task = () -> copyDivisionOfMeanOfIncrements("IMPC_CAL_017_001", "IMPC_CAL_004_001", "IMPC_CAL_003_001");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "IMPC_IPG_011_001":
                     task = () -> IMPC_IPG_011_001();
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
 
 
                 case "IMPC_FEA_003_001":
                     task = () -> copyMultiplicationOfDivision("IMPC_FEA_003_001", "IMPC_FEA_002_001", "IMPC_FEA_033_001", 100);
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "IMPC_FEA_009_001":
                     task = () -> copyMultiplicationOfDivision("IMPC_FEA_009_001", "IMPC_FEA_008_001", "IMPC_FEA_049_001", 100);
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "IMPC_FEA_015_001":
                     task = () -> copyMultiplicationOfDivision("IMPC_FEA_015_001", "IMPC_FEA_014_001", "IMPC_FEA_057_001", 100);
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "IMPC_FEA_021_001":
                     task = () -> copyMultiplicationOfDivision("IMPC_FEA_021_001", "IMPC_FEA_020_001", "IMPC_FEA_060_001", 100);
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "IMPC_FEA_091_001":
                     task = () -> copyMultiplicationOfDivision("IMPC_FEA_091_001", "IMPC_FEA_090_001", "IMPC_FEA_036_001", 100);
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "IMPC_FEA_100_001":
                     task = () -> copyMultiplicationOfDivision("IMPC_FEA_100_001", "IMPC_FEA_099_001", "IMPC_FEA_039_001", 100);
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
 
 
                 case "ESLIM_004_001_701":
                     task = () -> copyAUC("ESLIM_004_001_701", "ESLIM_004_001_002");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "ESLIM_009_001_703":
                     task = () -> copyDivisionOfSumOfIncrementsOverNumberOfIncrements("ESLIM_009_001_703", "ESLIM_009_001_001", "ESLIM_009_001_003");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "ESLIM_009_001_704":
                     task = () -> copyDivisionOfSumOfIncrementsOverNumberOfIncrements("ESLIM_009_001_704", "ESLIM_009_001_002", "ESLIM_009_001_003");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "ESLIM_009_001_701":
                     task = () -> copyMeanOfIncrements("ESLIM_009_001_701", "ESLIM_009_001_001");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "ESLIM_009_001_702":
                     task = () -> copyMeanOfIncrements("ESLIM_009_001_702", "ESLIM_009_001_002");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "ESLIM_011_001_701":
                     task = () -> copyPercentageOfDifference("ESLIM_011_001_701", "ESLIM_011_001_006", "ESLIM_011_001_007", "ESLIM_011_001_006");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "ESLIM_011_001_702":
                     task = () -> copyPercentageOfDifference("ESLIM_011_001_702", "ESLIM_011_001_006", "ESLIM_011_001_008", "ESLIM_011_001_006");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "ESLIM_011_001_703":
                     task = () -> copyPercentageOfDifference("ESLIM_011_001_703", "ESLIM_011_001_006", "ESLIM_011_001_009", "ESLIM_011_001_006");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "ESLIM_011_001_704":
                     task = () -> copyPercentageOfDifference("ESLIM_011_001_704", "ESLIM_011_001_006", "ESLIM_011_001_010", "ESLIM_011_001_006");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "ESLIM_011_001_705":
                     task = () -> ESLIM_011_001_705();
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "ESLIM_003_001_701":
                     task = () -> ESLIM_003_001_701();
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "ESLIM_005_001_701":
                     task = () -> copyDivisionResult("ESLIM_005_001_701", "ESLIM_005_001_005", "ESLIM_005_001_001");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "ESLIM_005_001_702":
                     task = () -> copyDivisionResult("ESLIM_005_001_702", "ESLIM_005_001_003", "ESLIM_005_001_001");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "ESLIM_005_001_703":
                     task = () -> copyDivisionResult("ESLIM_005_001_703", "ESLIM_005_001_002", "ESLIM_005_001_001");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "ESLIM_005_001_704":
                     task = () -> copyDivisionResult("ESLIM_005_001_704", "ESLIM_005_001_005", "ESLIM_005_001_004");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "ESLIM_022_001_703":
                     task = () -> copyParameter("ESLIM_022_001_703", "ESLIM_001_001_001");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "ESLIM_022_001_704":
                     task = () -> copyParameter("ESLIM_022_001_704", "ESLIM_002_001_001");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "ESLIM_022_001_705":
                     task = () -> copyParameter("ESLIM_022_001_705", "ESLIM_003_001_001");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "ESLIM_022_001_706":
                     task = () -> copyParameter("ESLIM_022_001_706", "ESLIM_004_001_001");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "ESLIM_022_001_707":
                     task = () -> copyParameter("ESLIM_022_001_707", "ESLIM_005_001_001");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "ESLIM_022_001_709":
                     task = () -> copyParameter("ESLIM_022_001_709", "ESLIM_009_001_003");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "ESLIM_022_001_710":
                     task = () -> copyParameter("ESLIM_022_001_710", "ESLIM_010_001_003");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "ESLIM_022_001_711":
                     task = () -> copyParameter("ESLIM_022_001_711", "ESLIM_011_001_011");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "ESLIM_022_001_712":
                     task = () -> copyParameter("ESLIM_022_001_712", "ESLIM_012_001_005");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "ESLIM_022_001_713":
                     task = () -> copyParameter("ESLIM_022_001_713", "ESLIM_013_001_018");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "ESLIM_022_001_708":
                     task = () -> copyParameter("ESLIM_022_001_708", "ESLIM_020_001_001");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "ESLIM_022_001_701":
@@ -461,7 +467,7 @@ public class GenerateDerivedParameters implements CommandLineRunner {
                     params.add("ESLIM_020_001_001");
                     params.add("ESLIM_022_001_001");
                     task = () -> plotParametersAsTimeSeries("ESLIM_022_001_701", params);
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "ESLIM_022_001_702":
@@ -473,7 +479,7 @@ public class GenerateDerivedParameters implements CommandLineRunner {
                     params.add("ESLIM_013_001_018");
                     params.add("ESLIM_022_001_001");
                     task = () -> plotParametersAsTimeSeries("ESLIM_022_001_702", params);
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task);
                     break;
 
                 case "IMPC_BWT_008_001":
@@ -489,33 +495,21 @@ public class GenerateDerivedParameters implements CommandLineRunner {
                     params.add("TCP_CHL_001_001");
                     params.add("HMGU_ROT_004_001");
                     task = () -> plotParametersAsTimeSeries("IMPC_BWT_008_001", params);
-                    tasks.add(executor.submit(task));
-                    break;
-
-                default:
-                    logger.info("Delayed processing parameter " + parameter);
+                    graph.add(parameter, task);
                     break;
-            }
-        }
-
-
-        //
-        // These parameters have dependencies on other derived parameters
-        //
 
-        for (String parameter : parameters.stream().filter(x -> Arrays.asList("IMPC_GRS_010_001", "IMPC_GRS_011_001").contains(x)).collect(Collectors.toList())) {
+                //
+                // These parameters have dependencies on other derived parameters
+                //
 
-            logger.info("Processing parameter {}", parameter);
-
-            switch (parameter) {
                 case "IMPC_GRS_010_001":
                     task = () -> copyDivisionResult("IMPC_GRS_010_001", "IMPC_GRS_008_001", "IMPC_GRS_003_001");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task, "IMPC_GRS_008_001");
                     break;
 
                 case "IMPC_GRS_011_001":
                     task = () -> copyDivisionResult("IMPC_GRS_011_001", "IMPC_GRS_009_001", "IMPC_GRS_003_001");
-                    tasks.add(executor.submit(task));
+                    graph.add(parameter, task, "IMPC_GRS_009_001");
                     break;
 
                 default:
@@ -524,7 +518,7 @@ public class GenerateDerivedParameters implements CommandLineRunner {
             }
         }
 
-
+        tasks.addAll(graph.submit(executor));
     }
 
 
@@ -1054,101 +1048,20 @@ public class GenerateDerivedParameters implements CommandLineRunner {
             throws SQLException{
 
         deleteObservationsForParameterId(parameterToCreate);
-        int i = 0;
-        ArrayList<String> paramsOfInterest = new ArrayList<>();
-        paramsOfInterest.add(minuend);
-        paramsOfInterest.add(subtrahend);
-        paramsOfInterest.add(divisorParameter);
 
-        Map<String, Map<String, ObservationDTO>> parameterMap = new HashMap<>();
-        Set<String> animalIds =  getResultsIntersectionByParameter(paramsOfInterest, parameterMap);
-
-        for (String id: animalIds){
-            try {
-                if (parameterMap.get(divisorParameter).get(id).getDataPoint() != 0) { // denominator
-                    ObservationDTO dto = parameterMap.get(minuend).get(id);
-                    Parameter param = parameterRepository.getFirstByStableIdAndProcedures(parameterToCreate, dto.getProcedureStableId(), dto.getPipelineStableId());
-
-                    Datasource datasource = datasources.get(dto.getExternalDbId());
-                    Experiment currentExperiment = createNewExperiment(dto, "derived_" + parameterToCreate + "_" + i++, getProcedureFromObservation(param, dto), true);
-//                    String metadataGroup = parameterMap.get(minuend).get(id).getMetadataGroup() + "_" +
-//                            parameterMap.get(subtrahend).get(id).getMetadataGroup() + "_" +
-//                            parameterMap.get(divisorParameter).get(id).getMetadataGroup();
-//                    String metadata = parameterMap.get(minuend).get(id).getMetadataCombined() + "_" +
-//                            parameterMap.get(subtrahend).get(id).getMetadataCombined()  + "_" +
-//                            parameterMap.get(divisorParameter).get(id).getMetadataCombined();
-//                    currentExperiment.setMetadataCombined(metadata);
-//                    currentExperiment.setMetadataGroup(DigestUtils.md5Hex(metadataGroup));
-
-                    // Use the same metadata as the other parameters in this procedure
-                    currentExperiment.setMetadataCombined(dto.getMetadataCombined());
-                    currentExperiment.setMetadataGroup(dto.getMetadataGroup());
-
-
-                    experimentRepository.save(currentExperiment);
-
-                    Float dataPoint = (dto.getDataPoint() - parameterMap.get(subtrahend).get(id).getDataPoint()) / parameterMap.get(divisorParameter).get(id).getDataPoint() * 100;
-                    Observation observation = ObservationUtils.createSimpleObservation(ObservationType.unidimensional, dataPoint.toString(), param, animals.get(dto.getAnimalId()), datasource, currentExperiment, null);
+        Derivations.Result result = Derivations.percentageOfDifference(getValues(minuend), getValues(subtrahend), getValues(divisorParameter));
 
-                    observationRepository.save(observation);
-                }
-            } catch (Exception e) {
-
-                System.out.println("animal id: " + id);
-                System.out.println("min " + parameterMap.get(minuend).get(id));
-                System.out.println("Sub " + parameterMap.get(subtrahend).get(id));
-                System.out.println("divisor" + parameterMap.get(divisorParameter).get(id));
-
-                String errorMsg = String.format("Error while trying to calculate %s for animal id %s, minuend: %s, subtrahend: %s, divisor: %s", parameterToCreate, id, minuend, subtrahend, divisorParameter);
-                logger.error(errorMsg, e);
-
-            }
-        }
-        logger.info("Added " + i + " observations for " + parameterToCreate);
-        System.out.println("Added " + i + " observations for " + parameterToCreate);
-        return i;
+        return saveDerivedValues(parameterToCreate, result);
     }
 
     private int copyPercentageOf(String parameterToCreate, String numeratorParameter, String divisorParameter)
             throws SQLException{
 
         deleteObservationsForParameterId(parameterToCreate);
-        int i = 0;
-        ArrayList<String> paramsOfInterest = new ArrayList<>();
-        paramsOfInterest.add(numeratorParameter);
-        paramsOfInterest.add(divisorParameter);
-
-        Map<String, Map<String, ObservationDTO>> parameterMap = new HashMap<>();
-        Set<String> animalIds =  getResultsIntersectionByParameter(paramsOfInterest, parameterMap);
 
-        for (String id: animalIds){
-            if (parameterMap.get(divisorParameter).get(id).getDataPoint() != 0){ // denominator
-                ObservationDTO dto = parameterMap.get(numeratorParameter).get(id);
-                Parameter param = parameterRepository.getFirstByStableIdAndProcedures(parameterToCreate, dto.getProcedureStableId(), dto.getPipelineStableId());
-                Datasource datasource = datasources.get(dto.getExternalDbId());
-                Experiment currentExperiment = createNewExperiment(dto, "derived_" + parameterToCreate + "_" + i++, getProcedureFromObservation(param, dto), true);
-//                String metadataGroup = parameterMap.get(numeratorParameter).get(id).getMetadataGroup() + "_" +
-//                        parameterMap.get(divisorParameter).get(id).getMetadataGroup();
-//                String metadata = parameterMap.get(numeratorParameter).get(id).getMetadataCombined() + "_" +
-//                        parameterMap.get(divisorParameter).get(id).getMetadataCombined() ;
-//                currentExperiment.setMetadataCombined(metadata);
-//                currentExperiment.setMetadataGroup(DigestUtils.md5Hex(metadataGroup));
+        Derivations.Result result = Derivations.percentageOf(getValues(numeratorParameter), getValues(divisorParameter));
 
-                // Use the same metadata as the other parameters in this procedure
-                currentExperiment.setMetadataCombined(dto.getMetadataCombined());
-                currentExperiment.setMetadataGroup(dto.getMetadataGroup());
-
-                experimentRepository.save(currentExperiment);
-
-                Float dataPoint = dto.getDataPoint()/parameterMap.get(divisorParameter).get(id).getDataPoint()*100;
-                Observation observation = ObservationUtils.createSimpleObservation(ObservationType.unidimensional, dataPoint.toString(), param, animals.get(dto.getAnimalId()), datasource, currentExperiment, null);
-
-                observationRepository.save(observation);
-            }
-        }
-        logger.info("Added " + i + " observations for " + parameterToCreate);
-        System.out.println("Added " + i + " observations for " + parameterToCreate);
-        return i;
+        return saveDerivedValues(parameterToCreate, result);
     }
 
 
@@ -1233,46 +1146,10 @@ public class GenerateDerivedParameters implements CommandLineRunner {
             throws SQLException{
 
         deleteObservationsForParameterId(parameterToCreate);
-        int i = 0;
-        ArrayList<String> paramsOfInterest = new ArrayList<>();
-        paramsOfInterest.add(firstParam);
-        paramsOfInterest.add(secondParam);
 
-        Map<String, Map<String, ObservationDTO>> parameterMap = new HashMap<>();
-        Set<String> animalIds =  getResultsIntersectionByParameter(paramsOfInterest, parameterMap);
+        Derivations.Result result = Derivations.multiply(getValues(firstParam), getValues(secondParam));
 
-        for (String id: animalIds){
-            if (parameterMap.get(secondParam) != null &&
-                    parameterMap.get(secondParam).get(id) != null &&
-                    parameterMap.get(secondParam).get(id).getDataPoint() != 0){ // denominator
-                ObservationDTO dto = parameterMap.get(firstParam).get(id);
-                Parameter param = parameterRepository.getFirstByStableIdAndProcedures(parameterToCreate, dto.getProcedureStableId(), dto.getPipelineStableId());
-
-                Datasource datasource = datasources.get(dto.getExternalDbId());
-                Experiment currentExperiment = createNewExperiment(dto, "derived_" + parameterToCreate + "_" + i++, getProcedureFromObservation(param, dto), true);
-//                String metadataGroup = parameterMap.get(firstParam).get(id).getMetadataGroup() + "_" +
-//                        parameterMap.get(secondParam).get(id).getMetadataGroup();
-//                String metadata = parameterMap.get(firstParam).get(id).getMetadataCombined() + "_" +
-//                        parameterMap.get(secondParam).get(id).getMetadataCombined() ;
-//                currentExperiment.setMetadataCombined(metadata);
-//                currentExperiment.setMetadataGroup(DigestUtils.md5Hex(metadataGroup));
-
-                // Use the same metadata as the other parameters in this procedure
-                currentExperiment.setMetadataCombined(dto.getMetadataCombined());
-                currentExperiment.setMetadataGroup(dto.getMetadataGroup());
-
-                experimentRepository.save(currentExperiment);
-
-                Float dataPoint = dto.getDataPoint()*parameterMap.get(secondParam).get(id).getDataPoint();
-                Observation observation = ObservationUtils.createSimpleObservation(ObservationType.unidimensional, dataPoint.toString(), param, animals.get(dto.getAnimalId()), datasource, currentExperiment, null);
-
-                observationRepository.save(observation);
-
-            }
-        }
-        logger.info("Added " + i + " observations for " + parameterToCreate);
-        System.out.println("Added " + i + " observations for " + parameterToCreate);
-        return i;
+        return saveDerivedValues(parameterToCreate, result);
     }
 
     private int copyMultiplicationOfDivision(String parameterToCreate, String numeratorParameter, String divisorParameter, Integer multiplicator)
@@ -1280,41 +1157,9 @@ public class GenerateDerivedParameters implements CommandLineRunner {
 
         deleteObservationsForParameterId(parameterToCreate);
 
-        int i = 0;
-        ArrayList<String> paramsOfInterest = new ArrayList<>();
-        paramsOfInterest.add(numeratorParameter);
-        paramsOfInterest.add(divisorParameter);
+        Derivations.Result result = Derivations.multiplyThenDivide(multiplicator, getValues(numeratorParameter), getValues(divisorParameter));
 
-        Map<String, Map<String, ObservationDTO>> parameterMap = new HashMap<>();
-        Set<String> animalIds =  getResultsIntersectionByParameter(paramsOfInterest, parameterMap);
-
-        for (String id: animalIds){
-            if (parameterMap.get(divisorParameter) != null &&
-                    parameterMap.get(divisorParameter).get(id) != null &&
-                    parameterMap.get(divisorParameter).get(id).getDataPoint() != 0){ // denominator
-
-                ObservationDTO dto = parameterMap.get(numeratorParameter).get(id);
-                Parameter param = parameterRepository.getFirstByStableIdAndProcedures(parameterToCreate, dto.getProcedureStableId(), dto.getPipelineStableId());
-
-                Datasource datasource = datasources.get(dto.getExternalDbId());
-                Experiment currentExperiment = createNewExperiment(dto, "derived_" + parameterToCreate + "_" + i++, getProcedureFromObservation(param, dto), true);
-
-                // Use the same metadata as the other parameters in this procedure
-                currentExperiment.setMetadataCombined(dto.getMetadataCombined());
-                currentExperiment.setMetadataGroup(dto.getMetadataGroup());
-
-                experimentRepository.save(currentExperiment);
-
-                Float dataPoint = multiplicator * dto.getDataPoint() / parameterMap.get(divisorParameter).get(id).getDataPoint();
-                Observation observation = ObservationUtils.createSimpleObservation(ObservationType.unidimensional, dataPoint.toString(), param, animals.get(dto.getAnimalId()), datasource, currentExperiment, null);
-
-                observationRepository.save(observation);
-
-            }
-        }
-        logger.info("Added " + i + " observations for " + parameterToCreate);
-        System.out.println("Added " + i + " observations for " + parameterToCreate);
-        return i;
+        return saveDerivedValues(parameterToCreate, result);
     }
 
     private int copyMultiplicationOfDivision(String parameterToCreate, String numeratorParameter, String divisorParameter, String multiplicator)
@@ -1322,120 +1167,22 @@ public class GenerateDerivedParameters implements CommandLineRunner {
 
         deleteObservationsForParameterId(parameterToCreate);
 
-        int i = 0;
-        ArrayList<String> paramsOfInterest = new ArrayList<>();
-        paramsOfInterest.add(numeratorParameter);
-        paramsOfInterest.add(divisorParameter);
-        paramsOfInterest.add(multiplicator);
-
-        Map<String, Map<String, ObservationDTO>> parameterMap = new HashMap<>();
-        Set<String> animalIds =  getResultsIntersectionByParameter(paramsOfInterest, parameterMap);
-
-        for (String id: animalIds){
-            if (parameterMap.get(divisorParameter) != null &&
-                    parameterMap.get(divisorParameter).get(id) != null &&
-                    parameterMap.get(divisorParameter).get(id).getDataPoint() != 0){ // denominator
-
-                ObservationDTO dto = parameterMap.get(numeratorParameter).get(id);
-                Parameter param = parameterRepository.getFirstByStableIdAndProcedures(parameterToCreate, dto.getProcedureStableId(), dto.getPipelineStableId());
-                Datasource datasource = datasources.get(dto.getExternalDbId());
-                Experiment currentExperiment = createNewExperiment(dto, "derived_" +parameterToCreate + "_" + i++, getProcedureFromObservation(param, dto), true);
-//                String metadataGroup = parameterMap.get(divisorParameter).get(id).getMetadataGroup() + "_" +
-//                        parameterMap.get(numeratorParameter).get(id).getMetadataGroup() + "_" +
-//                        parameterMap.get(multiplicator).get(id).getMetadataGroup();
-//                String metadata = parameterMap.get(divisorParameter).get(id).getMetadataCombined() + "_" +
-//                        parameterMap.get(numeratorParameter).get(id).getMetadataCombined() + "_" +
-//                        parameterMap.get(multiplicator).get(id).getMetadataCombined();
-//                currentExperiment.setMetadataCombined(metadata);
-//                currentExperiment.setMetadataGroup(DigestUtils.md5Hex(metadataGroup));
-
-                // Use the same metadata as the other parameters in this procedure
-                currentExperiment.setMetadataCombined(dto.getMetadataCombined());
-                currentExperiment.setMetadataGroup(dto.getMetadataGroup());
-
-
-                experimentRepository.save(currentExperiment);
-
-                Float multiplicatorDataPoint = parameterMap.get(multiplicator).get(id).getDataPoint();
-                Float dataPoint = multiplicatorDataPoint * dto.getDataPoint() / parameterMap.get(divisorParameter).get(id).getDataPoint();
-                Observation observation = ObservationUtils.createSimpleObservation(ObservationType.unidimensional, dataPoint.toString(), param, animals.get(dto.getAnimalId()), datasource, currentExperiment, null);
-
-                observationRepository.save(observation);
+        Derivations.Result result = Derivations.multiplyThenDivide(getValues(multiplicator), getValues(numeratorParameter), getValues(divisorParameter));
 
-            }
-        }
-        logger.info("Added " + i + " observations for " + parameterToCreate);
-        System.out.println("Added " + i + " observations for " + parameterToCreate);
-        return i;
+        return saveDerivedValues(parameterToCreate, result);
     }
 
     private int copyDivisionResult(String parameterToCreate, String numeratorParameter, String divisorParameter)
             throws SQLException{
 
         deleteObservationsForParameterId(parameterToCreate);
-        int i = 0;
-        ArrayList<String> paramsOfInterest = new ArrayList<>();
-        paramsOfInterest.add(numeratorParameter);
-        paramsOfInterest.add(divisorParameter);
-
-        Map<String, Map<String, ObservationDTO>> parameterMap = new HashMap<>();
-        Set<String> animalIds =  getResultsIntersectionByParameter(paramsOfInterest,parameterMap);
-
-        for (String id: animalIds){
-            if (parameterMap.get(divisorParameter) != null &&
-                    parameterMap.get(divisorParameter).get(id) != null &&
-                    parameterMap.get(divisorParameter).get(id).getDataPoint() != 0){ // denominator
-
-                try {
-                    ObservationDTO dto = parameterMap.get(numeratorParameter).get(id);
-                Parameter param = parameterRepository.getFirstByStableIdAndProcedures(parameterToCreate, dto.getProcedureStableId(), dto.getPipelineStableId());
-
-                    // Filter out calculating derived parameter for HRWL_OWT procedures
-                    if (dto.getProcedureStableId().startsWith("HRWL_OWT")) {
-                        continue;
-                    }
 
-                    Procedure proc = getProcedureFromObservation(param, dto);
-                    Datasource datasource = datasources.get(dto.getExternalDbId());
-                    Experiment currentExperiment = createNewExperiment(dto, "derived_" + parameterToCreate + "_" + i++, proc, true);
+        Derivations.Result result = Derivations.divide(getValues(numeratorParameter), getValues(divisorParameter));
 
-//                    String metadataGroup = dto.getMetadataGroup() + "_" +
-//                            parameterMap.get(divisorParameter).get(id).getMetadataGroup();
-//                    String metadata = dto.getMetadataCombined() + "_" +
-//                            parameterMap.get(divisorParameter).get(id).getMetadataCombined();
-//                    currentExperiment.setMetadataCombined(metadata);
-//                    currentExperiment.setMetadataGroup(DigestUtils.md5Hex(metadataGroup));
+        // Filter out calculating derived parameter for HRWL_OWT procedures
+        result.removeIf(dto -> dto.getProcedureStableId().startsWith("HRWL_OWT"));
 
-                    // Use the same metadata as the other parameters in this procedure
-                    currentExperiment.setMetadataCombined(dto.getMetadataCombined());
-                    currentExperiment.setMetadataGroup(dto.getMetadataGroup());
-
-                    experimentRepository.save(currentExperiment);
-
-                    Float dataPoint = dto.getDataPoint() / parameterMap.get(divisorParameter).get(id).getDataPoint();
-                    Observation observation = ObservationUtils.createSimpleObservation(ObservationType.unidimensional, dataPoint.toString(), param, animals.get(dto.getAnimalId()), datasource, currentExperiment, null);
-                    observationRepository.save(observation);
-                    
-                } catch (Exception e) {
-
-                    Map<String, ObservationDTO> m1 = parameterMap.get(numeratorParameter);
-                    Map<String, ObservationDTO> m2 = parameterMap.get(divisorParameter);
-                    Float n = null;
-                    Float d = null;
-                    if (m1!=null && m1.get(id)!=null) n = m1.get(id).getDataPoint();
-                    if (m2!=null && m2.get(id)!=null) d = m2.get(id).getDataPoint();
-
-                    String errorMsg = String.format("Error while trying to calculate %s for animal id %s, formula %s / %s (actual values %s / %s)", parameterToCreate, id, numeratorParameter, divisorParameter, n, d);
-                    logger.error(errorMsg, e);
-                    e.printStackTrace();
-
-                }
-
-            }
-        }
-        logger.info("Added " + i + " observations for " + parameterToCreate);
-        System.out.println("Added " + i + " observations for " + parameterToCreate);
-        return i;
+        return saveDerivedValues(parameterToCreate, result);
     }
 
     // ESLIM_011_001_705	100 x ( (ESLIM_011_001_006 - ( (ESLIM_011_001_007 + ESLIM_011_001_008 + ESLIM_011_001_009 + ESLIM_011_001_010 ) / 4 ) ) / ESLIM_011_001_006 )
@@ -1506,58 +1253,11 @@ public class GenerateDerivedParameters implements CommandLineRunner {
     private int copyAUC(String parameterToCreate, String parameterId)
             throws SQLException{
 
-        int i = 0;
         deleteObservationsForParameterId(parameterToCreate);
-        Map<String, ObservationDTO> increments = getIncrementalDataMapByParameter(parameterId);
-        Set<String> animalIds =  increments.keySet();
-        for (String id: animalIds){
-            if (increments.get(id).getIncrementValues().size() != 0){ // denominator, here should actually always be > 0
-                ObservationDTO dto = increments.get(id);
-                Parameter param = parameterRepository.getFirstByStableIdAndProcedures(parameterToCreate, dto.getProcedureStableId(), dto.getPipelineStableId());
 
+        Derivations.Result result = Derivations.areaUnderCurve(getSeries(parameterId));
 
-                Double dataPoint = getAUC(dto.getIncrementValues(), dto.getDiscreteValues());
-                if (dataPoint > 0){
-                    Datasource datasource = datasources.get(dto.getExternalDbId());
-                    Experiment currentExperiment = createNewExperiment(dto, "derived_" +parameterToCreate + "_" + i++, getProcedureFromObservation(param, dto), true);
-                    experimentRepository.save(currentExperiment);
-
-                    //createTimeSeriesObservationWithOriginalDate
-                    Observation observation = ObservationUtils.createSimpleObservation(ObservationType.unidimensional, dataPoint.toString(),
-                            param, animals.get(dto.getAnimalId()), datasource, currentExperiment, null);
-
-                    observationRepository.save(observation);
-                }
-            }
-        }
-        logger.info("Added " + i + " observations for " + parameterToCreate);
-        System.out.println("Added " + i + " observations for " + parameterToCreate);
-        return i;
-    }
-
-    private double getAUC(List<Double> values, List<Double> timePoints){
-        // |A| + |B|
-        double auc = 0;
-        if (values.size() != 5 || timePoints.size() != 5)
-            return -1;
-        double baseline = values.get(0);
-        for (int i = 0; i < values.size() - 1; i++){
-            if (values.get(i) - baseline < 0 && values.get(i+1) - baseline > 0 || values.get(i) - baseline > 0 && values.get(i+1) - baseline < 0){
-                // compute each triangle separately
-                double a = Math.abs(values.get(i) - baseline);
-                double b = Math.abs(values.get(i+1) - baseline);
-                double k = timePoints.get(i+1) - timePoints.get(i);
-                double y = b * k / (a + b);
-                double x = k - y;
-                auc += y * b / 2; // we know it has a 90 degree angle between y and b
-                auc += a * x / 2;
-            }
-            else {
-                double height = timePoints.get(i+1) - timePoints.get(i);
-                auc += Math.abs((values.get(i) + values.get(i+1) - 2 * baseline) * height) / 2;
-            }
-        }
-        return auc;
+        return saveDerivedValues(parameterToCreate, result);
     }
 
 
@@ -1636,37 +1336,10 @@ public class GenerateDerivedParameters implements CommandLineRunner {
             throws SQLException{
 
         deleteObservationsForParameterId(parameterToCreate);
-        int i = 0;
 
-        Map<String, ObservationDTO> increments = getIncrementalDataMapByParameter(parameterId);
-        Set<String> animalIds =  increments.keySet();
+        Derivations.Result result = Derivations.meanOfIncrements(getSeries(parameterId));
 
-        for (String id: animalIds){
-            if (increments.get(id).getIncrementValues().size() != 0){ // denominator, here should actually always be > 0
-                ObservationDTO dto = increments.get(id);
-                Parameter param = parameterRepository.getFirstByStableIdAndProcedures(parameterToCreate, dto.getProcedureStableId(), dto.getPipelineStableId());
-
-                Datasource datasource = datasources.get(dto.getExternalDbId());
-                Experiment currentExperiment = createNewExperiment(dto, "derived_" +parameterToCreate + "_" + i++, getProcedureFromObservation(param, dto), true);
-
-                experimentRepository.save(currentExperiment);
-
-                // sum_of_increments(ESLIM_010_001_001)/number_of_increments(ESLIM_010_001_001)
-                ArrayList<Double> incrementValues = dto.getIncrementValues();
-                Double dataPoint = (double) 0;
-                for (Double incrementValue : incrementValues) {
-                    dataPoint += incrementValue;
-                }
-                dataPoint = dataPoint/(incrementValues.size());
-                //createTimeSeriesObservationWithOriginalDate
-                Observation observation = ObservationUtils.createSimpleObservation(ObservationType.unidimensional, dataPoint.toString(), param, animals.get(dto.getAnimalId()), datasource, currentExperiment, null);
-
-                observationRepository.save(observation);
-            }
-        }
-        logger.info("Added " + i + " observations for " + parameterToCreate);
-        System.out.println("Added " + i + " observations for " + parameterToCreate);
-        return i;
+        return saveDerivedValues(parameterToCreate, result);
     }
 
 
@@ -1703,35 +1376,10 @@ public class GenerateDerivedParameters implements CommandLineRunner {
             throws SQLException{
 
         deleteObservationsForParameterId(parameterToCreate);
-        int i = 0;
-        Map<String, ObservationDTO> increments = getIncrementalDataMapByParameter(parameterId);
-        Set<String> animalIds =  increments.keySet();
-        for (String id: animalIds){
-            ObservationDTO dto = increments.get(id);
-            Parameter param = parameterRepository.getFirstByStableIdAndProcedures(parameterToCreate, dto.getProcedureStableId(), dto.getPipelineStableId());
 
+        Derivations.Result result = Derivations.sumOfIncrements(getSeries(parameterId));
 
-            Datasource datasource = datasources.get(dto.getExternalDbId());
-
-            Experiment currentExperiment = createNewExperiment(dto, "derived_" +parameterToCreate + "_" + i++, getProcedureFromObservation(param, dto), true);
-
-            experimentRepository.save(currentExperiment);
-
-            // sum_of_increments(ESLIM_010_001_001)/number_of_increments(ESLIM_010_001_001)
-            ArrayList<Double> incrementValues = dto.getIncrementValues();
-            Double dataPoint = 0.0;
-            for (Double incrementValue : incrementValues) {
-                dataPoint += incrementValue;
-            }
-            //createTimeSeriesObservationWithOriginalDate
-            Observation observation = ObservationUtils.createSimpleObservation(ObservationType.unidimensional, dataPoint.toString(), param, animals.get(dto.getAnimalId()), datasource, currentExperiment, null);
-
-            observationRepository.save(observation);
-        }
-
-        logger.info("Added " + i + " observations for " + parameterToCreate);
-        System.out.println("Added " + i + " observations for " + parameterToCreate);
-        return i;
+        return saveDerivedValues(parameterToCreate, result);
     }
 
     private Procedure getProcedureFromObservation(Parameter param, ObservationDTO dto) {
@@ -2689,6 +2337,81 @@ public class GenerateDerivedParameters implements CommandLineRunner {
     }
 
 
+    /**
+     * @return the unidimensional data points of {@code parameterId}, read from the database only the first time a
+     * derivation needs them
+     */
+    private SpecimenParameterStore.Values getValues(String parameterId) throws SQLException {
+        return inputs.getValues(parameterId, this::getResultsMapByParameter);
+    }
+
+    /**
+     * @return the increments of {@code parameterId}, read from the database only the first time a derivation needs
+     * them
+     */
+    private SpecimenParameterStore.Series getSeries(String parameterId) throws SQLException {
+        return inputs.getSeries(parameterId, this::getIncrementalDataMapByParameter);
+    }
+
+    /**
+     * Creates an experiment and an observation of {@code parameterToCreate} for each specimen in {@code result},
+     * saving them {@link #SAVE_BATCH_SIZE} at a time. The experiments take the procedure and metadata of the input
+     * observation the result holds for the specimen.
+     *
+     * @return the number of observations added
+     */
+    private int saveDerivedValues(String parameterToCreate, Derivations.Result result) {
+
+        int                    i            = 0;
+        Map<String, Parameter> parameters   = new HashMap<>();
+        List<Experiment>       experiments  = new ArrayList<>();
+        List<Observation>      observations = new ArrayList<>();
+
+        BitSet rows = result.getRows();
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+
+            ObservationDTO dto = result.getObservation(row);
+            try {
+                Parameter param = parameters.computeIfAbsent(dto.getProcedureStableId() + "#" + dto.getPipelineStableId(),
+                        k -> parameterRepository.getFirstByStableIdAndProcedures(parameterToCreate, dto.getProcedureStableId(), dto.getPipelineStableId()));
+
+                Datasource datasource = datasources.get(dto.getExternalDbId());
+                Experiment currentExperiment = createNewExperiment(dto, "derived_" + parameterToCreate + "_" + i++, getProcedureFromObservation(param, dto), true);
+                Observation observation = ObservationUtils.createSimpleObservation(ObservationType.unidimensional, result.format(row), param, animals.get(dto.getAnimalId()), datasource, currentExperiment, null);
+
+                experiments.add(currentExperiment);
+                observations.add(observation);
+
+            } catch (Exception e) {
+
+                String errorMsg = String.format("Error while trying to calculate %s for animal id %s (value %s)", parameterToCreate, dto.getAnimalId(), result.format(row));
+                logger.error(errorMsg, e);
+                continue;
+            }
+
+            if (experiments.size() >= SAVE_BATCH_SIZE) {
+                saveAll(experiments, observations);
+            }
+        }
+        saveAll(experiments, observations);
+
+        // Derivations that use this parameter read it again
+        inputs.invalidate(parameterToCreate);
+
+        logger.info("Added " + i + " observations for " + parameterToCreate);
+        return i;
+    }
+
+    private void saveAll(List<Experiment> experiments, List<Observation> observations) {
+
+        experimentRepository.saveAll(experiments);
+        observationRepository.saveAll(observations);
+
+        experiments.clear();
+        observations.clear();
+    }
+
+
     /**
      *
      * @param dto
@@ -2787,7 +2510,7 @@ public class GenerateDerivedParameters implements CommandLineRunner {
     }
 
 
-    public class ObservationDTO {
+    public static class ObservationDTO {
 
         private Long              animalId;
         private Long              biologicalModelId; //line level params only
@@ -0,0 +1,238 @@
+/*******************************************************************************
+ * Copyright © 2019 EMBL - European Bioinformatics Institute
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ ******************************************************************************/
+
+package org.mousephenotype.cda.loads.derived;
+
+import org.mousephenotype.cda.loads.derived.GenerateDerivedParameters.ObservationDTO;
+
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * The inputs of the derived parameters, held in memory as columns: one row per specimen (biological sample and
+ * pipeline, keyed {@code <biological sample id>#<pipeline id>}) and one column per input parameter.
+ *
+ * Each input parameter is read from the database once, however many derived parameters use it, the first time it is
+ * asked for; the derivations then run over primitive arrays indexed by row (see {@link Derivations}). Rows are shared
+ * by all the columns, so that the specimens with data for several parameters are found by intersecting the columns'
+ * {@link BitSet}s. The store is thread safe: a column asked for by several derivations at once is read by the first
+ * and waited for by the others.
+ */
+public class SpecimenParameterStore {
+
+    /**
+     * Reads the observations of one parameter, keyed by specimen.
+     */
+    @FunctionalInterface
+    public interface Reader {
+        Map<String, ObservationDTO> read(String parameterId) throws SQLException;
+    }
+
+
+    private final Map<String, Integer>              rowsBySpecimen = new HashMap<>();
+    private final Map<String, FutureTask<Values>>   values         = new ConcurrentHashMap<>();
+    private final Map<String, FutureTask<Series>>   series         = new ConcurrentHashMap<>();
+
+
+    /**
+     * @param reader reads the unidimensional observations of {@code parameterId}
+     * @return the data points of {@code parameterId}, read with {@code reader} if not read yet
+     */
+    public Values getValues(String parameterId, Reader reader) throws SQLException {
+        return getColumn(values, parameterId, () -> toValues(reader.read(parameterId)));
+    }
+
+    /**
+     * @param reader reads the observations of {@code parameterId} with their increment and discrete point values
+     * @return the increments of {@code parameterId}, read with {@code reader} if not read yet
+     */
+    public Series getSeries(String parameterId, Reader reader) throws SQLException {
+        return getColumn(series, parameterId, () -> toSeries(reader.read(parameterId)));
+    }
+
+    /**
+     * Drops the columns of {@code parameterId}, e.g. once it has been generated again, so that they are read afresh
+     * the next time they are asked for.
+     */
+    public void invalidate(String parameterId) {
+        values.remove(parameterId);
+        series.remove(parameterId);
+    }
+
+    /**
+     * @return the number of specimens seen so far, over all the columns
+     */
+    public synchronized int getRowCount() {
+        return rowsBySpecimen.size();
+    }
+
+
+    // PRIVATE METHODS
+
+
+    private <T> T getColumn(Map<String, FutureTask<T>> columns, String parameterId, Callable<T> read) throws SQLException {
+
+        FutureTask<T> task     = new FutureTask<>(read);
+        FutureTask<T> existing = columns.putIfAbsent(parameterId, task);
+        if (existing == null) {
+            existing = task;
+            task.run();
+        }
+
+        try {
+            return existing.get();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while reading " + parameterId, e);
+
+        } catch (ExecutionException e) {
+
+            // Let a later caller try again
+            columns.remove(parameterId, existing);
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new IllegalStateException("Cannot read " + parameterId, e.getCause());
+        }
+    }
+
+    /**
+     * @return the row of each of {@code specimens}, in iteration order, adding rows for the specimens not seen yet
+     */
+    private synchronized int[] getRows(Collection<String> specimens) {
+
+        int[] rows = new int[specimens.size()];
+        int   i    = 0;
+        for (String specimen : specimens) {
+            Integer row = rowsBySpecimen.get(specimen);
+            if (row == null) {
+                row = rowsBySpecimen.size();
+                rowsBySpecimen.put(specimen, row);
+            }
+            rows[i++] = row;
+        }
+
+        return rows;
+    }
+
+    private Values toValues(Map<String, ObservationDTO> observationsBySpecimen) {
+
+        int[]            rows         = getRows(observationsBySpecimen.keySet());
+        int              size         = getRowCount();
+        BitSet           present      = new BitSet(size);
+        float[]          dataPoints   = new float[size];
+        ObservationDTO[] observations = new ObservationDTO[size];
+
+        int i = 0;
+        for (ObservationDTO observation : observationsBySpecimen.values()) {
+            int row = rows[i++];
+            present.set(row);
+            dataPoints[row] = observation.getDataPoint();
+            observations[row] = observation;
+        }
+
+        return new Values(present, dataPoints, observations);
+    }
+
+    private Series toSeries(Map<String, ObservationDTO> observationsBySpecimen) {
+
+        int[]            rows         = getRows(observationsBySpecimen.keySet());
+        int              size         = getRowCount();
+        BitSet           present      = new BitSet(size);
+        int[]            starts       = new int[size];
+        int[]            counts       = new int[size];
+        ObservationDTO[] observations = new ObservationDTO[size];
+
+        int length = 0;
+        for (ObservationDTO observation : observationsBySpecimen.values()) {
+            length += observation.getIncrementValues().size();
+        }
+        double[] increments     = new double[length];
+        double[] discretePoints = new double[length];
+
+        int i     = 0;
+        int start = 0;
+        for (ObservationDTO observation : observationsBySpecimen.values()) {
+            int          row       = rows[i++];
+            List<Double> values    = observation.getIncrementValues();
+            List<Double> discretes = observation.getDiscreteValues();
+
+            present.set(row);
+            starts[row] = start;
+            counts[row] = values.size();
+            observations[row] = observation;
+            for (int j = 0; j < values.size(); j++) {
+                increments[start + j] = values.get(j);
+                discretePoints[start + j] = discretes.get(j);
+            }
+            start += values.size();
+        }
+
+        return new Series(present, starts, counts, increments, discretePoints, observations);
+    }
+
+
+    /**
+     * One data point per specimen.
+     */
+    public static class Values {
+
+        final BitSet           present;
+        final float[]          dataPoints;
+        final ObservationDTO[] observations;
+
+        Values(BitSet present, float[] dataPoints, ObservationDTO[] observations) {
+            this.present = present;
+            this.dataPoints = dataPoints;
+            this.observations = observations;
+        }
+
+        public int size() {
+            return present.cardinality();
+        }
+    }
+
+
+    /**
+     * The increments of each specimen, stored one specimen after the other: the increments of the specimen in
+     * {@code row} are {@code increments[starts[row]]} to {@code increments[starts[row] + counts[row] - 1]}, taken at
+     * the matching {@code discretePoints}.
+     */
+    public static class Series {
+
+        final BitSet           present;
+        final int[]            starts;
+        final int[]            counts;
+        final double[]         increments;
+        final double[]         discretePoints;
+        final ObservationDTO[] observations;
+
+        Series(BitSet present, int[] starts, int[] counts, double[] increments, double[] discretePoints, ObservationDTO[] observations) {
+            this.present = present;
+            this.starts = starts;
+            this.counts = counts;
+            this.increments = increments;
+            this.discretePoints = discretePoints;
+            this.observations = observations;
+        }
+
+        public int size() {
+            return present.cardinality();
+        }
+    }
+}
@@ -9,6 +9,7 @@ import org.apache.solr.client.solrj.SolrServerException;
 import org.mousephenotype.cda.enumerations.BiologicalSampleType;
 import org.mousephenotype.cda.enumerations.ObservationType;
 import org.mousephenotype.cda.loads.common.CommandLineUtils;
+import org.mousephenotype.cda.solr.SolrCursorReader;
 import org.mousephenotype.cda.solr.SolrUtils;
 import org.mousephenotype.cda.solr.service.BasicService;
 import org.mousephenotype.cda.solr.service.dto.ImpressDTO;
@@ -145,7 +146,6 @@ public class StatisticalDatasetGeneratorEpi extends BasicService implements Comm
                         // .addFilterQuery("biological_sample_group:control")
                         
                         .setFields(fields)
-                        .setRows(Integer.MAX_VALUE)
                 ;
                 
 
@@ -176,7 +176,7 @@ public class StatisticalDatasetGeneratorEpi extends BasicService implements Comm
                 String fields2 = "allele_accession_id,gene_accession_id";
                 
                 try {
-                    List<ObservationDTO> observationDTOs = experimentCore.query(q1).getBeans(ObservationDTO.class);
+                    Iterable<ObservationDTO> observationDTOs = new SolrCursorReader<>(experimentCore, q1, ObservationDTO.class);
                     Map<String, Map<String, String>> specimenParameterMap = new HashMap<>();
                     
                     for (ObservationDTO observationDTO : observationDTOs) {
@@ -518,16 +518,13 @@ public class StatisticalDatasetGeneratorEpi extends BasicService implements Comm
             .setQuery("*:*")
                 .addFilterQuery("annotate:true")
                 .addFilterQuery("observation_type:(categorical OR unidimensional) OR parameter_stable_id:IMPC_EYE_092_001")
-            .setFields(ImpressDTO.PROCEDURE_STABLE_ID, ImpressDTO.PARAMETER_STABLE_ID, ImpressDTO.HAS_OPTIONS)
-            .setRows(Integer.MAX_VALUE);
+            .setFields(ImpressDTO.PROCEDURE_STABLE_ID, ImpressDTO.PARAMETER_STABLE_ID, ImpressDTO.HAS_OPTIONS);
 
         if (parametersToLoad!= null) {
             query.addFilterQuery("parameter_stable_id:("+StringUtils.join(parametersToLoad, " OR ")+")");
         }
 
-        pipelineCore
-            .query(query)
-            .getBeans(ImpressDTO.class)
+        new SolrCursorReader<>(pipelineCore, query, ImpressDTO.class)
             .forEach(x -> {
 
                 final String procedureStableId = x.getProcedureStableId();
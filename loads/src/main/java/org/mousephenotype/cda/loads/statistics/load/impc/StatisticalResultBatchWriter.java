@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright © 2019 EMBL - European Bioinformatics Institute
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ ******************************************************************************/
+
+package org.mousephenotype.cda.loads.statistics.load.impc;
+
+import org.mousephenotype.cda.db.statistics.LightweightResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Writes statistical results through one pooled connection, with one prepared statement per kind of result
+ * (categorical, unidimensional, RR+, failed), adding each result to its statement's batch and committing every
+ * {@code batchSize} results. With {@code rewriteBatchedStatements=true} on the connection, MySQL receives each batch
+ * as a few multi-row INSERTs instead of a round trip per result.
+ *
+ * If a batch fails, it is rolled back and its results are written one at a time, so that one bad result is rejected
+ * rather than the whole batch.
+ *
+ * Instances are not thread-safe. Use one per thread (e.g. one per results file) and close it when done, which writes
+ * any results still queued and returns the connection to the pool.
+ */
+public class StatisticalResultBatchWriter implements AutoCloseable {
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final Connection                     connection;
+    private final boolean                        autoCommit;
+    private final int                            batchSize;
+    private final Map<String, PreparedStatement> statements       = new HashMap<>();
+    private final List<LightweightResult>        pending          = new ArrayList<>();
+    private final Map<String, Integer>           insertedByMethod = new TreeMap<>();
+    private       int                            inserted         = 0;
+    private       int                            rejected         = 0;
+
+    public StatisticalResultBatchWriter(DataSource dataSource) throws SQLException {
+        this(dataSource, DEFAULT_BATCH_SIZE);
+    }
+
+    public StatisticalResultBatchWriter(DataSource dataSource, int batchSize) throws SQLException {
+        this.batchSize = batchSize;
+
+        connection = dataSource.getConnection();
+        autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+    }
+
+
+    /**
+     * Queues {@code result}, writing the queued results if there are {@code batchSize} of them. Results without a
+     * statistical result to save are rejected.
+     */
+    public void add(LightweightResult result) throws SQLException {
+
+        if (result.getInsertStatement() == null) {
+            rejected++;
+            return;
+        }
+
+        PreparedStatement statement = getStatement(result.getInsertStatement());
+        result.setSaveResultParameters(statement);
+        statement.addBatch();
+        pending.add(result);
+
+        if (pending.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes and commits the queued results.
+     */
+    public void flush() throws SQLException {
+
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        try {
+            for (PreparedStatement statement : statements.values()) {
+                statement.executeBatch();
+            }
+            connection.commit();
+
+            for (LightweightResult result : pending) {
+                inserted(result);
+            }
+
+        } catch (SQLException e) {
+
+            logger.warn("Batch of {} statistical results rolled back. Writing them one at a time. Reason: {}", pending.size(), e.getLocalizedMessage());
+            connection.rollback();
+            for (PreparedStatement statement : statements.values()) {
+                statement.clearBatch();
+            }
+
+            for (LightweightResult result : pending) {
+                try {
+                    PreparedStatement statement = getStatement(result.getInsertStatement());
+                    result.setSaveResultParameters(statement);
+                    statement.executeUpdate();
+                    connection.commit();
+                    inserted(result);
+
+                } catch (SQLException re) {
+                    connection.rollback();
+                    rejected++;
+                    logger.warn("Unable to save statistical result for {} {}. Reason: {}", result.getColonyId(), result.getParameterStableId(), re.getLocalizedMessage());
+                }
+            }
+        }
+
+        pending.clear();
+    }
+
+    /**
+     * @return the number of results written so far
+     */
+    public int getInserted() {
+        return inserted;
+    }
+
+    /**
+     * @return the number of results that could not be written so far
+     */
+    public int getRejected() {
+        return rejected;
+    }
+
+    /**
+     * @return the number of results written so far, by statistical method
+     */
+    public Map<String, Integer> getInsertedByMethod() {
+        return insertedByMethod;
+    }
+
+    /**
+     * Writes any queued results, then returns the connection to the pool.
+     */
+    @Override
+    public void close() throws SQLException {
+        try {
+            flush();
+
+        } finally {
+            for (PreparedStatement statement : statements.values()) {
+                statement.close();
+            }
+            connection.setAutoCommit(autoCommit);
+            connection.close();
+        }
+    }
+
+
+    private PreparedStatement getStatement(String insert) throws SQLException {
+        PreparedStatement statement = statements.get(insert);
+        if (statement == null) {
+            statement = connection.prepareStatement(insert);
+            statements.put(insert, statement);
+        }
+
+        return statement;
+    }
+
+    private void inserted(LightweightResult result) {
+        inserted++;
+        insertedByMethod.merge(String.valueOf(result.getStatisticalMethod()), 1, Integer::sum);
+    }
+}
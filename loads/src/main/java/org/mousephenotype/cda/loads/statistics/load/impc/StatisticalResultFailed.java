@@ -5,7 +5,6 @@ import org.mousephenotype.cda.db.statistics.StatisticalResult;
 import org.mousephenotype.cda.db.utilities.SqlUtils;
 
 import java.io.Serializable;
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 
@@ -48,15 +47,14 @@ public class StatisticalResultFailed implements StatisticalResult, Serializable
 	private String classificationTag;
 
 	/**
-	 * Prepare the statement to insert this result into the database
+	 * Set the parameters of a statement prepared from the insert statement to insert this result into the database
 	 *
-	 * @param connection connection object to use to save the result
+	 * @param s statement prepared from {@link #getInsertStatement()}
 	 * @param result the base result object to populate the common parameters
 	 * @throws SQLException
 	 */
-	public PreparedStatement getSaveResultStatement(Connection connection, LightweightResult result) throws SQLException {
+	public void setSaveResultParameters(PreparedStatement s, LightweightResult result) throws SQLException {
 
-		PreparedStatement s = connection.prepareStatement(insertStatement);
 		int i = 1;
 
 		SqlUtils.setSqlParameter(s, result.getControlId(), i++);
@@ -127,8 +125,6 @@ public class StatisticalResultFailed implements StatisticalResult, Serializable
 		SqlUtils.setSqlParameter(s, (String)null, i++);
 		SqlUtils.setSqlParameter(s, (String)null, i++);
 		SqlUtils.setSqlParameter(s, (String)null, i++);
-
-		return s;
 	}
 
 	// Generated methods
@@ -25,15 +25,22 @@ import org.springframework.util.Assert;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.sql.DataSource;
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @SpringBootApplication
 @Import(value = {StatisticalResultLoaderConfig.class})
@@ -41,8 +48,12 @@ public class StatisticalResultLoader extends BasicService implements CommandLine
 
     final private Logger logger = LoggerFactory.getLogger(getClass());
 
+    // How many results files are loaded at once, each through its own connection
+    private static final int DEFAULT_THREADS = 8;
+
     protected DataSource    komp2DataSource;
     protected MpTermService mpTermService;
+    protected int           batchSize = StatisticalResultBatchWriter.DEFAULT_BATCH_SIZE;
 
 
     protected Map<String, NameIdDTO> nameIdDtoByOrganisationName  = new HashMap<>();
@@ -1000,46 +1011,125 @@ public class StatisticalResultLoader extends BasicService implements CommandLine
         }
     }
 
-    private void processFile(String loc) throws IOException {
+    /**
+     * Streams the lines of one results file into a {@link StatisticalResultBatchWriter}.
+     *
+     * @return the rows parsed, inserted and rejected
+     */
+    protected FileSummary processFile(String loc) throws IOException {
 
-        try {
-            Map<String, Integer> counts = new HashMap<>();
+        Path        path     = Paths.get(loc);
+        String      filename = path.getFileName().toString();
+        FileSummary summary  = new FileSummary(filename);
 
-            for (String line : Files.readAllLines(Paths.get(loc))) {
+        try (BufferedReader reader = Files.newBufferedReader(path);
+             StatisticalResultBatchWriter writer = new StatisticalResultBatchWriter(komp2DataSource, batchSize)) {
 
-                if (line.startsWith("#")) {
-                    // This is a comment, see if there is
-                }
+            String line;
+            while ((line = reader.readLine()) != null) {
 
-                LightweightResult result = getBaseResult(getResult(line, Paths.get(loc).getFileName().toString()));
+                LightweightResult result;
+                try {
+                    result = getBaseResult(getResult(line, filename));
 
-                if (result == null) {
-                    // Skipping record
-                    continue;
+                    if (result == null) {
+                        // Skipping record
+                        continue;
+                    }
+
+                    summary.parsed++;
+                    writer.add(result);
+
+                } catch (RuntimeException e) {
+                    summary.rejected++;
+                    logger.warn("Could not process line from file {}: {}. Reason: {}", loc, line, e.getLocalizedMessage());
                 }
+            }
+
+            writer.flush();
 
-                try (Connection connection = komp2DataSource.getConnection()) {
+            summary.inserted = writer.getInserted();
+            summary.rejected += writer.getRejected();
+            for (Map.Entry<String, Integer> method : writer.getInsertedByMethod().entrySet()) {
+                logger.info("  ADDED " + method.getValue() + " statistical results for method: " + method.getKey());
+            }
 
-                    PreparedStatement p = result.getSaveResultStatement(connection);
-                    p.executeUpdate();
+        } catch (SQLException e) {
+            logger.error("Could not save results from file: " + loc, e);
+        }
 
-                    counts.put(result.getStatisticalMethod(), counts.getOrDefault(result.getStatisticalMethod(), 0) + 1);
+        logger.info("{}", summary);
 
-                } catch (SQLException e) {
-                    e.printStackTrace();
-                }
+        return summary;
+    }
 
-            }
+    /**
+     * Loads {@code files}, up to {@code threads} at once. Every file is attempted even if others fail.
+     */
+    protected void processFiles(List<Path> files, int threads) throws InterruptedException {
+
+        ExecutorService                 executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, files.size())));
+        Map<Path, Future<FileSummary>>  tasks    = new LinkedHashMap<>();
+        FileSummary                     total    = new FileSummary(files.size() + " files");
+
+        for (Path file : files) {
+            tasks.put(file, executor.submit(() -> {
+                logger.info("Processing file: " + file.toAbsolutePath().toString());
+                return processFile(file.toAbsolutePath().toString());
+            }));
+        }
+        executor.shutdown();
 
-            for(String method : counts.keySet()) {
-                logger.info("  ADDED " + counts.get(method) + " statistical results for method: " + method);
+        for (Map.Entry<Path, Future<FileSummary>> task : tasks.entrySet()) {
+            try {
+                total.add(task.getValue().get());
+
+            } catch (ExecutionException e) {
+                logger.warn("IO error proccessing file: " + task.getKey().toAbsolutePath().toString(), e.getCause());
             }
+        }
+
+        logger.info("Total: {}", total);
+    }
+
 
-        } catch (Exception e) {
-          logger.error("Could not process file: " + loc, e);
+    /**
+     * The number of rows of a results file that were parsed into results, and of those how many were inserted and
+     * how many rejected (unparseable lines, or results the database refused).
+     */
+    protected static class FileSummary {
+
+        final String filename;
+        int          parsed   = 0;
+        int          inserted = 0;
+        int          rejected = 0;
+
+        FileSummary(String filename) {
+            this.filename = filename;
         }
 
+        void add(FileSummary other) {
+            parsed += other.parsed;
+            inserted += other.inserted;
+            rejected += other.rejected;
+        }
 
+        public int getParsed() {
+            return parsed;
+        }
+
+        public int getInserted() {
+            return inserted;
+        }
+
+        public int getRejected() {
+            return rejected;
+        }
+
+        @Override
+        public String toString() {
+            return filename + ": " + parsed + " rows parsed, " + inserted + " inserted, " + rejected + " rejected";
+        }
     }
 
     @Override
@@ -1054,12 +1144,18 @@ public class StatisticalResultLoader extends BasicService implements CommandLine
         // parameter to indicate the location of the result file(s)
         OptionParser parser = CommandLineUtils.getOptionParser();
         parser.accepts("location").withRequiredArg().ofType(String.class).isRequired();
+        parser.accepts("threads").withRequiredArg().ofType(Integer.class);
+        parser.accepts("batchSize").withRequiredArg().ofType(Integer.class);
         OptionSet options = parser.parse(strings);
         if ( ! options.hasArgument("location") ) {
             logger.error("location argument missing");
             return;
         }
         String fileLocation = (String) options.valuesOf("location").get(0);
+        int    threads      = (options.has("threads") ? (Integer) options.valueOf("threads") : DEFAULT_THREADS);
+        if (options.has("batchSize")) {
+            batchSize = (Integer) options.valueOf("batchSize");
+        }
 
         // If the location is a single file, parse it
         boolean regularFile = Files.isRegularFile(Paths.get(fileLocation));
@@ -1086,20 +1182,16 @@ public class StatisticalResultLoader extends BasicService implements CommandLine
         } else if (directory) {
 
             // process all regular files in the directory that end in "result" and have "tsv" in the filename
-            Files
-                .walk(Paths.get(fileLocation))
-                .filter(p -> p.toString().endsWith("result"))
-                .filter(p -> p.toString().contains(".tsv"))
-                .filter(p -> Files.isRegularFile(p.toAbsolutePath()))
-                .parallel()
-                .forEach(p -> {
-                    logger.info("Processing file: " + p.toAbsolutePath().toString());
-                    try {
-                        processFile(p.toAbsolutePath().toString());
-                    } catch (IOException e) {
-                        logger.warn("IO error proccessing file: " + p.toAbsolutePath().toString());
-                    }
-                });
+            List<Path> files;
+            try (Stream<Path> paths = Files.walk(Paths.get(fileLocation))) {
+                files = paths
+                    .filter(p -> p.toString().endsWith("result"))
+                    .filter(p -> p.toString().contains(".tsv"))
+                    .filter(p -> Files.isRegularFile(p.toAbsolutePath()))
+                    .collect(Collectors.toList());
+            }
+
+            processFiles(files, threads);
 
         } else {
             logger.warn("File " + fileLocation + " is not a regular file or a directory");
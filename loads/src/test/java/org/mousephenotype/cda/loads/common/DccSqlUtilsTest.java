@@ -0,0 +1,69 @@
+package org.mousephenotype.cda.loads.common;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.sql.Connection;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DccSqlUtilsTest {
+
+    private EmbeddedDatabase database;
+    private DccSqlUtils      dccSqlUtils;
+
+    @Before
+    public void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .ignoreFailedDrops(true)
+                .addScript("sql/h2/dcc/createExperiment.sql")
+                .build();
+
+        NamedParameterJdbcTemplate jdbc = new NamedParameterJdbcTemplate(database);
+        jdbc.getJdbcOperations().execute("ALTER TABLE mediaParameter_procedureMetadata ADD UNIQUE (mediaParameter_pk, procedureMetadata_pk)");
+        jdbc.getJdbcOperations().execute("SET DEFAULT_LOCK_TIMEOUT 100");
+
+        dccSqlUtils = new DccSqlUtils(jdbc);
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+
+    // A lock wait timeout aborts the caller's transaction, so it must not be logged and ignored like other failures.
+    @Test(expected = TransientDataAccessException.class)
+    public void testLockTimeoutIsRethrown() throws Exception {
+
+        try (Connection lockingConnection = database.getConnection();
+             Statement statement = lockingConnection.createStatement()) {
+
+            lockingConnection.setAutoCommit(false);
+            statement.execute("INSERT INTO mediaParameter_procedureMetadata (mediaParameter_pk, procedureMetadata_pk) VALUES (1, 1)");
+
+            try {
+                dccSqlUtils.insertMediaParameter_procedureMetadata(1, 1);
+            } finally {
+                lockingConnection.rollback();
+            }
+        }
+    }
+
+    @Test
+    public void testOtherFailuresAreLogged() {
+
+        assertEquals(0, dccSqlUtils.insertProcedure(null));
+        assertTrue(dccSqlUtils.insertProcedure("IMPC_BWT_001") > 0);
+    }
+}
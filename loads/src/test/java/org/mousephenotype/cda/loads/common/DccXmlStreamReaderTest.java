@@ -0,0 +1,132 @@
+package org.mousephenotype.cda.loads.common;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mousephenotype.cda.loads.exceptions.DataLoadException;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DccXmlStreamReaderTest {
+
+    // The classes listed in this package's jaxb.index
+    private static final String CONTEXT_PATH = "org.mousephenotype.cda.loads.common";
+    private static final String NAMESPACE    = "http://www.mousephenotype.org/dcc/exportlibrary/datastructure/core/procedure";
+
+    private static final String CENTRE_PROCEDURE_SET =
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<centreProcedureSet xmlns=\"" + NAMESPACE + "\">\n" +
+            "    <centre centreID=\"Ucd\" pipeline=\"UCD_001\" project=\"DTCC\">\n" +
+            "        <experiment experimentID=\"e1\"><procedure procedureID=\"IMPC_BWT_001\"/></experiment>\n" +
+            "        <line colonyID=\"c1\"><procedure procedureID=\"IMPC_VIA_001\"/></line>\n" +
+            "        <experiment experimentID=\"e2\"><procedure procedureID=\"IMPC_CAL_001\"/></experiment>\n" +
+            "    </centre>\n" +
+            "    <centre centreID=\"Wtsi\" pipeline=\"MGP_001\" project=\"MGP\">\n" +
+            "        <experiment experimentID=\"e3\"><procedure procedureID=\"IMPC_BWT_001\"/></experiment>\n" +
+            "    </centre>\n" +
+            "</centreProcedureSet>\n";
+
+    @XmlAccessorType(XmlAccessType.FIELD)
+    public static class Experiment {
+        @XmlAttribute
+        private String experimentID;
+
+        @XmlElement(namespace = NAMESPACE)
+        private Procedure procedure;
+    }
+
+    @XmlAccessorType(XmlAccessType.FIELD)
+    public static class Procedure {
+        @XmlAttribute
+        private String procedureID;
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String write(String xml) throws Exception {
+        File file = folder.newFile();
+        Files.write(file.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+
+        return file.getAbsolutePath();
+    }
+
+
+    @Test
+    public void testUnmarshalsRequestedElementsInFileOrder() throws Exception {
+
+        List<String> actual = new ArrayList<>();
+
+        try (DccXmlStreamReader reader = new DccXmlStreamReader(CONTEXT_PATH, write(CENTRE_PROCEDURE_SET))) {
+            String name;
+            while ((name = reader.nextElement("centre", "experiment")) != null) {
+                if (name.equals("centre")) {
+                    actual.add(reader.getAttribute("centreID") + " " + reader.getAttribute("pipeline") + " " + reader.getAttribute("project"));
+                } else {
+                    Experiment experiment = reader.unmarshal(Experiment.class);
+                    actual.add(experiment.experimentID + " " + experiment.procedure.procedureID);
+                }
+            }
+        }
+
+        assertEquals(Arrays.asList("Ucd UCD_001 DTCC", "e1 IMPC_BWT_001", "e2 IMPC_CAL_001", "Wtsi MGP_001 MGP", "e3 IMPC_BWT_001"), actual);
+    }
+
+    @Test
+    public void testElementsNotUnmarshalledAreDescendedInto() throws Exception {
+
+        List<String> actual = new ArrayList<>();
+
+        try (DccXmlStreamReader reader = new DccXmlStreamReader(CONTEXT_PATH, write(CENTRE_PROCEDURE_SET))) {
+            String name;
+            while ((name = reader.nextElement("line", "procedure")) != null) {
+                actual.add(name.equals("line") ? reader.getAttribute("colonyID") : reader.getAttribute("procedureID"));
+            }
+
+            assertNull(reader.nextElement("line", "procedure"));
+        }
+
+        assertEquals(Arrays.asList("IMPC_BWT_001", "c1", "IMPC_VIA_001", "IMPC_CAL_001", "IMPC_BWT_001"), actual);
+    }
+
+    @Test
+    public void testMissingAttributeIsNull() throws Exception {
+
+        try (DccXmlStreamReader reader = new DccXmlStreamReader(CONTEXT_PATH, write(CENTRE_PROCEDURE_SET))) {
+            assertEquals("centre", reader.nextElement("centre"));
+            assertNull(reader.getAttribute("colonyID"));
+        }
+    }
+
+    @Test
+    public void testMalformedFileReportsItsLocation() throws Exception {
+
+        String filename = write("<centreProcedureSet>\n<centre centreID=\"Ucd\">\n</centreProcedureSet>\n");
+
+        try (DccXmlStreamReader reader = new DccXmlStreamReader(CONTEXT_PATH, filename)) {
+            while (reader.nextElement("experiment") != null) {
+                // Nothing to do
+            }
+            fail("Expected a DataLoadException");
+
+        } catch (DataLoadException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Unable to read " + filename + " at line 3"));
+        }
+    }
+
+    @Test(expected = DataLoadException.class)
+    public void testMissingFile() throws Exception {
+        new DccXmlStreamReader(CONTEXT_PATH, new File(folder.getRoot(), "missing.xml").getAbsolutePath());
+    }
+}
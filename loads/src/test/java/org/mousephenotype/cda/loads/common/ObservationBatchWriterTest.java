@@ -0,0 +1,188 @@
+package org.mousephenotype.cda.loads.common;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class ObservationBatchWriterTest {
+
+    private static final String UNIDIMENSIONAL_INSERT         = "INSERT INTO unidimensional_observation (id, data_point) VALUES (:observationPk, :dataPoint)";
+    private static final String EXPERIMENT_OBSERVATION_INSERT = "INSERT INTO experiment_observation (experiment_id, observation_id) VALUES (:experimentPk, :observationPk)";
+
+    private EmbeddedDatabase           database;
+    private NamedParameterJdbcTemplate jdbc;
+    private CdaSqlUtils                cdaSqlUtils;
+
+    @Before
+    public void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .ignoreFailedDrops(true)
+                .addScript("sql/h2/cda/schema.sql")
+                .build();
+        jdbc = new NamedParameterJdbcTemplate(database);
+        cdaSqlUtils = new CdaSqlUtils(jdbc);
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    private Map<String, Object> observation(String parameterStableId) {
+        Map<String, Object> parameterMap = new HashMap<>();
+        parameterMap.put("dbId", 1);
+        parameterMap.put("biologicalSampleId", 1);
+        parameterMap.put("parameterId", 1);
+        parameterMap.put("parameterStableId", parameterStableId);
+        parameterMap.put("sequenceId", null);
+        parameterMap.put("populationId", 0);
+        parameterMap.put("observationType", "unidimensional");
+        parameterMap.put("missing", 0);
+        parameterMap.put("parameterStatus", null);
+        parameterMap.put("parameterStatusMessage", null);
+
+        return parameterMap;
+    }
+
+    private Map<String, Object> row(long observationPk, String name, Object value) {
+        Map<String, Object> parameterMap = new HashMap<>();
+        parameterMap.put("observationPk", observationPk);
+        parameterMap.put(name, value);
+
+        return parameterMap;
+    }
+
+    private int count(String table) {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM " + table, new HashMap<>(), Integer.class);
+    }
+
+    @Test
+    public void testPartialFinalBatchIsFlushed() {
+
+        ObservationBatchWriter writer = new ObservationBatchWriter(jdbc, cdaSqlUtils, new ObservationIdAllocator(jdbc), 5, null);
+
+        for (int i = 0; i < 7; i++) {
+            writer.addObservation(observation("IMPC_BWT_001_001"));
+        }
+
+        // The fifth row filled a batch and was written; the last two are still queued.
+        assertEquals(5, count("observation"));
+
+        writer.flush();
+        assertEquals(7, count("observation"));
+
+        // Flushing again writes nothing more.
+        writer.flush();
+        assertEquals(7, count("observation"));
+    }
+
+    @Test
+    public void testRowsAreWrittenAfterTheirObservation() {
+
+        LoadMetrics            metrics  = new LoadMetrics("test");
+        ObservationBatchWriter writer   = new ObservationBatchWriter(jdbc, cdaSqlUtils, new ObservationIdAllocator(jdbc), 1000, metrics);
+        List<Long>             deferred = new ArrayList<>();
+
+        for (int i = 0; i < 3; i++) {
+            long observationPk = writer.addObservation(observation("IMPC_BWT_001_001"));
+            writer.add(EXPERIMENT_OBSERVATION_INSERT, row(observationPk, "experimentPk", 1));
+            writer.addDetail(UNIDIMENSIONAL_INSERT, row(observationPk, "dataPoint", 20.0f + i));
+            writer.afterFlush(observationPk, () -> deferred.add(observationPk));
+        }
+        assertEquals(0, count("observation"));
+        assertEquals(0, deferred.size());
+
+        writer.flush();
+
+        assertEquals(3, count("observation"));
+        assertEquals(3, count("experiment_observation"));
+        assertEquals(3, count("unidimensional_observation"));
+        assertEquals(3, deferred.size());
+        assertEquals(3, metrics.getTableRows("unidimensional_observation").intValue());
+    }
+
+    @Test
+    public void testDeferredActionsRunAfterFlushesOnSize() {
+
+        ObservationBatchWriter writer   = new ObservationBatchWriter(jdbc, cdaSqlUtils, new ObservationIdAllocator(jdbc), 4, null);
+        List<Long>             deferred = new ArrayList<>();
+
+        for (int i = 0; i < 3; i++) {
+            long observationPk = writer.addObservation(observation("IMPC_BWT_001_001"));
+            writer.add(EXPERIMENT_OBSERVATION_INSERT, row(observationPk, "experimentPk", 1));
+            writer.addDetail(UNIDIMENSIONAL_INSERT, row(observationPk, "dataPoint", 20.0f + i));
+            writer.afterFlush(observationPk, () -> {
+                assertEquals(1, jdbc.queryForObject("SELECT COUNT(*) FROM unidimensional_observation WHERE id = " + observationPk, new HashMap<>(), Integer.class).intValue());
+                deferred.add(observationPk);
+            });
+        }
+
+        // The fourth and eighth rows filled a batch and ran the actions of the first two observations.
+        assertEquals(2, deferred.size());
+
+        writer.flush();
+        assertEquals(3, count("unidimensional_observation"));
+        assertEquals(3, deferred.size());
+    }
+
+    @Test
+    public void testRowsOfAFailedObservationWrittenInAnEarlierBatchAreDropped() {
+
+        ObservationBatchWriter writer   = new ObservationBatchWriter(jdbc, cdaSqlUtils, new ObservationIdAllocator(jdbc), 1, null);
+        List<Long>             deferred = new ArrayList<>();
+
+        // Each row is its own batch, so the observation has failed before its dependent rows are queued.
+        long observationPk = writer.addObservation(observation(null));
+        writer.add(EXPERIMENT_OBSERVATION_INSERT, row(observationPk, "experimentPk", 1));
+        writer.addDetail(UNIDIMENSIONAL_INSERT, row(observationPk, "dataPoint", 20.0f));
+        writer.afterFlush(observationPk, () -> deferred.add(observationPk));
+        writer.flush();
+
+        assertEquals(0, count("observation"));
+        assertEquals(0, count("experiment_observation"));
+        assertEquals(0, count("unidimensional_observation"));
+        assertEquals(0, deferred.size());
+    }
+
+    @Test
+    public void testFailedRowsAreRetriedOneAtATime() {
+
+        ObservationBatchWriter writer   = new ObservationBatchWriter(jdbc, cdaSqlUtils, new ObservationIdAllocator(jdbc), 1000, null);
+        List<Long>             deferred = new ArrayList<>();
+
+        // The second observation violates NOT NULL, and the third observation's detail row does too.
+        long[] observationPks = new long[3];
+        for (int i = 0; i < 3; i++) {
+            observationPks[i] = writer.addObservation(observation(i == 1 ? null : "IMPC_BWT_001_001"));
+            long observationPk = observationPks[i];
+            writer.add(EXPERIMENT_OBSERVATION_INSERT, row(observationPk, "experimentPk", 1));
+            writer.addDetail(UNIDIMENSIONAL_INSERT, row(observationPk, "dataPoint", (i == 2 ? null : 20.0f)));
+            writer.afterFlush(observationPk, () -> deferred.add(observationPk));
+        }
+
+        writer.flush();
+
+        // The failed observation and its dependent rows are dropped; the one with a failed detail row is marked missing.
+        assertEquals(2, count("observation"));
+        assertEquals(2, count("experiment_observation"));
+        assertEquals(1, count("unidimensional_observation"));
+        assertEquals(1, jdbc.queryForObject("SELECT missing FROM observation WHERE id = " + observationPks[2], new HashMap<>(), Integer.class).intValue());
+
+        // Only the fully written observation runs its deferred action.
+        assertEquals(1, deferred.size());
+        assertEquals(observationPks[0], deferred.get(0).longValue());
+    }
+}
@@ -0,0 +1,120 @@
+package org.mousephenotype.cda.loads.common;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class ObservationIdAllocatorTest {
+
+    private EmbeddedDatabase           database;
+    private NamedParameterJdbcTemplate jdbc;
+
+    @Before
+    public void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .ignoreFailedDrops(true)
+                .addScript("sql/h2/cda/schema.sql")
+                .build();
+        jdbc = new NamedParameterJdbcTemplate(database);
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    private Map<String, Object> observation() {
+        Map<String, Object> parameterMap = new HashMap<>();
+        parameterMap.put("dbId", 1);
+        parameterMap.put("biologicalSampleId", 1);
+        parameterMap.put("parameterId", 1);
+        parameterMap.put("parameterStableId", "IMPC_BWT_001_001");
+        parameterMap.put("sequenceId", null);
+        parameterMap.put("populationId", 0);
+        parameterMap.put("observationType", "unidimensional");
+        parameterMap.put("missing", 0);
+        parameterMap.put("parameterStatus", null);
+        parameterMap.put("parameterStatusMessage", null);
+
+        return parameterMap;
+    }
+
+    @Test
+    public void testFirstBlockStartsAboveMaxId() {
+
+        jdbc.update("INSERT INTO observation (id, db_id, parameter_id, parameter_stable_id, population_id) VALUES (41, 1, 1, 'IMPC_BWT_001_001', 0)", new HashMap<>());
+
+        ObservationIdAllocator allocator = new ObservationIdAllocator(jdbc, 10);
+
+        assertEquals(42, allocator.allocateBlock());
+        assertEquals(52, allocator.allocateBlock());
+    }
+
+    @Test
+    public void testConcurrentBlocksDoNotOverlap() throws Exception {
+
+        ObservationIdAllocator allocator = new ObservationIdAllocator(jdbc, 7);
+        ExecutorService        executor  = Executors.newFixedThreadPool(8);
+
+        try {
+            List<Future<List<Long>>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                futures.add(executor.submit(() -> {
+                    List<Long> starts = new ArrayList<>();
+                    for (int i = 0; i < 1000; i++) {
+                        starts.add(allocator.allocateBlock());
+                    }
+                    return starts;
+                }));
+            }
+
+            // Every block is 7 ids long, so the sorted block starts must be exactly 7 apart.
+            List<Long> starts = new ArrayList<>();
+            for (Future<List<Long>> future : futures) {
+                starts.addAll(future.get());
+            }
+            Collections.sort(starts);
+
+            assertEquals(8000, starts.size());
+            for (int i = 1; i < starts.size(); i++) {
+                assertEquals(starts.get(i - 1) + 7, starts.get(i).longValue());
+            }
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testWritersSharingAnAllocatorUseDistinctIds() {
+
+        ObservationIdAllocator allocator = new ObservationIdAllocator(jdbc, 3);
+        ObservationBatchWriter first     = new ObservationBatchWriter(jdbc, null, allocator);
+        ObservationBatchWriter second    = new ObservationBatchWriter(jdbc, null, allocator);
+
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < 10; i++) {
+            assertTrue(ids.add(first.addObservation(observation())));
+            assertTrue(ids.add(second.addObservation(observation())));
+        }
+        first.flush();
+        second.flush();
+
+        assertEquals(20, jdbc.queryForObject("SELECT COUNT(*) FROM observation", new HashMap<>(), Integer.class).intValue());
+
+        // An allocator created for the next load starts above everything written, including unused ids.
+        long next = new ObservationIdAllocator(jdbc, 3).allocateBlock();
+        assertTrue(next > Collections.max(ids));
+    }
+}
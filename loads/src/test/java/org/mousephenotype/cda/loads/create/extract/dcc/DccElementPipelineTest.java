@@ -0,0 +1,168 @@
+package org.mousephenotype.cda.loads.create.extract.dcc;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mousephenotype.cda.loads.exceptions.DataLoadException;
+import org.springframework.dao.DeadlockLoserDataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class DccElementPipelineTest {
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate     jdbc;
+
+    @Before
+    public void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        jdbc = new JdbcTemplate(database);
+        jdbc.execute("CREATE TABLE element (id INT NOT NULL PRIMARY KEY)");
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    // Writes the element as the DCC extractors do: a row that can't be written is logged and skipped.
+    private boolean insert(int element) {
+        try {
+            jdbc.update("INSERT INTO element (id) VALUES (?)", element);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    private static String kindOf(int element) {
+        return (element % 2 == 0 ? "even" : "odd");
+    }
+
+    private static DccElementPipeline.ElementReader<Integer> elements(int count) {
+        return sink -> {
+            for (int i = 0; i < count; i++) {
+                sink.accept(i);
+            }
+        };
+    }
+
+    private List<Integer> getWrittenElements() {
+        return jdbc.queryForList("SELECT id FROM element ORDER BY id", Integer.class);
+    }
+
+
+    @Test
+    public void testElementsAreWrittenInBatchTransactions() throws Exception {
+
+        List<Integer>  written       = new ArrayList<>();
+        AtomicBoolean  inTransaction = new AtomicBoolean(true);
+
+        DccElementPipeline<Integer> pipeline = new DccElementPipeline<>(database, 3, 2, DccElementPipelineTest::kindOf, element -> {
+            inTransaction.compareAndSet(true, TransactionSynchronizationManager.isActualTransactionActive());
+            written.add(element);
+            return insert(element);
+        });
+
+        DccElementPipeline.Counts counts = pipeline.run("elements.xml", elements(7));
+
+        assertTrue(inTransaction.get());
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6), written);
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6), getWrittenElements());
+        assertEquals(4, counts.getWritten("even"));
+        assertEquals(3, counts.getWritten("odd"));
+        assertEquals(0, counts.getFailed("even") + counts.getFailed("odd"));
+    }
+
+    @Test
+    public void testFailedElementsAreCounted() throws Exception {
+
+        jdbc.update("INSERT INTO element (id) VALUES (3)");
+
+        DccElementPipeline<Integer> pipeline = new DccElementPipeline<>(database, 4, 10, DccElementPipelineTest::kindOf, this::insert);
+
+        DccElementPipeline.Counts counts = pipeline.run("elements.xml", elements(6));
+
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5), getWrittenElements());
+        assertEquals(3, counts.getWritten("even"));
+        assertEquals(2, counts.getWritten("odd"));
+        assertEquals(1, counts.getFailed("odd"));
+    }
+
+    // A deadlock part way through a batch must undo the elements the batch has already written, else they would be
+    // committed with the rest of the batch and then fail as duplicates when the batch is written again.
+    @Test
+    public void testDeadlockMidBatchRollsBackAndRewritesTheBatch() throws Exception {
+
+        AtomicBoolean deadlocked = new AtomicBoolean(false);
+
+        DccElementPipeline<Integer> pipeline = new DccElementPipeline<>(database, 4, 10, DccElementPipelineTest::kindOf, element -> {
+            boolean isWritten = insert(element);
+            if ((element == 6) && deadlocked.compareAndSet(false, true)) {
+                throw new DeadlockLoserDataAccessException("Deadlock found when trying to get lock", null);
+            }
+            return isWritten;
+        });
+
+        DccElementPipeline.Counts counts = pipeline.run("elements.xml", elements(10));
+
+        assertTrue(deadlocked.get());
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), getWrittenElements());
+        assertEquals(5, counts.getWritten("even"));
+        assertEquals(5, counts.getWritten("odd"));
+        assertEquals(0, counts.getFailed("even") + counts.getFailed("odd"));
+    }
+
+    @Test
+    public void testReadFailureKeepsWrittenElements() {
+
+        DccElementPipeline<Integer> pipeline = new DccElementPipeline<>(database, 2, 10, DccElementPipelineTest::kindOf, this::insert);
+
+        try {
+            pipeline.run("elements.xml", sink -> {
+                elements(3).read(sink);
+                throw new DataLoadException("Unexpected end of file");
+            });
+            fail("Expected a DataLoadException");
+
+        } catch (DataLoadException e) {
+            assertEquals("Unexpected end of file", e.getMessage());
+        }
+
+        assertEquals(Arrays.asList(0, 1, 2), getWrittenElements());
+    }
+
+    @Test
+    public void testExtractFilesAttemptsEveryFile() {
+
+        Set<String> extracted = Collections.synchronizedSet(new HashSet<>());
+
+        try {
+            DccElementPipeline.extractFiles(Arrays.asList("a.xml", "bad.xml", "c.xml"), 2, filename -> {
+                extracted.add(filename);
+                if (filename.equals("bad.xml")) {
+                    throw new DataLoadException("Unable to read " + filename);
+                }
+                return new DccElementPipeline.Counts();
+            });
+            fail("Expected a DataLoadException");
+
+        } catch (DataLoadException e) {
+            assertEquals("Unable to read bad.xml", e.getMessage());
+        }
+
+        assertEquals(new HashSet<>(Arrays.asList("a.xml", "bad.xml", "c.xml")), extracted);
+    }
+}
@@ -0,0 +1,190 @@
+package org.mousephenotype.cda.loads.derived;
+
+import org.mousephenotype.cda.loads.derived.GenerateDerivedParameters.ObservationDTO;
+import org.mousephenotype.cda.loads.derived.SpecimenParameterStore.Series;
+import org.mousephenotype.cda.loads.derived.SpecimenParameterStore.Values;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the main kinds of derivation (division, mean of increments and area under the curve) computed over
+ * specimen-keyed maps of boxed values, as {@link GenerateDerivedParameters} used to, with the same derivations computed
+ * by {@link Derivations} over the primitive columns of a {@link SpecimenParameterStore}, on generated data.
+ *
+ * Run the main method from the test classpath (e.g. from the IDE). Not run by the build.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DerivationsBenchmark {
+
+    private static final int SPECIMENS  = 50000;
+    private static final int INCREMENTS = 5;
+
+    private Map<String, Float>        numeratorMap;
+    private Map<String, Float>        divisorMap;
+    private Map<String, List<Double>> incrementsMap;
+    private Map<String, List<Double>> timePointsMap;
+
+    private Values numerator;
+    private Values divisor;
+    private Series series;
+
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(DerivationsBenchmark.class.getSimpleName()).build()).run();
+    }
+
+
+    @Setup
+    public void setUp() {
+
+        Random random = new Random(42);
+
+        numeratorMap = new HashMap<>();
+        divisorMap = new HashMap<>();
+        incrementsMap = new HashMap<>();
+        timePointsMap = new HashMap<>();
+
+        BitSet   numeratorRows   = new BitSet(SPECIMENS);
+        BitSet   divisorRows     = new BitSet(SPECIMENS);
+        float[]  numeratorValues = new float[SPECIMENS];
+        float[]  divisorValues   = new float[SPECIMENS];
+        int[]    starts          = new int[SPECIMENS];
+        int[]    counts          = new int[SPECIMENS];
+        double[] increments      = new double[SPECIMENS * INCREMENTS];
+        double[] timePoints      = new double[SPECIMENS * INCREMENTS];
+
+        for (int row = 0; row < SPECIMENS; row++) {
+            String specimen = row + "#" + (row % 3);
+
+            // Most specimens have both parameters, as in the DXA procedure
+            if (random.nextInt(10) > 0) {
+                numeratorValues[row] = 5 + random.nextFloat() * 20;
+                numeratorRows.set(row);
+                numeratorMap.put(specimen, numeratorValues[row]);
+            }
+            if (random.nextInt(10) > 0) {
+                divisorValues[row] = 15 + random.nextFloat() * 30;
+                divisorRows.set(row);
+                divisorMap.put(specimen, divisorValues[row]);
+            }
+
+            List<Double> values = new ArrayList<>();
+            List<Double> times  = new ArrayList<>();
+            starts[row] = row * INCREMENTS;
+            counts[row] = INCREMENTS;
+            for (int i = 0; i < INCREMENTS; i++) {
+                increments[row * INCREMENTS + i] = 5 + random.nextDouble() * 25;
+                timePoints[row * INCREMENTS + i] = i * 30;
+                values.add(increments[row * INCREMENTS + i]);
+                times.add(timePoints[row * INCREMENTS + i]);
+            }
+            incrementsMap.put(specimen, values);
+            timePointsMap.put(specimen, times);
+        }
+
+        numerator = new Values(numeratorRows, numeratorValues, new ObservationDTO[SPECIMENS]);
+        divisor = new Values(divisorRows, divisorValues, new ObservationDTO[SPECIMENS]);
+
+        BitSet allRows = new BitSet(SPECIMENS);
+        allRows.set(0, SPECIMENS);
+        series = new Series(allRows, starts, counts, increments, timePoints, new ObservationDTO[SPECIMENS]);
+    }
+
+
+    @Benchmark
+    public int boxedDivision() {
+
+        Set<String> specimens = new HashSet<>(numeratorMap.keySet());
+        specimens.retainAll(divisorMap.keySet());
+
+        Map<String, Float> result = new HashMap<>();
+        for (String specimen : specimens) {
+            if (divisorMap.get(specimen) != 0) {
+                Float dataPoint = numeratorMap.get(specimen) / divisorMap.get(specimen);
+                result.put(specimen, dataPoint);
+            }
+        }
+
+        return result.size();
+    }
+
+    @Benchmark
+    public int columnarDivision() {
+        return Derivations.divide(numerator, divisor).size();
+    }
+
+    @Benchmark
+    public int boxedMeanOfIncrements() {
+
+        Map<String, Double> result = new HashMap<>();
+        for (Map.Entry<String, List<Double>> entry : incrementsMap.entrySet()) {
+            Double dataPoint = (double) 0;
+            for (Double incrementValue : entry.getValue()) {
+                dataPoint += incrementValue;
+            }
+            result.put(entry.getKey(), dataPoint / entry.getValue().size());
+        }
+
+        return result.size();
+    }
+
+    @Benchmark
+    public int columnarMeanOfIncrements() {
+        return Derivations.meanOfIncrements(series).size();
+    }
+
+    @Benchmark
+    public int boxedAreaUnderCurve() {
+
+        Map<String, Double> result = new HashMap<>();
+        for (Map.Entry<String, List<Double>> entry : incrementsMap.entrySet()) {
+            Double dataPoint = getAUC(entry.getValue(), timePointsMap.get(entry.getKey()));
+            if (dataPoint > 0) {
+                result.put(entry.getKey(), dataPoint);
+            }
+        }
+
+        return result.size();
+    }
+
+    @Benchmark
+    public int columnarAreaUnderCurve() {
+        return Derivations.areaUnderCurve(series).size();
+    }
+
+
+    /**
+     * The area under the curve over boxed values, as GenerateDerivedParameters computed it.
+     */
+    private static double getAUC(List<Double> values, List<Double> timePoints) {
+        double auc = 0;
+        if (values.size() != 5 || timePoints.size() != 5)
+            return -1;
+        double baseline = values.get(0);
+        for (int i = 0; i < values.size() - 1; i++) {
+            if (values.get(i) - baseline < 0 && values.get(i + 1) - baseline > 0 || values.get(i) - baseline > 0 && values.get(i + 1) - baseline < 0) {
+                double a = Math.abs(values.get(i) - baseline);
+                double b = Math.abs(values.get(i + 1) - baseline);
+                double k = timePoints.get(i + 1) - timePoints.get(i);
+                double y = b * k / (a + b);
+                double x = k - y;
+                auc += y * b / 2;
+                auc += a * x / 2;
+            } else {
+                double height = timePoints.get(i + 1) - timePoints.get(i);
+                auc += Math.abs((values.get(i) + values.get(i + 1) - 2 * baseline) * height) / 2;
+            }
+        }
+        return auc;
+    }
+}
@@ -0,0 +1,203 @@
+package org.mousephenotype.cda.loads.derived;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mousephenotype.cda.loads.derived.GenerateDerivedParameters.ObservationDTO;
+import org.mousephenotype.cda.loads.derived.SpecimenParameterStore.Series;
+import org.mousephenotype.cda.loads.derived.SpecimenParameterStore.Values;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the derived values against the boxed Float and Double arithmetic GenerateDerivedParameters used before the
+ * formulas were computed over columns.
+ */
+public class DerivationsTest {
+
+    private static final String IPGTT = "IMPC_IPG_001";
+
+    private SpecimenParameterStore store;
+    private long                   nextAnimalId;
+
+    @Before
+    public void setUp() {
+        store = new SpecimenParameterStore();
+        nextAnimalId = 1;
+    }
+
+    private ObservationDTO observation(String procedureStableId) {
+        ObservationDTO dto = new ObservationDTO();
+        dto.setAnimalId(nextAnimalId++);
+        dto.setProcedureStableId(procedureStableId);
+
+        return dto;
+    }
+
+    // Specimens and data points alternate in dataPoints.
+    private Values values(String parameterId, Object... dataPoints) throws Exception {
+
+        Map<String, ObservationDTO> observations = new LinkedHashMap<>();
+        for (int i = 0; i < dataPoints.length; i += 2) {
+            ObservationDTO dto = observation("IMPC_DXA_001");
+            dto.setDataPoint((Float) dataPoints[i + 1]);
+            observations.put((String) dataPoints[i], dto);
+        }
+
+        return store.getValues(parameterId, id -> observations);
+    }
+
+    private Series series(String parameterId, Map<String, double[]> incrementsBySpecimen) throws Exception {
+
+        Map<String, ObservationDTO> observations = new LinkedHashMap<>();
+        for (Map.Entry<String, double[]> entry : incrementsBySpecimen.entrySet()) {
+            ObservationDTO dto = observation(IPGTT);
+            for (int i = 0; i < entry.getValue().length; i++) {
+                dto.addIncrementValue(entry.getValue()[i]);
+                dto.addDiscreteValue((double) (i * 30));
+            }
+            observations.put(entry.getKey(), dto);
+        }
+
+        return store.getSeries(parameterId, id -> observations);
+    }
+
+    // The formatted value of every row of the result, keyed by animal id.
+    private static Map<Long, String> toMap(Derivations.Result result) {
+
+        Map<Long, String> values = new HashMap<>();
+        BitSet            rows   = result.getRows();
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            values.put(result.getObservation(row).getAnimalId(), result.format(row));
+        }
+
+        return values;
+    }
+
+    private static Map<Long, String> expected(Object... values) {
+
+        Map<Long, String> expected = new HashMap<>();
+        for (int i = 0; i < values.length; i += 2) {
+            expected.put(((Integer) values[i]).longValue(), values[i + 1].toString());
+        }
+
+        return expected;
+    }
+
+
+    @Test
+    public void testDivideSkipsDivisionBy0AndMissingInputs() throws Exception {
+
+        Float a = 12.3f, b = 7.1f, c = 0.3f;
+        Float x = 3.7f, y = 0f,    z = 2f;
+
+        // Animals 1 to 3 are the numerators, 4 to 6 the divisors
+        Values numerator = values("N", "s1#1", a, "s2#1", b, "s3#1", c);
+        Values divisor   = values("D", "s1#1", x, "s2#1", y, "s4#1", z);
+
+        Float dataPoint = a / x;
+        assertEquals(expected(1, dataPoint), toMap(Derivations.divide(numerator, divisor)));
+    }
+
+    @Test
+    public void testPercentages() throws Exception {
+
+        Float a = 21.7f, b = 0.35f, c = 3.1f;
+        Float x = 33.3f, y = 0.9f,  z = 0f;
+
+        Values minuend    = values("M", "s1#1", a, "s2#1", b, "s3#1", c);
+        Values subtrahend = values("S", "s1#1", b, "s2#1", c, "s3#1", a);
+        Values divisor    = values("D", "s1#1", x, "s2#1", y, "s3#1", z);
+
+        Float percentage1 = a / x * 100;
+        Float percentage2 = b / y * 100;
+        assertEquals(expected(1, percentage1, 2, percentage2), toMap(Derivations.percentageOf(minuend, divisor)));
+
+        Float difference1 = (a - b) / x * 100;
+        Float difference2 = (b - c) / y * 100;
+        assertEquals(expected(1, difference1, 2, difference2), toMap(Derivations.percentageOfDifference(minuend, subtrahend, divisor)));
+    }
+
+    @Test
+    public void testMultiplications() throws Exception {
+
+        Float a = 1.7f,  b = 250.3f, c = 0.01f;
+        Float x = 0.3f,  y = 0f,     z = 7.77f;
+
+        Values first  = values("F", "s1#1", a, "s2#1", b, "s3#1", c);
+        Values second = values("S", "s1#1", x, "s2#1", y, "s3#1", z);
+
+        Float product1 = a * x;
+        Float product3 = c * z;
+        assertEquals(expected(1, product1, 3, product3), toMap(Derivations.multiply(first, second)));
+
+        float multiplicator = 1000f;
+        Float scaled1 = multiplicator * a / x;
+        Float scaled3 = multiplicator * c / z;
+        assertEquals(expected(1, scaled1, 3, scaled3), toMap(Derivations.multiplyThenDivide(multiplicator, first, second)));
+
+        Values multiplicators = values("X", "s1#1", b, "s3#1", a);
+        Float multiplied1 = b * a / x;
+        Float multiplied3 = a * c / z;
+        assertEquals(expected(1, multiplied1, 3, multiplied3), toMap(Derivations.multiplyThenDivide(multiplicators, first, second)));
+    }
+
+    @Test
+    public void testIncrements() throws Exception {
+
+        Map<String, double[]> increments = new LinkedHashMap<>();
+        increments.put("s1#1", new double[] { 5.1, 7.3, 11.9, 8.2, 6.0 });
+        increments.put("s2#1", new double[] { 0.1, 0.2, 0.3 });
+        increments.put("s3#1", new double[] { });
+        Series series = series("I", increments);
+
+        Double sum1 = (double) 0;
+        for (Double increment : increments.get("s1#1")) {
+            sum1 += increment;
+        }
+        Double sum2 = (double) 0;
+        for (Double increment : increments.get("s2#1")) {
+            sum2 += increment;
+        }
+        Double mean1 = sum1 / 5;
+        Double mean2 = sum2 / 3;
+
+        assertEquals(expected(1, sum1, 2, sum2, 3, 0.0), toMap(Derivations.sumOfIncrements(series)));
+        assertEquals(expected(1, mean1, 2, mean2), toMap(Derivations.meanOfIncrements(series)));
+    }
+
+    @Test
+    public void testAreaUnderCurveNeeds5Points() throws Exception {
+
+        Map<String, double[]> increments = new LinkedHashMap<>();
+        increments.put("s1#1", new double[] { 10, 12, 8, 10, 14 });
+        increments.put("s2#1", new double[] { 10, 12, 8, 10 });
+        increments.put("s3#1", new double[] { 10, 12, 8, 10, 14, 9 });
+        increments.put("s4#1", new double[] { 10, 10, 10, 10, 10 });
+
+        // 30 + 30 (two triangles either side of the baseline) + 30 + 60, at 30 minute intervals
+        assertEquals(expected(1, 150.0), toMap(Derivations.areaUnderCurve(series("G", increments))));
+
+        assertEquals(-1, Derivations.getAUC(new double[] { 10, 12, 8, 10 }, new double[] { 0, 30, 60, 90 }, 0, 4), 0);
+    }
+
+    @Test
+    public void testRemoveIfLeavesOutHrwlOwtProcedures() throws Exception {
+
+        Map<String, ObservationDTO> observations = new LinkedHashMap<>();
+        for (String procedure : Arrays.asList("IMPC_HWT_001", "HRWL_OWT_001", "IMPC_HWT_001")) {
+            ObservationDTO dto = observation(procedure);
+            dto.setDataPoint(1.5f);
+            observations.put("s" + dto.getAnimalId() + "#1", dto);
+        }
+        Values numerator = store.getValues("N", id -> observations);
+        Values divisor   = values("D", "s1#1", 3f, "s2#1", 3f, "s3#1", 3f);
+
+        Derivations.Result result = Derivations.divide(numerator, divisor)
+                .removeIf(dto -> dto.getProcedureStableId().startsWith("HRWL_OWT"));
+
+        assertEquals(2, result.size());
+        assertEquals(expected(1, 0.5f, 3, 0.5f), toMap(result));
+    }
+}
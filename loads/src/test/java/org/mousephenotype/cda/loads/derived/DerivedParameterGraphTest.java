@@ -0,0 +1,140 @@
+package org.mousephenotype.cda.loads.derived;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class DerivedParameterGraphTest {
+
+    private ExecutorService executor;
+    private List<String>    generated;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(3);
+        generated = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private Callable<Integer> generate(String parameter) {
+        return () -> {
+            generated.add(parameter);
+            return 1;
+        };
+    }
+
+    private static void waitFor(List<Future<Integer>> derivations) throws InterruptedException {
+        for (Future<Integer> derivation : derivations) {
+            try {
+                derivation.get(10, TimeUnit.SECONDS);
+            } catch (ExecutionException | TimeoutException e) {
+                // Checked by the caller
+            }
+        }
+    }
+
+
+    @Test
+    public void testDerivationsRunAfterTheirInputs() throws Exception {
+
+        DerivedParameterGraph graph = new DerivedParameterGraph();
+        graph.add("IMPC_GRS_010_001", generate("IMPC_GRS_010_001"), "IMPC_GRS_008_001");
+        graph.add("IMPC_GRS_011_001", generate("IMPC_GRS_011_001"), "IMPC_GRS_010_001", "IMPC_GRS_009_001");
+        graph.add("IMPC_GRS_008_001", generate("IMPC_GRS_008_001"));
+        graph.add("IMPC_GRS_009_001", generate("IMPC_GRS_009_001"));
+
+        List<Future<Integer>> derivations = graph.submit(executor);
+        waitFor(derivations);
+
+        assertEquals(4, derivations.size());
+        assertEquals(4, generated.size());
+        assertTrue(generated.indexOf("IMPC_GRS_008_001") < generated.indexOf("IMPC_GRS_010_001"));
+        assertTrue(generated.indexOf("IMPC_GRS_010_001") < generated.indexOf("IMPC_GRS_011_001"));
+        assertTrue(generated.indexOf("IMPC_GRS_009_001") < generated.indexOf("IMPC_GRS_011_001"));
+    }
+
+    @Test
+    public void testSubmitOrderKeepsTheOrderAddedOtherwise() throws Exception {
+
+        DerivedParameterGraph graph = new DerivedParameterGraph();
+        graph.add("C", generate("C"), "B");
+        graph.add("D", generate("D"));
+        graph.add("B", generate("B"));
+        graph.add("A", generate("A"), "NOT_DERIVED");
+
+        // A single thread runs the derivations in the order they are submitted
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        try {
+            waitFor(graph.submit(single));
+        } finally {
+            single.shutdownNow();
+        }
+
+        assertEquals(Arrays.asList("B", "C", "D", "A"), generated);
+    }
+
+    @Test
+    public void testDerivationIsSkippedIfItsInputFails() throws Exception {
+
+        DerivedParameterGraph graph = new DerivedParameterGraph();
+        graph.add("A", () -> { throw new IllegalStateException("Cannot generate A"); });
+        graph.add("B", generate("B"), "A");
+        graph.add("C", generate("C"));
+
+        List<Future<Integer>> derivations = graph.submit(executor);
+        waitFor(derivations);
+
+        assertEquals(Collections.singletonList("C"), generated);
+        for (int i = 0; i < 2; i++) {
+            try {
+                derivations.get(i).get();
+                fail("Expected an ExecutionException");
+            } catch (ExecutionException e) {
+                assertTrue(e.getMessage(), e.getMessage().endsWith("Cannot generate A"));
+            }
+        }
+        assertEquals(1, (int) derivations.get(2).get());
+    }
+
+    @Test
+    public void testParameterAddedTwiceIsGeneratedOnce() throws Exception {
+
+        DerivedParameterGraph graph = new DerivedParameterGraph();
+        graph.add("A", generate("A"));
+        graph.add("A", generate("A again"));
+
+        waitFor(graph.submit(executor));
+
+        assertEquals(Collections.singletonList("A"), generated);
+    }
+
+    @Test
+    public void testCycleIsRejected() {
+
+        DerivedParameterGraph graph = new DerivedParameterGraph();
+        graph.add("A", generate("A"), "C");
+        graph.add("B", generate("B"), "A");
+        graph.add("C", generate("C"), "B");
+
+        try {
+            graph.submit(executor);
+            fail("Expected an IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().endsWith("depends on itself"));
+        }
+
+        assertTrue(generated.isEmpty());
+    }
+}
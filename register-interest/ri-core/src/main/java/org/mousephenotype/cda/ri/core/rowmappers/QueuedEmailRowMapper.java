@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * Copyright © 2019 EMBL - European Bioinformatics Institute
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ ******************************************************************************/
+
+package org.mousephenotype.cda.ri.core.rowmappers;
+
+import org.mousephenotype.cda.ri.core.entities.QueuedEmail;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Date;
+
+public class QueuedEmailRowMapper implements RowMapper<QueuedEmail> {
+
+    @Override
+    public QueuedEmail mapRow(ResultSet rs, int rowNum) throws SQLException {
+        QueuedEmail email = new QueuedEmail();
+
+        email.setPk(rs.getInt("pk"));
+
+        email.setAddress(rs.getString("address"));
+        email.setSubject(rs.getString("subject"));
+        email.setBody(rs.getString("body"));
+        email.setInHtml(rs.getBoolean("in_html"));
+
+        email.setAttempts(rs.getInt("attempts"));
+        email.setLastError(rs.getString("last_error"));
+
+        email.setCreatedAt(new Date(rs.getTimestamp("created_at").getTime()));
+
+        Timestamp ts = rs.getTimestamp("sent_at");
+        email.setSentAt(ts == null ? null : new Date(ts.getTime()));
+
+        return email;
+    }
+}
@@ -25,6 +25,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import javax.inject.Inject;
+import java.util.Collections;
 import java.util.Map;
 
 @Service
@@ -57,6 +58,11 @@ public class CoreService {
     }
 
 
+    /**
+     * Generates the summary e-mail of every contact whose genes have changed state since their last e-mail. If
+     * {@code send} is set, the e-mails are queued, then sent through {@link SendService#sendQueued(SmtpParameters)};
+     * any e-mails left queued by an interrupted run are sent first, without being generated again.
+     */
     public void generateAndSend(String paBaseUrl, boolean noDecoration, boolean send, SmtpParameters smtpParameters) {
 
         int     count    = 0;
@@ -64,10 +70,18 @@ public class CoreService {
 
         logger.info("BEGIN generateAndSend noDecoration = {}. send = {}. SmtpParameters = {}.", noDecoration, send, smtpParameters);
 
-        Map<String, Summary> summaries = generateService.getAllSummariesByEmailAddress();
+        if (send) {
+            int resumed = sendService.sendQueued(smtpParameters);
+            if (resumed > 0) {
+                logger.info("Sent {} e-mails left queued by an earlier run.", resumed);
+            }
+        }
+
+        Map<String, Summary>               summaries          = generateService.getAllSummariesByEmailAddress();
+        Map<String, Map<String, GeneSent>> genesSentByAddress = generateService.getGeneSentStatusByEmailAddress();
         for (Summary summary : summaries.values()) {
 
-            Map<String, GeneSent> genesSentByGeneAccessionId = generateService.getGeneSentStatusByGeneAccessionId(summary.getEmailAddress());
+            Map<String, GeneSent> genesSentByGeneAccessionId = genesSentByAddress.getOrDefault(summary.getEmailAddress(), Collections.emptyMap());
             Summary decoratedSummary = new SummaryWithDecoration(summary, genesSentByGeneAccessionId);
             if ( ! ((SummaryWithDecoration) decoratedSummary).isDecorated()) {
                 continue;
@@ -81,16 +95,16 @@ public class CoreService {
 
             if (send) {
 
-                sendService.sendSummary(summary, SendService.DEFAULT_SUMMARY_SUBJECT, content, inHtml, smtpParameters);
+                sendService.queueSummary(summary, SendService.DEFAULT_SUMMARY_SUBJECT, content, inHtml);
             }
 
             count++;
             logger.info("{} : {}", count, summary.getEmailAddress());
+        }
 
-            // Pause so we don't exceed 100 e-mails per hour.
-            if (send) {
-                sleep(36);
-            }
+        if (send) {
+            int sent = sendService.sendQueued(smtpParameters);
+            logger.info("Sent {} of {} queued summaries.", sent, count);
         }
 
         logger.info("END generateAndSend. Processed {} summaries.", count);
@@ -59,6 +59,14 @@ public class GenerateService {
         return sqlUtils.getGeneSentStatusByGeneAccessionId(emailAddress);
     }
 
+    /**
+     * @return the gene_sent status of every contact's genes, keyed by contact email address, then by gene accession id
+     */
+    public Map<String, Map<String, GeneSent>> getGeneSentStatusByEmailAddress() {
+
+        return sqlUtils.getGeneSentStatusByEmailAddress();
+    }
+
     /**
      *
      * @return A map of all registered contact summaries, indexed by contact email address
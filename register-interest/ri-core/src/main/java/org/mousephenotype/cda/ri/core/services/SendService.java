@@ -16,18 +16,24 @@
 
 package org.mousephenotype.cda.ri.core.services;
 
+import org.mousephenotype.cda.ri.core.entities.QueuedEmail;
 import org.mousephenotype.cda.ri.core.entities.SmtpParameters;
 import org.mousephenotype.cda.ri.core.entities.Summary;
 import org.mousephenotype.cda.ri.core.utils.EmailUtils;
 import org.mousephenotype.cda.ri.core.utils.RiSqlUtils;
+import org.mousephenotype.cda.ri.core.utils.TokenBucket;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.inject.Inject;
 import javax.mail.Message;
 import javax.mail.MessagingException;
+import javax.mail.Session;
 import javax.mail.Transport;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class SendService {
@@ -39,6 +45,17 @@ public class SendService {
 
     private RiSqlUtils riSqlUtils;
     private EmailUtils emailUtils = new EmailUtils();
+    private TokenBucket rateLimiter;
+
+    // By default, send no more than 100 e-mails per hour.
+    @Value("${ri.mail.ratePerHour:100}")
+    private int ratePerHour = 100;
+
+    @Value("${ri.mail.burst:1}")
+    private int burst = 1;
+
+    @Value("${ri.mail.maxAttempts:3}")
+    private int maxAttempts = 3;
 
 
     @Inject
@@ -72,6 +89,87 @@ public class SendService {
     }
 
 
+    /**
+     * Queues a summary e-mail for {@link #sendQueued(SmtpParameters)}. The summary's gene statuses are queued with it
+     * and recorded in gene_sent only when the e-mail is sent.
+     */
+    public void queueSummary(Summary summary, String subject, String content, boolean inHtml) {
+        riSqlUtils.queueSummary(summary, subject, content, inHtml);
+    }
+
+
+    /**
+     * Sends the e-mails queued but not sent yet, including any left by an interrupted run, no faster than
+     * {@code ri.mail.ratePerHour}. All the e-mails go through one smtp connection, which is reopened only if it fails.
+     * Each e-mail is marked sent as soon as the smtp server accepts it, so a run interrupted part way through can be
+     * resumed by calling this method again. An e-mail that fails is retried on later calls, up to
+     * {@code ri.mail.maxAttempts} attempts in all.
+     *
+     * @return the number of e-mails sent
+     */
+    public int sendQueued(SmtpParameters smtpParameters) {
+
+        List<QueuedEmail> emails = riSqlUtils.getQueuedEmails(maxAttempts);
+        if (emails.isEmpty()) {
+            return 0;
+        }
+
+        Session   session   = emailUtils.getSession(smtpParameters);
+        Transport transport = null;
+        int       sent      = 0;
+
+        try {
+
+            for (QueuedEmail email : emails) {
+
+                Message message = emailUtils.assembleEmail(session, email.getSubject(), email.getBody(), email.getAddress(), email.isInHtml(), smtpParameters);
+                if (message == null) {
+                    riSqlUtils.updateEmailQueueFailure(email.getPk(), "Invalid e-mail address");
+                    continue;
+                }
+
+                getRateLimiter().acquire();
+
+                try {
+
+                    if ((transport == null) || ( ! transport.isConnected())) {
+                        transport = session.getTransport("smtp");
+                        transport.connect();
+                    }
+
+                    message.saveChanges();
+                    // A stable Message-ID lets mail clients recognise a copy resent after an interruption as the same e-mail.
+                    message.setHeader("Message-ID", getMessageId(email, smtpParameters));
+                    transport.sendMessage(message, message.getAllRecipients());
+
+                } catch (MessagingException e) {
+
+                    logger.warn("Exception sending queued e-mail {} to {}. Skipping. Reason: {}", email.getPk(), email.getAddress(), e.getLocalizedMessage());
+                    riSqlUtils.updateEmailQueueFailure(email.getPk(), e.getLocalizedMessage());
+                    closeQuietly(transport);
+                    transport = null;
+                    continue;
+                }
+
+                riSqlUtils.updateEmailQueueSent(email);
+                sent++;
+                logger.info("{} : {}", sent, email.getAddress());
+            }
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted after sending {} of {} queued e-mails. The rest remain queued.", sent, emails.size());
+
+        } finally {
+
+            closeQuietly(transport);
+        }
+
+        return sent;
+    }
+
+
     public void sendWelcome(String emailAddress, String subject, String welcomeText, boolean inHtml, SmtpParameters smtpParameters) {
 
 
@@ -92,4 +190,33 @@ public class SendService {
             logger.warn("SEND of welcome message to " + recipient + " failed. Skipping... Reason: " + e.getLocalizedMessage());
         }
     }
+
+
+    // PRIVATE METHODS
+
+
+    private synchronized TokenBucket getRateLimiter() {
+        if (rateLimiter == null) {
+            rateLimiter = new TokenBucket(ratePerHour, 1, TimeUnit.HOURS, burst);
+        }
+
+        return rateLimiter;
+    }
+
+    private String getMessageId(QueuedEmail email, SmtpParameters smtpParameters) {
+        String from   = smtpParameters.getSmtpFrom();
+        String domain = (from.contains("@") ? from.substring(from.lastIndexOf('@') + 1) : from);
+
+        return "<ri-queue-" + email.getPk() + "." + email.getCreatedAt().getTime() + "@" + domain + ">";
+    }
+
+    private void closeQuietly(Transport transport) {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                // Nothing to do
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -53,12 +53,22 @@ public class EmailUtils {
      */
     public Message assembleEmail (String subject, String body, String emailAddress, boolean inHtml, SmtpParameters smtpParameters) {
 
-        Properties smtpProperties = new Properties();
+        return assembleEmail(getSession(smtpParameters), subject, body, emailAddress, inHtml, smtpParameters);
+    }
 
-        smtpProperties.put("mail.smtp.host", smtpParameters.getSmtpHost());
-        smtpProperties.put("mail.smtp.port", smtpParameters.getSmtpPort());
+    /**
+     * Assembles an e-mail in preparation for sending over {@code session}. Use this form to send several e-mails
+     * through one {@link Transport} connected from the same session.
+     * @param session the mail session, from {@link #getSession(SmtpParameters)}
+     * @param subject
+     * @param body
+     * @param emailAddress
+     * @param inHtml
+     * @param smtpParameters
+     * @return {@link Message} the assembled email message, ready for sending
+     */
+    public Message assembleEmail (Session session, String subject, String body, String emailAddress, boolean inHtml, SmtpParameters smtpParameters) {
 
-        Session session = Session.getInstance(smtpProperties);
         Message message = new MimeMessage(session);
 
         try {
@@ -88,6 +98,20 @@ public class EmailUtils {
         return message;
     }
 
+    /**
+     * @param smtpParameters
+     * @return a mail {@link Session} for the smtp server named in {@code smtpParameters}
+     */
+    public Session getSession(SmtpParameters smtpParameters) {
+
+        Properties smtpProperties = new Properties();
+
+        smtpProperties.put("mail.smtp.host", smtpParameters.getSmtpHost());
+        smtpProperties.put("mail.smtp.port", smtpParameters.getSmtpPort());
+
+        return Session.getInstance(smtpProperties);
+    }
+
     /**
      * Sends the e-mail {@link Message} to the recipient specified as the first recipient in the message
      * @param message
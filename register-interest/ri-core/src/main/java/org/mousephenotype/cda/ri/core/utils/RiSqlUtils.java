@@ -225,6 +225,12 @@ public class RiSqlUtils {
         parameterMap.put("address", contact.getEmailAddress());
         jdbcInterest.update(delete, parameterMap);
 
+        // Delete all matching emailAddress from email_queue and email_queue_gene (GDPR).
+        delete = "DELETE FROM email_queue_gene WHERE email_queue_pk IN (SELECT pk FROM email_queue WHERE address = :address)";
+        jdbcInterest.update(delete, parameterMap);
+        delete = "DELETE FROM email_queue WHERE address = :address";
+        jdbcInterest.update(delete, parameterMap);
+
         // Delete all matching emailAddress from reset_credentials
         deleteResetCredentialsByEmailAddress(emailAddress);
 
@@ -651,22 +657,50 @@ public class RiSqlUtils {
 
         List<Map<String, Object>> resultsMap = jdbcInterest.queryForList(query, parameterMap);
         for (Map<String, Object> result : resultsMap) {
-            GeneSent geneSent = new GeneSent();
-            geneSent.setMgiAccessionId(result.get("mgi_accession_id").toString());
-
-            geneSent.setAssignmentStatus((String) result.get("assignment_status"));
-            geneSent.setConditionalAlleleProductionStatus((String) result.get("conditional_allele_production_status"));
-            geneSent.setNullAlleleProductionStatus((String) result.get("null_allele_production_status"));
-            geneSent.setPhenotypingStatus((String) result.get("phenotyping_status"));
-            geneSent.setCreatedAt((Date) result.get("created_at"));
-            geneSent.setSentAt((Date) result.get("sent_at"));
-            geneSent.setUpdatedAt((Date) result.get("updated_at"));
+            GeneSent geneSent = toGeneSent(result);
             results.put(geneSent.getMgiAccessionId(), geneSent);
         }
 
         return results;
     }
 
+    /**
+     * Same as {@link #getGeneSentStatusByGeneAccessionId(String)}, but for every contact at once, in a single query.
+     *
+     * @return the gene_sent status of every contact's registered genes, keyed by contact email address, then by gene
+     * accession id. Contacts with no gene_sent rows are absent.
+     */
+    public Map<String, Map<String, GeneSent>> getGeneSentStatusByEmailAddress() {
+
+        Map<String, Map<String, GeneSent>> results = new HashMap<>();
+
+        final String query =
+                "SELECT\n" +
+                "  c.address,\n" +
+                "  g.mgi_accession_id,\n" +
+                "  gs.assignment_status,\n" +
+                "  gs.null_allele_production_status,\n" +
+                "  gs.conditional_allele_production_status,\n" +
+                "  gs.phenotyping_status,\n" +
+                "  gs.created_at,\n" +
+                "  gs.sent_at,\n" +
+                "  gs.updated_at\n" +
+                "FROM contact c\n" +
+                "JOIN contact_gene cg ON cg.contact_pk = c.pk\n" +
+                "JOIN gene g ON g.pk = cg.gene_pk\n" +
+                "JOIN gene_sent gs ON gs.address = c.address and gs.mgi_accession_id = g.mgi_accession_id";
+
+        List<Map<String, Object>> resultsMap = jdbcInterest.queryForList(query, new HashMap<>());
+        for (Map<String, Object> result : resultsMap) {
+            GeneSent geneSent = toGeneSent(result);
+            geneSent.setAddress(result.get("address").toString());
+            results.computeIfAbsent(geneSent.getAddress(), k -> new HashMap<>())
+                    .put(geneSent.getMgiAccessionId(), geneSent);
+        }
+
+        return results;
+    }
+
     /**
      *
      * @param emailAddress contact email address to filter by
@@ -734,6 +768,21 @@ public class RiSqlUtils {
         return imitsStatusByStatus;
     }
 
+    /**
+     * @param maxAttempts the number of failed attempts after which a queued e-mail is given up on
+     *
+     * @return the e-mails queued but not sent yet, in the order they were queued
+     */
+    public List<QueuedEmail> getQueuedEmails(int maxAttempts) {
+
+        final String query = "SELECT * FROM email_queue WHERE sent_at IS NULL AND attempts < :maxAttempts ORDER BY pk";
+
+        Map<String, Object> parameterMap = new HashMap<>();
+        parameterMap.put("maxAttempts", maxAttempts);
+
+        return jdbcInterest.query(query, parameterMap, new QueuedEmailRowMapper());
+    }
+
     /**
      * @param emailAddress the email address to match
      * @return the most recent {@link ResetCredentials} instance matching {@code emailAddress}, if found; null otherwise
@@ -787,6 +836,57 @@ public class RiSqlUtils {
         return summary;
     }
 
+    /**
+     * Queues a summary e-mail for sending, with the statuses of the summary's genes in email_queue_gene, all in one
+     * transaction. Any earlier e-mail still queued for the same contact is replaced, as the new summary supersedes it.
+     * gene_sent is left alone until the e-mail is sent (see {@link #updateEmailQueueSent(QueuedEmail)}), so the changes
+     * in an e-mail that is never sent are still reported as new by the next summary.
+     *
+     * @return the primary key of the queued e-mail
+     */
+    @Transactional
+    public int queueSummary(Summary summary, String subject, String body, boolean inHtml) {
+
+        String emailAddress = summary.getEmailAddress();
+        Date   now          = new Date();
+
+        Map<String, Object> parameterMap = new HashMap<>();
+        parameterMap.put("address", emailAddress);
+        jdbcInterest.update("DELETE FROM email_queue_gene WHERE email_queue_pk IN (SELECT pk FROM email_queue WHERE address = :address AND sent_at IS NULL)", parameterMap);
+        jdbcInterest.update("DELETE FROM email_queue WHERE address = :address AND sent_at IS NULL", parameterMap);
+
+        final String insertEmail =
+                "INSERT INTO email_queue (address, subject, body, in_html, created_at) " +
+                "VALUES (:address, :subject, :body, :inHtml, :createdAt)";
+
+        MapSqlParameterSource emailParameters = new MapSqlParameterSource()
+                .addValue("address", emailAddress)
+                .addValue("subject", subject)
+                .addValue("body", body)
+                .addValue("inHtml", inHtml)
+                .addValue("createdAt", now);
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcInterest.update(insertEmail, emailParameters, keyHolder, new String[] { "pk" });
+        int emailQueuePk = keyHolder.getKey().intValue();
+
+        final String insertQueueGene =
+                "INSERT INTO email_queue_gene (email_queue_pk, mgi_accession_id, assignment_status, conditional_allele_production_status, null_allele_production_status, phenotyping_status) " +
+                "VALUES (:emailQueuePk, :mgiAccessionId, :assignmentStatus, :conditionalAlleleProductionStatus, :nullAlleleProductionStatus, :phenotypingStatus)";
+
+        SqlParameterSource[] geneParameters = summary.getGenes().stream()
+                .map(gene -> new MapSqlParameterSource()
+                        .addValue("emailQueuePk", emailQueuePk)
+                        .addValue("mgiAccessionId", gene.getMgiAccessionId())
+                        .addValue("assignmentStatus", gene.getRiAssignmentStatus())
+                        .addValue("conditionalAlleleProductionStatus", gene.getRiConditionalAlleleProductionStatus())
+                        .addValue("nullAlleleProductionStatus", gene.getRiNullAlleleProductionStatus())
+                        .addValue("phenotypingStatus", gene.getRiPhenotypingStatus()))
+                .toArray(SqlParameterSource[]::new);
+        jdbcInterest.batchUpdate(insertQueueGene, geneParameters);
+
+        return emailQueuePk;
+    }
+
     /**
      * Register {@code geneAccessionId} to {@code emailAddress}
      *
@@ -913,6 +1013,45 @@ public class RiSqlUtils {
         return InterestStatus.OK;
     }
 
+    /**
+     * Records a failed attempt to send the queued e-mail identified by {@code pk}.
+     */
+    public void updateEmailQueueFailure(int pk, String reason) {
+
+        final String update = "UPDATE email_queue SET attempts = attempts + 1, last_error = :lastError WHERE pk = :pk";
+
+        Map<String, Object> parameterMap = new HashMap<>();
+        parameterMap.put("pk", pk);
+        parameterMap.put("lastError", (reason != null && reason.length() > 1024 ? reason.substring(0, 1024) : reason));
+
+        jdbcInterest.update(update, parameterMap);
+    }
+
+    /**
+     * Marks the queued e-mail as sent and replaces the contact's gene_sent rows with the gene statuses queued with it,
+     * in one transaction.
+     */
+    @Transactional
+    public void updateEmailQueueSent(QueuedEmail email) {
+
+        Date now = new Date();
+
+        Map<String, Object> parameterMap = new HashMap<>();
+        parameterMap.put("pk", email.getPk());
+        parameterMap.put("address", email.getAddress());
+        parameterMap.put("sentAt", now);
+
+        jdbcInterest.update("UPDATE email_queue SET attempts = attempts + 1, sent_at = :sentAt WHERE pk = :pk", parameterMap);
+        jdbcInterest.update("DELETE FROM gene_sent WHERE address = :address", parameterMap);
+        jdbcInterest.update(
+                "INSERT INTO gene_sent (address, mgi_accession_id, assignment_status, conditional_allele_production_status, null_allele_production_status, phenotyping_status, created_at, sent_at) " +
+                "SELECT :address, mgi_accession_id, assignment_status, conditional_allele_production_status, null_allele_production_status, phenotyping_status, :sentAt, :sentAt " +
+                "FROM email_queue_gene WHERE email_queue_pk = :pk", parameterMap);
+        jdbcInterest.update("DELETE FROM email_queue_gene WHERE email_queue_pk = :pk", parameterMap);
+
+        email.setSentAt(now);
+    }
+
     /**
      * Updates the gene_sent table for this contact emailAddress. Any previous rows for this emailAddress are first
      * deleted, then the rows from the {@link Summary} instance are INSERTed.
@@ -1197,4 +1336,19 @@ public class RiSqlUtils {
 
         return count;
     }
+
+    private GeneSent toGeneSent(Map<String, Object> result) {
+        GeneSent geneSent = new GeneSent();
+        geneSent.setMgiAccessionId(result.get("mgi_accession_id").toString());
+
+        geneSent.setAssignmentStatus((String) result.get("assignment_status"));
+        geneSent.setConditionalAlleleProductionStatus((String) result.get("conditional_allele_production_status"));
+        geneSent.setNullAlleleProductionStatus((String) result.get("null_allele_production_status"));
+        geneSent.setPhenotypingStatus((String) result.get("phenotyping_status"));
+        geneSent.setCreatedAt((Date) result.get("created_at"));
+        geneSent.setSentAt((Date) result.get("sent_at"));
+        geneSent.setUpdatedAt((Date) result.get("updated_at"));
+
+        return geneSent;
+    }
 }
\ No newline at end of file
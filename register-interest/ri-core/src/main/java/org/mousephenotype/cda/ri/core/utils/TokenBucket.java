@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright © 2019 EMBL - European Bioinformatics Institute
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ ******************************************************************************/
+
+package org.mousephenotype.cda.ri.core.utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket rate limiter: tokens are added at a steady rate, up to {@code capacity}, and each {@link #acquire()}
+ * takes one, waiting for it if the bucket is empty. Unlike a fixed pause after each action, time spent doing the
+ * action itself counts towards the wait, and up to {@code capacity} actions may run back to back after an idle spell.
+ *
+ * NOTE: Keep this file spring-free, like {@link EmailUtils}.
+ */
+public class TokenBucket {
+
+    private final int    capacity;
+    private final double tokensPerNano;
+
+    private double tokens;
+    private long   lastRefill;
+
+    /**
+     * @param permits the number of tokens added per {@code period}
+     * @param period the length of the period
+     * @param unit the unit of {@code period}
+     * @param capacity the most tokens the bucket can hold. The bucket starts full.
+     */
+    public TokenBucket(int permits, long period, TimeUnit unit, int capacity) {
+
+        if (permits < 1 || period < 1 || capacity < 1) {
+            throw new IllegalArgumentException("permits, period and capacity must all be positive");
+        }
+
+        this.capacity = capacity;
+        this.tokensPerNano = (double) permits / unit.toNanos(period);
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Takes a token, waiting until one is available.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized void acquire() throws InterruptedException {
+
+        refill();
+        while (tokens < 1) {
+            long waitNanos = (long) Math.ceil((1 - tokens) / tokensPerNano);
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+            refill();
+        }
+
+        tokens -= 1;
+    }
+
+    /**
+     * Takes a token if one is available now.
+     *
+     * @return true if a token was taken; false otherwise
+     */
+    public synchronized boolean tryAcquire() {
+
+        refill();
+        if (tokens < 1) {
+            return false;
+        }
+
+        tokens -= 1;
+
+        return true;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+    }
+}
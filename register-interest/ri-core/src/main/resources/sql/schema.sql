@@ -157,6 +157,43 @@ CREATE TABLE reset_credentials (
 ) COLLATE=utf8_general_ci ENGINE=InnoDb;
 
 
+DROP TABLE IF EXISTS email_queue;
+CREATE TABLE email_queue (
+    pk             INT           NOT NULL        AUTO_INCREMENT PRIMARY KEY,
+
+    address        VARCHAR(255)  NOT NULL,
+    subject        VARCHAR(255)  NOT NULL,
+    body           MEDIUMTEXT    NOT NULL,
+    in_html        TINYINT(1)    NOT NULL        DEFAULT 1,
+
+    attempts       INT           NOT NULL        DEFAULT 0,
+    last_error     VARCHAR(1024)                 DEFAULT NULL,
+
+    created_at     DATETIME      NOT NULL,
+    sent_at        DATETIME,                     -- a null value means 'queued but not sent yet'.
+    updated_at     TIMESTAMP     NOT NULL        DEFAULT CURRENT_TIMESTAMP
+                     ON UPDATE CURRENT_TIMESTAMP,
+
+    INDEX sent_at_idx (sent_at)
+
+) COLLATE=utf8_general_ci ENGINE=InnoDb;
+
+DROP TABLE IF EXISTS email_queue_gene;
+CREATE TABLE email_queue_gene (
+    pk                                          INT             NOT NULL        AUTO_INCREMENT PRIMARY KEY,
+
+    email_queue_pk                              INT             NOT NULL,
+    mgi_accession_id                            VARCHAR(32)     NOT NULL,
+    assignment_status                           VARCHAR(64)     DEFAULT NULL,
+    conditional_allele_production_status        VARCHAR(64)     DEFAULT NULL,
+    null_allele_production_status               VARCHAR(64)     DEFAULT NULL,
+    phenotyping_status                          VARCHAR(64)     DEFAULT NULL,
+
+    INDEX email_queue_pk_idx (email_queue_pk)
+
+) COLLATE=utf8_general_ci ENGINE=InnoDb;
+
+
 -- POPULATE STATIC TABLES
 
 SET @now = NOW();
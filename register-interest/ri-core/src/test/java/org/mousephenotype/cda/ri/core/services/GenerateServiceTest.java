@@ -28,6 +28,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -149,6 +150,26 @@ public class GenerateServiceTest extends BaseTest {
     }
 
 
+    @Test
+    public void getGeneSentStatusByEmailAddress() {
+
+        Map<String, Map<String, GeneSent>> genesSentByAddress = generateService.getGeneSentStatusByEmailAddress();
+        assertEquals(2, genesSentByAddress.size());
+
+        // Every contact's statuses must match those looked up one contact at a time.
+        for (String user : Arrays.asList(user1, user2, user3, user4)) {
+            Map<String, GeneSent> expected = generateService.getGeneSentStatusByGeneAccessionId(user);
+            Map<String, GeneSent> actual   = genesSentByAddress.getOrDefault(user, new HashMap<>());
+            assertEquals(expected.keySet(), actual.keySet());
+            for (String acc : expected.keySet()) {
+                assertEquals(user, actual.get(acc).getAddress());
+                assertEquals(expected.get(acc).getConditionalAlleleProductionStatus(), actual.get(acc).getConditionalAlleleProductionStatus());
+                assertEquals(expected.get(acc).getPhenotypingStatus(), actual.get(acc).getPhenotypingStatus());
+            }
+        }
+    }
+
+
     @Test
     public void getsummaryByEmailAddress() {
 
@@ -6,13 +6,22 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mousephenotype.cda.ri.BaseTest;
 import org.mousephenotype.cda.ri.core.entities.Gene;
+import org.mousephenotype.cda.ri.core.entities.GeneSent;
+import org.mousephenotype.cda.ri.core.entities.QueuedEmail;
 import org.mousephenotype.cda.ri.core.entities.SmtpParameters;
 import org.mousephenotype.cda.ri.core.entities.Summary;
+import org.mousephenotype.cda.ri.core.entities.SummaryWithDecoration;
+import org.mousephenotype.cda.ri.core.utils.RiSqlUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
 
 @RunWith(SpringRunner.class)
 public class SendServiceTest extends BaseTest {
@@ -20,9 +29,15 @@ public class SendServiceTest extends BaseTest {
     @Autowired
     private SendService sendService;
 
+    @Autowired
+    private GenerateService generateService;
+
     @Autowired
     private SmtpParameters smtpParameters;
 
+    @Autowired
+    private RiSqlUtils riSqlUtils;
+
 
     private Gene gene;
     private Summary summary;
@@ -54,4 +69,80 @@ public class SendServiceTest extends BaseTest {
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+
+
+    @Test
+    public void queuedSummaryIsSentOnce() {
+
+        summary.setEmailAddress("user1@ebi.ac.uk");
+        summary.getGenes().get(0).setMgiAccessionId("MGI:103576");
+
+        // A second summary for the same contact replaces the first while it is still queued.
+        sendService.queueSummary(summary, "first", "first content", true);
+        sendService.queueSummary(summary, "second", "second content", true);
+
+        List<QueuedEmail> queued = riSqlUtils.getQueuedEmails(3);
+        assertEquals(1, queued.size());
+        assertEquals("second", queued.get(0).getSubject());
+        assertEquals("second content", queued.get(0).getBody());
+
+        // gene_sent still holds the statuses of the last e-mail sent.
+        GeneSent geneSent = riSqlUtils.getGeneSent("user1@ebi.ac.uk", "MGI:103576");
+        assertEquals("Selected for production and phenotyping", geneSent.getAssignmentStatus());
+
+        riSqlUtils.updateEmailQueueSent(queued.get(0));
+
+        assertTrue(riSqlUtils.getQueuedEmails(3).isEmpty());
+        geneSent = riSqlUtils.getGeneSent("user1@ebi.ac.uk", "MGI:103576");
+        assertNull(geneSent.getAssignmentStatus());
+        assertNotNull(geneSent.getSentAt());
+        assertNull(riSqlUtils.getGeneSent("user1@ebi.ac.uk", "MGI:1919199"));
+    }
+
+    @Test
+    public void failedEmailIsGivenUpAfterMaxAttempts() {
+
+        sendService.queueSummary(summary, "subject", "content", false);
+        int pk = riSqlUtils.getQueuedEmails(3).get(0).getPk();
+
+        riSqlUtils.updateEmailQueueFailure(pk, "Connection refused");
+        riSqlUtils.updateEmailQueueFailure(pk, "Connection refused");
+        assertEquals("Connection refused", riSqlUtils.getQueuedEmails(3).get(0).getLastError());
+
+        riSqlUtils.updateEmailQueueFailure(pk, "Connection refused");
+        assertTrue(riSqlUtils.getQueuedEmails(3).isEmpty());
+    }
+
+    // The changes in a summary that is never sent must still be reported as new by the next summary.
+    @Test
+    public void changesAreStillNewAfterSendingIsExhausted() {
+
+        String emailAddress = "user1@ebi.ac.uk";
+
+        Summary decoratedSummary = getDecoratedSummary(emailAddress);
+        assertTrue(((SummaryWithDecoration) decoratedSummary).isDecorated());
+
+        sendService.queueSummary(decoratedSummary, "subject", "content", true);
+        int pk = riSqlUtils.getQueuedEmails(3).get(0).getPk();
+        for (int i = 0; i < 3; i++) {
+            riSqlUtils.updateEmailQueueFailure(pk, "Connection refused");
+        }
+        assertTrue(riSqlUtils.getQueuedEmails(3).isEmpty());
+
+        decoratedSummary = getDecoratedSummary(emailAddress);
+        assertTrue(((SummaryWithDecoration) decoratedSummary).isDecorated());
+
+        // Once a summary is sent, its changes are no longer new.
+        sendService.queueSummary(decoratedSummary, "subject", "content", true);
+        riSqlUtils.updateEmailQueueSent(riSqlUtils.getQueuedEmails(3).get(0));
+
+        assertFalse(((SummaryWithDecoration) getDecoratedSummary(emailAddress)).isDecorated());
+    }
+
+
+    private Summary getDecoratedSummary(String emailAddress) {
+        Map<String, GeneSent> genesSent = generateService.getGeneSentStatusByEmailAddress().getOrDefault(emailAddress, Collections.emptyMap());
+
+        return new SummaryWithDecoration(generateService.getsummaryByEmailAddress(emailAddress), genesSent);
+    }
+}
@@ -18,7 +18,6 @@ package org.mousephenotype.cda.reports;
 
 import org.apache.commons.lang3.ClassUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.solr.client.solrj.SolrServerException;
 import org.mousephenotype.cda.constants.Constants;
 import org.mousephenotype.cda.reports.support.ReportException;
 import org.mousephenotype.cda.solr.service.ExperimentService;
@@ -29,6 +28,7 @@ import org.springframework.stereotype.Component;
 
 import java.beans.Introspector;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 
 /**
@@ -93,13 +93,19 @@ public class MetabolismCBCReport extends AbstractReport {
         int count = 0;
 
         try {
-            Collection<String> biologicalSampleIds = observationService.getMetabolismReportBiologicalSampleIds("IMPC_CBC_*");
-            for (String biologicalSampleId : biologicalSampleIds) {
-//if (count >= 1000) break;
-                Integer iBiologicalSampleId = commonUtils.tryParseInt(biologicalSampleId);
-                if (iBiologicalSampleId != null) {
-                    List<ObservationDTO> mouseInfoDTOs = observationService.getMetabolismReportBiologicalSampleId("IMPC_CBC_*", iBiologicalSampleId);
-                    List<ObservationDTO> mouseInfoInsulinDTOs = observationService.getMetabolismReportBiologicalSampleId("IMPC_INS_*", iBiologicalSampleId);
+            for (List<ObservationDTO> specimenDTOs : observationService.getMetabolismReportObservationsBySpecimen("IMPC_CBC_*", "IMPC_INS_*")) {
+                List<ObservationDTO> mouseInfoDTOs        = new ArrayList<>();
+                List<ObservationDTO> mouseInfoInsulinDTOs = new ArrayList<>();
+                for (ObservationDTO dto : specimenDTOs) {
+                    if (dto.getProcedureStableId().startsWith("IMPC_INS_")) {
+                        mouseInfoInsulinDTOs.add(dto);
+                    } else {
+                        mouseInfoDTOs.add(dto);
+                    }
+                }
+
+                // Only mice with CBC data are reported.
+                if ( ! mouseInfoDTOs.isEmpty()) {
                     csvWriter.writeRow(createReportRow(mouseInfoDTOs, mouseInfoInsulinDTOs));
                     if (++count % 10000 == 0)
                         log.debug(new Date().toString() + ": " + count + " records written.");
@@ -108,7 +114,7 @@ public class MetabolismCBCReport extends AbstractReport {
 
             csvWriter.close();
 
-        } catch (SolrServerException | IOException e) {
+        } catch (IOException | UncheckedIOException e) {
             throw new ReportException("Exception in MetabolismCBCReport. Reason: " + e.getLocalizedMessage());
         }
 
@@ -18,7 +18,6 @@ package org.mousephenotype.cda.reports;
 
 import org.apache.commons.lang3.ClassUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.solr.client.solrj.SolrServerException;
 import org.mousephenotype.cda.constants.Constants;
 import org.mousephenotype.cda.reports.support.ReportException;
 import org.mousephenotype.cda.solr.service.ExperimentService;
@@ -29,6 +28,7 @@ import org.springframework.stereotype.Component;
 
 import java.beans.Introspector;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 
 /**
@@ -132,21 +132,15 @@ public class MetabolismCalorimetryReport extends AbstractReport {
         int count = 0;
 
         try {
-            Collection<String> biologicalSampleIds = observationService.getMetabolismReportBiologicalSampleIds("IMPC_CAL_*");
-            for (String biologicalSampleId : biologicalSampleIds) {
-
-                Integer lBiologicalSampleId = commonUtils.tryParseInt(biologicalSampleId);
-                if (lBiologicalSampleId != null) {
-                    List<ObservationDTO> mouseInfoDTOs = observationService.getMetabolismReportBiologicalSampleId("IMPC_CAL_*", lBiologicalSampleId);
-                    csvWriter.writeRow(createReportRow(mouseInfoDTOs));
-                    if (++count % 10000 == 0)
-                        log.debug("  " + count + " records written.");
-                }
+            for (List<ObservationDTO> mouseInfoDTOs : observationService.getMetabolismReportObservationsBySpecimen("IMPC_CAL_*")) {
+                csvWriter.writeRow(createReportRow(mouseInfoDTOs));
+                if (++count % 10000 == 0)
+                    log.debug("  " + count + " records written.");
             }
 
             csvWriter.close();
 
-        } catch (SolrServerException | IOException e) {
+        } catch (IOException | UncheckedIOException e) {
             throw new ReportException("Exception in MetabolismCalorimetryReport. Reason: " + e.getLocalizedMessage());
         }
 
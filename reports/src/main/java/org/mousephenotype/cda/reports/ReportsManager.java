@@ -29,7 +29,12 @@ import org.springframework.boot.builder.SpringApplicationBuilder;
 import org.springframework.context.ConfigurableApplicationContext;
 
 import java.io.File;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Class to kick off reports from the command-line.
@@ -199,7 +204,6 @@ public class ReportsManager implements CommandLineRunner {
 
     @Override
     public void run(String... args) throws Exception {
-        File file = null;
 
         List<String> errors = parser.validate(parser.parse(args));
         if ( ! errors.isEmpty()) {
@@ -219,134 +223,32 @@ public class ReportsManager implements CommandLineRunner {
         logInputParameters();
 
         int systemExitCode = 0;
-        for (ReportType reportType : parser.getReports()) {
-            try {
-                switch (reportType) {
-
-                    case BMD_STATS:
-                        bmdStatsReport.run(args);
-                        file = bmdStatsReport.targetFile;
-                        break;
-
-                    case BMD_STATS_GLUCOSE_CONCENTRATION:
-                        bmdStatsGlucoseConcentrationReport.run(args);
-                        file = bmdStatsGlucoseConcentrationReport.targetFile;
-                        break;
-
-                    case BMD_STATS_GLUCOSE_RESPONSE:
-                        bmdStatsGlucoseResponseReport.run(args);
-                        file = bmdStatsGlucoseResponseReport.targetFile;
-                        break;
-
-                    case DATA_OVERVIEW:
-                        dataOverviewReport.run(args);
-                        file = dataOverviewReport.targetFile;
-                        break;
-
-                    case PHENOTYPE_HITS:
-                        phenotypeHitsReport.run(args);
-                        file = phenotypeHitsReport.targetFile;
-                        break;
-
-                    case FERTILITY:
-                        fertilityReport.run(args);
-                        file = fertilityReport.targetFile;
-                        break;
-
-                    case HITS_PER_LINE:
-                        hitsPerLineReport.run(args);
-                        file = hitsPerLineReport.targetFile;
-                        break;
-
-                    case HITS_PER_PARAMETER_AND_PROCEDURE:
-                        hitsPerParameterAndProcedureReport.run(args);
-                        file = hitsPerParameterAndProcedureReport.targetFile;
-                        break;
-
-                    case LACZ_EXPRESSION:
-                        lacZExpressionReport.run(args);
-                        file = lacZExpressionReport.targetFile;
-                        break;
-
-                    case METABOLISM_CALORIMETRY:
-                        metabolismCalorimetryReport.run(args);
-                        file = metabolismCalorimetryReport.targetFile;
-                        break;
-
-                    case METABOLISM_CBC:
-                        metabolismCBCReport.run(args);
-                        file = metabolismCBCReport.targetFile;
-                        break;
-
-                    case METABOLISM_DEXA:
-                        metabolismDEXAReport.run(args);
-                        file = metabolismDEXAReport.targetFile;
-                        break;
-
-                    case METABOLISM_IPGTT:
-                        metabolismIPGTTReport.run(args);
-                        file = metabolismIPGTTReport.targetFile;
-                        break;
-
-                    case IMPC_GAF:
-                        impcGafReport.run(args);
-                        file = impcGafReport.targetFile;
-                        break;
-
-                    case IMPC_P_VALUES:
-                        impcPValuesReport.run(args);
-                        file = impcPValuesReport.targetFile;
-                        break;
-
-                    case IMPC_PHENOTYPES_PROCEDURES:
-                        impcPhenotypesProceduresReport.run(args);
-                        file = impcPhenotypesProceduresReport.targetFile;
-                        break;
-
-                    case PHENOTYPE_OVERVIEW_PER_GENE:
-                        phenotypeOverviewPerGeneReport.run(args);
-                        file = phenotypeOverviewPerGeneReport.targetFile;
-                        break;
-
-                    case PROCEDURE_COMPLETENESS_IMPC:
-                        procedureCompletenessImpcReport.run(args);
-                        file = procedureCompletenessImpcReport.targetFile;
-                        break;
-
-                    case PROCEDURE_COMPLETENESS_ALL:
-                        procedureCompletenessAllReport.run(args);
-                        file = procedureCompletenessAllReport.targetFile;
-                        break;
-
-                    case VIABILITY:
-                        viabilityReport.run(args);
-                        file = viabilityReport.targetFile;
-                        break;
-
-                    case ZYGOSITY:
-                        zygosityReport.run(args);
-                        file = zygosityReport.targetFile;
-                        break;
-
-//                    case IDR:
-//                        idrReport.run(args);
-//                        file = idrReport.targetFile;
-//                        break;
-//                    case LACZMPOVERLAP: // This is not ready for users, used internally only, at the moment.
-//                    	laczMpReport.run(args);
-//                    	file = laczMpReport.targetFile;
-//                    	break;
-                   
-                }
 
-                String fqFilename = (file != null ? file.getAbsolutePath() : "<unknown>");
-                log.info("Created report '" + reportType + "' in " + fqFilename + "\n");
+        // Each report is a separate bean with its own output file, so different reports can run at the same time.
+        ExecutorService executor = Executors.newFixedThreadPool(parser.getThreads());
+        AtomicInteger   failed   = new AtomicInteger();
+        for (ReportType reportType : new LinkedHashSet<>(parser.getReports())) {
+            executor.submit(() -> {
+                try {
 
-            } catch (Exception e) {
+                    File file = runReport(reportType, args);
 
-                log.error("FAILED to create report '" + reportType + " in " + parser.getTargetDirectory() + ". Reason: " + e.getLocalizedMessage());
-                e.printStackTrace();
-            }
+                    String fqFilename = (file != null ? file.getAbsolutePath() : "<unknown>");
+                    log.info("Created report '" + reportType + "' in " + fqFilename + "\n");
+
+                } catch (Exception e) {
+
+                    failed.incrementAndGet();
+                    log.error("FAILED to create report '" + reportType + " in " + parser.getTargetDirectory() + ". Reason: " + e.getLocalizedMessage());
+                    e.printStackTrace();
+                }
+            });
+        }
+
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        if (failed.get() > 0) {
+            log.warn(failed.get() + " report(s) failed.");
         }
 
         if (parser.showHelp()) {
@@ -360,6 +262,135 @@ public class ReportsManager implements CommandLineRunner {
     // PRIVATE METHODS
 
 
+    /**
+     * Runs one report.
+     *
+     * @return the report file, or null if the report type has no report
+     */
+    private File runReport(ReportType reportType, String[] args) throws Exception {
+        File file = null;
+
+        switch (reportType) {
+
+            case BMD_STATS:
+                bmdStatsReport.run(args);
+                file = bmdStatsReport.targetFile;
+                break;
+
+            case BMD_STATS_GLUCOSE_CONCENTRATION:
+                bmdStatsGlucoseConcentrationReport.run(args);
+                file = bmdStatsGlucoseConcentrationReport.targetFile;
+                break;
+
+            case BMD_STATS_GLUCOSE_RESPONSE:
+                bmdStatsGlucoseResponseReport.run(args);
+                file = bmdStatsGlucoseResponseReport.targetFile;
+                break;
+
+            case DATA_OVERVIEW:
+                dataOverviewReport.run(args);
+                file = dataOverviewReport.targetFile;
+                break;
+
+            case PHENOTYPE_HITS:
+                phenotypeHitsReport.run(args);
+                file = phenotypeHitsReport.targetFile;
+                break;
+
+            case FERTILITY:
+                fertilityReport.run(args);
+                file = fertilityReport.targetFile;
+                break;
+
+            case HITS_PER_LINE:
+                hitsPerLineReport.run(args);
+                file = hitsPerLineReport.targetFile;
+                break;
+
+            case HITS_PER_PARAMETER_AND_PROCEDURE:
+                hitsPerParameterAndProcedureReport.run(args);
+                file = hitsPerParameterAndProcedureReport.targetFile;
+                break;
+
+            case LACZ_EXPRESSION:
+                lacZExpressionReport.run(args);
+                file = lacZExpressionReport.targetFile;
+                break;
+
+            case METABOLISM_CALORIMETRY:
+                metabolismCalorimetryReport.run(args);
+                file = metabolismCalorimetryReport.targetFile;
+                break;
+
+            case METABOLISM_CBC:
+                metabolismCBCReport.run(args);
+                file = metabolismCBCReport.targetFile;
+                break;
+
+            case METABOLISM_DEXA:
+                metabolismDEXAReport.run(args);
+                file = metabolismDEXAReport.targetFile;
+                break;
+
+            case METABOLISM_IPGTT:
+                metabolismIPGTTReport.run(args);
+                file = metabolismIPGTTReport.targetFile;
+                break;
+
+            case IMPC_GAF:
+                impcGafReport.run(args);
+                file = impcGafReport.targetFile;
+                break;
+
+            case IMPC_P_VALUES:
+                impcPValuesReport.run(args);
+                file = impcPValuesReport.targetFile;
+                break;
+
+            case IMPC_PHENOTYPES_PROCEDURES:
+                impcPhenotypesProceduresReport.run(args);
+                file = impcPhenotypesProceduresReport.targetFile;
+                break;
+
+            case PHENOTYPE_OVERVIEW_PER_GENE:
+                phenotypeOverviewPerGeneReport.run(args);
+                file = phenotypeOverviewPerGeneReport.targetFile;
+                break;
+
+            case PROCEDURE_COMPLETENESS_IMPC:
+                procedureCompletenessImpcReport.run(args);
+                file = procedureCompletenessImpcReport.targetFile;
+                break;
+
+            case PROCEDURE_COMPLETENESS_ALL:
+                procedureCompletenessAllReport.run(args);
+                file = procedureCompletenessAllReport.targetFile;
+                break;
+
+            case VIABILITY:
+                viabilityReport.run(args);
+                file = viabilityReport.targetFile;
+                break;
+
+            case ZYGOSITY:
+                zygosityReport.run(args);
+                file = zygosityReport.targetFile;
+                break;
+
+//            case IDR:
+//                idrReport.run(args);
+//                file = idrReport.targetFile;
+//                break;
+//            case LACZMPOVERLAP: // This is not ready for users, used internally only, at the moment.
+//            	laczMpReport.run(args);
+//            	file = laczMpReport.targetFile;
+//            	break;
+           
+        }
+
+        return file;
+    }
+
     private void usage() {
         String[] commands = {
               "[[[[--" + ReportsManagerParser.REPORTS_ARG          + "]=report1],report2], ...]"
@@ -367,6 +398,7 @@ public class ReportsManager implements CommandLineRunner {
             , "   [--" + ReportsManagerParser.REPORT_FORMAT_ARG    + "={csv | tsv}]"
 //            , "   [--" + ReportsManagerParser.PROPERTIES_FILE_ARG  + "=properties_file]"
             , "   [--" + ReportsManagerParser.PREFIX_ARG           + "=prefix]"
+            , "   [--" + ReportsManagerParser.THREADS_ARG          + "=threads]"
             , "   [--" + ReportsManagerParser.HELP_ARG             + "]"
         };
         String[] defaults = {
@@ -375,6 +407,7 @@ public class ReportsManager implements CommandLineRunner {
             , "Default is " + ReportsManagerParser.DEFAULT_REPORT_FORMAT
 //            , "Default is " + ReportsManagerParser.DEFAULT_PROPERTIES_FILE
             , "Default is none"
+            , "Number of reports to run at the same time. Default is " + ReportsManagerParser.DEFAULT_THREADS
             , ""
         };
         System.out.println("Usage:");
@@ -392,5 +425,6 @@ public class ReportsManager implements CommandLineRunner {
         log.info("Report format:    " + (parser.getReportFormat() == null ? "<omitted>" : parser.getReportFormat()));
         log.info("Properties targetFile:  " + (parser.getApplicationProperties() == null ? "<omitted>" : parser.getApplicationProperties().getURL().toString()));
         log.info("Prefix:           " + (parser.getPrefix() == null ? "<omitted>" : parser.getPrefix()));
+        log.info("Threads:          " + parser.getThreads());
     }
 }
\ No newline at end of file
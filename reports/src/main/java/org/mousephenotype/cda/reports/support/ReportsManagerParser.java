@@ -32,8 +32,12 @@ import java.util.Map;
  */
 public class ReportsManagerParser extends AbstractReportParser {
     protected List<ReportsManager.ReportType> reports = new ArrayList<>();
+    protected int                             threads = DEFAULT_THREADS;
 
     public static final String REPORTS_ARG = "reports";
+    public static final String THREADS_ARG = "threads";
+
+    public static final int DEFAULT_THREADS = 1;
 
     public Map<String, String> parse(String[] args) {
         PropertySource ps = new SimpleCommandLinePropertySource(args);
@@ -44,6 +48,10 @@ public class ReportsManagerParser extends AbstractReportParser {
             propertyMap.put(REPORTS_ARG, ps.getProperty(REPORTS_ARG).toString());
         }
 
+        if ((ps.containsProperty(THREADS_ARG))  && ps.getProperty(THREADS_ARG) != null) {
+            propertyMap.put(THREADS_ARG, ps.getProperty(THREADS_ARG).toString());
+        }
+
         return propertyMap;
     }
 
@@ -69,10 +77,28 @@ public class ReportsManagerParser extends AbstractReportParser {
             reports.addAll(Arrays.asList(ReportsManager.ReportType.values()));
         }
 
+        if (propertyMap.containsKey(THREADS_ARG)) {
+            try {
+                threads = Integer.parseInt(propertyMap.get(THREADS_ARG));
+                if (threads < 1) {
+                    errors.add("Invalid threads value '" + propertyMap.get(THREADS_ARG) + "'. threads must be at least 1.");
+                }
+            } catch (NumberFormatException e) {
+                errors.add("Invalid threads value '" + propertyMap.get(THREADS_ARG) + "'.");
+            }
+        }
+
         return errors;
     }
 
     public List<ReportsManager.ReportType> getReports() {
         return reports;
     }
+
+    /**
+     * @return the number of reports to run at the same time
+     */
+    public int getThreads() {
+        return threads;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright © 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package uk.ac.ebi;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import uk.ac.ebi.phenotype.web.cache.BoundedCacheManager;
+import uk.ac.ebi.phenotype.web.cache.CacheStatisticsEndpoint;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounds the application's caches, which would otherwise be unbounded maps that never expire.
+ *
+ * The spec of each cache (see {@link com.google.common.cache.CacheBuilderSpec}) may be overridden with a
+ * {@code cache.spec.<cache name>} property, and that of caches not listed here with {@code cache.spec.default}.
+ */
+@Configuration
+public class PhenotypeArchiveCacheConfig {
+
+    private static final Map<String, String> SPECS = new LinkedHashMap<>();
+    static {
+        // Keyed on the Model and request, so entries are never hit again; keep only a few
+        SPECS.put("geneHeatMapCache", "maximumSize=10,expireAfterWrite=1d");
+        SPECS.put("geneRowCache", "maximumSize=100,expireAfterWrite=1d");
+        SPECS.put("genePhenotypeMap", "maximumSize=1,expireAfterWrite=1d");
+        SPECS.put("embryodata", "maximumSize=1,expireAfterWrite=1d");
+        SPECS.put("menu", "maximumSize=10,expireAfterWrite=1h");
+        // Search page counts and facets by core and query; also cleared when the data release changes
+        SPECS.put("querybroker", "maximumSize=600,expireAfterWrite=1d");
+        // Parallel coordinates by selection, and the dataset of each procedure they are computed from; also cleared
+        // when the data release changes
+        SPECS.put("parallelCoordinates", "maximumSize=200,expireAfterWrite=1d");
+        SPECS.put("parallelCoordinatesData", "maximumSize=100,expireAfterWrite=7d");
+    }
+
+    @Value("${cache.spec.default:maximumSize=1000,expireAfterWrite=1d}")
+    private String defaultSpec;
+
+
+    @Bean
+    public BoundedCacheManager cacheManager(Environment environment, ObjectProvider<MeterRegistry> meterRegistry) {
+
+        Map<String, String> specs = new LinkedHashMap<>();
+        for (Map.Entry<String, String> spec : SPECS.entrySet()) {
+            specs.put(spec.getKey(), environment.getProperty("cache.spec." + spec.getKey(), spec.getValue()));
+        }
+
+        return new BoundedCacheManager(specs, defaultSpec, meterRegistry.getIfAvailable());
+    }
+
+    @Bean
+    public CacheStatisticsEndpoint cacheStatisticsEndpoint(BoundedCacheManager cacheManager) {
+        return new CacheStatisticsEndpoint(cacheManager);
+    }
+}
@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright © 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package uk.ac.ebi.phenotype.web.cache;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.AbstractCacheManager;
+
+import java.util.*;
+
+/**
+ * Cache manager whose caches are bounded in size and age. Each cache is built from a Guava
+ * {@link com.google.common.cache.CacheBuilderSpec} string, e.g. {@code maximumSize=100,expireAfterWrite=1d}: the spec
+ * configured for its name, or the default spec for caches first asked for by name at runtime. Statistics are always
+ * recorded, and are published to the meter registry, if there is one, as {@code cache.gets}, {@code cache.puts},
+ * {@code cache.evictions} and {@code cache.size} tagged with the cache name.
+ */
+public class BoundedCacheManager extends AbstractCacheManager {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final Map<String, String> specs;
+    private final String              defaultSpec;
+    private final MeterRegistry       meterRegistry;
+
+    /**
+     * @param specs         the spec of each cache known in advance, by cache name
+     * @param defaultSpec   the spec of any other cache
+     * @param meterRegistry the registry to publish statistics to, or null not to publish them
+     */
+    public BoundedCacheManager(Map<String, String> specs, String defaultSpec, MeterRegistry meterRegistry) {
+        this.specs = new LinkedHashMap<>(specs);
+        this.defaultSpec = defaultSpec;
+        this.meterRegistry = meterRegistry;
+    }
+
+
+    /**
+     * @return the hit, miss, eviction and size counts of every cache, by cache name
+     */
+    public Map<String, Map<String, Object>> getStatistics() {
+
+        Map<String, Map<String, Object>> statistics = new TreeMap<>();
+        for (String name : getCacheNames()) {
+            com.google.common.cache.Cache<Object, Object> cache = ((GuavaCache) getCache(name)).getNativeCache();
+            CacheStats                                    stats = cache.stats();
+
+            Map<String, Object> cacheStatistics = new LinkedHashMap<>();
+            cacheStatistics.put("spec", specs.getOrDefault(name, defaultSpec));
+            cacheStatistics.put("size", cache.size());
+            cacheStatistics.put("hits", stats.hitCount());
+            cacheStatistics.put("misses", stats.missCount());
+            cacheStatistics.put("hitRate", stats.hitRate());
+            cacheStatistics.put("evictions", stats.evictionCount());
+            cacheStatistics.put("averageLoadMillis", stats.averageLoadPenalty() / 1000000.0);
+            statistics.put(name, cacheStatistics);
+        }
+
+        return statistics;
+    }
+
+
+    @Override
+    protected Collection<? extends Cache> loadCaches() {
+        List<Cache> caches = new ArrayList<>();
+        for (Map.Entry<String, String> spec : specs.entrySet()) {
+            caches.add(createCache(spec.getKey(), spec.getValue()));
+        }
+
+        return caches;
+    }
+
+    @Override
+    protected Cache getMissingCache(String name) {
+        return createCache(name, defaultSpec);
+    }
+
+    private Cache createCache(String name, String spec) {
+
+        logger.info("Creating cache {} with spec '{}'", name, spec);
+        com.google.common.cache.Cache<Object, Object> cache = CacheBuilder.from(spec).recordStats().build();
+
+        if (meterRegistry != null) {
+            GuavaCacheMetrics.monitor(meterRegistry, cache, name);
+        }
+
+        return new GuavaCache(name, cache);
+    }
+}
@@ -0,0 +1,41 @@
+/*******************************************************************************
+ * Copyright © 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package uk.ac.ebi.phenotype.web.cache;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+import java.util.Map;
+
+/**
+ * Actuator (and JMX) endpoint {@code cachestats}: the size, hits, misses and evictions of each cache, to tell which
+ * caches pay for the memory they use. Expose it over http with {@code management.endpoints.web.exposure.include}.
+ */
+@Endpoint(id = "cachestats")
+public class CacheStatisticsEndpoint {
+
+    private final BoundedCacheManager cacheManager;
+
+    public CacheStatisticsEndpoint(BoundedCacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    @ReadOperation
+    public Map<String, Map<String, Object>> statistics() {
+        return cacheManager.getStatistics();
+    }
+}
@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright © 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package uk.ac.ebi.phenotype.web.cache;
+
+import org.mousephenotype.cda.solr.service.SearchPhenotypeService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+import uk.ac.ebi.phenotype.web.controller.EmbryoViewerApiController;
+import uk.ac.ebi.phenotype.web.controller.ParallelCoordinatesController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Fills the caches whose entries are slowest to compute and do not depend on the request, once the application is up,
+ * so that the first visitors do not pay for them. The work runs on a background thread; failures are logged and leave
+ * the cache to be filled on first use.
+ *
+ * Disabled unless {@code cache.warmup=true}.
+ */
+@Component
+public class CacheWarmer implements ApplicationListener<ApplicationReadyEvent> {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final boolean                       enabled;
+    private final EmbryoViewerApiController     embryoViewerApiController;
+    private final SearchPhenotypeService        searchPhenotypeService;
+    private final ParallelCoordinatesController parallelCoordinatesController;
+
+    public CacheWarmer(
+            @Value("${cache.warmup:false}") boolean enabled,
+            EmbryoViewerApiController embryoViewerApiController,
+            SearchPhenotypeService searchPhenotypeService,
+            ParallelCoordinatesController parallelCoordinatesController) {
+        this.enabled = enabled;
+        this.embryoViewerApiController = embryoViewerApiController;
+        this.searchPhenotypeService = searchPhenotypeService;
+        this.parallelCoordinatesController = parallelCoordinatesController;
+    }
+
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+
+        if ( ! enabled) {
+            return;
+        }
+
+        Thread thread = new Thread(this::warm, "cache-warmer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Calls each warmed method through its Spring proxy, so the result is stored in its cache, or a method that fills
+     * its cache itself.
+     */
+    void warm() {
+
+        // Keyed by cache name
+        Map<String, Callable<?>> warmers = new LinkedHashMap<>();
+        warmers.put("embryodata", embryoViewerApiController::getGeneTable);
+        warmers.put("genePhenotypeMap", searchPhenotypeService::getGenesByPhenotype);
+        warmers.put("parallelCoordinatesData", () -> { parallelCoordinatesController.warmDatasets(); return null; });
+
+        for (Map.Entry<String, Callable<?>> warmer : warmers.entrySet()) {
+            long start = System.currentTimeMillis();
+            try {
+                warmer.getValue().call();
+                logger.info("Warmed cache {} in {}ms", warmer.getKey(), System.currentTimeMillis() - start);
+
+            } catch (Exception e) {
+                logger.warn("Unable to warm cache {}. Reason: {}", warmer.getKey(), e.getLocalizedMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright © 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package uk.ac.ebi.phenotype.web.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Spring {@link org.springframework.cache.Cache} over a Guava {@link Cache}, so that the size, expiry and statistics
+ * Guava provides apply to {@code @Cacheable} methods. Null values are stored as a placeholder, as Guava does not
+ * allow them.
+ */
+public class GuavaCache extends AbstractValueAdaptingCache {
+
+    private final String                name;
+    private final Cache<Object, Object> cache;
+
+    public GuavaCache(String name, Cache<Object, Object> cache) {
+        super(true);
+        this.name = name;
+        this.cache = cache;
+    }
+
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Cache<Object, Object> getNativeCache() {
+        return cache;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * Loads the value of {@code key} once, however many threads ask for it at the same time
+     * ({@code @Cacheable(sync = true)}).
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        try {
+            return (T) fromStoreValue(cache.get(key, () -> toStoreValue(valueLoader.call())));
+
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw new ValueRetrievalException(key, valueLoader, e.getCause());
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        cache.put(key, toStoreValue(value));
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        return toValueWrapper(cache.asMap().putIfAbsent(key, toStoreValue(value)));
+    }
+
+    @Override
+    public void evict(Object key) {
+        cache.invalidate(key);
+    }
+
+    @Override
+    public void clear() {
+        cache.invalidateAll();
+    }
+}
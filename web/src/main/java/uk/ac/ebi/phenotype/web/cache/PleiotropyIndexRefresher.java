@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright © 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package uk.ac.ebi.phenotype.web.cache;
+
+import org.mousephenotype.cda.solr.service.GenotypePhenotypeService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import uk.ac.ebi.phenotype.web.util.DataReleaseVersionManager;
+
+/**
+ * Builds the pleiotropy index of {@link GenotypePhenotypeService} shortly after startup, so that the first chord
+ * diagram request does not wait for it, and builds it again whenever the data release changes (checked every
+ * {@code pleiotropy.checkMillis}). Failures are logged and retried at the next check; until then the index is built on
+ * first use.
+ */
+@Component
+public class PleiotropyIndexRefresher {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final GenotypePhenotypeService  genotypePhenotypeService;
+    private final DataReleaseVersionManager dataReleaseVersionManager;
+
+    // The data release the index was built from
+    private volatile String indexedRelease;
+
+    public PleiotropyIndexRefresher(GenotypePhenotypeService genotypePhenotypeService, DataReleaseVersionManager dataReleaseVersionManager) {
+        this.genotypePhenotypeService = genotypePhenotypeService;
+        this.dataReleaseVersionManager = dataReleaseVersionManager;
+    }
+
+
+    @Scheduled(initialDelayString = "${pleiotropy.initialDelayMillis:10000}", fixedDelayString = "${pleiotropy.checkMillis:3600000}")
+    public void refresh() {
+
+        String release = dataReleaseVersionManager.getReleaseVersion();
+        if (release.equals(indexedRelease)) {
+            return;
+        }
+
+        try {
+            genotypePhenotypeService.refreshPleiotropyIndex();
+            indexedRelease = release;
+
+        } catch (Exception e) {
+            logger.warn("Unable to build the pleiotropy index of release {}. Reason: {}", release, e.getLocalizedMessage());
+        }
+    }
+}
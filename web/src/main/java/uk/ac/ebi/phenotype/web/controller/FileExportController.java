@@ -20,6 +20,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.response.QueryResponse;
 import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.params.CursorMarkParams;
 import org.mousephenotype.cda.constants.Constants;
 import org.mousephenotype.cda.db.pojo.Allele;
 import org.mousephenotype.cda.db.pojo.Strain;
@@ -27,6 +28,7 @@ import org.mousephenotype.cda.db.repositories.AlleleRepository;
 import org.mousephenotype.cda.db.repositories.StrainRepository;
 import org.mousephenotype.cda.enumerations.BiologicalSampleType;
 import org.mousephenotype.cda.enumerations.SexType;
+import org.mousephenotype.cda.exporter.StreamingExporter;
 import org.mousephenotype.cda.solr.generic.util.JSONImageUtils;
 import org.mousephenotype.cda.solr.service.ExperimentService;
 import org.mousephenotype.cda.solr.service.GeneService;
@@ -51,6 +53,7 @@ import uk.ac.ebi.phenotype.service.BatchQueryForm;
 import uk.ac.ebi.phenotype.util.SolrUtilsWeb;
 import uk.ac.ebi.phenotype.web.util.FileExportUtils;
 
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -61,6 +64,10 @@ import java.net.URISyntaxException;
 import java.net.URLEncoder;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -98,6 +105,27 @@ public class FileExportController {
 
 	private String hostName;
 
+	// Solr documents fetched per request when exporting a whole grid, and ids per batch query request
+	private static final int EXPORT_PAGE_SIZE   = 1000;
+	private static final int BATCH_QUERY_CHUNK  = 500;
+
+	// Batch query chunks fetched ahead of the one being written, per export
+	private static final int BATCH_QUERY_WINDOW = 4;
+
+	// Grids whose export rows depend only on the documents of the page, so that they can be exported a page at a time
+	private static final Set<String> PAGED_EXPORT_CORES = new HashSet<>(Arrays.asList("gene", "mp", "anatomy", "pipeline", "disease", "allele2"));
+
+	private final ExecutorService exportExecutor = Executors.newFixedThreadPool(8, r -> {
+		Thread thread = new Thread(r, "export");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	@PreDestroy
+	public void destroy() {
+		exportExecutor.shutdownNow();
+	}
+
 	/**
 	 * Return a TSV formatted response which contains all datapoints
 	 *
@@ -287,6 +315,11 @@ public class FileExportController {
 		length = length != null ? length : 10;
 		panelName = panelName == null ? "" : panelName;
 
+		if (( ! solrCoreName.isEmpty()) && dumpMode.equals("all") && PAGED_EXPORT_CORES.contains(solrCoreName) && ( ! fileType.equals("html"))) {
+			exportDataTablePages(query, solrCoreName, solrFilters, showImgView, fqStr, legacyOnly, fileType, fileName, request, response);
+			return;
+		}
+
 		if (!solrCoreName.isEmpty()) {
 
 			if (dumpMode.equals("all")) {
@@ -309,6 +342,61 @@ public class FileExportController {
 		FileExportUtils.writeOutputFile(response, dataRows, fileType, fileName, filters);
 	}
 
+	/**
+	 * Writes every document of the grid to the response a page at a time, fetching the next page while the current one
+	 * is written, so that memory use does not grow with the size of the export and the download starts at once. Pages
+	 * are read with a cursorMark, so they stay consistent if the core is committed to or replicated mid-export.
+	 */
+	private void exportDataTablePages(String query, String solrCoreName, String solrFilters, boolean showImgView,
+									  String fqStr, boolean legacyOnly, String fileType, String fileName,
+									  HttpServletRequest request, HttpServletResponse response) throws Exception {
+
+		StreamingExporter  exporter   = null;
+		String             cursorMark = CursorMarkParams.CURSOR_MARK_START;
+		Future<JSONObject> nextPage   = exportExecutor.submit(() -> solrIndex.getDataTableExportPage(solrCoreName, solrFilters, CursorMarkParams.CURSOR_MARK_START, EXPORT_PAGE_SIZE));
+
+		try {
+			for (int start = 0; nextPage != null; start += EXPORT_PAGE_SIZE) {
+
+				JSONObject json           = getExportPage(nextPage);
+				int        docCount       = json.getJSONObject("response").getJSONArray("docs").length();
+				String     nextCursorMark = json.getString(CursorMarkParams.CURSOR_MARK_NEXT);
+
+				// A short page is the last; otherwise solr returns the same cursorMark once there are no more documents
+				nextPage = ((docCount == EXPORT_PAGE_SIZE) && ( ! nextCursorMark.equals(cursorMark))
+						? exportExecutor.submit(() -> solrIndex.getDataTableExportPage(solrCoreName, solrFilters, nextCursorMark, EXPORT_PAGE_SIZE))
+						: null);
+				cursorMark = nextCursorMark;
+
+				List<String> rows = composeDataTableExportRows(query, solrCoreName, json, start, EXPORT_PAGE_SIZE, showImgView, solrFilters, request, legacyOnly, fqStr);
+				if (exporter == null) {
+					exporter = StreamingExporter.open(response, fileType, fileName, Arrays.asList(rows.get(0).split("\t")));
+				}
+				for (String row : rows.subList(1, rows.size())) {
+					exporter.write(Arrays.asList(row.split("\t")));
+				}
+			}
+
+		} finally {
+			if (nextPage != null) {
+				nextPage.cancel(true);
+			}
+			if (exporter != null) {
+				log.info("Exported {} {} rows", exporter.getRowCount(), solrCoreName);
+				exporter.close();
+			}
+		}
+	}
+
+	private <T> T getExportPage(Future<T> page) throws Exception {
+		try {
+			return page.get();
+
+		} catch (ExecutionException e) {
+			throw (e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+		}
+	}
+
 	private List<String> getDataRowsForExperiment(String[] allele,
 												  String[] mgiGeneId,
 												  String[] parameterStableId,
@@ -1088,9 +1176,6 @@ public class FileExportController {
 			HttpSession session, HttpServletRequest request, HttpServletResponse response, Model model) throws Exception {
 
 		List<String> queryIds = new ArrayList<String>(Arrays.asList(idlist.split(",")));
-		List<QueryResponse> solrResponses = new ArrayList<>();
-		List<String> batchIdList = new ArrayList<>();
-		String batchIdListStr = null;
 
 
 		//System.out.println("bq Export dataTypeName: " + dataTypeName);
@@ -1121,39 +1206,67 @@ public class FileExportController {
 			queryIds = Arrays.asList(idlist.split(","));
 		}
 
-		int counter = 0;
-
-		for (String id : queryIds) {
-			counter++;
-
-			// do the batch size
-			if (counter % 500 == 0) {
-				batchIdList.add(id);
+		String fileName = "batch_query_dataset";
 
-				// batch solr query
-				batchIdListStr = StringUtils.join(batchIdList, ",");
-				// System.out.println(batchIdListStr);
+		if (fileType.equals("html")) {
+			List<QueryResponse> solrResponses = new ArrayList<>();
+			for (int i = 0; i < queryIds.size(); i += BATCH_QUERY_CHUNK) {
+				String batchIdListStr = StringUtils.join(queryIds.subList(i, Math.min(i + BATCH_QUERY_CHUNK, queryIds.size())), ",");
 				solrResponses.add(solrIndex.getBatchQueryJson(batchIdListStr, gridFields, dataTypeName));
-
-				batchIdList = new ArrayList<>();
-			} else {
-				batchIdList.add(id);
 			}
+
+			List<String> dataRows = composeBatchQueryDataTableRows(solrResponses, dataTypeName, gridFields, request, queryIds);
+
+			String filters = null;
+			FileExportUtils.writeOutputFile(response, dataRows, fileType, fileName, filters);
+			return;
 		}
 
-		if (batchIdList.size() > 0) {
-			// do the rest
-			// batch solr query
-			batchIdListStr = StringUtils.join(batchIdList, ",");
-			solrResponses.add(solrIndex.getBatchQueryJson(batchIdListStr, gridFields, dataTypeName));
+		exportBatchQueryChunks(queryIds, dataTypeName, gridFields, fileType, fileName, request, response);
+	}
+
+	/**
+	 * Queries Solr for the ids a chunk at a time, up to {@link #BATCH_QUERY_WINDOW} chunks ahead of the one being
+	 * written, and writes each chunk's rows, in the order of the ids, as soon as it arrives.
+	 */
+	private void exportBatchQueryChunks(List<String> queryIds, String dataTypeName, String gridFields, String fileType, String fileName,
+										HttpServletRequest request, HttpServletResponse response) throws Exception {
+
+		List<List<String>>           chunks   = new ArrayList<>();
+		Deque<Future<QueryResponse>> fetching = new ArrayDeque<>();
+		StreamingExporter            exporter = null;
+
+		for (int i = 0; i < queryIds.size(); i += BATCH_QUERY_CHUNK) {
+			chunks.add(queryIds.subList(i, Math.min(i + BATCH_QUERY_CHUNK, queryIds.size())));
 		}
 
-		List<String> dataRows = composeBatchQueryDataTableRows(solrResponses, dataTypeName, gridFields, request, queryIds);
+		try {
+			for (int i = 0; i < chunks.size(); i++) {
 
-		String fileName = "batch_query_dataset";
+				while ((fetching.size() < BATCH_QUERY_WINDOW) && (i + fetching.size() < chunks.size())) {
+					String batchIdListStr = StringUtils.join(chunks.get(i + fetching.size()), ",");
+					fetching.add(exportExecutor.submit(() -> solrIndex.getBatchQueryJson(batchIdListStr, gridFields, dataTypeName)));
+				}
 
-		String filters = null;
-		FileExportUtils.writeOutputFile(response, dataRows, fileType, fileName, filters);
+				QueryResponse solrResponse = getExportPage(fetching.remove());
+				List<String>  rows         = composeBatchQueryDataTableRows(Collections.singletonList(solrResponse), dataTypeName, gridFields, request, chunks.get(i));
+
+				if (exporter == null) {
+					exporter = StreamingExporter.open(response, fileType, fileName, Arrays.asList(rows.get(0).split("\t")));
+				}
+				for (String row : rows.subList(1, rows.size())) {
+					exporter.write(Arrays.asList(row.split("\t")));
+				}
+			}
+
+		} finally {
+			for (Future<QueryResponse> chunk : fetching) {
+				chunk.cancel(true);
+			}
+			if (exporter != null) {
+				exporter.close();
+			}
+		}
 	}
 
 	private List<String> composeBatchQueryDataTableRows(List<QueryResponse> solrResponses, String dataTypeName,
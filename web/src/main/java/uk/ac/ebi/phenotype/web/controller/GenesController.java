@@ -56,6 +56,8 @@ import uk.ac.ebi.phenotype.ontology.PhenotypeSummaryDAO;
 import uk.ac.ebi.phenotype.ontology.PhenotypeSummaryType;
 import uk.ac.ebi.phenotype.service.PharosService;
 import uk.ac.ebi.phenotype.web.util.FileExportUtils;
+import uk.ac.ebi.phenotype.web.util.ServiceFanOut;
+import uk.ac.ebi.phenotype.web.util.ServiceFanOut.Section;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
@@ -91,6 +93,7 @@ public class GenesController {
     private final ImpressService           impressService;
     private final WebDao                   phenoDigm2Dao;
     private final RegisterInterestUtils    riUtils;
+    private final ServiceFanOut            fanOut;
 
     @Resource(name = "globalConfiguration")
     Map<String, String> config;
@@ -100,7 +103,7 @@ public class GenesController {
     private PharosService pharosService;
 
     @Inject
-    public GenesController(PhenotypeCallSummarySolr phenotypeCallSummaryService, PhenotypeSummaryDAO phenSummary, ImagesSolrDao imagesSolrDao, ObservationService observationService, SolrIndex solrIndex, SolrIndex2 solrIndex2, WebDao phenoDigm2Dao, ImageService imageService, ExpressionService expressionService, RegisterInterestUtils riUtils, GeneService geneService, ImpressService impressService, GenotypePhenotypeService genotypePhenotypeService, OrderService orderService, StatisticalResultService statisticalResultService) {
+    public GenesController(PhenotypeCallSummarySolr phenotypeCallSummaryService, PhenotypeSummaryDAO phenSummary, ImagesSolrDao imagesSolrDao, ObservationService observationService, SolrIndex solrIndex, SolrIndex2 solrIndex2, WebDao phenoDigm2Dao, ImageService imageService, ExpressionService expressionService, RegisterInterestUtils riUtils, GeneService geneService, ImpressService impressService, GenotypePhenotypeService genotypePhenotypeService, OrderService orderService, StatisticalResultService statisticalResultService, ServiceFanOut fanOut) {
         this.phenotypeCallSummaryService = phenotypeCallSummaryService;
         this.phenSummary = phenSummary;
         this.imagesSolrDao = imagesSolrDao;
@@ -116,6 +119,7 @@ public class GenesController {
         this.genotypePhenotypeService = genotypePhenotypeService;
         this.orderService = orderService;
         this.statisticalResultService = statisticalResultService;
+        this.fanOut = fanOut;
     }
 
     @PostConstruct
@@ -230,46 +234,73 @@ public class GenesController {
     private void processGeneRequest(String acc, Model model, HttpServletRequest request)
             throws GenomicFeatureNotFoundException, URISyntaxException, IOException, SQLException, SolrServerException {
         int numberOfTopLevelMpTermsWithStatisticalResult = 0;
+
+        // Start the lookups that only need the accession while the gene itself is fetched. They run on other threads,
+        // so are given the request attributes they need rather than the request.
+        String baseUrl     = request.getAttribute("baseUrl").toString();
+        String genePageUrl = request.getAttribute("mappedHostname").toString() + baseUrl;
+
+        ServiceFanOut.Batch                                sections          = fanOut.newBatch("Gene page " + acc);
+        Section<String>                                    geneStatusSection = sections.submit("production status (solr)", () -> solrIndex.getGeneStatus(acc));
+        Section<Set<String>>                               viabilitySection  = sections.submit("viability", () -> observationService.getViabilityForGene(acc));
+        Section<Map<ZygosityType, PhenotypeSummaryBySex>>  summarySection    = sections.submit("phenotype summary", () -> phenSummary.getSummaryObjectsByZygosity(acc));
+        Section<Map<String, String>>                       productionSection = sections.submit("production status", () -> geneService.getProductionStatus(acc, genePageUrl));
+        Section<Boolean>                                   bodyWeightSection = sections.submit("body weight", () -> observationService.hasBodyWeight(acc));
+        List<Section<Model>>                               imageSections     = Arrays.asList(
+                sections.submitModel("experimental images", m -> getExperimentalImages(acc, m)),
+                sections.submitModel("expression images", m -> getExpressionImages(acc, m)),
+                sections.submitModel("IMPC images", m -> getImpcImages(acc, m)),
+                sections.submitModel("IMPC expression images", m -> getImpcExpressionImages(acc, m)),
+                sections.submitModel("IMPC embryo expression", m -> getImpcEmbryoExpression(acc, m)));
+        Section<Model>                                     phenotypesSection = sections.submitModel("phenotypes", m -> processPhenotypes(acc, m, null, null, baseUrl));
+        Section<Boolean>                                   startedSection    = sections.submit("phenotype started", () -> geneService.checkPhenotypeStarted(acc));
+        Section<Boolean>                                   attemptSection    = sections.submit("attempt registered", () -> geneService.checkAttemptRegistered(acc));
+        Section<Long>                                      allMeasurements   = sections.submit("measurements", () -> statisticalResultService.getPvaluesByAlleleAndPhenotypingCenterAndPipelineCount(acc, null, null, null, null, null, null, null, null));
+        Section<Integer>                                   chartMeasurements = sections.submit("measurements chart", () -> statisticalResultService.getParameterCountByGene(acc));
+        Section<Model>                                     diseaseSection    = sections.submitModel("diseases", m -> processDisease(acc, m));
+        Section<List<OrderTableRow>>                       orderSection      = sections.submit("order", () -> orderService.getOrderTableRows(acc, null, false));
+        Section<Boolean>                                   creLineSection    = sections.submit("cre line", () -> orderService.crelineAvailable(acc));
+
         GeneDTO gene = geneService.getGeneById(acc);
 
         if (gene == null) {
+            sections.cancel();
             LOGGER.warn("Gene object from solr for " + acc + " can't be found.");
             throw new GenomicFeatureNotFoundException("Gene " + acc + " can't be found.", acc);
         }
 
+        // ES Cell and IKMC Allele check (Gautier)
+        String solrCoreName = "allele";
+        String mode = "ikmcAlleleGrid";
+        Section<Integer> ikmcSection = sections.submit("IKMC alleles", () -> solrIndex.getNumFound("allele_name:" + gene.getMarkerSymbol(), solrCoreName, mode, ""));
+
         /**
          * PRODUCTION STATUS (SOLR)
          */
-        String geneStatus = null;
-        try {
-            geneStatus = solrIndex.getGeneStatus(acc);
-            model.addAttribute("geneStatus", geneStatus);
-            // if gene status is null then the jsp declares a warning message at status div
-        } catch (JSONException | IOException e) {
-            e.printStackTrace();
-        } catch (IndexOutOfBoundsException exception) {
+        String geneStatus = geneStatusSection.get(null);
+        if (geneStatusSection.getFailure() instanceof IndexOutOfBoundsException) {
+            sections.cancel();
             throw new GenomicFeatureNotFoundException("Gene " + acc + " can't be found.", acc);
         }
+        // if gene status is null then the jsp declares a warning message at status div
+        model.addAttribute("geneStatus", geneStatus);
 
         /**
          * Phenotype Summary
          */
-        Map<ZygosityType, PhenotypeSummaryBySex> phenotypeSummaryObjects = null;
+        Map<ZygosityType, PhenotypeSummaryBySex> phenotypeSummaryObjects = summarySection.get(null);
         Map<String, String> mpGroupsSignificant = new HashMap<>(); // <group, linktToAllData>
         Map<String, String> mpGroupsNotSignificant = new HashMap<>();
 
         String prodStatusIcons = "Production status not available.";
         // Get list of tripels of pipeline, allele acc, phenotyping center
         // to link to an experiment page will all data
-        Set<String> viabilityCalls = observationService.getViabilityForGene(acc);
+        Set<String> viabilityCalls = viabilitySection.get(new HashSet<>());
 
-        try {
+        if (phenotypeSummaryObjects != null) {
 
-            phenotypeSummaryObjects = phenSummary.getSummaryObjectsByZygosity(acc);
-            System.out.println(phenotypeSummaryObjects);
             mpGroupsSignificant = getGroups(true, phenotypeSummaryObjects);
             mpGroupsNotSignificant = getGroups(false, phenotypeSummaryObjects);
-            System.out.println("mpGroupsNotSignificant="+mpGroupsNotSignificant);
             if (!mpGroupsSignificant.keySet().contains("mortality/aging") && viabilityCalls.size() > 0) {
                 //if mortality aging is not significant we need to test if it's been tested or not
                 mpGroupsNotSignificant.put("mortality/aging", "mpTermId=MP:0010768");
@@ -291,21 +322,18 @@ public class GenesController {
                 numberOfTopLevelMpTermsWithStatisticalResult += phenotypeSummaryObjects.get(zyg).getTotalPhenotypesNumber();
             }
             model.addAttribute("numberOfTopLevelMpTermsWithStatisticalResult", numberOfTopLevelMpTermsWithStatisticalResult);
+        }
 
-            String genePageUrl = request.getAttribute("mappedHostname").toString() + request.getAttribute("baseUrl").toString();
-            Map<String, String> status = geneService.getProductionStatus(acc, genePageUrl);
+        Map<String, String> status = productionSection.get(null);
+        if (status != null) {
             prodStatusIcons = (status.get("productionIcons").equalsIgnoreCase("")) ? prodStatusIcons : status.get("productionIcons");
             prodStatusIcons += (status.get("phenotypingIcons").equalsIgnoreCase("")) ? "" : status.get("phenotypingIcons");
 
             model.addAttribute("orderPossible", status.get("orderPossible"));
+        }
 
-            if (observationService.hasBodyWeight(acc)) {
-                model.addAttribute("bodyWeight", true);
-            }
-
-        } catch (Exception e) {
-            e.printStackTrace();
-            LOGGER.error("ERROR: ", e);
+        if (bodyWeightSection.get(false)) {
+            model.addAttribute("bodyWeight", true);
         }
 
         // Register Interest setup
@@ -327,33 +355,24 @@ public class GenesController {
         model.addAttribute("isFollowing", following);
 
 
-        try {
-            getExperimentalImages(acc, model);
-            getExpressionImages(acc, model);
-            getImpcImages(acc, model);
-            getImpcExpressionImages(acc, model);
-            getImpcEmbryoExpression(acc, model);
-
-        } catch (SolrServerException | IOException e) {
-            e.printStackTrace();
+        boolean imagesFound = true;
+        for (Section<Model> imageSection : imageSections) {
+            imagesFound &= imageSection.mergeInto(model);
+        }
+        if ( ! imagesFound) {
             LOGGER.info("images solr not available");
             model.addAttribute("imageErrors", "Something is wrong Images are not being returned when normally they would");
         }
 
-        // ES Cell and IKMC Allele check (Gautier)
-        String solrCoreName = "allele";
-        String mode = "ikmcAlleleGrid";
-        int countIKMCAlleles = 0;
-        boolean ikmcError = false;
-
-        try {
-            countIKMCAlleles = solrIndex.getNumFound("allele_name:" + gene.getMarkerSymbol(), solrCoreName, mode, "");
-        } catch (Exception e) {
+        Integer countIKMCAlleles = ikmcSection.get(0);
+        if (ikmcSection.getFailure() != null) {
             model.addAttribute("countIKMCAllelesError", Boolean.TRUE);
-            e.printStackTrace();
         }
 
-        List<GenePageTableRow> rowsForPhenotypeTable = processPhenotypes(acc, model, null, null, request);
+        if ( ! phenotypesSection.mergeInto(model)) {
+            model.addAttribute("rowsForPhenotypeTable", new ArrayList<>());
+            model.addAttribute("rowsForHistopathTable", new ArrayList<>());
+        }
 
         model.addAttribute("viabilityCalls", viabilityCalls);
         model.addAttribute("phenotypeSummaryObjects", phenotypeSummaryObjects);
@@ -362,33 +381,36 @@ public class GenesController {
         model.addAttribute("request", request);
         model.addAttribute("acc", acc);
         model.addAttribute("isLive", new Boolean((String) request.getAttribute("liveSite")));
-        boolean phenotypeStarted = geneService.checkPhenotypeStarted(acc);
-        model.addAttribute("phenotypeStarted", phenotypeStarted);
-        model.addAttribute("attemptRegistered", geneService.checkAttemptRegistered(acc));
+        model.addAttribute("phenotypeStarted", startedSection.get(false));
+        model.addAttribute("attemptRegistered", attemptSection.get(false));
         model.addAttribute("significantTopLevelMpGroups", mpGroupsSignificant);
         model.addAttribute("notsignificantTopLevelMpGroups", mpGroupsNotSignificant);
-        model.addAttribute("allMeasurementsNumber", statisticalResultService.getPvaluesByAlleleAndPhenotypingCenterAndPipelineCount(acc, null, null, null, null, null, null, null, null));
-        model.addAttribute("measurementsChartNumber", statisticalResultService.getParameterCountByGene(acc));
+        model.addAttribute("allMeasurementsNumber", allMeasurements.get(0L));
+        model.addAttribute("measurementsChartNumber", chartMeasurements.get(0));
         model.addAttribute("phenotypeGroups", phenotypeGroups);
         model.addAttribute("phenotypeGroupIcons", phenotypeGroupIcons);
         if (genesWithVignettes.contains(acc)) {
             model.addAttribute("hasVignette", true);
         }
-        // add in the disease predictions from phenodigm              
-        processDisease(acc, model);
+        // add in the disease predictions from phenodigm
+        if ( ! diseaseSection.mergeInto(model)) {
+            model.addAttribute("curatedDiseases", "[]");
+            model.addAttribute("modelAssociations", "[]");
+            model.addAttribute("modelAssociationsNumber", 0);
+            model.addAttribute("hasModelsByOrthology", false);
+            model.addAttribute("hasModelAssociations", false);
+        }
 
         model.addAttribute("countIKMCAlleles", countIKMCAlleles);
-        LOGGER.debug("CHECK IKMC allele error : " + ikmcError);
         LOGGER.debug("CHECK IKMC allele found : " + countIKMCAlleles);
 
         //process ardering section
-        List<OrderTableRow> orderRows = orderService.getOrderTableRows(acc, null, false);
         model.addAttribute("acc", acc);
-        model.addAttribute("orderRows", orderRows);
+        model.addAttribute("orderRows", orderSection.get(new ArrayList<>()));
 
         //for cre products link at bottom of table
         //model.addAttribute("alleleProductsCre2", orderService.getCreData(acc));
-        model.addAttribute("creLineAvailable", orderService.crelineAvailable(acc));
+        model.addAttribute("creLineAvailable", creLineSection.get(false));
 
     }
 
@@ -433,7 +455,7 @@ public class GenesController {
         // Pass on any query string after the
         String queryString = request.getQueryString();
 
-        processPhenotypes(acc, model, topLevelMpTermName, resourceFullname, request);
+        processPhenotypes(acc, model, topLevelMpTermName, resourceFullname, request.getAttribute("baseUrl").toString());
 
         return "PhenoFrag";
     }
@@ -446,7 +468,7 @@ public class GenesController {
         return phenFacets;
     }
 
-    private List<GenePageTableRow> processPhenotypes(String acc, Model model, List<String> topLevelMpTermName, List<String> resourceFullname, HttpServletRequest request)
+    private List<GenePageTableRow> processPhenotypes(String acc, Model model, List<String> topLevelMpTermName, List<String> resourceFullname, String baseUrl)
             throws IOException, URISyntaxException, SolrServerException {
 
         List<PhenotypeCallSummaryDTO> phenotypeList;
@@ -477,7 +499,7 @@ public class GenesController {
 
         for (PhenotypeCallSummaryDTO pcs : phenotypeList) {
 
-            DataTableRow pr = new GenePageTableRow(pcs, request.getAttribute("baseUrl").toString(), cmsBaseUrl);
+            DataTableRow pr = new GenePageTableRow(pcs, baseUrl, cmsBaseUrl);
 
             // Collapse rows on sex	and p-value		
             if (phenotypes.containsKey(pr.hashCode())) {
@@ -544,7 +566,7 @@ public class GenesController {
         //now we have all the rows as they should be lets see if they need image links and if so generate them and add them to the row
         for (DataTableRow row : phenotypes.values()) {
 
-            row.buildEvidenceLink(request.getAttribute("baseUrl").toString());
+            row.buildEvidenceLink(baseUrl);
             String rowMpId = row.getPhenotypeTerm().getId();
 
             if (mpToColony.containsKey(rowMpId)) {
@@ -553,7 +575,7 @@ public class GenesController {
                     EvidenceLink imageLink = new EvidenceLink();
                     imageLink.setDisplay(true);
                     imageLink.setIconType(EvidenceLink.IconType.IMAGE);
-                    String url = request.getAttribute("baseUrl").toString() + "/imageComparator?acc=" + row.getGene().getAccessionId() + "&mp_id=" + row.getPhenotypeTerm().getId() + "&colony_id=" + row.getColonyId();
+                    String url = baseUrl + "/imageComparator?acc=" + row.getGene().getAccessionId() + "&mp_id=" + row.getPhenotypeTerm().getId() + "&colony_id=" + row.getColonyId();
                     imageLink.setUrl(url);
                     row.setImagesEvidenceLink(imageLink);
                 }
@@ -16,6 +16,8 @@
 
 package uk.ac.ebi.phenotype.web.controller;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.mousephenotype.cda.solr.service.ImpressService;
@@ -25,9 +27,14 @@ import org.mousephenotype.cda.solr.service.dto.ImpressBaseDTO;
 import org.mousephenotype.cda.solr.service.dto.ParameterDTO;
 import org.mousephenotype.cda.solr.service.dto.ProcedureDTO;
 import org.mousephenotype.cda.solr.web.dto.ParallelCoordinatesDTO;
+import org.mousephenotype.cda.solr.web.dto.ParallelCoordinatesDataset;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.configurationprocessor.json.JSONException;
 import org.springframework.boot.configurationprocessor.json.JSONObject;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -39,9 +46,11 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import uk.ac.ebi.phenotype.web.util.DataReleaseVersionManager;
 
 import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
+import java.io.StringWriter;
 import java.net.URISyntaxException;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -50,6 +59,10 @@ import java.util.stream.Collectors;
 @Controller
 public class ParallelCoordinatesController {
 
+	private final Logger log = LoggerFactory.getLogger(this.getClass().getCanonicalName());
+
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
 	@Autowired
 	ObservationService os;
 
@@ -59,18 +72,21 @@ public class ParallelCoordinatesController {
 	@Autowired
 	ImpressService impressService;
 
-	private static final Integer MAX_ENTRIES = 50;
+	@Autowired
+	private DataReleaseVersionManager dataReleaseVersionManager;
+
+	// Bounded by the "parallelCoordinates" and "parallelCoordinatesData" cache specs
+	@Autowired
+	private CacheManager cacheManager;
 
-	@SuppressWarnings("unchecked") // synchronized map so it's thread safe
-	Map<String, String> cache = (Map<String, String>) Collections.synchronizedMap(new LinkedHashMap<String, String>(MAX_ENTRIES+1, .75F, true) {
+	// The generated javascript, by request
+	static final String CACHE_NAME = "parallelCoordinates";
 
-        private static final long serialVersionUID = 1L;
+	// The dataset of each procedure, which the javascript of any selection of centers and genes is computed from
+	static final String DATASET_CACHE_NAME = "parallelCoordinatesData";
 
-		// This method is called just after a new entry has been added
-		public boolean removeEldestEntry(Map.Entry eldest) {
-			return size() > MAX_ENTRIES;
-		}
-	});
+	// The data release the cached entries come from
+	private volatile String cachedRelease;
 
 
 	@RequestMapping(value = "/parallel", method = RequestMethod.GET)
@@ -111,19 +127,7 @@ public class ParallelCoordinatesController {
 				model.addAttribute("dataJs", getJsonForParallelCoordinates(null, null) + ";");
 			} else {
 
-				String procedures;
-				if (procedureIds == null) {
-					procedures = "{}";
-				} else {
-					procedures = "{";
-					for (int i = 0; i < procedureIds.size(); i++) {
-						String p = procedureIds.get(i);
-						ProcedureDTO proc = impressService.getProcedureByStableId(p + "*");
-						procedures += (i != 0) ? "," : "";
-						procedures += "\"" + proc.getName() + "\":\"" + ImpressService.getProcedureUrl(proc.getStableKey()) + "\"";
-					}
-					procedures += "}";
-				}
+				String procedures = getProcedureLinks(procedureIds);
 				model.addAttribute("dataJs", getData(procedureIds, phenotypingCenter, geneList, topLevelMpId, request) + ";");
 				model.addAttribute("selectedProcedures", procedures);
 				model.addAttribute("phenotypingCenter", StringUtils.join(phenotypingCenter, ", "));
@@ -140,18 +144,22 @@ public class ParallelCoordinatesController {
 
 
 
+	@SuppressWarnings("unchecked")
 	@RequestMapping(value = "/parallel/cache", method = RequestMethod.GET)
 	public ResponseEntity<JSONObject> clearCache(
 			@RequestParam(value = "clearCache", required = false) Boolean clearCache) throws JSONException {
 
-		JSONObject jsonResponse = new JSONObject();
+		JSONObject  jsonResponse = new JSONObject();
+		Cache       cache        = getCache(CACHE_NAME);
+		Set<Object> keys         = ((com.google.common.cache.Cache<Object, Object>) cache.getNativeCache()).asMap().keySet();
 
 		if (clearCache != null && clearCache == true) {
-			jsonResponse.put("Details", cache.keySet().size() + " cleared from cache");
+			jsonResponse.put("Details", keys.size() + " cleared from cache");
 			cache.clear();
+			getCache(DATASET_CACHE_NAME).clear();
 		} else {
-			jsonResponse.put("Details", cache.keySet().size() + " entries in cache");
-			jsonResponse.put("Cached Keys", cache.keySet());
+			jsonResponse.put("Details", keys.size() + " entries in cache");
+			jsonResponse.put("Cached Keys", new ArrayList<>(keys));
 		}
 		HttpHeaders responseHeaders = new HttpHeaders();
 		responseHeaders.setContentType(MediaType.APPLICATION_JSON);
@@ -159,21 +167,107 @@ public class ParallelCoordinatesController {
 	}
 
 
+	/**
+	 * Reads the datasets of all the procedures offered on the parallel coordinates page that are not read yet, so
+	 * that the first requests for them do not wait for solr.
+	 */
+	public void warmDatasets() throws IOException, SolrServerException {
+
+		// The page selects procedures by the prefix of their stable id, e.g. IMPC_CBC
+		Set<String> procedureIds = new LinkedHashSet<>();
+		for (ImpressBaseDTO procedure : srs.getProcedures(null, "unidimensional", "IMPC", 2, ParallelCoordinatesDTO.procedureNoDisplay, "Success", false)) {
+			procedureIds.add(procedure.getStableId().substring(0, 8));
+		}
+
+		Cache cache = getCache(DATASET_CACHE_NAME);
+		for (String procedureId : procedureIds) {
+			getDataset(cache, procedureId);
+		}
+	}
+
+
 	private String getData(List<String> procedureIds, List<String> phenotypingCenter, List<String> genes, String topLevelMpId,
 	HttpServletRequest request) throws IOException, SolrServerException, URISyntaxException {
 
 		String key =  procedureIds != null ? procedureIds.toString() : "" ;
 		key += phenotypingCenter != null ? phenotypingCenter.toString() : "";
-		key += genes != null ? genes.hashCode() : "";
+		key += genes != null ? genes.toString() : "";
 		key += topLevelMpId != null ? topLevelMpId : "";
-		if (!cache.containsKey(key)){
+
+		// Only requests for the same selection wait for each other
+		return getCache(CACHE_NAME).get(key, () -> {
+
+			if (topLevelMpId == null && procedureIds != null) {
+				Cache                            datasetCache = getCache(DATASET_CACHE_NAME);
+				List<ParallelCoordinatesDataset> datasets     = new ArrayList<>();
+				List<ParameterDTO>               parameters   = new ArrayList<>();
+				for (String procedureId : procedureIds) {
+					ParallelCoordinatesDataset dataset = getDataset(datasetCache, procedureId);
+					datasets.add(dataset);
+					parameters.addAll(dataset.getParameters());
+				}
+
+				return getJsonForParallelCoordinates(srs.getGenotypeEffectFor(datasets, phenotypingCenter, genes), parameters);
+			}
+
+			// Selections by top level MP term are not precomputed
 			String mappedHostname = (String) request.getAttribute("mappedHostname") + (String) request.getAttribute("baseUrl");
 			List<ParameterDTO> parameters = impressService.getParameters(procedureIds, "unidimensional", topLevelMpId);
-			String data = getJsonForParallelCoordinates(srs.getGenotypeEffectFor(procedureIds, phenotypingCenter, false, mappedHostname, genes, topLevelMpId), parameters);
-			cache.put(key, data);
+			return getJsonForParallelCoordinates(srs.getGenotypeEffectFor(procedureIds, phenotypingCenter, false, mappedHostname, genes, topLevelMpId), parameters);
+		});
+	}
+
+	private ParallelCoordinatesDataset getDataset(Cache cache, String procedureId) {
+
+		return cache.get(procedureId, () -> {
+			long start = System.currentTimeMillis();
+			ParallelCoordinatesDataset dataset = srs.getParallelCoordinatesDataset(procedureId);
+			log.info("Read the parallel coordinates dataset of {} ({} results) in {}ms", procedureId, dataset.getResults().size(), System.currentTimeMillis() - start);
+			return dataset;
+		});
+	}
+
+	/**
+	 * @return the cache named {@code name}, cleared first if the data release has changed since it was filled
+	 */
+	private Cache getCache(String name) {
 
+		String release = dataReleaseVersionManager.getReleaseVersion();
+
+		if ( ! release.equals(cachedRelease)) {
+			synchronized (this) {
+				if ( ! release.equals(cachedRelease)) {
+					if (cachedRelease != null) {
+						log.info("Data release changed from {} to {}: clearing the parallel coordinates caches", cachedRelease, release);
+					}
+					cacheManager.getCache(CACHE_NAME).clear();
+					cacheManager.getCache(DATASET_CACHE_NAME).clear();
+					cachedRelease = release;
+				}
+			}
+		}
+
+		return cacheManager.getCache(name);
+	}
+
+	/**
+	 * @return the name and IMPReSS link of each procedure, as a javascript object
+	 */
+	private String getProcedureLinks(List<String> procedureIds) throws IOException {
+
+		StringWriter writer = new StringWriter();
+		try (JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+			generator.writeStartObject();
+			if (procedureIds != null) {
+				for (String procedureId : procedureIds) {
+					ProcedureDTO proc = impressService.getProcedureByStableId(procedureId + "*");
+					generator.writeStringField(proc.getName(), ImpressService.getProcedureUrl(proc.getStableKey()));
+				}
+			}
+			generator.writeEndObject();
 		}
-		return cache.get(key);
+
+		return writer.toString();
 	}
 
 
@@ -184,62 +278,65 @@ public class ParallelCoordinatesController {
 	 * @param rows
 	 * @return Parsed rows into the json format needed for the parallel coordinates
 	 */
-	protected String getJsonForParallelCoordinates(Map<String, ParallelCoordinatesDTO> rows, List<ParameterDTO> parameters){
-
-		StringBuffer data = new StringBuffer();
-		data.append("[");
-		String defaultMeans = "";
-		StringBuffer res = new StringBuffer();
-		res.append("var foods = []; \nvar defaults = {};");
-		if (rows != null){
-			int i = 0;
-			for (String key: rows.keySet()){
-	    		ParallelCoordinatesDTO bean = rows.get(key);
-	    		if (key == null || !key.equalsIgnoreCase(ParallelCoordinatesDTO.DEFAULT)){
-		    		i++;
-		    		String currentRow = bean.toString(false);
-		    		if (!currentRow.equals("")){
-		    			data.append("{").append(currentRow).append("}");
-			    		if (i < rows.values().size()){
-			    			data.append(", ");
-			    		}
-		    		}
-	    		}
-	    		else {
-	    			String currentRow = bean.toString(false);
-	    			defaultMeans += "{" + currentRow + "}\n";
-	    			data.append("{").append(currentRow).append("}");
-		    		if (i < rows.values().size()){
-		    			data.append(", ");
-		    		}
-	    		}
-	    	}
-	    	data.append("]");
-
-	    	res.append("var foods = ").append(data).append("; \n\n var defaults = ").append(defaultMeans).append(";");
-
-	    	if (parameters != null){
-	    		res.append("var links = {");
-	    		String groups = "var groups = {";
-	    		Set<String> parameterNames =  new HashSet<>();
-	    		for (ParameterDTO p : parameters){
-					if (!parameterNames.contains(p.getName())){
-	    				parameterNames.add(p.getName());
-	    				res.append("\"").append(p.getName()).append("\":\"").append(ImpressService.getParameterUrl(p.getStableKey())).append("\", ");
-	    				for (String procedure : p.getProcedureNames()){
-	    					if (! procedure.equals("No effect")) {
-								groups += "\"" + p.getName() + "\":\"" + procedure + "\", ";
-							}
-	    				}
-	    			}
-	    		}
-	    		groups += "};";
-	    		res.append("};");
-	    		res.append(groups);
-	    	}
+	protected String getJsonForParallelCoordinates(Map<String, ParallelCoordinatesDTO> rows, List<ParameterDTO> parameters) throws IOException {
+
+		if (rows == null) {
+			return "var foods = []; \nvar defaults = {};";
+		}
+
+		StringWriter writer = new StringWriter();
+		try (JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+
+			// The javascript between the JSON values is written raw
+			generator.setRootValueSeparator(null);
+
+			generator.writeRaw("var foods = ");
+			generator.writeStartArray();
+			for (ParallelCoordinatesDTO bean : rows.values()) {
+				bean.writeJson(generator);
+			}
+			generator.writeEndArray();
+
+			generator.writeRaw("; \n\n var defaults = ");
+			if (rows.containsKey(ParallelCoordinatesDTO.DEFAULT)) {
+				rows.get(ParallelCoordinatesDTO.DEFAULT).writeJson(generator);
+			} else {
+				generator.writeStartObject();
+				generator.writeEndObject();
+			}
+			generator.writeRaw(";");
+
+			if (parameters != null) {
+				Map<String, String>       links  = new LinkedHashMap<>();
+				Map<String, List<String>> groups = new LinkedHashMap<>();
+				for (ParameterDTO p : parameters) {
+					if ( ! links.containsKey(p.getName())) {
+						links.put(p.getName(), ImpressService.getParameterUrl(p.getStableKey()));
+						groups.put(p.getName(), p.getProcedureNames().stream().filter(procedure -> ! procedure.equals("No effect")).collect(Collectors.toList()));
+					}
+				}
 
+				generator.writeRaw("var links = ");
+				generator.writeStartObject();
+				for (Map.Entry<String, String> link : links.entrySet()) {
+					generator.writeStringField(link.getKey(), link.getValue());
+				}
+				generator.writeEndObject();
+				generator.writeRaw(";");
+
+				// A parameter in several procedures is listed once per procedure, the last one taking effect
+				generator.writeRaw("var groups = ");
+				generator.writeStartObject();
+				for (Map.Entry<String, List<String>> group : groups.entrySet()) {
+					for (String procedure : group.getValue()) {
+						generator.writeStringField(group.getKey(), procedure);
+					}
+				}
+				generator.writeEndObject();
+				generator.writeRaw(";");
+			}
 		}
 
-		return res.toString();
+		return writer.toString();
 	}
 }
\ No newline at end of file
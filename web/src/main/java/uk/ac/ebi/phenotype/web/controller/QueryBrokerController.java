@@ -21,9 +21,12 @@ import org.mousephenotype.cda.solr.service.SolrIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.configurationprocessor.json.JSONArray;
 import org.springframework.boot.configurationprocessor.json.JSONException;
 import org.springframework.boot.configurationprocessor.json.JSONObject;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -34,6 +37,8 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import uk.ac.ebi.phenotype.web.util.DataReleaseVersionManager;
+import uk.ac.ebi.phenotype.web.util.ServiceFanOut;
 
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
@@ -57,18 +62,24 @@ public class QueryBrokerController {
 	@Resource(name="globalConfiguration")
 	private Map<String, String> config;
 
-	// Use cache to manage queries for minimizing network traffic
-	final int MAX_ENTRIES = 600;
+	@Autowired
+	private ServiceFanOut fanOut;
+
+	@Autowired
+	private DataReleaseVersionManager dataReleaseVersionManager;
+
+	// Use cache to manage queries for minimizing network traffic. Bounded by the "querybroker" cache spec
+	@Autowired
+	private CacheManager cacheManager;
 
-	@SuppressWarnings("unchecked")
-	Map<String, Object> cache = (Map<String, Object>) Collections.synchronizedMap(new LinkedHashMap<String, Object>(MAX_ENTRIES+1, .75F, true) {
-		private static final long serialVersionUID = 1L;
+	static final String CACHE_NAME = "querybroker";
 
-		// This method is called just after a new entry has been added
-	    public boolean removeEldestEntry(Map.Entry eldest) {
-	        return size() > MAX_ENTRIES;
-	    }
-	});
+	// The data release the cached responses come from
+	private volatile String cachedRelease;
+
+	// How long each core has to answer before the response is sent without it
+	@Value("${querybroker.timeoutMillis:5000}")
+	private long timeoutMillis;
 
 
 	@RequestMapping(value = "/fetchDefaultCoreOri", method = RequestMethod.GET)
@@ -117,14 +128,16 @@ public class QueryBrokerController {
 	public ResponseEntity<JSONObject> clearCache(
 		@RequestParam(value = "clearCache", required = false) Boolean clearCache) throws JSONException {
 
-		JSONObject jsonResponse = new JSONObject();
+		JSONObject  jsonResponse = new JSONObject();
+		Cache       cache        = getCache();
+		Set<Object> keys         = ((com.google.common.cache.Cache<Object, Object>) cache.getNativeCache()).asMap().keySet();
 
 		if (clearCache!=null && clearCache==true) {
-			jsonResponse.put("Details", cache.keySet().size() + " cleared from cache");
+			jsonResponse.put("Details", keys.size() + " cleared from cache");
 			cache.clear();
 		} else {
-			jsonResponse.put("Details", cache.keySet().size() + " entries in cache");
-			jsonResponse.put("Cached Keys", cache.keySet());
+			jsonResponse.put("Details", keys.size() + " entries in cache");
+			jsonResponse.put("Cached Keys", new ArrayList<>(keys));
 		}
 
 		return new ResponseEntity<JSONObject>(jsonResponse, createResponseHeaders(), HttpStatus.CREATED);
@@ -162,9 +175,17 @@ public class QueryBrokerController {
 		return responseHeaders;
 	}
 
+	/**
+	 * Queries the requested cores at the same time. A core that fails, or does not answer within
+	 * {@code querybroker.timeoutMillis}, is left out of the response (and is not cached).
+	 */
 	public JSONObject createJsonResponse(String subfacet, JSONObject jParams, HttpServletRequest request) throws IOException, URISyntaxException, JSONException {
 
 		JSONObject jsonResponse = new JSONObject();
+		Cache      cache        = getCache();
+
+		ServiceFanOut.Batch                         batch   = fanOut.newBatch("querybroker", timeoutMillis);
+		Map<String, ServiceFanOut.Section<Object>> results = new LinkedHashMap<>();
 
 		Iterator cores = jParams.keys();
 
@@ -173,33 +194,73 @@ public class QueryBrokerController {
 			String core  = (String) cores.next();
 			String param = jParams.getString(core);
 			String url =  SolrUtils.getBaseURL(solrIndex.getSolrServer(core)) + "/select?" + param;
-			String key = core+param;
-			Object o = cache.get(key);
-
-			if (o == null && !cache.containsKey(key)) {
-			    // Object not in cache. If null is not a possible value in the cache,
-			    // the call to cache.contains(key) is not needed
-				JSONObject json = solrIndex.getResults(url);
-				if ( subfacet == null ){
-					// Main facet counts only
-					int numFound = json.getJSONObject("response").getInt("numFound");
-					jsonResponse.put(core, numFound);
-
-					cache.put(key, numFound);
-				}
-				else {
-					JSONObject j = new JSONObject();
-					j.put("response", json.getJSONObject("response"));
-					j.put("facet_counts", json.getJSONObject("facet_counts"));
-					jsonResponse.put(core, j);
-
-					cache.put(key, j);
-				}
+
+			// Counts only and counts with facets are cached separately
+			String key = (subfacet == null ? "count:" : "facets:") + core+param;
+			Cache.ValueWrapper o = cache.get(key);
+
+			if (o == null) {
+				results.put(core, batch.submit(core, () -> {
+					Object result = getResult(url, subfacet);
+					cache.put(key, result);
+
+					return result;
+				}));
 			}
 			else {
-				jsonResponse.put(core, o);
+				jsonResponse.put(core, o.get());
 			}
 		}
+
+		for (Map.Entry<String, ServiceFanOut.Section<Object>> result : results.entrySet()) {
+			Object o = result.getValue().get(null);
+			if (o != null) {
+				jsonResponse.put(result.getKey(), o);
+			}
+		}
+
 		return jsonResponse;
 	}
+
+	/**
+	 * @return the number of documents found by {@code url}, or (for a subfacet) its response and facet counts
+	 */
+	private Object getResult(String url, String subfacet) throws IOException, URISyntaxException, JSONException {
+
+		JSONObject json = solrIndex.getResults(url);
+		if (json == null) {
+			throw new IOException("No response from " + url);
+		}
+
+		if ( subfacet == null ){
+			// Main facet counts only
+			return json.getJSONObject("response").getInt("numFound");
+		}
+		else {
+			JSONObject j = new JSONObject();
+			j.put("response", json.getJSONObject("response"));
+			j.put("facet_counts", json.getJSONObject("facet_counts"));
+
+			return j;
+		}
+	}
+
+	/**
+	 * @return the cache of Solr responses, emptied first if the data release has changed since it was filled
+	 */
+	private Cache getCache() {
+
+		Cache  cache   = cacheManager.getCache(CACHE_NAME);
+		String release = dataReleaseVersionManager.getReleaseVersion();
+
+		if ( ! release.equals(cachedRelease)) {
+			if (cachedRelease != null) {
+				log.info("Data release changed from {} to {}: clearing the query cache", cachedRelease, release);
+			}
+			cache.clear();
+			cachedRelease = release;
+		}
+
+		return cache;
+	}
 }
\ No newline at end of file
@@ -11,204 +11,132 @@
 
 package uk.ac.ebi.phenotype.web.controller;
 
-import org.apache.solr.client.solrj.SolrServerException;
-import org.mousephenotype.cda.solr.service.GeneService;
-import org.mousephenotype.cda.solr.service.MpService;
-import org.mousephenotype.cda.solr.service.PhenodigmService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Controller;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
-import org.springframework.web.bind.annotation.ResponseBody;
-import uk.ac.ebi.phenotype.web.controller.sitemap.XmlSitemap;
-import uk.ac.ebi.phenotype.web.controller.sitemap.XmlSitemapIndex;
-import uk.ac.ebi.phenotype.web.controller.sitemap.XmlUrl;
-import uk.ac.ebi.phenotype.web.controller.sitemap.XmlUrlSet;
+import org.springframework.web.context.request.ServletWebRequest;
+import uk.ac.ebi.phenotype.web.controller.sitemap.SitemapStore;
+import uk.ac.ebi.phenotype.web.controller.sitemap.SitemapStore.Sitemap;
 
 import javax.servlet.http.HttpServletRequest;
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBException;
-import javax.xml.bind.Marshaller;
+import javax.servlet.http.HttpServletResponse;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.StringWriter;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
 
 /**
  *
  * @author mrelac
  *
- * This controller creates sitemap files conforming to http://www.sitemap.org
- * for google crawlers for genes, phenotypes, and diseases. Each sitemap file
- * contains a link to every gene, phenotype, and disease page that phenotypeArchive
- * knows about. Since there are multiple sitemaps, a sitemap index file is required
- * that points to the sitemap files. That file is created here as well.
+ * This controller serves sitemap files conforming to http://www.sitemap.org
+ * for google crawlers for genes, phenotypes, and diseases. The sitemap files
+ * contain a link to every gene, phenotype, and disease page that phenotypeArchive
+ * knows about. Since there are multiple sitemaps, a sitemap index file points to
+ * the sitemap files.
+ *
+ * The files are generated in the background once per data release by
+ * {@link SitemapStore}, so serving them does not query solr. Responses carry an
+ * ETag and a Last-Modified date, so crawlers that revalidate get a 304.
  */
 @Controller
 public class SiteMapController {
 
-	@Autowired
-	private GeneService geneService;
+	private static final String RETRY_AFTER_SECONDS = "600";
 
 	@Autowired
-	private MpService mpService;
+	private SitemapStore sitemapStore;
 
-	@Autowired
-	private PhenodigmService phenodigmService;
 
 	/**
-	 * Create a gene sitemap XML file
+	 * Serve the sitemap index, gzipped if the client accepts it
 	 *
-	 * Side Effects: Creates a physical file <code>gene_sitemap.xml</code> in the
-	 * web deployment root directory containing every gene web page we offer.
-	 *
-	 * @param request <code>HttpServletRequest</code> instance
-	 * @return an XML object containing a gene sitemap
-	 * @throws SolrServerException, IOException
+	 * @return the sitemap index, or 503 if the sitemaps have not been generated yet
 	 */
-	@RequestMapping(value = "/sitemap_genes.xml", method = RequestMethod.GET, produces = "application/xml; charset=utf-8")
-	@ResponseBody
-	public String createSitemapGenes(HttpServletRequest request) throws SolrServerException, IOException {
-
-		List<String> geneIds = new ArrayList<>(geneService.getAllGenes());
+	@RequestMapping(value = "/sitemap_index.xml", method = RequestMethod.GET)
+	public void getSitemapIndex(HttpServletRequest request, HttpServletResponse response) throws IOException {
 
-		String mappedHostname = (String) request.getAttribute("mappedHostname");
-		String baseUrl = (String) request.getAttribute("baseUrl");
-		XmlUrlSet xmlUrlSet = new XmlUrlSet();
-
-		// Generate the links.
-		for (String geneId : geneIds) {
-			String target = generateBaseUrl(mappedHostname, baseUrl) + "/genes/" + geneId;
-			create(xmlUrlSet, target, XmlUrl.Priority.MEDIUM);
+		Sitemap sitemap = sitemapStore.getFile(SitemapStore.INDEX);
+		if (sitemap == null) {
+			sendUnavailable(response);
+			return;
 		}
 
-		return getSitemapFile(xmlUrlSet);
-	}
-
-	/**
-	 * Create a phenotype sitemap XML file
-	 *
-	 * Side Effects: Creates a physical file <code>phenotype_sitemap.xml</code> in the
-	 * web deployment root directory containing every phenotype web page we offer.
-	 *
-	 * @param request <code>HttpServletRequest</code> instance
-	 * @return an XML object containing a phenotype sitemap
-	 * @throws SolrServerException, IOException
-	 */
-	@RequestMapping(value = "/sitemap_phenotypes.xml", method = RequestMethod.GET, produces = "application/xml; charset=utf-8")
-	@ResponseBody
-	public String createSitemapPhenotypes(HttpServletRequest request) throws SolrServerException, IOException {
-
-		List<String> phenotypeIds = new ArrayList<>(mpService.getAllPhenotypes());
-		String mappedHostname = (String) request.getAttribute("mappedHostname");
-		String baseUrl = (String) request.getAttribute("baseUrl");
-		XmlUrlSet xmlUrlSet = new XmlUrlSet();
-
-		// Generate the links.
-		for (String phenotypeId : phenotypeIds) {
-			String target = generateBaseUrl(mappedHostname, baseUrl) + "/phenotypes/" + phenotypeId;
-			create(xmlUrlSet, target, XmlUrl.Priority.MEDIUM);
+		// The representation depends on Accept-Encoding, so the ETag is weak
+		response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+		if (new ServletWebRequest(request, response).checkNotModified("W/\"" + sitemap.getMd5() + "\"", sitemap.getLastModified())) {
+			return;
 		}
 
-		return getSitemapFile(xmlUrlSet);
-	}
+		String  acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+		boolean gzip           = (acceptEncoding != null && acceptEncoding.contains("gzip"));
 
-	private String generateBaseUrl(String mappedHostname, String baseUrl) {
-		String baseUrlString = mappedHostname + baseUrl;
-
-		// Ensure the protocol is included on the URL
-		if (! baseUrlString.startsWith("http")) {
-			baseUrlString = "http:" + baseUrlString;
+		response.setContentType("application/xml; charset=utf-8");
+		if (gzip) {
+			response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+			response.setContentLengthLong(sitemap.getFile().length());
 		}
 
-		return baseUrlString;
-	}
-
-	/**
-	 * Create a disease sitemap XML file
-	 *
-	 * Side Effects: Creates a physical file <code>disease_sitemap.xml</code> in the
-	 * web deployment root directory containing every disease web page we offer.
-	 *
-	 * @param request <code>HttpServletRequest</code> instance
-	 * @return an XML object containing a disease sitemap
-	 * @throws SolrServerException, IOException
-	 */
-	@RequestMapping(value = "/sitemap_diseases.xml", method = RequestMethod.GET, produces = "application/xml; charset=utf-8")
-	@ResponseBody
-	public String createSitemapDiseases(HttpServletRequest request) throws SolrServerException, IOException {
-		List<String> diseases = new ArrayList<>(phenodigmService.getAllDiseases());
-		String mappedHostname = (String) request.getAttribute("mappedHostname");
-		String baseUrl = (String) request.getAttribute("baseUrl");
-		XmlUrlSet xmlUrlSet = new XmlUrlSet();
-
-		// Generate the links.
-		for (String phenotypeId : diseases) {
-			String target = generateBaseUrl(mappedHostname, baseUrl) + "/disease/" + phenotypeId;
-			create(xmlUrlSet, target, XmlUrl.Priority.MEDIUM);
+		try (InputStream input = new FileInputStream(sitemap.getFile());
+			 OutputStream output = response.getOutputStream()) {
+			StreamUtils.copy((gzip ? input : new GZIPInputStream(input)), output);
 		}
-
-		return getSitemapFile(xmlUrlSet);
 	}
 
 	/**
-	 * Create a sitemap index XML file for all of our sitemap xml files
-	 *
-	 * Side Effects: Creates a physical file <code>sitemap_index.xml</code> in the
-	 * web deployment root directory containing pointers to all of our sitemap files
+	 * Serve one of the gzipped sitemap files listed in the sitemap index
 	 *
-	 * @param request <code>HttpServletRequest</code> instance
-	 * @return an XML object containing a sitemap index
+	 * @param name the file name, e.g. <code>sitemap_genes1.xml.gz</code>
+	 * @return the file, 404 if there is no such file, or 503 if the sitemaps have not been generated yet
 	 */
-	@RequestMapping(value = "/sitemap_index.xml", method = RequestMethod.GET, produces = "application/xml; charset=utf-8")
-	@ResponseBody
-	public String createSitemapIndex(HttpServletRequest request) {
+	@RequestMapping(value = "/sitemaps/{name:.+}", method = RequestMethod.GET)
+	public void getSitemap(@PathVariable String name, HttpServletRequest request, HttpServletResponse response) throws IOException {
 
-		String mappedHostname = (String) request.getAttribute("mappedHostname");
-		String baseUrl = (String) request.getAttribute("baseUrl");
-		XmlSitemapIndex xmlSitemapIndex = new XmlSitemapIndex();
+		if ( ! sitemapStore.isReady()) {
+			sendUnavailable(response);
+			return;
+		}
 
-		String[] sitemapUrls = {"/sitemap_genes.xml", "/sitemap_phenotypes.xml", "/sitemap_diseases.xml"};
+		Sitemap sitemap = sitemapStore.getFile(name);
+		if (sitemap == null || name.equals(SitemapStore.INDEX)) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
 
-		for (String sitemapUrl : sitemapUrls) {
-			String location = generateBaseUrl(mappedHostname, baseUrl) + sitemapUrl;
-			XmlSitemap xmlSitemap = new XmlSitemap(location);
-			xmlSitemapIndex.addSitemap(xmlSitemap);
+		if (new ServletWebRequest(request, response).checkNotModified("\"" + sitemap.getMd5() + "\"", sitemap.getLastModified())) {
+			return;
 		}
 
-		return getSitemapFile(xmlSitemapIndex);
+		response.setContentType("application/x-gzip");
+		response.setContentLengthLong(sitemap.getFile().length());
+		try (InputStream input = new FileInputStream(sitemap.getFile());
+			 OutputStream output = response.getOutputStream()) {
+			StreamUtils.copy(input, output);
+		}
 	}
 
+	/**
+	 * The gene, phenotype and disease sitemaps used to be served whole at these
+	 * URLs; they are now split into parts listed in the sitemap index.
+	 */
+	@RequestMapping(value = {"/sitemap_genes.xml", "/sitemap_phenotypes.xml", "/sitemap_diseases.xml"}, method = RequestMethod.GET)
+	public void redirectToSitemapIndex(HttpServletRequest request, HttpServletResponse response) {
 
-	// PRIVATE METHODS
-
-
-	private void create(XmlUrlSet xmlUrlSet, String link, XmlUrl.Priority priority) {
-		xmlUrlSet.addUrl(new XmlUrl(link, priority));
+		response.setStatus(HttpServletResponse.SC_MOVED_PERMANENTLY);
+		response.setHeader(HttpHeaders.LOCATION, request.getContextPath() + "/sitemap_index.xml");
 	}
 
-	private String getSitemapFile(Object xmlObject) {
-
-		StringWriter writer = new StringWriter(2048);
-
-		try {
-			JAXBContext jaxbContext = JAXBContext.newInstance(xmlObject.getClass());
-			Marshaller jaxbMarshaller = jaxbContext.createMarshaller();
-
-			jaxbMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
-			jaxbMarshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
 
-			// Set the XML root tag to not include that standalone="yes" attribute
-			// Why U no work, JAXB? :O//
-			//jaxbMarshaller.setProperty("com.sun.xml.bind.xmlHeaders", "<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
-
-			jaxbMarshaller.marshal(xmlObject, writer);
+	// PRIVATE METHODS
 
-		} catch (JAXBException e) {
-			e.printStackTrace();
-		}
 
-		return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" + writer.toString();
+	private void sendUnavailable(HttpServletResponse response) throws IOException {
+		response.setHeader(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+		response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "The sitemaps are being generated");
 	}
-
 }
@@ -0,0 +1,318 @@
+/*******************************************************************************
+ * Copyright © 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package uk.ac.ebi.phenotype.web.controller.sitemap;
+
+import com.redfin.sitemapgenerator.ChangeFreq;
+import com.redfin.sitemapgenerator.SitemapIndexGenerator;
+import com.redfin.sitemapgenerator.WebSitemapGenerator;
+import com.redfin.sitemapgenerator.WebSitemapUrl;
+import org.mousephenotype.cda.solr.service.GeneService;
+import org.mousephenotype.cda.solr.service.MpService;
+import org.mousephenotype.cda.solr.service.PhenodigmService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.FileSystemUtils;
+import uk.ac.ebi.phenotype.web.util.DataReleaseVersionManager;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the sitemaps (http://www.sitemaps.org) of the gene, phenotype and disease pages as gzipped files, so that
+ * crawlers are served files rather than scans of the Solr cores.
+ *
+ * The files are generated on a background thread whenever the data release differs from the release they were
+ * generated for (checked every {@code sitemap.checkMillis}), into a directory of that release under
+ * {@code sitemap.directory}; a restart reuses the files of the current release. Each type of page gets as many part
+ * files as needed to keep to 50,000 URLs per file, and {@link #INDEX} lists all the parts. Until the first set of files
+ * is ready, {@link #getFile} returns null.
+ *
+ * The URLs in the files start with {@code sitemap.baseUrl} (by default {@code paBaseUrl}); the parts are listed as
+ * {@code <sitemap.baseUrl>/sitemaps/<file name>}.
+ */
+@Component
+public class SitemapStore {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    public static final String INDEX = "sitemap_index.xml.gz";
+
+    private final GeneService               geneService;
+    private final MpService                 mpService;
+    private final PhenodigmService          phenodigmService;
+    private final DataReleaseVersionManager dataReleaseVersionManager;
+    private final File                      directory;
+    private final String                    baseUrl;
+
+    private final    AtomicBoolean generating = new AtomicBoolean();
+    private volatile Sitemaps      current;
+
+    public SitemapStore(
+            GeneService geneService,
+            MpService mpService,
+            PhenodigmService phenodigmService,
+            DataReleaseVersionManager dataReleaseVersionManager,
+            @Value("${sitemap.directory:${java.io.tmpdir}/impc-sitemaps}") String directory,
+            @Value("${sitemap.baseUrl:${paBaseUrl}}") String baseUrl) {
+
+        this.geneService = geneService;
+        this.mpService = mpService;
+        this.phenodigmService = phenodigmService;
+        this.dataReleaseVersionManager = dataReleaseVersionManager;
+        this.directory = new File(directory);
+
+        // Ensure the protocol is included on the URL
+        baseUrl = baseUrl.replaceAll("/+$", "");
+        this.baseUrl = (baseUrl.startsWith("http") ? baseUrl : "http:" + baseUrl);
+    }
+
+
+    /**
+     * Generates the sitemaps in the background if they are not those of the current data release.
+     */
+    @Scheduled(initialDelayString = "${sitemap.initialDelayMillis:60000}", fixedDelayString = "${sitemap.checkMillis:3600000}")
+    public void refresh() {
+
+        String   release  = dataReleaseVersionManager.getReleaseVersion();
+        Sitemaps sitemaps = current;
+        if (sitemaps != null && sitemaps.release.equals(release)) {
+            return;
+        }
+
+        // Files generated for this release before a restart
+        File releaseDirectory = new File(directory, toDirectoryName(release));
+        if (new File(releaseDirectory, INDEX).isFile()) {
+            try {
+                current = load(release, releaseDirectory);
+                logger.info("Using the sitemaps of release {} in {}", release, releaseDirectory);
+                removeOtherReleases(releaseDirectory);
+                return;
+
+            } catch (IOException e) {
+                logger.warn("Cannot read the sitemaps in {}. Generating them again. Reason: {}", releaseDirectory, e.getLocalizedMessage());
+            }
+        }
+
+        if ( ! generating.compareAndSet(false, true)) {
+            return;
+        }
+
+        Thread thread = new Thread(() -> {
+            try {
+                Map<String, Collection<String>> ids = new LinkedHashMap<>();
+                ids.put("genes", geneService.getAllGenes());
+                ids.put("phenotypes", mpService.getAllPhenotypes());
+                ids.put("disease", phenodigmService.getAllDiseases());
+
+                current = generate(release, ids);
+
+                // Remove the old files only once requests are served the new ones
+                removeOtherReleases(releaseDirectory);
+
+            } catch (Exception e) {
+                logger.error("Cannot generate the sitemaps of release " + release, e);
+
+            } finally {
+                generating.set(false);
+            }
+        }, "sitemap-generator");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @param name the name of a sitemap file, e.g. {@link #INDEX}
+     * @return the file, or null if there is no such file or the sitemaps have not been generated yet
+     */
+    public Sitemap getFile(String name) {
+        Sitemaps sitemaps = current;
+
+        return (sitemaps == null ? null : sitemaps.files.get(name));
+    }
+
+    /**
+     * @return true once the sitemaps of a data release have been generated
+     */
+    public boolean isReady() {
+        return (current != null);
+    }
+
+
+    /**
+     * Writes the sitemaps of {@code release}. Those of other releases are left for the caller to remove (see
+     * {@link #removeOtherReleases}) once it no longer serves them.
+     *
+     * @param ids the page ids of each type of page, by the path of that type's pages under the base URL
+     */
+    Sitemaps generate(String release, Map<String, Collection<String>> ids) throws IOException {
+
+        long start = System.currentTimeMillis();
+
+        File staging = Files.createTempDirectory(Files.createDirectories(directory.toPath()), "generating-").toFile();
+        try {
+            Date                  lastModified = new Date();
+            SitemapIndexGenerator index        = new SitemapIndexGenerator(baseUrl, new File(staging, "sitemap_index.xml"));
+            int                   urls         = 0;
+
+            for (Map.Entry<String, Collection<String>> type : ids.entrySet()) {
+
+                if (type.getValue().isEmpty()) {
+                    continue;
+                }
+
+                WebSitemapGenerator generator = WebSitemapGenerator.builder(baseUrl, staging)
+                        .fileNamePrefix("sitemap_" + type.getKey())
+                        .gzip(true)
+                        .build();
+
+                for (String id : type.getValue()) {
+                    generator.addUrl(new WebSitemapUrl.Options(baseUrl + "/" + type.getKey() + "/" + id)
+                            .lastMod(lastModified)
+                            .changeFreq(ChangeFreq.WEEKLY)
+                            .priority(0.5)
+                            .build());
+                }
+                urls += type.getValue().size();
+
+                for (File part : generator.write()) {
+                    index.addUrl(baseUrl + "/sitemaps/" + part.getName(), lastModified);
+                }
+            }
+
+            index.write();
+            gzip(new File(staging, "sitemap_index.xml"), new File(staging, INDEX));
+
+            File releaseDirectory = new File(directory, toDirectoryName(release));
+            FileSystemUtils.deleteRecursively(releaseDirectory);
+            Files.move(staging.toPath(), releaseDirectory.toPath(), StandardCopyOption.ATOMIC_MOVE);
+
+            Sitemaps sitemaps = load(release, releaseDirectory);
+            logger.info("Generated {} sitemaps ({} URLs) of release {} in {}ms", sitemaps.files.size() - 1, urls, release, System.currentTimeMillis() - start);
+
+            return sitemaps;
+
+        } finally {
+            FileSystemUtils.deleteRecursively(staging);
+        }
+    }
+
+    /**
+     * @return the sitemaps already generated in {@code releaseDirectory}
+     */
+    Sitemaps load(String release, File releaseDirectory) throws IOException {
+
+        File[] files = releaseDirectory.listFiles((dir, name) -> name.endsWith(".xml.gz"));
+        if (files == null) {
+            throw new FileNotFoundException(releaseDirectory.getPath());
+        }
+
+        Map<String, Sitemap> sitemaps = new HashMap<>();
+        for (File file : files) {
+            try (InputStream input = new FileInputStream(file)) {
+                sitemaps.put(file.getName(), new Sitemap(file, DigestUtils.md5DigestAsHex(input), file.lastModified()));
+            }
+        }
+
+        return new Sitemaps(release, sitemaps);
+    }
+
+    /**
+     * Deletes the sitemaps of every release but the one in {@code releaseDirectory}.
+     */
+    void removeOtherReleases(File releaseDirectory) {
+
+        File[] others = directory.listFiles((dir, name) -> name.startsWith("release-") && ! name.equals(releaseDirectory.getName()));
+        for (File other : (others == null ? new File[0] : others)) {
+            FileSystemUtils.deleteRecursively(other);
+        }
+    }
+
+
+    // PRIVATE METHODS
+
+
+    private String toDirectoryName(String release) {
+        return "release-" + release.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    private void gzip(File from, File to) throws IOException {
+
+        try (OutputStream output = new GZIPOutputStream(new FileOutputStream(to))) {
+            Files.copy(from.toPath(), output);
+        }
+        Files.delete(from.toPath());
+    }
+
+
+    /**
+     * The sitemap files of one data release, by file name.
+     */
+    static class Sitemaps {
+
+        private final String               release;
+        private final Map<String, Sitemap> files;
+
+        Sitemaps(String release, Map<String, Sitemap> files) {
+            this.release = release;
+            this.files = files;
+        }
+
+        Map<String, Sitemap> getFiles() {
+            return files;
+        }
+    }
+
+
+    /**
+     * A gzipped sitemap file, with the validators of its content.
+     */
+    public static class Sitemap {
+
+        private final File   file;
+        private final String md5;
+        private final long   lastModified;
+
+        Sitemap(File file, String md5, long lastModified) {
+            this.file = file;
+            this.md5 = md5;
+            this.lastModified = lastModified;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * @return the hex MD5 digest of the gzipped content
+         */
+        public String getMd5() {
+            return md5;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+}
@@ -1,93 +0,0 @@
-/*******************************************************************************
- * Copyright 2015 EMBL - European Bioinformatics Institute
- *
- * Licensed under the Apache License, Version 2.0 (the
- * "License"); you may not use this file except in compliance
- * with the License. You may obtain a copy of the License at
- * http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing,
- * software distributed under the License is distributed on an
- * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
- * either express or implied. See the License for the specific
- * language governing permissions and limitations under the
- * License.
- *******************************************************************************/
-
-package uk.ac.ebi.phenotype.web.controller.sitemap;
-
-import java.util.Date;
-import java.util.TimeZone;
-
-import javax.xml.bind.annotation.XmlAccessType;
-import javax.xml.bind.annotation.XmlAccessorType;
-import javax.xml.bind.annotation.XmlElement;
-import javax.xml.bind.annotation.XmlRootElement;
-
-import com.redfin.sitemapgenerator.W3CDateFormat;
-
-/**
- *
- * @author mrelac
- */
-@XmlAccessorType(value = XmlAccessType.NONE)
-@XmlRootElement(name = "url")
-public class XmlUrl {
-    
-    private W3CDateFormat dateFormat;
-    
-    public XmlUrl() {
-        this(null, Priority.MEDIUM);
-    }
-
-    public XmlUrl(String loc, Priority priority) {
-        dateFormat = new W3CDateFormat(W3CDateFormat.Pattern.DAY);
-        dateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
-        lastmod = dateFormat.format(new Date());
-        this.loc = loc;
-        this.priority = priority.getValue();
-    }
-
-    @XmlElement
-    private String loc;
-
-    @XmlElement
-    private String lastmod;
-    
-    @XmlElement
-    private final String changefreq = "weekly";
-
-    @XmlElement
-    private String priority;
-
-    public String getLoc() {
-        return loc;
-    }
-
-    public String getPriority() {
-        return priority;
-    }
-
-    public String getChangefreq() {
-        return changefreq;
-    }
-
-    public String getLastmod() {
-        return lastmod;
-    }
-    
-    public enum Priority {
-        HIGH("1.0"),
-        MEDIUM("0.5");
-
-        private final String value;
-
-        Priority(String value) {
-            this.value = value;
-        }
-
-        public String getValue() {
-            return value;
-        }
-    }
-}
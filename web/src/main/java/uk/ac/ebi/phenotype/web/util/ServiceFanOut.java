@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * Copyright © 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package uk.ac.ebi.phenotype.web.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.ui.ExtendedModelMap;
+import org.springframework.ui.Model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the independent service lookups behind a page at the same time, so that the page takes as long as its slowest
+ * lookup rather than the sum of them.
+ *
+ * Lookups run on a bounded pool shared by all requests ({@code fanout.threads}); when the pool and its queue are full,
+ * the request thread runs the lookup itself. All the lookups of a {@link Batch} share one deadline
+ * ({@code fanout.timeoutMillis} from the start of the batch). A lookup that fails or misses the deadline is logged and
+ * its section of the page gets the fallback value instead, rather than failing the whole page.
+ *
+ * Lookups must not depend on thread-bound state, such as the security context, and must not write to the request's
+ * {@link Model}: use {@link Batch#submitModel} to fill a model of their own, which is merged on the request thread.
+ */
+@Component
+public class ServiceFanOut implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ServiceFanOut.class);
+
+    private final ExecutorService executor;
+    private final long            timeoutMillis;
+
+    public ServiceFanOut(
+            @Value("${fanout.threads:32}") int threads,
+            @Value("${fanout.timeoutMillis:5000}") long timeoutMillis) {
+
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(threads * 4), r -> {
+            Thread thread = new Thread(r, "fanout-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        ((ThreadPoolExecutor) executor).allowCoreThreadTimeOut(true);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+
+    /**
+     * @param name what the lookups are for, for the log
+     * @return a batch of lookups whose deadline starts now
+     */
+    public Batch newBatch(String name) {
+        return newBatch(name, timeoutMillis);
+    }
+
+    /**
+     * @param name what the lookups are for, for the log
+     * @param timeoutMillis how long the lookups have, instead of {@code fanout.timeoutMillis}
+     * @return a batch of lookups whose deadline starts now
+     */
+    public Batch newBatch(String name, long timeoutMillis) {
+        return new Batch(name, System.currentTimeMillis() + timeoutMillis);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+
+    /**
+     * A filler of a model for one section of a page.
+     */
+    @FunctionalInterface
+    public interface ModelSection {
+        void fill(Model model) throws Exception;
+    }
+
+
+    public class Batch {
+
+        private final String              name;
+        private final long                deadline;
+        private final List<Section<?>>    sections = new ArrayList<>();
+
+        private Batch(String name, long deadline) {
+            this.name = name;
+            this.deadline = deadline;
+        }
+
+        public <T> Section<T> submit(String section, Callable<T> lookup) {
+            Section<T> s = new Section<>(this, section, executor.submit(lookup));
+            sections.add(s);
+
+            return s;
+        }
+
+        /**
+         * Runs {@code filler} on a model of its own; {@link Section#mergeInto} copies what it added to the page model.
+         */
+        public Section<Model> submitModel(String section, ModelSection filler) {
+            return submit(section, () -> {
+                Model model = new ExtendedModelMap();
+                filler.fill(model);
+
+                return model;
+            });
+        }
+
+        /**
+         * Abandons the lookups not finished yet, e.g. when the page cannot be shown after all.
+         */
+        public void cancel() {
+            for (Section<?> section : sections) {
+                section.future.cancel(true);
+            }
+        }
+    }
+
+
+    public static class Section<T> {
+
+        private final Batch     batch;
+        private final String    name;
+        private final Future<T> future;
+        private       Throwable failure;
+
+        private Section(Batch batch, String name, Future<T> future) {
+            this.batch = batch;
+            this.name = name;
+            this.future = future;
+        }
+
+        /**
+         * Waits for the lookup until the batch deadline.
+         *
+         * @return the value looked up, or {@code fallback} if the lookup failed or did not finish in time
+         */
+        public T get(T fallback) {
+
+            try {
+                long remaining = Math.max(0, batch.deadline - System.currentTimeMillis());
+                T    value     = future.get(remaining, TimeUnit.MILLISECONDS);
+
+                return (value == null ? fallback : value);
+
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                failure = e;
+                logger.warn("{}: {} did not finish in time", batch.name, name);
+
+            } catch (ExecutionException e) {
+                failure = e.getCause();
+                logger.warn("{}: {} failed. Reason: {}", batch.name, name, failure.getLocalizedMessage());
+
+            } catch (CancellationException e) {
+                failure = e;
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = e;
+            }
+
+            return fallback;
+        }
+
+        /**
+         * Waits for a {@link Batch#submitModel} section and adds its attributes to {@code model}.
+         *
+         * @return true if the section filled its model; false if it failed, in which case nothing is added
+         */
+        public boolean mergeInto(Model model) {
+            Object sectionModel = get(null);
+            if (sectionModel instanceof Model) {
+                model.addAllAttributes(((Model) sectionModel).asMap());
+            }
+
+            return (failure == null);
+        }
+
+        /**
+         * @return why the lookup gave no value (after {@link #get}), or null if it did not fail
+         */
+        public Throwable getFailure() {
+            return failure;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package uk.ac.ebi.phenotype.web.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class BoundedCacheManagerTest {
+
+    @Test
+    public void cachesAreBoundedAndCounted() {
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        BoundedCacheManager manager  = new BoundedCacheManager(Collections.singletonMap("small", "maximumSize=2"), "maximumSize=100", registry);
+        manager.afterPropertiesSet();
+
+        Cache cache = manager.getCache("small");
+        for (int i = 0; i < 10; i++) {
+            cache.put(i, "value " + i);
+        }
+        assertNull(cache.get(0));
+        assertEquals("value 9", cache.get(9).get());
+
+        Map<String, Object> statistics = manager.getStatistics().get("small");
+        assertEquals(2L, statistics.get("size"));
+        assertEquals(1L, statistics.get("hits"));
+        assertEquals(1L, statistics.get("misses"));
+        assertEquals(8L, statistics.get("evictions"));
+        assertEquals(8.0, registry.get("cache.evictions").tag("cache", "small").functionCounter().count(), 0.0);
+    }
+
+    @Test
+    public void unknownCachesUseDefaultSpec() {
+
+        BoundedCacheManager manager = new BoundedCacheManager(Collections.emptyMap(), "maximumSize=1", null);
+        manager.afterPropertiesSet();
+
+        Cache cache = manager.getCache("other");
+        cache.put("a", null);
+        assertNull(cache.get("a").get());
+
+        AtomicInteger loads = new AtomicInteger();
+        assertEquals("b", cache.get("b", () -> { loads.incrementAndGet(); return "b"; }));
+        assertEquals("b", cache.get("b", () -> { loads.incrementAndGet(); return "c"; }));
+        assertEquals(1, loads.get());
+        assertNull(cache.get("a"));
+        assertTrue(manager.getCacheNames().contains("other"));
+    }
+}
@@ -0,0 +1,65 @@
+package uk.ac.ebi.phenotype.web.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.mousephenotype.cda.solr.service.dto.ParameterDTO;
+import org.mousephenotype.cda.solr.web.dto.ParallelCoordinatesDTO;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class ParallelCoordinatesControllerTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+
+    @Test
+    public void rowsLinksAndGroupsAreWrittenAsJson() throws Exception {
+
+        ParameterDTO bodyWeight = parameter("IMPC_DXA_001_001", "Body weight \"total\"", 1L);
+        ParameterDTO fatMass    = parameter("IMPC_DXA_002_001", "Fat mass", 2L);
+        List<ParameterDTO> parameters = Arrays.asList(bodyWeight, fatMass);
+
+        Map<String, ParallelCoordinatesDTO> rows = new LinkedHashMap<>();
+        ParallelCoordinatesDTO gene = new ParallelCoordinatesDTO("Akt2", "MGI:104874", "Mutant", parameters);
+        gene.addValue(bodyWeight, -2.5, true);
+        rows.put("Akt2 Mutant", gene);
+        ParallelCoordinatesDTO defaults = new ParallelCoordinatesDTO(ParallelCoordinatesDTO.DEFAULT, null, "No effect", parameters);
+        defaults.addValue(bodyWeight, 0.0, false);
+        defaults.addValue(fatMass, 0.0, false);
+        rows.put(ParallelCoordinatesDTO.DEFAULT, defaults);
+
+        String js = new ParallelCoordinatesController().getJsonForParallelCoordinates(rows, parameters);
+
+        JsonNode foods = mapper.readTree(variable(js, "foods"));
+        assertEquals(2, foods.size());
+        assertEquals("Akt2(MGI:104874)", foods.get(0).get("gene").asText());
+        assertEquals(-2.5, foods.get(0).get("Body weight \"total\"").asDouble(), 0);
+        assertTrue(foods.get(0).get("Fat mass").isNull());
+        assertEquals(1.0, foods.get(0).get("significantMask").get(0).asDouble(), 0);
+
+        assertEquals("No effect", mapper.readTree(variable(js, "defaults")).get("group").asText());
+        assertEquals("/impress/parameterontologies/2", mapper.readTree(variable(js, "links")).get("Fat mass").asText());
+        assertEquals("Body Composition (DEXA lean/fat)", mapper.readTree(variable(js, "groups")).get("Fat mass").asText());
+    }
+
+
+    private ParameterDTO parameter(String stableId, String name, Long stableKey) {
+        ParameterDTO parameter = new ParameterDTO();
+        parameter.setStableId(stableId);
+        parameter.setName(name);
+        parameter.setStableKey(stableKey);
+        parameter.addProcedureNames("Body Composition (DEXA lean/fat)");
+        return parameter;
+    }
+
+    private String variable(String js, String name) {
+        Matcher matcher = Pattern.compile("var " + name + " = (.*?);\\s*(var |$)", Pattern.DOTALL).matcher(js);
+        assertTrue(name + " not found in " + js, matcher.find());
+        return matcher.group(1);
+    }
+}
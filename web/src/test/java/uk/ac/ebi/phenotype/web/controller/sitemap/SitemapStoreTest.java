@@ -0,0 +1,85 @@
+package uk.ac.ebi.phenotype.web.controller.sitemap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.util.StreamUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+public class SitemapStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    @Test
+    public void partsAreSplitAt50000UrlsAndListedInTheIndex() throws Exception {
+
+        SitemapStore store = newStore();
+
+        List<String> genes = new ArrayList<>();
+        for (int i = 0; i < 50001; i++) {
+            genes.add("MGI:" + i);
+        }
+        Map<String, Collection<String>> ids = new LinkedHashMap<>();
+        ids.put("genes", genes);
+        ids.put("phenotypes", Collections.singletonList("MP:0000001"));
+        ids.put("disease", Collections.emptyList());
+
+        SitemapStore.Sitemaps sitemaps = store.generate("10.1", ids);
+
+        assertEquals(new HashSet<>(Arrays.asList(SitemapStore.INDEX, "sitemap_genes1.xml.gz", "sitemap_genes2.xml.gz", "sitemap_phenotypes.xml.gz")),
+                sitemaps.getFiles().keySet());
+
+        String index = read(sitemaps.getFiles().get(SitemapStore.INDEX).getFile());
+        assertTrue(index.contains("<loc>https://www.example.org/data/sitemaps/sitemap_genes1.xml.gz</loc>"));
+        assertTrue(index.contains("<loc>https://www.example.org/data/sitemaps/sitemap_genes2.xml.gz</loc>"));
+        assertTrue(index.contains("<loc>https://www.example.org/data/sitemaps/sitemap_phenotypes.xml.gz</loc>"));
+
+        String phenotypes = read(sitemaps.getFiles().get("sitemap_phenotypes.xml.gz").getFile());
+        assertTrue(phenotypes.contains("<loc>https://www.example.org/data/phenotypes/MP:0000001</loc>"));
+    }
+
+    @Test
+    public void generatedSitemapsAreReloadedAndOtherReleasesRemoved() throws Exception {
+
+        SitemapStore store = newStore();
+
+        SitemapStore.Sitemaps old = store.generate("10.0", Collections.singletonMap("genes", Collections.singletonList("MGI:1")));
+        SitemapStore.Sitemaps generated = store.generate("10.1", Collections.singletonMap("genes", Collections.singletonList("MGI:2")));
+
+        File directory = generated.getFiles().get(SitemapStore.INDEX).getFile().getParentFile();
+
+        // The files of the old release are still served until the new ones replace them
+        assertTrue(old.getFiles().get(SitemapStore.INDEX).getFile().exists());
+        store.removeOtherReleases(directory);
+        assertFalse(old.getFiles().get(SitemapStore.INDEX).getFile().exists());
+        assertTrue(generated.getFiles().get(SitemapStore.INDEX).getFile().exists());
+
+        SitemapStore.Sitemaps reloaded = newStore().load("10.1", directory);
+
+        assertEquals(generated.getFiles().keySet(), reloaded.getFiles().keySet());
+        for (String name : generated.getFiles().keySet()) {
+            assertEquals(generated.getFiles().get(name).getMd5(), reloaded.getFiles().get(name).getMd5());
+        }
+    }
+
+
+    private SitemapStore newStore() {
+        return new SitemapStore(null, null, null, null, folder.getRoot().getPath(), "https://www.example.org/data/");
+    }
+
+    private String read(File file) throws Exception {
+        try (InputStream input = new GZIPInputStream(new FileInputStream(file))) {
+            return StreamUtils.copyToString(input, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package uk.ac.ebi.phenotype.web.util;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.ui.ExtendedModelMap;
+import org.springframework.ui.Model;
+
+import java.io.IOException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+public class ServiceFanOutTest {
+
+    private final ServiceFanOut fanOut = new ServiceFanOut(4, 500);
+
+    @After
+    public void tearDown() {
+        fanOut.destroy();
+    }
+
+
+    @Test
+    public void sectionsRunConcurrently() {
+
+        ServiceFanOut.Batch batch = fanOut.newBatch("test");
+        long                start = System.currentTimeMillis();
+
+        ServiceFanOut.Section<String> first  = batch.submit("first", () -> { Thread.sleep(200); return "a"; });
+        ServiceFanOut.Section<String> second = batch.submit("second", () -> { Thread.sleep(200); return "b"; });
+        ServiceFanOut.Section<String> third  = batch.submit("third", () -> { Thread.sleep(200); return "c"; });
+
+        assertEquals("abc", first.get(null) + second.get(null) + third.get(null));
+        assertTrue(System.currentTimeMillis() - start < 500);
+    }
+
+    @Test
+    public void failedAndLateSectionsFallBack() {
+
+        ServiceFanOut.Batch batch = fanOut.newBatch("test");
+
+        ServiceFanOut.Section<Integer> failed = batch.submit("failed", () -> { throw new IOException("down"); });
+        ServiceFanOut.Section<Integer> late   = batch.submit("late", () -> { Thread.sleep(5000); return 1; });
+
+        assertEquals(Integer.valueOf(0), failed.get(0));
+        assertTrue(failed.getFailure() instanceof IOException);
+        assertEquals(Integer.valueOf(0), late.get(0));
+        assertTrue(late.getFailure() instanceof TimeoutException);
+    }
+
+    @Test
+    public void batchTimeoutCanBeShortened() {
+
+        ServiceFanOut.Batch batch = fanOut.newBatch("test", 50);
+        long                start = System.currentTimeMillis();
+
+        ServiceFanOut.Section<Integer> late = batch.submit("late", () -> { Thread.sleep(400); return 1; });
+
+        assertEquals(Integer.valueOf(0), late.get(0));
+        assertTrue(late.getFailure() instanceof TimeoutException);
+        assertTrue(System.currentTimeMillis() - start < 400);
+    }
+
+    @Test
+    public void modelSectionsAreMerged() {
+
+        ServiceFanOut.Batch batch = fanOut.newBatch("test");
+        Model               model = new ExtendedModelMap();
+
+        assertTrue(batch.submitModel("filled", m -> m.addAttribute("a", 1)).mergeInto(model));
+        assertFalse(batch.submitModel("failed", m -> { m.addAttribute("b", 2); throw new IOException("down"); }).mergeInto(model));
+
+        assertEquals(1, model.asMap().get("a"));
+        assertFalse(model.containsAttribute("b"));
+    }
+}